@@ -0,0 +1,72 @@
+package org.apache.logging.log4j.core.jackson;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdScalarSerializer;
+import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.util.StringBuilderFormattable;
+
+import java.io.IOException;
+
+/**
+ * Writes formatted {@link Message} as JSON string.
+ * <p>
+ * {@link StringBuilderFormattable} messages are formatted into per-thread buffers and escaped and encoded directly
+ * by given {@code com.fasterxml.jackson.core.JsonGenerator}, so no {@code String} is allocated per message
+ * if Log4j2 thread-locals are enabled. Other messages are written with {@link Message#getFormattedMessage()}.
+ */
+public class FormattedMessageSerializer extends StdScalarSerializer<Message> {
+
+    private static final long serialVersionUID = 1L;
+
+    public FormattedMessageSerializer() {
+        super(Message.class);
+    }
+
+    @Override
+    public void serialize(final Message value, final JsonGenerator gen, final SerializerProvider provider) throws IOException {
+
+        if (!MessageFormatBuffer.isSupported(value)) {
+            gen.writeString(value.getFormattedMessage());
+            return;
+        }
+
+        MessageFormatBuffer buffer = MessageFormatBuffer.acquire();
+        if (buffer == null) {
+            // formatTo() logged or serialized another message on this thread
+            gen.writeString(value.getFormattedMessage());
+            return;
+        }
+
+        try {
+            buffer.format((StringBuilderFormattable) value);
+            gen.writeString(buffer.getChars(), 0, buffer.length());
+        } finally {
+            buffer.release();
+        }
+
+    }
+
+}
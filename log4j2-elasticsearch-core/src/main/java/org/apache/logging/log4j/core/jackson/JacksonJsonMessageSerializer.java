@@ -24,9 +24,16 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.ser.std.StdScalarSerializer;
 import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.util.StringBuilderFormattable;
 
 import java.io.IOException;
 
+/**
+ * Writes formatted {@link Message} as raw value.
+ * <p>
+ * Since 1.5, {@link StringBuilderFormattable} messages are formatted into per-thread buffers if Log4j2 thread-locals
+ * are enabled, so no {@code String} is allocated per message.
+ */
 public class JacksonJsonMessageSerializer extends StdScalarSerializer<Message> {
 
     private static final long serialVersionUID = 1L;
@@ -37,7 +44,26 @@ public class JacksonJsonMessageSerializer extends StdScalarSerializer<Message> {
 
     @Override
     public void serialize(final Message value, final JsonGenerator jgen, final SerializerProvider provider) throws IOException {
-        jgen.writeRaw(value.getFormattedMessage());
+
+        if (!MessageFormatBuffer.isSupported(value)) {
+            jgen.writeRaw(value.getFormattedMessage());
+            return;
+        }
+
+        MessageFormatBuffer buffer = MessageFormatBuffer.acquire();
+        if (buffer == null) {
+            // formatTo() logged or serialized another message on this thread
+            jgen.writeRaw(value.getFormattedMessage());
+            return;
+        }
+
+        try {
+            buffer.format((StringBuilderFormattable) value);
+            jgen.writeRaw(buffer.getChars(), 0, buffer.length());
+        } finally {
+            buffer.release();
+        }
+
     }
 
 }
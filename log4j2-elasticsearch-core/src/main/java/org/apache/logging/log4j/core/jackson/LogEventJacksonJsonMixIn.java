@@ -24,6 +24,7 @@ package org.apache.logging.log4j.core.jackson;
  * - setters removed
  * - JsonDeserialize annotations removed
  * - JsonFilter removed
+ * - message serialized with FormattedMessageSerializer
  *
  */
 
@@ -88,7 +89,7 @@ public abstract class LogEventJacksonJsonMixIn implements LogEvent {
     public abstract Marker getMarker();
 
     @JsonProperty(JsonConstants.ELT_MESSAGE)
-    @JsonSerialize(using = MessageSerializer.class)
+    @JsonSerialize(using = FormattedMessageSerializer.class)
     @Override
     public abstract Message getMessage();
 
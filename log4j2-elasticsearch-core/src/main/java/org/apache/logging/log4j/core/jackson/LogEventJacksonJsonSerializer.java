@@ -0,0 +1,123 @@
+package org.apache.logging.log4j.core.jackson;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.impl.ThrowableProxy;
+import org.apache.logging.log4j.message.Message;
+import org.appenders.log4j2.elasticsearch.VirtualPropertiesWriter;
+
+import java.io.IOException;
+
+/**
+ * Writes {@link LogEvent} fields directly to {@code com.fasterxml.jackson.core.JsonGenerator}, bypassing bean
+ * introspection driven by {@link LogEventJacksonJsonMixIn}. Field names are pre-encoded once.
+ * <p>
+ * Output is equivalent to {@link LogEventJacksonJsonMixIn} based serialization: {@code timeMillis}, {@code loggerName},
+ * {@code level}, {@code marker}, {@code message}, {@code thrown}, {@code thread} and virtual properties appended
+ * by given {@link VirtualPropertiesWriter}. {@code null} and empty values are omitted.
+ * <p>
+ * {@code marker} and {@code thrown} are rare, so their serialization is delegated to given
+ * {@code com.fasterxml.jackson.databind.SerializerProvider} and configured mixins still apply to them.
+ */
+public class LogEventJacksonJsonSerializer extends StdSerializer<LogEvent> {
+
+    private static final long serialVersionUID = 1L;
+
+    static final SerializableString TIME_MILLIS = new SerializedString("timeMillis");
+    static final SerializableString LOGGER_NAME = new SerializedString("loggerName");
+    static final SerializableString LEVEL = new SerializedString("level");
+    static final SerializableString MARKER = new SerializedString(JsonConstants.ELT_MARKER);
+    static final SerializableString MESSAGE = new SerializedString(JsonConstants.ELT_MESSAGE);
+    static final SerializableString THROWN = new SerializedString(JsonConstants.ELT_THROWN);
+    static final SerializableString THREAD = new SerializedString("thread");
+
+    private final transient VirtualPropertiesWriter virtualPropertiesWriter;
+    private final FormattedMessageSerializer messageSerializer = new FormattedMessageSerializer();
+
+    /**
+     * @param virtualPropertiesWriter appends {@link org.appenders.log4j2.elasticsearch.VirtualProperty}-ies
+     *                                at the end of each serialized {@link LogEvent}
+     */
+    public LogEventJacksonJsonSerializer(VirtualPropertiesWriter virtualPropertiesWriter) {
+        super(LogEvent.class);
+        this.virtualPropertiesWriter = virtualPropertiesWriter;
+    }
+
+    @Override
+    public void serialize(LogEvent event, JsonGenerator gen, SerializerProvider provider) throws IOException {
+
+        gen.writeStartObject();
+
+        gen.writeFieldName(TIME_MILLIS);
+        gen.writeNumber(event.getTimeMillis());
+
+        String loggerName = event.getLoggerName();
+        if (loggerName != null && !loggerName.isEmpty()) {
+            gen.writeFieldName(LOGGER_NAME);
+            gen.writeString(loggerName);
+        }
+
+        Level level = event.getLevel();
+        if (level != null) {
+            gen.writeFieldName(LEVEL);
+            gen.writeString(level.name());
+        }
+
+        Marker marker = event.getMarker();
+        if (marker != null) {
+            gen.writeFieldName(MARKER);
+            provider.defaultSerializeValue(marker, gen);
+        }
+
+        Message message = event.getMessage();
+        if (message != null) {
+            gen.writeFieldName(MESSAGE);
+            messageSerializer.serialize(message, gen, provider);
+        }
+
+        ThrowableProxy thrownProxy = event.getThrownProxy();
+        if (thrownProxy != null) {
+            gen.writeFieldName(THROWN);
+            provider.defaultSerializeValue(thrownProxy, gen);
+        }
+
+        String threadName = event.getThreadName();
+        if (threadName != null && !threadName.isEmpty()) {
+            gen.writeFieldName(THREAD);
+            gen.writeString(threadName);
+        }
+
+        virtualPropertiesWriter.serializeAsField(event, gen, provider);
+
+        gen.writeEndObject();
+
+    }
+
+}
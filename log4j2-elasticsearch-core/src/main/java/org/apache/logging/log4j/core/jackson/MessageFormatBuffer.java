@@ -0,0 +1,126 @@
+package org.apache.logging.log4j.core.jackson;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import org.apache.logging.log4j.core.util.Constants;
+import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.util.StringBuilderFormattable;
+import org.apache.logging.log4j.util.StringBuilders;
+
+/**
+ * Per-thread buffers used to format {@link StringBuilderFormattable} messages without intermediate {@code String}
+ * allocation. Formatted characters are available with {@link #getChars()} until next {@link #format(StringBuilderFormattable)} call.
+ * <p>
+ * Used only if Log4j2 thread-locals are enabled ({@code log4j2.enable.threadlocals}). Buffers grown beyond
+ * {@code log4j2.maxReusableMsgSize} are trimmed by {@link #trim()}.
+ * <p>
+ * Since {@link StringBuilderFormattable#formatTo(StringBuilder)} may log or serialize other messages on the same thread,
+ * buffer has to be obtained with {@link #acquire()} and returned with {@link #release()}. Nested calls get no buffer
+ * and should fall back to {@link Message#getFormattedMessage()}.
+ */
+final class MessageFormatBuffer {
+
+    private static final ThreadLocal<MessageFormatBuffer> BUFFERS = ThreadLocal.withInitial(MessageFormatBuffer::new);
+
+    private final StringBuilder builder = new StringBuilder(Constants.INITIAL_REUSABLE_MESSAGE_SIZE);
+    private char[] chars = new char[Constants.INITIAL_REUSABLE_MESSAGE_SIZE];
+    private int length;
+    private boolean inUse;
+
+    /**
+     * @param message message to check
+     * @return true, if given message can be formatted with {@link MessageFormatBuffer}, false otherwise
+     */
+    static boolean isSupported(Message message) {
+        return Constants.ENABLE_THREADLOCALS && message instanceof StringBuilderFormattable;
+    }
+
+    /**
+     * @return buffer bound to current thread, or null if it's already in use on this thread (reentrant call)
+     */
+    static MessageFormatBuffer acquire() {
+
+        MessageFormatBuffer buffer = BUFFERS.get();
+        if (buffer.inUse) {
+            return null;
+        }
+
+        buffer.inUse = true;
+        return buffer;
+
+    }
+
+    /**
+     * Trims this buffer and makes it available to subsequent {@link #acquire()} calls
+     */
+    void release() {
+        trim();
+        inUse = false;
+    }
+
+    /**
+     * Formats given message into this buffer. Previous content is discarded.
+     *
+     * @param formattable message to format
+     * @return this
+     */
+    MessageFormatBuffer format(StringBuilderFormattable formattable) {
+
+        builder.setLength(0);
+        formattable.formatTo(builder);
+
+        length = builder.length();
+        if (chars.length < length) {
+            chars = new char[length];
+        }
+        builder.getChars(0, length, chars, 0);
+
+        return this;
+
+    }
+
+    /**
+     * @return formatted characters. Only first {@link #length()} characters are valid
+     */
+    char[] getChars() {
+        return chars;
+    }
+
+    /**
+     * @return number of formatted characters
+     */
+    int length() {
+        return length;
+    }
+
+    /**
+     * Releases buffers grown beyond {@link Constants#MAX_REUSABLE_MESSAGE_SIZE}
+     */
+    void trim() {
+        if (chars.length > Constants.MAX_REUSABLE_MESSAGE_SIZE) {
+            chars = new char[Constants.INITIAL_REUSABLE_MESSAGE_SIZE];
+        }
+        StringBuilders.trimToMaxSize(builder, Constants.MAX_REUSABLE_MESSAGE_SIZE);
+    }
+
+}
@@ -0,0 +1,275 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import org.apache.logging.log4j.core.config.ConfigurationException;
+import org.apache.logging.log4j.core.config.Node;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderFactory;
+
+import static org.appenders.core.logging.InternalLogging.getLogger;
+
+/**
+ * Additive-increase/multiplicative-decrease (AIMD) controller of effective batch size and delivery interval.
+ * <p>
+ * Client-specific batch listeners report the outcome of each delivered batch. If cluster service time and round-trip
+ * latency are both within {@code targetLatencyMillis}, batch size grows by {@code batchSizeIncrement} and delivery
+ * interval shrinks back towards its initial value. Otherwise, or if batch was rejected, batch size is multiplied by
+ * {@code decreaseFactor} and delivery interval is divided by it.
+ * <p>
+ * Initial values are taken from emitter configuration. See {@link #reset(int, int)}
+ * <p>
+ * Each emitter MUST be controlled by its own instance. See {@link #copy()}
+ */
+@Plugin(name = AdaptiveBatchSize.PLUGIN_NAME, category = Node.CATEGORY, elementType = AdaptiveBatchSize.ELEMENT_TYPE, printObject = true)
+public class AdaptiveBatchSize {
+
+    public static final String PLUGIN_NAME = "AdaptiveBatchSize";
+    public static final String ELEMENT_TYPE = "adaptiveBatchSize";
+
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final int batchSizeIncrement;
+    private final double decreaseFactor;
+    private final long targetLatencyMillis;
+    private final int maxDeliveryInterval;
+
+    private volatile int batchSize;
+    private volatile int deliveryInterval;
+    private int initialDeliveryInterval;
+
+    protected AdaptiveBatchSize(Builder builder) {
+        this(builder.minBatchSize,
+                builder.maxBatchSize,
+                builder.batchSizeIncrement,
+                builder.decreaseFactor,
+                builder.targetLatencyMillis,
+                builder.maxDeliveryInterval);
+    }
+
+    private AdaptiveBatchSize(int minBatchSize, int maxBatchSize, int batchSizeIncrement, double decreaseFactor, long targetLatencyMillis, int maxDeliveryInterval) {
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.batchSizeIncrement = batchSizeIncrement;
+        this.decreaseFactor = decreaseFactor;
+        this.targetLatencyMillis = targetLatencyMillis;
+        this.maxDeliveryInterval = maxDeliveryInterval;
+        this.batchSize = maxBatchSize;
+        this.deliveryInterval = Builder.DEFAULT_INITIAL_DELIVERY_INTERVAL;
+        this.initialDeliveryInterval = Builder.DEFAULT_INITIAL_DELIVERY_INTERVAL;
+    }
+
+    /**
+     * @return new instance with the same configuration and initial state
+     */
+    public AdaptiveBatchSize copy() {
+        return new AdaptiveBatchSize(
+                minBatchSize,
+                maxBatchSize,
+                batchSizeIncrement,
+                decreaseFactor,
+                targetLatencyMillis,
+                maxDeliveryInterval);
+    }
+
+    /**
+     * Sets initial values. Given batch size will be adjusted to configured bounds.
+     *
+     * @param batchSize initial batch size
+     * @param deliveryInterval initial and minimum delivery interval
+     */
+    public synchronized void reset(int batchSize, int deliveryInterval) {
+        this.batchSize = Math.max(minBatchSize, Math.min(maxBatchSize, batchSize));
+        this.initialDeliveryInterval = deliveryInterval;
+        this.deliveryInterval = deliveryInterval;
+    }
+
+    /**
+     * Grows batch size if both cluster service time and round-trip latency are within target latency, shrinks it
+     * otherwise.
+     *
+     * @param serviceTimeMillis cluster service time reported by the response
+     * @param latencyMillis round-trip latency measured by the client
+     */
+    public synchronized void onSuccess(long serviceTimeMillis, long latencyMillis) {
+
+        if (serviceTimeMillis > targetLatencyMillis || latencyMillis > targetLatencyMillis) {
+            decrease();
+            return;
+        }
+
+        batchSize = Math.min(maxBatchSize, batchSize + batchSizeIncrement);
+        deliveryInterval = Math.max(initialDeliveryInterval, (int) (deliveryInterval * decreaseFactor));
+
+    }
+
+    /**
+     * Shrinks batch size and extends delivery interval.
+     */
+    public synchronized void onRejection() {
+        decrease();
+    }
+
+    private void decrease() {
+
+        batchSize = Math.max(minBatchSize, (int) (batchSize * decreaseFactor));
+        deliveryInterval = Math.max(initialDeliveryInterval, Math.min(maxDeliveryInterval, (int) Math.ceil(deliveryInterval / decreaseFactor)));
+
+        getLogger().debug("{}: batchSize decreased to {}, deliveryInterval extended to {}",
+                getClass().getSimpleName(),
+                batchSize,
+                deliveryInterval);
+
+    }
+
+    /**
+     * @return current number of items that should trigger the delivery
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return current millis between two time-triggered deliveries
+     */
+    public int getDeliveryInterval() {
+        return deliveryInterval;
+    }
+
+    @PluginBuilderFactory
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public static class Builder implements org.apache.logging.log4j.core.util.Builder<AdaptiveBatchSize> {
+
+        /**
+         * Default: 100
+         */
+        public static final int DEFAULT_MIN_BATCH_SIZE = 100;
+
+        /**
+         * Default: 10000
+         */
+        public static final int DEFAULT_MAX_BATCH_SIZE = 10000;
+
+        /**
+         * Default: 100
+         */
+        public static final int DEFAULT_BATCH_SIZE_INCREMENT = 100;
+
+        /**
+         * Default: 0.5
+         */
+        public static final double DEFAULT_DECREASE_FACTOR = 0.5;
+
+        /**
+         * Default: 1000 ms
+         */
+        public static final long DEFAULT_TARGET_LATENCY = 1000;
+
+        /**
+         * Default: 30000 ms
+         */
+        public static final int DEFAULT_MAX_DELIVERY_INTERVAL = 30000;
+
+        static final int DEFAULT_INITIAL_DELIVERY_INTERVAL = 1000;
+
+        @PluginBuilderAttribute
+        private int minBatchSize = DEFAULT_MIN_BATCH_SIZE;
+
+        @PluginBuilderAttribute
+        private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+        @PluginBuilderAttribute
+        private int batchSizeIncrement = DEFAULT_BATCH_SIZE_INCREMENT;
+
+        @PluginBuilderAttribute
+        private double decreaseFactor = DEFAULT_DECREASE_FACTOR;
+
+        @PluginBuilderAttribute
+        private long targetLatencyMillis = DEFAULT_TARGET_LATENCY;
+
+        @PluginBuilderAttribute
+        private int maxDeliveryInterval = DEFAULT_MAX_DELIVERY_INTERVAL;
+
+        @Override
+        public AdaptiveBatchSize build() {
+
+            if (minBatchSize <= 0) {
+                throw new ConfigurationException("minBatchSize must be higher than 0 for " + PLUGIN_NAME);
+            }
+            if (maxBatchSize < minBatchSize) {
+                throw new ConfigurationException("maxBatchSize cannot be lower than minBatchSize for " + PLUGIN_NAME);
+            }
+            if (batchSizeIncrement <= 0) {
+                throw new ConfigurationException("batchSizeIncrement must be higher than 0 for " + PLUGIN_NAME);
+            }
+            if (decreaseFactor <= 0 || decreaseFactor >= 1) {
+                throw new ConfigurationException("decreaseFactor must be between 0 and 1 (exclusive) for " + PLUGIN_NAME);
+            }
+            if (targetLatencyMillis <= 0) {
+                throw new ConfigurationException("targetLatencyMillis must be higher than 0 for " + PLUGIN_NAME);
+            }
+            if (maxDeliveryInterval <= 0) {
+                throw new ConfigurationException("maxDeliveryInterval must be higher than 0 for " + PLUGIN_NAME);
+            }
+
+            return new AdaptiveBatchSize(this);
+
+        }
+
+        public Builder withMinBatchSize(int minBatchSize) {
+            this.minBatchSize = minBatchSize;
+            return this;
+        }
+
+        public Builder withMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        public Builder withBatchSizeIncrement(int batchSizeIncrement) {
+            this.batchSizeIncrement = batchSizeIncrement;
+            return this;
+        }
+
+        public Builder withDecreaseFactor(double decreaseFactor) {
+            this.decreaseFactor = decreaseFactor;
+            return this;
+        }
+
+        public Builder withTargetLatencyMillis(long targetLatencyMillis) {
+            this.targetLatencyMillis = targetLatencyMillis;
+            return this;
+        }
+
+        public Builder withMaxDeliveryInterval(int maxDeliveryInterval) {
+            this.maxDeliveryInterval = maxDeliveryInterval;
+            return this;
+        }
+
+    }
+
+}
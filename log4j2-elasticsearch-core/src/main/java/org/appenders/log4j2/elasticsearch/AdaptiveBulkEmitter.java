@@ -0,0 +1,60 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+/**
+ * {@link BulkEmitter} with batch size and delivery interval controlled by given {@link AdaptiveBatchSize}.
+ * <p>
+ * Delivery deadline is checked {@link BulkEmitter#TICKS_PER_INTERVAL} times per initial delivery interval, so time-triggered
+ * deliveries happen roughly each {@link AdaptiveBatchSize#getDeliveryInterval()}.
+ *
+ * @param <BATCH_TYPE> type of processed batches
+ */
+public class AdaptiveBulkEmitter<BATCH_TYPE> extends BulkEmitter<BATCH_TYPE> {
+
+    private final AdaptiveBatchSize adaptiveBatchSize;
+
+    /**
+     * @param atSize initial number of items that should trigger the delivery
+     * @param atSizeInBytes total size of items that should trigger the delivery
+     * @param intervalInMillis initial and minimum millis between two time-triggered deliveries
+     * @param batchOperations batch builder provider
+     * @param adaptiveBatchSize current batch size and delivery interval provider
+     */
+    public AdaptiveBulkEmitter(int atSize, long atSizeInBytes, int intervalInMillis, BatchOperations<BATCH_TYPE> batchOperations, AdaptiveBatchSize adaptiveBatchSize) {
+        super(atSize, atSizeInBytes, intervalInMillis, batchOperations);
+        this.adaptiveBatchSize = adaptiveBatchSize;
+        this.adaptiveBatchSize.reset(atSize, intervalInMillis);
+    }
+
+    @Override
+    protected int getMaxSize() {
+        return adaptiveBatchSize.getBatchSize();
+    }
+
+    @Override
+    protected int getDeliveryInterval() {
+        return adaptiveBatchSize.getDeliveryInterval();
+    }
+
+}
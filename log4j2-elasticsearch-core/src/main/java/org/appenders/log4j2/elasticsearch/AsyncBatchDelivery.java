@@ -21,6 +21,8 @@ package org.appenders.log4j2.elasticsearch;
  */
 
 
+import io.netty.buffer.ByteBuf;
+import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.core.config.ConfigurationException;
 import org.apache.logging.log4j.core.config.Node;
 import org.apache.logging.log4j.core.config.plugins.Plugin;
@@ -37,6 +39,9 @@ import static org.appenders.core.logging.InternalLogging.getLogger;
 /**
  * Uses {@link BatchEmitterFactory} SPI to get a {@link BatchEmitter} instance that will hold given items until interval
  * or size conditions are met.
+ * <p>
+ * Since 1.5, if {@link PriorityLanes} are configured, low-priority items are held by separate {@link BatchEmitter}
+ * and may be shed under back-pressure.
  */
 @Plugin(name = "AsyncBatchDelivery", category = Node.CATEGORY, elementType = BatchDelivery.ELEMENT_TYPE, printObject = true)
 public class AsyncBatchDelivery implements BatchDelivery<String> {
@@ -45,23 +50,29 @@ public class AsyncBatchDelivery implements BatchDelivery<String> {
 
     private final BatchOperations batchOperations;
     private final BatchEmitter batchEmitter;
+    private final BatchEmitter lowPriorityEmitter;
+    private final PriorityLanes priorityLanes;
 
     private final IndexTemplate indexTemplate;
     private final ClientObjectFactory<Object, Object> objectFactory;
     private final FailoverPolicy failoverPolicy;
     private final long delayShutdownInMillis;
+    private final boolean sizeInBytesEnabled;
 
     /**
      * @param builder {@link Builder} instance
      */
     protected AsyncBatchDelivery(Builder builder) {
         this.batchOperations = builder.clientObjectFactory.createBatchOperations();
-        this.batchEmitter = createBatchEmitterServiceProvider()
-                .createInstance(
-                        builder.batchSize,
-                        builder.deliveryInterval,
-                        builder.clientObjectFactory,
-                        builder.failoverPolicy);
+        this.sizeInBytesEnabled = builder.batchSizeInBytes > 0;
+        this.priorityLanes = builder.priorityLanes;
+        if (priorityLanes == null) {
+            this.batchEmitter = createBatchEmitter(builder, builder.failoverPolicy);
+            this.lowPriorityEmitter = null;
+        } else {
+            this.batchEmitter = createBatchEmitter(builder, priorityLanes.highPriorityLane(builder.failoverPolicy));
+            this.lowPriorityEmitter = createBatchEmitter(builder, priorityLanes.lowPriorityLane(builder.failoverPolicy));
+        }
         this.indexTemplate = builder.indexTemplate;
         this.objectFactory = builder.clientObjectFactory;
         this.failoverPolicy = builder.failoverPolicy;
@@ -75,12 +86,153 @@ public class AsyncBatchDelivery implements BatchDelivery<String> {
      */
     @Override
     public void add(String indexName, String log) {
-        this.batchEmitter.add(batchOperations.createBatchItem(indexName, log));
+        add(batchEmitter, indexName, log);
     }
 
     @Override
     public void add(String indexName, ItemSource source) {
-        this.batchEmitter.add(batchOperations.createBatchItem(indexName, source));
+        add(batchEmitter, indexName, source);
+    }
+
+    /**
+     * Adds given item to one of {@link PriorityLanes} if configured. Low-priority items may be shed.
+     *
+     * @param indexName delivery target
+     * @param log batch item source
+     * @param level log event level
+     */
+    @Override
+    public void add(String indexName, String log, Level level) {
+
+        if (isHighPriority(level)) {
+            add(batchEmitter, indexName, log);
+            return;
+        }
+
+        if (priorityLanes.acceptLowPriority()) {
+            add(lowPriorityEmitter, indexName, log);
+        }
+
+    }
+
+    /**
+     * Adds given item to one of {@link PriorityLanes} if configured. Low-priority items may be shed and released.
+     *
+     * @param indexName delivery target
+     * @param source batch item source
+     * @param level log event level
+     */
+    @Override
+    public void add(String indexName, ItemSource source, Level level) {
+
+        if (isHighPriority(level)) {
+            add(batchEmitter, indexName, source);
+            return;
+        }
+
+        if (priorityLanes.acceptLowPriority()) {
+            add(lowPriorityEmitter, indexName, source);
+            return;
+        }
+
+        source.release();
+
+    }
+
+    private boolean isHighPriority(Level level) {
+        return priorityLanes == null || priorityLanes.isHighPriority(level);
+    }
+
+    private void add(BatchEmitter emitter, String indexName, String log) {
+        if (sizeInBytesEnabled) {
+            emitter.add(batchOperations.createBatchItem(indexName, log), utf8Length(log));
+            return;
+        }
+        emitter.add(batchOperations.createBatchItem(indexName, log));
+    }
+
+    private void add(BatchEmitter emitter, String indexName, ItemSource source) {
+        if (sizeInBytesEnabled) {
+            emitter.add(batchOperations.createBatchItem(indexName, source), sizeInBytes(source));
+            return;
+        }
+        emitter.add(batchOperations.createBatchItem(indexName, source));
+    }
+
+    /**
+     * @param source batch item source
+     * @return number of readable bytes if given source is backed by {@code io.netty.buffer.ByteBuf},
+     * UTF-8 encoded length if source is backed by {@code java.lang.String}, 0 otherwise
+     */
+    static long sizeInBytes(ItemSource source) {
+
+        Object item = source.getSource();
+
+        if (item instanceof ByteBuf) {
+            return ((ByteBuf) item).readableBytes();
+        }
+
+        if (item instanceof String) {
+            return utf8Length((String) item);
+        }
+
+        return 0;
+
+    }
+
+    /**
+     * Counts bytes without encoding given string. Unpaired surrogates are counted as single '?' byte,
+     * same as {@code String.getBytes(StandardCharsets.UTF_8)} does.
+     *
+     * @param value string to measure
+     * @return number of bytes of UTF-8 encoded {@code value}
+     */
+    static long utf8Length(String value) {
+
+        int length = value.length();
+        long result = length;
+
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                result += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                // 4 bytes per surrogate pair
+                result += 2;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate is replaced with '?'
+                continue;
+            } else {
+                result += 2;
+            }
+        }
+
+        return result;
+
+    }
+
+    private BatchEmitter createBatchEmitter(Builder builder, FailoverPolicy failoverPolicy) {
+
+        if (sizeInBytesEnabled) {
+            return createBatchEmitterServiceProvider()
+                    .createInstance(
+                            builder.batchSize,
+                            builder.batchSizeInBytes,
+                            builder.deliveryInterval,
+                            builder.clientObjectFactory,
+                            failoverPolicy);
+        }
+
+        return createBatchEmitterServiceProvider()
+                .createInstance(
+                        builder.batchSize,
+                        builder.deliveryInterval,
+                        builder.clientObjectFactory,
+                        failoverPolicy);
     }
 
     protected BatchEmitterServiceProvider createBatchEmitterServiceProvider() {
@@ -112,6 +264,11 @@ public class AsyncBatchDelivery implements BatchDelivery<String> {
          */
         public static final int DEFAULT_DELIVERY_INTERVAL = 1000;
 
+        /**
+         * Default: 0 (disabled)
+         */
+        public static final long DEFAULT_BATCH_SIZE_IN_BYTES = 0;
+
         /**
          * Default: {@link NoopFailoverPolicy}
          */
@@ -132,6 +289,9 @@ public class AsyncBatchDelivery implements BatchDelivery<String> {
         @PluginBuilderAttribute
         private int batchSize = DEFAULT_DELIVERY_INTERVAL;
 
+        @PluginBuilderAttribute
+        private long batchSizeInBytes = DEFAULT_BATCH_SIZE_IN_BYTES;
+
         @PluginElement("failoverPolicy")
         private FailoverPolicy failoverPolicy = DEFAULT_FAILOVER_POLICY;
 
@@ -141,6 +301,9 @@ public class AsyncBatchDelivery implements BatchDelivery<String> {
         @PluginBuilderAttribute("shutdownDelayMillis")
         public long shutdownDelayMillis = DEFAULT_SHUTDOWN_DELAY;
 
+        @PluginElement(PriorityLanes.ELEMENT_TYPE)
+        private PriorityLanes priorityLanes;
+
         @Override
         public AsyncBatchDelivery build() {
             if (clientObjectFactory == null) {
@@ -164,6 +327,15 @@ public class AsyncBatchDelivery implements BatchDelivery<String> {
             return this;
         }
 
+        /**
+         * @param batchSizeInBytes total size of items that should trigger the delivery. Disabled if lower than or equal to 0
+         * @return this
+         */
+        public Builder withBatchSizeInBytes(long batchSizeInBytes) {
+            this.batchSizeInBytes = batchSizeInBytes;
+            return this;
+        }
+
         public Builder withFailoverPolicy(FailoverPolicy failoverPolicy) {
             this.failoverPolicy = failoverPolicy;
             return this;
@@ -178,6 +350,15 @@ public class AsyncBatchDelivery implements BatchDelivery<String> {
             this.shutdownDelayMillis = shutdownDelayMillis;
             return this;
         }
+
+        /**
+         * @param priorityLanes level-based delivery lanes. Disabled if null
+         * @return this
+         */
+        public Builder withPriorityLanes(PriorityLanes priorityLanes) {
+            this.priorityLanes = priorityLanes;
+            return this;
+        }
     }
 
     // ==========
@@ -196,6 +377,9 @@ public class AsyncBatchDelivery implements BatchDelivery<String> {
         }
 
         batchEmitter.start();
+        if (lowPriorityEmitter != null) {
+            lowPriorityEmitter.start();
+        }
 
         if (!LifeCycle.of(failoverPolicy).isStarted()) {
             failoverPolicy.addListener(failoverListener());
@@ -218,6 +402,11 @@ public class AsyncBatchDelivery implements BatchDelivery<String> {
             LifeCycle.of(failoverPolicy).stop(delayShutdownInMillis, true);
         }
 
+        if (lowPriorityEmitter != null && !lowPriorityEmitter.isStopped()) {
+            // same delay as high-priority lane below, so both lanes are flushed and stopped at the same time
+            lowPriorityEmitter.stop(delayShutdownInMillis, true);
+        }
+
         if (!batchEmitter.isStopped()) {
             batchEmitter.stop(delayShutdownInMillis, false);
         }
@@ -21,6 +21,8 @@ package org.appenders.log4j2.elasticsearch;
  */
 
 
+import org.apache.logging.log4j.Level;
+
 /**
  * An object that adds given items to the batch processor
  *
@@ -42,4 +44,26 @@ public interface BatchDelivery<T> extends LifeCycle {
      */
     void add(String indexName,  ItemSource log);
 
+    /**
+     * Since 1.5, level of the log event MAY be used to prioritize the delivery. Delegates to {@link #add(String, Object)} by default.
+     *
+     * @param indexName delivery target
+     * @param log item to process
+     * @param level level of the log event
+     */
+    default void add(String indexName, T log, Level level) {
+        add(indexName, log);
+    }
+
+    /**
+     * Since 1.5, level of the log event MAY be used to prioritize the delivery. Delegates to {@link #add(String, ItemSource)} by default.
+     *
+     * @param indexName delivery target
+     * @param log item source to process
+     * @param level level of the log event
+     */
+    default void add(String indexName, ItemSource log, Level level) {
+        add(indexName, log);
+    }
+
 }
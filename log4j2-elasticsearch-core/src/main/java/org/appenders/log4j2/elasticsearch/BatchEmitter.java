@@ -34,4 +34,16 @@ public interface BatchEmitter<T> extends LifeCycle {
      */
     void add(T batchItem);
 
+    /**
+     * Allows to trigger the delivery based on total size of processed items.
+     * <p>
+     * NOTE: {@code default} added for backwards compatibility. By default, given size is ignored.
+     *
+     * @param batchItem batch item to be processed
+     * @param sizeInBytes size of serialized batch item
+     */
+    default void add(T batchItem, long sizeInBytes) {
+        add(batchItem);
+    }
+
 }
@@ -55,4 +55,23 @@ public interface BatchEmitterFactory<T extends BatchEmitter> {
      */
     T createInstance(int batchSize, int deliveryInterval, ClientObjectFactory clientObjectFactory, FailoverPolicy failoverPolicy);
 
+    /**
+     * Creates an instance of {@link BatchEmitter} which triggers the delivery when total size of processed items
+     * reaches given number of bytes. See {@link BatchEmitter#add(Object, long)}
+     * <p>
+     * NOTE: {@code default} added for backwards compatibility. By default, {@code batchSizeInBytes} is ignored.
+     *
+     * @param batchSize           number of elements in a current batch that should trigger a delivery, regardless of
+     *                            the deliveryInterval
+     * @param batchSizeInBytes    total size of elements in a current batch that should trigger a delivery, regardless
+     *                            of the deliveryInterval
+     * @param deliveryInterval    number of millis between two time-triggered deliveries, regardless of the batchSize
+     * @param clientObjectFactory client-specific objects provider
+     * @param failoverPolicy      sink for failed batch items
+     * @return T configured and {@link BatchEmitter}
+     */
+    default T createInstance(int batchSize, long batchSizeInBytes, int deliveryInterval, ClientObjectFactory clientObjectFactory, FailoverPolicy failoverPolicy) {
+        return createInstance(batchSize, deliveryInterval, clientObjectFactory, failoverPolicy);
+    }
+
 }
@@ -21,13 +21,13 @@ package org.appenders.log4j2.elasticsearch;
  */
 
 
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
@@ -36,23 +36,40 @@ import static org.appenders.core.logging.InternalLogging.getLogger;
 /**
  * Time- and size-based batch scheduler. Uses provided {@link BatchOperations} implementation to produce batches and
  * delivers them to provided listener.
+ * <p>
+ * Since 1.5, delivery can also be triggered when total size of enqueued items reaches configured number of bytes.
+ * See {@link #add(Object, long)}.
+ * <p>
+ * Since 1.5, time-triggered deliveries are scheduled with {@link SharedScheduler}. Scheduler checks the delivery
+ * deadline {@link #TICKS_PER_INTERVAL} times per delivery interval and deadline is moved by every delivery, so
+ * time-triggered deliveries don't follow size-triggered ones immediately. Due deliveries are handed over to
+ * {@link SharedScheduler#getWorkers()}, so slow delivery doesn't delay deliveries of other emitters.
  *
  * @param <BATCH_TYPE> type of processed batches
  */
 public class BulkEmitter<BATCH_TYPE> implements BatchEmitter {
 
+    /**
+     * Number of delivery deadline checks per one delivery interval
+     */
+    public static final int TICKS_PER_INTERVAL = 4;
+
     private volatile State state = State.STOPPED;
 
     private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong sizeInBytes = new AtomicLong();
     private final ConcurrentLinkedQueue<Object> items = new ConcurrentLinkedQueue<>();
 
     private final AtomicBoolean notifying = new AtomicBoolean();
     private final AtomicReference<CountDownLatch> latchHolder = new AtomicReference<>(new CountDownLatch(1));
 
     private final int maxSize;
+    private final long maxSizeInBytes;
     private final int deliveryInterval;
     private final BatchOperations<BATCH_TYPE> batchOperations;
-    private final Timer scheduler;
+    private volatile long deadline;
+    private ScheduledFuture<?> scheduledTask;
+    private final OffloadedTask scheduledDelivery = new OffloadedTask(this::scheduledNotification);
     private final DelayedShutdown delayedShutdown = new DelayedShutdown(this::doStop)
             .onDecrement(remaining -> {
                 getLogger().info(
@@ -66,10 +83,21 @@ public class BulkEmitter<BATCH_TYPE> implements BatchEmitter {
     private Function<BATCH_TYPE, Boolean> listener;
 
     public BulkEmitter(int atSize, int intervalInMillis, BatchOperations<BATCH_TYPE> batchOperations) {
+        this(atSize, Long.MAX_VALUE, intervalInMillis, batchOperations);
+    }
+
+    /**
+     * @param atSize number of items that should trigger the delivery
+     * @param atSizeInBytes total size of items that should trigger the delivery
+     * @param intervalInMillis millis between two time-triggered deliveries
+     * @param batchOperations batch builder provider
+     */
+    public BulkEmitter(int atSize, long atSizeInBytes, int intervalInMillis, BatchOperations<BATCH_TYPE> batchOperations) {
         this.maxSize = atSize;
+        this.maxSizeInBytes = atSizeInBytes;
         this.deliveryInterval = intervalInMillis;
         this.batchOperations = batchOperations;
-        this.scheduler = new Timer("BatchNotifier");
+        this.deadline = System.currentTimeMillis() + intervalInMillis;
     }
 
     /**
@@ -81,6 +109,8 @@ public class BulkEmitter<BATCH_TYPE> implements BatchEmitter {
 
             // reset
             size.set(0);
+            sizeInBytes.set(0);
+            deadline = System.currentTimeMillis() + getDeliveryInterval();
 
             // get the size ONCE - size() gets costly when dealing with large linked queues
             int actualSize = items.size();
@@ -122,20 +152,95 @@ public class BulkEmitter<BATCH_TYPE> implements BatchEmitter {
 
         items.add(batchItem);
 
-        if (size.incrementAndGet() >= maxSize) {
+        if (size.incrementAndGet() >= getMaxSize()) {
             notifyListener();
         }
 
 
     }
 
-    private TimerTask createNotificationTask() {
-        return new TimerTask() {
-            @Override
-            public void run() {
-                notifyListener();
-            }
-        };
+    /**
+     * Enqueues given item. Triggers the delivery if number of enqueued items or their total size reached configured
+     * thresholds.
+     *
+     * @param batchItem batch item to be processed
+     * @param itemSizeInBytes size of given item
+     */
+    @Override
+    public void add(Object batchItem, long itemSizeInBytes) {
+
+        items.add(batchItem);
+
+        if (sizeInBytes.addAndGet(itemSizeInBytes) >= maxSizeInBytes) {
+            size.incrementAndGet();
+            notifyListener();
+            return;
+        }
+
+        if (size.incrementAndGet() >= getMaxSize()) {
+            notifyListener();
+        }
+
+    }
+
+    /**
+     * @return number of items that should trigger the delivery
+     */
+    protected int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return millis between two time-triggered deliveries
+     */
+    protected int getDeliveryInterval() {
+        return deliveryInterval;
+    }
+
+    /**
+     * Invoked by the scheduler {@link #TICKS_PER_INTERVAL} times per delivery interval. Delivers current batch if
+     * delivery deadline has passed and no other delivery is in progress.
+     * <p>
+     * Extension point.
+     */
+    protected void onSchedule() {
+
+        // delivery in progress will take care of enqueued items; scheduled delivery MUST NOT wait for it
+        if (!isDeliveryDue()) {
+            return;
+        }
+
+        notifyListener();
+
+    }
+
+    /**
+     * @return true, if delivery deadline has passed and no other delivery is in progress, false otherwise
+     */
+    boolean isDeliveryDue() {
+        return !notifying.get() && System.currentTimeMillis() >= deadline;
+    }
+
+    /**
+     * Invoked by the scheduler. Hands due delivery over to the worker. MUST NOT block.
+     */
+    private void onTick() {
+        if (isDeliveryDue()) {
+            scheduledDelivery.run();
+        }
+    }
+
+    private void scheduledNotification() {
+        try {
+            onSchedule();
+        } catch (Exception e) {
+            // scheduled task MUST survive listener failures
+            getLogger().error("Scheduled delivery failed: {}", e.getMessage());
+        }
+    }
+
+    static long tickInterval(int deliveryInterval) {
+        return Math.max(1, deliveryInterval / TICKS_PER_INTERVAL);
     }
 
     /**
@@ -154,7 +259,14 @@ public class BulkEmitter<BATCH_TYPE> implements BatchEmitter {
 
     @Override
     public void start() {
-        this.scheduler.scheduleAtFixedRate(createNotificationTask(), 1000, deliveryInterval);
+        // scheduled on start only, so emitters driven externally (e.g. by StripedEmitter) don't hold scheduled tasks
+        long tickInterval = tickInterval(deliveryInterval);
+        this.deadline = System.currentTimeMillis() + getDeliveryInterval();
+        this.scheduledTask = SharedScheduler.getInstance().scheduleAtFixedRate(
+                this::onTick,
+                tickInterval,
+                tickInterval,
+                TimeUnit.MILLISECONDS);
         state = State.STARTED;
     }
 
@@ -174,8 +286,9 @@ public class BulkEmitter<BATCH_TYPE> implements BatchEmitter {
             getLogger().debug("Stopping {}. Flushing last batch if possible.", getClass().getSimpleName());
 
             notifyListener();
-            scheduler.cancel();
-            scheduler.purge();
+            if (scheduledTask != null) {
+                scheduledTask.cancel(false);
+            }
 
             state = State.STOPPED;
 
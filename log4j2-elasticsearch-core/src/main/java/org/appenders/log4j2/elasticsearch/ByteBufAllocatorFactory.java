@@ -0,0 +1,232 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.apache.logging.log4j.core.config.ConfigurationException;
+import org.apache.logging.log4j.core.config.Node;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderFactory;
+
+/**
+ * Creates {@code io.netty.buffer.ByteBufAllocator} used by {@link PooledItemSourceFactory} to allocate
+ * {@link ByteBufItemSource} buffers.
+ * <p>
+ * By default, creates unpooled, heap allocator. If {@code pooled}, {@code io.netty.buffer.PooledByteBufAllocator}
+ * with configured number of arenas, page size and chunk size is created. If {@code direct}, buffers are allocated
+ * off-heap.
+ */
+@Plugin(name = ByteBufAllocatorFactory.PLUGIN_NAME, category = Node.CATEGORY, elementType = ByteBufAllocatorFactory.ELEMENT_TYPE, printObject = true)
+public class ByteBufAllocatorFactory {
+
+    public static final String PLUGIN_NAME = "ByteBufAllocator";
+    public static final String ELEMENT_TYPE = "byteBufAllocator";
+
+    private final boolean pooled;
+    private final boolean direct;
+    private final int numArenas;
+    private final int pageSize;
+    private final int maxOrder;
+
+    protected ByteBufAllocatorFactory(boolean pooled, boolean direct, int numArenas, int pageSize, int maxOrder) {
+        this.pooled = pooled;
+        this.direct = direct;
+        this.numArenas = numArenas;
+        this.pageSize = pageSize;
+        this.maxOrder = maxOrder;
+    }
+
+    /**
+     * @return new {@code io.netty.buffer.ByteBufAllocator} instance
+     */
+    public ByteBufAllocator create() {
+
+        if (!pooled) {
+            return new UnpooledByteBufAllocator(direct, false, false);
+        }
+
+        return new PooledByteBufAllocator(
+                direct,
+                direct ? 0 : numArenas,
+                direct ? numArenas : 0,
+                pageSize,
+                maxOrder,
+                PooledByteBufAllocator.defaultTinyCacheSize(),
+                PooledByteBufAllocator.defaultSmallCacheSize(),
+                PooledByteBufAllocator.defaultNormalCacheSize(),
+                PooledByteBufAllocator.defaultUseCacheForAllThreads()
+        );
+    }
+
+    /**
+     * @return true, if created allocator allocates off-heap buffers, false otherwise
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    int getNumArenas() {
+        return numArenas;
+    }
+
+    int getPageSize() {
+        return pageSize;
+    }
+
+    int getMaxOrder() {
+        return maxOrder;
+    }
+
+    @PluginBuilderFactory
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public static class Builder implements org.apache.logging.log4j.core.util.Builder<ByteBufAllocatorFactory> {
+
+        /**
+         * Netty default will be used
+         */
+        public static final int DEFAULT_NUM_ARENAS = -1;
+
+        /**
+         * Netty default will be used
+         */
+        public static final int DEFAULT_PAGE_SIZE = -1;
+
+        /**
+         * Netty default will be used
+         */
+        public static final int DEFAULT_CHUNK_SIZE = -1;
+
+        static final int MIN_PAGE_SIZE = 4096;
+        static final int MAX_CHUNK_SIZE = Integer.MAX_VALUE / 2 + 1;
+
+        @PluginBuilderAttribute
+        protected boolean pooled;
+
+        @PluginBuilderAttribute
+        protected boolean direct;
+
+        @PluginBuilderAttribute
+        protected int numArenas = DEFAULT_NUM_ARENAS;
+
+        @PluginBuilderAttribute
+        protected int pageSize = DEFAULT_PAGE_SIZE;
+
+        @PluginBuilderAttribute
+        protected int chunkSize = DEFAULT_CHUNK_SIZE;
+
+        @Override
+        public ByteBufAllocatorFactory build() {
+
+            int numArenas = this.numArenas == DEFAULT_NUM_ARENAS ? defaultNumArenas() : this.numArenas;
+            if (numArenas < 0) {
+                throw new ConfigurationException("numArenas must be higher or equal 0 for " + PLUGIN_NAME);
+            }
+
+            int pageSize = this.pageSize == DEFAULT_PAGE_SIZE ? PooledByteBufAllocator.defaultPageSize() : this.pageSize;
+            if (pageSize < MIN_PAGE_SIZE || !isPowerOfTwo(pageSize)) {
+                throw new ConfigurationException("pageSize must be a power of 2 higher or equal " + MIN_PAGE_SIZE + " for " + PLUGIN_NAME);
+            }
+
+            int chunkSize = this.chunkSize == DEFAULT_CHUNK_SIZE ? pageSize << PooledByteBufAllocator.defaultMaxOrder() : this.chunkSize;
+            if (chunkSize < pageSize || chunkSize > MAX_CHUNK_SIZE || !isPowerOfTwo(chunkSize)) {
+                throw new ConfigurationException("chunkSize must be a power of 2 higher or equal pageSize for " + PLUGIN_NAME);
+            }
+
+            int maxOrder = Integer.numberOfTrailingZeros(chunkSize / pageSize);
+
+            return new ByteBufAllocatorFactory(pooled, direct, numArenas, pageSize, maxOrder);
+        }
+
+        private int defaultNumArenas() {
+            return direct ? PooledByteBufAllocator.defaultNumDirectArena() : PooledByteBufAllocator.defaultNumHeapArena();
+        }
+
+        private static boolean isPowerOfTwo(int value) {
+            return value > 0 && (value & (value - 1)) == 0;
+        }
+
+        /**
+         * @param pooled if true, {@code io.netty.buffer.PooledByteBufAllocator} will be created,
+         *               {@code io.netty.buffer.UnpooledByteBufAllocator} otherwise
+         * @return this
+         */
+        public Builder withPooled(boolean pooled) {
+            this.pooled = pooled;
+            return this;
+        }
+
+        /**
+         * @param direct if true, off-heap buffers will be allocated, heap buffers otherwise
+         * @return this
+         */
+        public Builder withDirect(boolean direct) {
+            this.direct = direct;
+            return this;
+        }
+
+        /**
+         * Default: Netty default for configured type of buffers. Applies to pooled allocator only
+         *
+         * @param numArenas number of arenas
+         * @return this
+         */
+        public Builder withNumArenas(int numArenas) {
+            this.numArenas = numArenas;
+            return this;
+        }
+
+        /**
+         * Default: Netty default. Applies to pooled allocator only
+         *
+         * @param pageSize arena page size; MUST be a power of 2 higher or equal 4096
+         * @return this
+         */
+        public Builder withPageSize(int pageSize) {
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        /**
+         * Default: Netty default. Applies to pooled allocator only
+         *
+         * @param chunkSize arena chunk size; MUST be a power of 2 multiple of {@code pageSize}
+         * @return this
+         */
+        public Builder withChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+    }
+
+}
@@ -0,0 +1,382 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import io.netty.buffer.ByteBuf;
+import org.apache.logging.log4j.core.config.ConfigurationException;
+import org.apache.logging.log4j.core.config.Node;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderFactory;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses {@code io.netty.buffer.ByteBuf} content with {@code java.util.zip.Deflater} to {@code gzip} or
+ * {@code deflate} (zlib) format, so it can be sent with {@code Content-Encoding} header.
+ * <p>
+ * Thread-safe. Up to {@code maxPoolSize} {@code java.util.zip.Deflater}s are pooled and reused, so native compression
+ * buffers are allocated only once per concurrently compressing thread. Deflaters that don't fit into the pool and all pooled
+ * deflaters on {@link #stop()} are ended, so their native memory is released immediately. If not started, deflaters are
+ * not pooled at all. Input is read directly from heap buffers and output is written directly to target heap buffer if possible.
+ */
+@Plugin(name = ByteBufCompressor.PLUGIN_NAME, category = Node.CATEGORY, elementType = ByteBufCompressor.ELEMENT_TYPE, printObject = true)
+public class ByteBufCompressor implements LifeCycle {
+
+    public static final String PLUGIN_NAME = "Compression";
+    public static final String ELEMENT_TYPE = "compression";
+
+    public enum Format {
+
+        GZIP("gzip"),
+        DEFLATE("deflate");
+
+        private final String contentEncoding;
+
+        Format(String contentEncoding) {
+            this.contentEncoding = contentEncoding;
+        }
+
+        /**
+         * @return HTTP {@code Content-Encoding} header value
+         */
+        public String getContentEncoding() {
+            return contentEncoding;
+        }
+
+    }
+
+    private volatile State state = State.STOPPED;
+
+    private final Format format;
+    private final int level;
+    private final int bufferSize;
+    private final Queue<PooledDeflater> deflaters;
+
+    protected ByteBufCompressor(Format format, int level, int bufferSize, int maxPoolSize) {
+        this.format = format;
+        this.level = level;
+        this.bufferSize = bufferSize;
+        this.deflaters = new ArrayBlockingQueue<>(maxPoolSize);
+    }
+
+    /**
+     * Compresses readable bytes of given source and writes them to given target.
+     * Indices of source are not modified.
+     *
+     * @param source bytes to compress
+     * @param target compressed bytes buffer
+     */
+    public void compress(ByteBuf source, ByteBuf target) {
+
+        PooledDeflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new PooledDeflater(format, level, bufferSize);
+        }
+
+        try {
+            deflater.compress(source, target);
+        } finally {
+            release(deflater);
+        }
+
+    }
+
+    private void release(PooledDeflater deflater) {
+
+        if (!isStarted()) {
+            deflater.end();
+            return;
+        }
+
+        deflater.reset();
+
+        if (!deflaters.offer(deflater)) {
+            deflater.end();
+            return;
+        }
+
+        // stop() could've drained the pool before this deflater was offered
+        if (!isStarted()) {
+            endPooled();
+        }
+
+    }
+
+    private void endPooled() {
+        PooledDeflater deflater;
+        while ((deflater = deflaters.poll()) != null) {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @return HTTP {@code Content-Encoding} header value
+     */
+    public String getContentEncoding() {
+        return format.getContentEncoding();
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /* visible for testing */
+    int getPoolSize() {
+        return deflaters.size();
+    }
+
+    static class PooledDeflater {
+
+        private static final byte[] GZIP_HEADER = new byte[] {
+                (byte) 0x1f, (byte) 0x8b, // magic
+                Deflater.DEFLATED,
+                0, // flags
+                0, 0, 0, 0, // mtime
+                0, // extra flags
+                (byte) 0xff // OS: unknown
+        };
+
+        private final Deflater deflater;
+        private final CRC32 crc;
+        private final byte[] buffer;
+
+        PooledDeflater(Format format, int level, int bufferSize) {
+            // gzip header and trailer are written by this class
+            this.deflater = new Deflater(level, format == Format.GZIP);
+            this.crc = format == Format.GZIP ? new CRC32() : null;
+            this.buffer = new byte[bufferSize];
+        }
+
+        void compress(ByteBuf source, ByteBuf target) {
+
+            if (crc != null) {
+                target.writeBytes(GZIP_HEADER);
+            }
+
+            for (ByteBuffer nioBuffer : source.nioBuffers(source.readerIndex(), source.readableBytes())) {
+                if (nioBuffer.hasArray()) {
+                    deflate(nioBuffer.array(), nioBuffer.arrayOffset() + nioBuffer.position(), nioBuffer.remaining(), target);
+                    continue;
+                }
+                // off-heap input has to be copied; java.util.zip.Deflater accepts byte[] only in Java 8
+                while (nioBuffer.hasRemaining()) {
+                    int length = Math.min(nioBuffer.remaining(), buffer.length);
+                    nioBuffer.get(buffer, 0, length);
+                    deflate(buffer, 0, length, target);
+                }
+            }
+
+            deflater.finish();
+            while (!deflater.finished()) {
+                drain(target);
+            }
+
+            if (crc != null) {
+                target.writeIntLE((int) crc.getValue());
+                target.writeIntLE(deflater.getTotalIn());
+            }
+
+        }
+
+        private void deflate(byte[] input, int offset, int length, ByteBuf target) {
+
+            if (crc != null) {
+                crc.update(input, offset, length);
+            }
+
+            deflater.setInput(input, offset, length);
+            while (!deflater.needsInput()) {
+                drain(target);
+            }
+
+        }
+
+        private void drain(ByteBuf target) {
+
+            target.ensureWritable(buffer.length);
+
+            if (target.hasArray()) {
+                int written = deflater.deflate(target.array(), target.arrayOffset() + target.writerIndex(), target.writableBytes());
+                target.writerIndex(target.writerIndex() + written);
+                return;
+            }
+
+            int written = deflater.deflate(buffer, 0, buffer.length);
+            target.writeBytes(buffer, 0, written);
+
+        }
+
+        void reset() {
+            deflater.reset();
+            if (crc != null) {
+                crc.reset();
+            }
+        }
+
+        /**
+         * Releases native resources. This instance MUST NOT be used after this call
+         */
+        void end() {
+            deflater.end();
+        }
+
+    }
+
+    @PluginBuilderFactory
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public static class Builder implements org.apache.logging.log4j.core.util.Builder<ByteBufCompressor> {
+
+        public static final String DEFAULT_TYPE = "gzip";
+
+        /**
+         * zlib default (6) will be used
+         */
+        public static final int DEFAULT_LEVEL = Deflater.DEFAULT_COMPRESSION;
+
+        public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+        public static final int DEFAULT_MAX_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+        @PluginBuilderAttribute
+        protected String type = DEFAULT_TYPE;
+
+        @PluginBuilderAttribute
+        protected int level = DEFAULT_LEVEL;
+
+        @PluginBuilderAttribute
+        protected int bufferSize = DEFAULT_BUFFER_SIZE;
+
+        @PluginBuilderAttribute
+        protected int maxPoolSize = DEFAULT_MAX_POOL_SIZE;
+
+        @Override
+        public ByteBufCompressor build() {
+
+            if (type == null) {
+                throw new ConfigurationException("type cannot be null for " + PLUGIN_NAME);
+            }
+
+            Format format;
+            try {
+                format = Format.valueOf(type.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new ConfigurationException("Unknown type: " + type + " for " + PLUGIN_NAME + ". Use gzip or deflate");
+            }
+
+            if (level != DEFAULT_LEVEL && (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION)) {
+                throw new ConfigurationException("level must be between " + Deflater.BEST_SPEED + " and " + Deflater.BEST_COMPRESSION + " for " + PLUGIN_NAME);
+            }
+
+            if (bufferSize <= 0) {
+                throw new ConfigurationException("bufferSize must be higher than 0 for " + PLUGIN_NAME);
+            }
+
+            if (maxPoolSize <= 0) {
+                throw new ConfigurationException("maxPoolSize must be higher than 0 for " + PLUGIN_NAME);
+            }
+
+            return new ByteBufCompressor(format, level, bufferSize, maxPoolSize);
+        }
+
+        /**
+         * @param type {@code gzip} or {@code deflate}
+         * @return this
+         */
+        public Builder withType(String type) {
+            this.type = type;
+            return this;
+        }
+
+        /**
+         * @param level compression level: 1 (best speed) to 9 (best compression). Default: zlib default (6)
+         * @return this
+         */
+        public Builder withLevel(int level) {
+            this.level = level;
+            return this;
+        }
+
+        /**
+         * @param bufferSize size of compressor buffers
+         * @return this
+         */
+        public Builder withBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * @param maxPoolSize maximum number of idle {@code java.util.zip.Deflater}s kept for reuse. Default: number of available processors
+         * @return this
+         */
+        public Builder withMaxPoolSize(int maxPoolSize) {
+            this.maxPoolSize = maxPoolSize;
+            return this;
+        }
+
+    }
+
+    // ==========
+    // LIFECYCLE
+    // ==========
+
+    @Override
+    public void start() {
+        state = State.STARTED;
+    }
+
+    /**
+     * Ends all pooled {@code java.util.zip.Deflater}s. Deflaters in use are ended when compression is finished
+     */
+    @Override
+    public void stop() {
+
+        state = State.STOPPED;
+
+        endPooled();
+
+    }
+
+    @Override
+    public boolean isStarted() {
+        return state == State.STARTED;
+    }
+
+    @Override
+    public boolean isStopped() {
+        return state == State.STOPPED;
+    }
+
+}
@@ -21,24 +21,36 @@ package org.appenders.log4j2.elasticsearch;
  */
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufAllocatorMetricProvider;
 import io.netty.buffer.CompositeByteBuf;
-import io.netty.buffer.UnpooledByteBufAllocator;
 
 import java.util.function.Supplier;
 
 class ByteBufPooledObjectOps implements PooledObjectOps<ByteBuf> {
 
-    private final UnpooledByteBufAllocator byteBufAllocator;
+    private final ByteBufAllocator byteBufAllocator;
     private final int estimatedSourceSize;
+    private final boolean direct;
 
-    ByteBufPooledObjectOps(UnpooledByteBufAllocator byteBufAllocator, int estimatedSourceSize) {
+    ByteBufPooledObjectOps(ByteBufAllocator byteBufAllocator, int estimatedSourceSize) {
+        this(byteBufAllocator, estimatedSourceSize, false);
+    }
+
+    /**
+     * @param byteBufAllocator allocator of underlying buffers
+     * @param estimatedSourceSize initial size of created buffers
+     * @param direct if true, off-heap buffers will be allocated, heap buffers otherwise
+     */
+    ByteBufPooledObjectOps(ByteBufAllocator byteBufAllocator, int estimatedSourceSize, boolean direct) {
         this.byteBufAllocator = byteBufAllocator;
         this.estimatedSourceSize = estimatedSourceSize;
+        this.direct = direct;
     }
 
     @Override
     public ByteBufItemSource createItemSource(ReleaseCallback<ByteBuf> releaseCallback) {
-        CompositeByteBuf buffer = new CompositeByteBuf(byteBufAllocator, false, 2).capacity(estimatedSourceSize);
+        CompositeByteBuf buffer = new CompositeByteBuf(byteBufAllocator, direct, 2).capacity(estimatedSourceSize);
         return new ByteBufItemSource(buffer, releaseCallback);
     }
 
@@ -54,7 +66,10 @@ class ByteBufPooledObjectOps implements PooledObjectOps<ByteBuf> {
 
     @Override
     public Supplier<String> createMetricsSupplier() {
-        return () -> byteBufAllocator.metric().toString();
+        if (byteBufAllocator instanceof ByteBufAllocatorMetricProvider) {
+            return () -> ((ByteBufAllocatorMetricProvider) byteBufAllocator).metric().toString();
+        }
+        return () -> null;
     }
 
 }
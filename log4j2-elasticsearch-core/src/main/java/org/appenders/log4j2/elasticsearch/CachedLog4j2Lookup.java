@@ -0,0 +1,181 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import org.apache.logging.log4j.core.lookup.StrLookup;
+import org.apache.logging.log4j.core.lookup.StrSubstitutor;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link Log4j2Lookup} that compiles and caches dynamic {@link VirtualProperty} values.
+ * <p>
+ * Values consisting of a single lookup ({@code ${prefix:key}} or {@code ${prefix:key:-default}}) are compiled once
+ * and resolved with {@code org.apache.logging.log4j.core.lookup.StrLookup} directly, without
+ * {@code org.apache.logging.log4j.core.lookup.StrSubstitutor} parsing. Other values are resolved with
+ * {@code org.apache.logging.log4j.core.lookup.StrSubstitutor}.
+ * <p>
+ * Resolved values are cached for given number of millis. Values depending on Thread Context ({@code ctx} lookups)
+ * may change between two consecutive events on the same thread, so they're never cached.
+ */
+public class CachedLog4j2Lookup extends Log4j2Lookup {
+
+    static final String CONTEXT_LOOKUP = "${ctx:";
+
+    private final ConcurrentHashMap<VirtualProperty, CachedExpression> expressions = new ConcurrentHashMap<>();
+    private final StrSubstitutor strSubstitutor;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+
+    /**
+     * @param strSubstitutor Log4j2 lookups provider
+     * @param ttlMillis number of millis resolved values are cached for
+     */
+    public CachedLog4j2Lookup(StrSubstitutor strSubstitutor, long ttlMillis) {
+        this(strSubstitutor, ttlMillis, System::nanoTime);
+    }
+
+    CachedLog4j2Lookup(StrSubstitutor strSubstitutor, long ttlMillis, LongSupplier nanoClock) {
+        super(strSubstitutor);
+        this.strSubstitutor = strSubstitutor;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Resolves given {@link VirtualProperty} if {@link VirtualProperty#isDynamic()} is true. Returns cached value
+     * if it's not expired yet.
+     *
+     * @param property property to resolve
+     * @return resolved value
+     */
+    @Override
+    public String resolve(VirtualProperty property) {
+
+        if (!property.isDynamic()) {
+            return property.getValue();
+        }
+
+        CachedExpression expression = expressions.get(property);
+        if (expression == null) {
+            // computeIfAbsent() locks even if value is present on JDK 8, so it's used only on first call
+            expression = expressions.computeIfAbsent(property, this::compile);
+        }
+
+        return expression.resolve();
+    }
+
+    private CachedExpression compile(VirtualProperty property) {
+
+        String value = property.getValue();
+        boolean cacheable = !value.contains(CONTEXT_LOOKUP);
+
+        if (value.startsWith("${") && value.endsWith("}") && value.indexOf("${", 2) == -1 && value.indexOf('}') == value.length() - 1) {
+
+            String variable = value.substring(2, value.length() - 1);
+            int defaultValueIndex = variable.indexOf(":-");
+
+            if (defaultValueIndex == -1) {
+                return new CachedExpression(value, variable, null, cacheable);
+            }
+
+            return new CachedExpression(value, variable.substring(0, defaultValueIndex), variable.substring(defaultValueIndex + 2), cacheable);
+        }
+
+        return new CachedExpression(value, null, null, cacheable);
+
+    }
+
+    private class CachedExpression {
+
+        private final String expression;
+        private final String variable;
+        private final String defaultValue;
+        private final boolean cacheable;
+
+        private volatile CachedValue cached;
+
+        CachedExpression(String expression, String variable, String defaultValue, boolean cacheable) {
+            this.expression = expression;
+            this.variable = variable;
+            this.defaultValue = defaultValue;
+            this.cacheable = cacheable;
+        }
+
+        String resolve() {
+
+            if (!cacheable) {
+                return doResolve();
+            }
+
+            long now = nanoClock.getAsLong();
+
+            CachedValue current = cached;
+            if (current != null && now - current.resolvedAt < ttlNanos) {
+                return current.value;
+            }
+
+            String resolved = doResolve();
+            cached = new CachedValue(resolved, now);
+            return resolved;
+
+        }
+
+        private String doResolve() {
+
+            if (variable == null) {
+                return strSubstitutor.replace(expression);
+            }
+
+            StrLookup variableResolver = strSubstitutor.getVariableResolver();
+            String resolved = variableResolver == null ? null : variableResolver.lookup(variable);
+
+            if (resolved == null) {
+                resolved = defaultValue;
+            }
+
+            if (resolved == null || resolved.contains("${")) {
+                // unresolvable or nested - let StrSubstitutor handle it
+                return strSubstitutor.replace(expression);
+            }
+
+            return resolved;
+        }
+
+    }
+
+    private static class CachedValue {
+
+        private final String value;
+        private final long resolvedAt;
+
+        CachedValue(String value, long resolvedAt) {
+            this.value = value;
+            this.resolvedAt = resolvedAt;
+        }
+
+    }
+
+}
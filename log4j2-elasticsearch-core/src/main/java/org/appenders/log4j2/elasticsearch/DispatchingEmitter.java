@@ -0,0 +1,145 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.appenders.core.logging.InternalLogging.getLogger;
+
+/**
+ * {@link RingBufferEmitter} that never builds nor delivers batches on producer threads.
+ * <p>
+ * When batch size is reached, producers only signal dedicated dispatcher thread which builds the batch and delivers it
+ * to the listener. Cost of {@link #add(Object)} is bounded by ring buffer slot claim unless the ring buffer is full.
+ *
+ * @param <BATCH_TYPE> type of processed batches
+ */
+public class DispatchingEmitter<BATCH_TYPE> extends RingBufferEmitter<BATCH_TYPE> {
+
+    private final AtomicBoolean signalled = new AtomicBoolean();
+
+    /**
+     * Current dispatcher thread. Created on every {@link #start()}, cleared on {@link #stop()}
+     */
+    private volatile Thread dispatcher;
+
+    /**
+     * @param atSize number of items that should trigger the delivery
+     * @param intervalInMillis millis between two time-triggered deliveries
+     * @param batchOperations batch builder provider
+     * @param minCapacity minimum number of ring buffer slots. Actual capacity will be rounded up to the nearest power of 2
+     */
+    public DispatchingEmitter(int atSize, int intervalInMillis, BatchOperations<BATCH_TYPE> batchOperations, int minCapacity) {
+        this(atSize, Long.MAX_VALUE, intervalInMillis, batchOperations, minCapacity);
+    }
+
+    /**
+     * @param atSize number of items that should trigger the delivery
+     * @param atSizeInBytes total size of items that should trigger the delivery
+     * @param intervalInMillis millis between two time-triggered deliveries
+     * @param batchOperations batch builder provider
+     * @param minCapacity minimum number of ring buffer slots. Actual capacity will be rounded up to the nearest power of 2
+     */
+    public DispatchingEmitter(int atSize, long atSizeInBytes, int intervalInMillis, BatchOperations<BATCH_TYPE> batchOperations, int minCapacity) {
+        super(atSize, atSizeInBytes, intervalInMillis, batchOperations, minCapacity);
+    }
+
+    /**
+     * Wakes up the dispatcher thread if it wasn't signalled yet. Delivers on current thread if dispatcher is not running.
+     */
+    @Override
+    protected void trigger() {
+        Thread current = dispatcher;
+        if (current == null) {
+            notifyListener();
+            return;
+        }
+        if (!signalled.get() && signalled.compareAndSet(false, true)) {
+            LockSupport.unpark(current);
+        }
+    }
+
+    private Thread createDispatcher() {
+        Thread thread = new Thread(this::dispatch, "BatchDispatcher");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private void dispatch() {
+
+        long parkNanos = TimeUnit.MILLISECONDS.toNanos(getDeliveryInterval());
+
+        // exits once replaced or cleared by stopTimeTrigger()
+        while (dispatcher == Thread.currentThread()) {
+
+            LockSupport.parkNanos(this, parkNanos);
+            signalled.set(false);
+
+            try {
+                notifyListener();
+            } catch (Exception e) {
+                // dispatcher MUST survive listener failures
+                getLogger().error("Batch dispatch failed", e);
+            }
+
+        }
+
+    }
+
+    /**
+     * @return true, if dispatcher thread is running, false otherwise
+     */
+    boolean isDispatcherAlive() {
+        Thread current = dispatcher;
+        return current != null && current.isAlive();
+    }
+
+    // ==========
+    // LIFECYCLE
+    // ==========
+
+    /**
+     * Starts new dispatcher thread. Dispatcher owns the delivery interval, so no task is scheduled on
+     * {@link SharedScheduler}.
+     */
+    @Override
+    protected void startTimeTrigger() {
+        Thread thread = createDispatcher();
+        dispatcher = thread;
+        thread.start();
+    }
+
+    /**
+     * Releases the dispatcher thread. Remaining items are delivered by the stopping thread.
+     */
+    @Override
+    protected void stopTimeTrigger() {
+        Thread current = dispatcher;
+        dispatcher = null;
+        if (current != null) {
+            LockSupport.unpark(current);
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+/**
+ * Produces {@link DispatchingEmitter} instances for any {@link ClientObjectFactory}.
+ * <p>
+ * NOTE: Not registered as a {@code java.util.ServiceLoader} service. Can be selected with
+ * {@link org.appenders.log4j2.elasticsearch.spi.BatchEmitterServiceProvider#BATCH_EMITTER_FACTORY_PROPERTY}
+ * <p>
+ * Ring buffer capacity can be adjusted with {@link RingBufferEmitterFactory#CAPACITY_FACTOR_PROPERTY} system property.
+ */
+public class DispatchingEmitterFactory extends RingBufferEmitterFactory {
+
+    @Override
+    protected RingBufferEmitter createEmitter(int batchSize, long batchSizeInBytes, int deliveryInterval, BatchOperations batchOperations, int minCapacity) {
+        return new DispatchingEmitter(batchSize, batchSizeInBytes, deliveryInterval, batchOperations, minCapacity);
+    }
+
+}
@@ -0,0 +1,79 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.appenders.log4j2.elasticsearch.failover.FailedItemInfo;
+import org.appenders.log4j2.elasticsearch.failover.FailedItemSource;
+
+import java.util.function.BiConsumer;
+
+/**
+ * {@link ItemSource} that SHOULD NOT be delivered, but redirected to {@link FailoverPolicy} instead.
+ * <p>
+ * Target name is not known when item is serialized, so it MUST be provided by the caller with
+ * {@link #failover(String, BatchDelivery)}. See {@link ItemSourceAppender} and {@link PoolExhaustionHandler}
+ *
+ * @param <T> type of item source
+ */
+public class FailoverItemSource<T> implements ItemSource<T> {
+
+    private final ItemSource<T> itemSource;
+    private final BiConsumer<FailedItemSource<T>, BatchDelivery> redirect;
+
+    /**
+     * @param itemSource serialized item
+     * @param redirect {@link FailedItemSource} handler; accepts failed item and {@link BatchDelivery} it can be retried with
+     */
+    public FailoverItemSource(ItemSource<T> itemSource, BiConsumer<FailedItemSource<T>, BatchDelivery> redirect) {
+        this.itemSource = itemSource;
+        this.redirect = redirect;
+    }
+
+    /**
+     * Redirects this item as {@link FailedItemSource} and releases it.
+     *
+     * @param targetName target this item was supposed to be delivered to
+     * @param batchDelivery delivery this item was supposed to be added to
+     */
+    public void failover(String targetName, BatchDelivery batchDelivery) {
+        try {
+            redirect.accept(new FailedItemSource<>(itemSource, new FailedItemInfo(targetName)), batchDelivery);
+        } finally {
+            release();
+        }
+    }
+
+    @Override
+    public T getSource() {
+        return itemSource.getSource();
+    }
+
+    @Override
+    public void release() {
+        itemSource.release();
+    }
+
+    @Override
+    public String toString() {
+        return itemSource.toString();
+    }
+
+}
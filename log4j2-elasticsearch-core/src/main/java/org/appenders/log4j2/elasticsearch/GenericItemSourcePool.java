@@ -20,11 +20,11 @@ package org.appenders.log4j2.elasticsearch;
  * #L%
  */
 
-import java.util.NoSuchElementException;
+import java.util.Collection;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -41,6 +41,7 @@ import static org.appenders.core.logging.InternalLogging.getLogger;
  * <p>Pooled elements can be added explicitly with {@link #incrementPoolSize(int)} and/or {@link #incrementPoolSize()} methods.
  * <p>Pooled elements can be purged explicitly with {@link #remove()}.
  * <p>{@link #shutdown()} MUST be called to cleanup underlying resources.
+ * <p>Since 1.5, recycler and monitor tasks are scheduled with {@link SharedScheduler}.
  * <p>NOTE: Consider this class <i>private</i>. Design may change before the code is stabilized.
  */
 public class GenericItemSourcePool<T> implements ItemSourcePool<T> {
@@ -48,6 +49,10 @@ public class GenericItemSourcePool<T> implements ItemSourcePool<T> {
     private static final int INITIAL_RESIZE_INTERNAL_STACK_DEPTH = 0;
     // TODO: make configurable via system property
     private static final int MAX_RESIZE_INTERNAL_STACK_DEPTH = 50;
+    /**
+     * @deprecated As of 1.5, pool threads are no longer created. This constant will be removed in future releases.
+     */
+    @Deprecated
     public static final String THREAD_NAME_FORMAT = "%s-%s";
 
     private volatile State state = State.STOPPED;
@@ -69,7 +74,7 @@ public class GenericItemSourcePool<T> implements ItemSourcePool<T> {
     private final boolean monitored;
     private final long monitorTaskInterval;
 
-    private final AtomicInteger thIndex = new AtomicInteger();
+    private final Collection<ScheduledFuture<?>> scheduledTasks = new ConcurrentLinkedQueue<>();
 
     ScheduledExecutorService executor;
 
@@ -90,7 +95,7 @@ public class GenericItemSourcePool<T> implements ItemSourcePool<T> {
     }
 
     private void startRecyclerTask() {
-        executor.scheduleAtFixedRate(new Recycler(this, resizePolicy), 1000, 10000, TimeUnit.MILLISECONDS);
+        addScheduledTask(executor.scheduleAtFixedRate(new Recycler(this, resizePolicy), 1000, 10000, TimeUnit.MILLISECONDS));
     }
 
     /**
@@ -100,21 +105,30 @@ public class GenericItemSourcePool<T> implements ItemSourcePool<T> {
      * @param additionalMetricsSupplier
      */
     void startMonitorTask(long monitorTaskInterval, Supplier<String> additionalMetricsSupplier) {
-        executor.scheduleAtFixedRate(new MetricPrinter(getName() + "-MetricPrinter", this.new PoolMetrics(), additionalMetricsSupplier),
+        addScheduledTask(executor.scheduleAtFixedRate(new MetricPrinter(getName() + "-MetricPrinter", this.new PoolMetrics(), additionalMetricsSupplier),
                 1000L,
                 monitorTaskInterval,
                 TimeUnit.MILLISECONDS
-        );
+        ));
 
     }
 
+    void addScheduledTask(ScheduledFuture<?> scheduledTask) {
+        if (scheduledTask != null) {
+            scheduledTasks.add(scheduledTask);
+        }
+    }
+
     ScheduledExecutorService createExecutor() {
         return createExecutor(poolName);
     }
 
+    /**
+     * @param threadName not used since 1.5
+     * @return {@link SharedScheduler#getInstance()}
+     */
     ScheduledExecutorService createExecutor(String threadName) {
-        return Executors.newScheduledThreadPool(2,
-                r -> new Thread(r, String.format(THREAD_NAME_FORMAT, threadName, thIndex.incrementAndGet())));
+        return SharedScheduler.getInstance();
     }
 
     /**
@@ -156,10 +170,32 @@ public class GenericItemSourcePool<T> implements ItemSourcePool<T> {
      * @return pooled {@link ItemSource}
      */
     @Override
-    public final ItemSource<T> getPooled() throws PoolResourceException {
+    public ItemSource<T> getPooled() throws PoolResourceException {
         return removeInternal(INITIAL_RESIZE_INTERNAL_STACK_DEPTH);
     }
 
+    /**
+     * Returns given element to the pool. Invoked on {@link ItemSource#release()} when pool is started.
+     * <p>
+     * Extension point.
+     *
+     * @param itemSource element to be returned
+     */
+    void offerPooled(ItemSource<T> itemSource) {
+        objectPool.add(itemSource);
+    }
+
+    /**
+     * Retrieves available element without resizing.
+     * <p>
+     * Extension point.
+     *
+     * @return available element or null, if pool is empty
+     */
+    ItemSource<T> pollPooled() {
+        return objectPool.poll();
+    }
+
     @Override
     public final boolean remove() {
         try {
@@ -174,18 +210,18 @@ public class GenericItemSourcePool<T> implements ItemSourcePool<T> {
 
     private ItemSource<T> removeInternal(int depth) throws PoolResourceException {
 
-        try {
-
-            if (objectPool.isEmpty()) {
-                tryResize(depth);
-            }
-
-            return objectPool.remove();
-
-        } catch (NoSuchElementException e) {
+        ItemSource<T> pooled = pollPooled();
+        if (pooled == null) {
             tryResize(depth);
+            pooled = pollPooled();
+        }
+
+        if (pooled != null) {
+            return pooled;
         }
 
+        tryResize(depth);
+
         // let's go recursive to handle case when resize is smaller than number of threads arriving at the latch
         return removeInternal(++depth);
     }
@@ -232,8 +268,7 @@ public class GenericItemSourcePool<T> implements ItemSourcePool<T> {
             resized = resizePolicy.increase(this);
 //            return resized;
             if (!resized) {
-                // TODO: remove when limited resize policy is ready
-                // throw to resurface issues
+                // throw to resurface issues; PoolExhaustionHandler may handle it further up
                 throw new PoolResourceException(String.format("Unable to resize. Creation of %s was unsuccessful",
                         ItemSource.class.getSimpleName()));
             }
@@ -263,10 +298,12 @@ public class GenericItemSourcePool<T> implements ItemSourcePool<T> {
     }
 
     /**
+     * Extension point. Elements included here MUST be retrievable with {@link #pollPooled()}.
+     *
      * @return Number of pooled elements currently available
      */
     @Override
-    public final int getAvailableSize() {
+    public int getAvailableSize() {
         return objectPool.size();
     }
 
@@ -278,8 +315,9 @@ public class GenericItemSourcePool<T> implements ItemSourcePool<T> {
         objectPool.forEach(pooled -> pooledObjectOps.purge(pooled));
         objectPool.clear();
 
-        getLogger().debug("{} stopping internal threads..", poolName);
-        executor.shutdown();
+        getLogger().debug("{} cancelling scheduled tasks..", poolName);
+        scheduledTasks.forEach(scheduledTask -> scheduledTask.cancel(false));
+        scheduledTasks.clear();
 
         getLogger().debug("{} shutdown complete", poolName);
 
@@ -294,7 +332,7 @@ public class GenericItemSourcePool<T> implements ItemSourcePool<T> {
                 pooledObjectOps.purge(itemSource);
                 return;
             }
-            objectPool.add(itemSource);
+            offerPooled(itemSource);
         }
 
     }
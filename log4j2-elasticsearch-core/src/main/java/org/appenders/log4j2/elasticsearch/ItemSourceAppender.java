@@ -42,14 +42,28 @@ public class ItemSourceAppender implements ItemAppender<LogEvent> {
     }
 
     /**
-     * Serializes given {@link LogEvent} to {@link ItemSource} and invokes {@link BatchDelivery#add(String, ItemSource)}
+     * Serializes given {@link LogEvent} to {@link ItemSource} and invokes {@link BatchDelivery#add(String, ItemSource, org.apache.logging.log4j.Level)}.
+     * Since 1.5, events serialized to {@code null} (e.g. dropped by {@link PoolExhaustionHandler}) are ignored and
+     * {@link FailoverItemSource}s are redirected to their failover policy with {@code formattedIndexName} as the target.
      *
      * @param formattedIndexName delivery target
      * @param event event to process
      */
     @Override
     public final void append(String formattedIndexName, LogEvent event) {
-        batchDelivery.add(formattedIndexName, serializer.apply(event));
+
+        ItemSource itemSource = serializer.apply(event);
+        if (itemSource == null) {
+            return;
+        }
+
+        if (itemSource instanceof FailoverItemSource) {
+            ((FailoverItemSource) itemSource).failover(formattedIndexName, batchDelivery);
+            return;
+        }
+
+        batchDelivery.add(formattedIndexName, itemSource, event.getLevel());
+
     }
 
     @Override
@@ -57,6 +57,14 @@ public class JacksonHandlerInstantiator extends HandlerInstantiator {
         this.virtualPropertyFilters = virtualPropertyFilters;
     }
 
+    /**
+     * @param virtualPropertiesWriter writer to be returned by {@link #virtualPropertyWriterInstance(MapperConfig, Class)}
+     */
+    public JacksonHandlerInstantiator(VirtualPropertiesWriter virtualPropertiesWriter) {
+        this(virtualPropertiesWriter.virtualProperties, virtualPropertiesWriter.valueResolver, virtualPropertiesWriter.filters);
+        this.instance = virtualPropertiesWriter;
+    }
+
     @Override
     public JsonDeserializer<?> deserializerInstance(DeserializationConfig config, Annotated annotated, Class<?> deserClass) {
         return null;
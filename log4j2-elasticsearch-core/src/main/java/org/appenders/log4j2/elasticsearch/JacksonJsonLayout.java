@@ -27,6 +27,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationConfig;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
 import org.apache.logging.log4j.core.Layout;
 import org.apache.logging.log4j.core.LogEvent;
@@ -38,6 +39,7 @@ import org.apache.logging.log4j.core.config.plugins.PluginBuilderAttribute;
 import org.apache.logging.log4j.core.config.plugins.PluginBuilderFactory;
 import org.apache.logging.log4j.core.config.plugins.PluginElement;
 import org.apache.logging.log4j.core.jackson.ExtendedLog4j2JsonModule;
+import org.apache.logging.log4j.core.jackson.LogEventJacksonJsonSerializer;
 import org.apache.logging.log4j.core.layout.AbstractLayout;
 import org.apache.logging.log4j.message.Message;
 
@@ -118,6 +120,18 @@ public class JacksonJsonLayout extends AbstractLayout<ItemSource> implements Ite
         @PluginBuilderAttribute("singleThread")
         private boolean singleThread;
 
+        @PluginBuilderAttribute("threadLocal")
+        private boolean threadLocal;
+
+        @PluginBuilderAttribute("directLogEventSerializer")
+        private boolean useDirectLogEventSerializer;
+
+        @PluginBuilderAttribute("preSerializedVirtualProperties")
+        private boolean preSerializedVirtualProperties;
+
+        @PluginBuilderAttribute("virtualPropertiesCacheTtlMillis")
+        private long virtualPropertiesCacheTtlMillis;
+
         @Override
         public JacksonJsonLayout build() {
 
@@ -154,12 +168,14 @@ public class JacksonJsonLayout extends AbstractLayout<ItemSource> implements Ite
                 }
             }
 
+            VirtualPropertiesWriter virtualPropertiesWriter = createVirtualPropertiesWriter(valueResolver);
+
+            if (useDirectLogEventSerializer) {
+                objectMapper.registerModule(createDirectLogEventSerializerModule(virtualPropertiesWriter));
+            }
+
             SerializationConfig customConfig = objectMapper.getSerializationConfig()
-                    .with(new JacksonHandlerInstantiator(
-                            virtualProperties,
-                            valueResolver,
-                            virtualPropertyFilters
-                    ));
+                    .with(new JacksonHandlerInstantiator(virtualPropertiesWriter));
 
             objectMapper.setConfig(customConfig);
 
@@ -167,10 +183,37 @@ public class JacksonJsonLayout extends AbstractLayout<ItemSource> implements Ite
 
         }
 
+        /**
+         * @param valueResolver {@link VirtualProperty} resolver
+         * @return {@link PreSerializedVirtualPropertiesWriter} if configured, {@link VirtualPropertiesWriter} otherwise
+         */
+        protected VirtualPropertiesWriter createVirtualPropertiesWriter(ValueResolver valueResolver) {
+
+            if (preSerializedVirtualProperties) {
+                return new PreSerializedVirtualPropertiesWriter(virtualProperties, valueResolver, virtualPropertyFilters);
+            }
+
+            return new VirtualPropertiesWriter(virtualProperties, valueResolver, virtualPropertyFilters);
+        }
+
+        /**
+         * @param virtualPropertiesWriter {@link VirtualProperty}-ies writer
+         * @return module with {@link LogEventJacksonJsonSerializer} registered for {@link LogEvent}
+         */
+        protected SimpleModule createDirectLogEventSerializerModule(VirtualPropertiesWriter virtualPropertiesWriter) {
+            return new SimpleModule(LogEventJacksonJsonSerializer.class.getSimpleName())
+                    .addSerializer(LogEvent.class, new LogEventJacksonJsonSerializer(virtualPropertiesWriter));
+        }
+
         /**
          * @return resolver used when {@link VirtualProperty}(-ies) configured
          */
         protected ValueResolver createValueResolver() {
+
+            if (virtualPropertiesCacheTtlMillis > 0) {
+                return new CachedLog4j2Lookup(getConfiguration().getStrSubstitutor(), virtualPropertiesCacheTtlMillis);
+            }
+
             return new Log4j2Lookup(getConfiguration().getStrSubstitutor());
         }
 
@@ -184,6 +227,9 @@ public class JacksonJsonLayout extends AbstractLayout<ItemSource> implements Ite
             if (singleThread) {
                 return new SingleThreadJsonFactory();
             }
+            if (threadLocal) {
+                return new ThreadLocalJsonFactory();
+            }
             return new JsonFactory();
         }
 
@@ -261,6 +307,62 @@ public class JacksonJsonLayout extends AbstractLayout<ItemSource> implements Ite
             this.singleThread = singleThread;
             return this;
         }
+
+        /**
+         * Allows to configure {@link ThreadLocalJsonFactory} - thread-safe counterpart of {@link SingleThreadJsonFactory}
+         *
+         * NOTE: Each serializing thread holds its own generator buffers. Use with bounded number of logging threads.
+         * Ignored if {@link #withSingleThread(boolean)} is set to true.
+         *
+         * @param threadLocal if true, {@link ThreadLocalJsonFactory} will be used to create serializers,
+         *                    otherwise {@code com.fasterxml.jackson.core.JsonFactory} will be used
+         * @return this
+         */
+        public Builder withThreadLocal(boolean threadLocal) {
+            this.threadLocal = threadLocal;
+            return this;
+        }
+
+        /**
+         * Allows to configure {@link LogEventJacksonJsonSerializer} - hand-written {@link LogEvent} serializer
+         * with fixed field set.
+         *
+         * NOTE: {@link JacksonMixIn}-s targeting {@link LogEvent} are ignored if enabled
+         *
+         * @param useDirectLogEventSerializer if true, {@link LogEventJacksonJsonSerializer} will be used to serialize
+         *                                    {@link LogEvent}s, otherwise bean serializer will be used
+         * @return this
+         */
+        public Builder withDirectLogEventSerializer(boolean useDirectLogEventSerializer) {
+            this.useDirectLogEventSerializer = useDirectLogEventSerializer;
+            return this;
+        }
+
+        /**
+         * Allows to configure {@link PreSerializedVirtualPropertiesWriter} - non-dynamic {@link VirtualProperty}-ies
+         * are resolved, filtered and encoded once and written as one block before dynamic ones.
+         *
+         * @param preSerializedVirtualProperties if true, {@link PreSerializedVirtualPropertiesWriter} will be used,
+         *                                       otherwise {@link VirtualPropertiesWriter} will be used
+         * @return this
+         */
+        public Builder withPreSerializedVirtualProperties(boolean preSerializedVirtualProperties) {
+            this.preSerializedVirtualProperties = preSerializedVirtualProperties;
+            return this;
+        }
+
+        /**
+         * Allows to configure {@link CachedLog4j2Lookup} - dynamic {@link VirtualProperty}-ies values are compiled once
+         * and cached for given number of millis. Thread Context ({@code ctx}) lookups are never cached.
+         *
+         * @param virtualPropertiesCacheTtlMillis if higher than 0, {@link CachedLog4j2Lookup} will be used,
+         *                                        otherwise {@link Log4j2Lookup} will be used
+         * @return this
+         */
+        public Builder withVirtualPropertiesCacheTtlMillis(long virtualPropertiesCacheTtlMillis) {
+            this.virtualPropertiesCacheTtlMillis = virtualPropertiesCacheTtlMillis;
+            return this;
+        }
     }
 
     // ==========
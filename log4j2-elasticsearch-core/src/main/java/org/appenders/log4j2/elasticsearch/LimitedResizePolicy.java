@@ -0,0 +1,431 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.apache.logging.log4j.core.config.ConfigurationException;
+import org.apache.logging.log4j.core.config.Node;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderFactory;
+import org.apache.logging.log4j.core.config.plugins.PluginElement;
+import org.appenders.log4j2.elasticsearch.failover.FailedItemSource;
+import org.appenders.log4j2.elasticsearch.failover.RetryListener;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.appenders.core.logging.InternalLogging.getLogger;
+
+/**
+ * Resizes given pool up to configured {@code maxSize}. Once {@code maxSize} is reached, configured
+ * {@link ExhaustionStrategy} is applied:
+ * <ul>
+ *     <li>{@link ExhaustionStrategy#BLOCK} - waits up to {@code blockTimeout} millis for released elements, then drops the item</li>
+ *     <li>{@link ExhaustionStrategy#DROP} - drops the item immediately</li>
+ *     <li>{@link ExhaustionStrategy#FAILOVER} - serializes the item without pooling and redirects it to configured {@link FailoverPolicy} as {@link FailedItemSource}</li>
+ * </ul>
+ * Number of dropped items is available via {@link #getDroppedCount()}.
+ * <p>
+ * Items retried by configured {@link FailoverPolicy} (e.g. {@link org.appenders.log4j2.elasticsearch.failover.ChronicleMapRetryFailoverPolicy})
+ * are added to the {@link BatchDelivery} they were redirected from.
+ */
+@Plugin(name = LimitedResizePolicy.PLUGIN_NAME, category = Node.CATEGORY, elementType = ResizePolicy.ELEMENT_TYPE, printObject = true)
+public final class LimitedResizePolicy implements ResizePolicy, PoolExhaustionHandler, LifeCycle {
+
+    public static final String PLUGIN_NAME = "LimitedResizePolicy";
+
+    static final int DROPPED_LOG_INTERVAL = 1000;
+
+    public enum ExhaustionStrategy {
+        BLOCK, DROP, FAILOVER
+    }
+
+    private volatile State state = State.STOPPED;
+
+    private final double resizeFactor;
+    private final int maxSize;
+    private final ExhaustionStrategy exhaustionStrategy;
+    private final long blockTimeout;
+    private final FailoverPolicy failoverPolicy;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private volatile BatchDelivery retryTarget;
+
+    private LimitedResizePolicy(double resizeFactor, int maxSize, ExhaustionStrategy exhaustionStrategy, long blockTimeout, FailoverPolicy failoverPolicy) {
+        this.resizeFactor = resizeFactor;
+        this.maxSize = maxSize;
+        this.exhaustionStrategy = exhaustionStrategy;
+        this.blockTimeout = blockTimeout;
+        this.failoverPolicy = failoverPolicy;
+    }
+
+    /**
+     * Attempts to resize given pool.
+     * <p>
+     * Additional pool size is calculated based on it's {@link ItemSourcePool#getInitialSize()}. Total pool size will
+     * never exceed {@code maxSize}.
+     * <p>
+     * If {@code maxSize} was reached and {@link ExhaustionStrategy#BLOCK} is configured, waits up to
+     * {@code blockTimeout} millis until any element is released.
+     *
+     * @param itemSourcePool pool to be resized
+     * @throws ConfigurationException when {@code resizeFactor * initialPoolSize == 0}
+     * @return true, if pool was resized or any element was released, false otherwise
+     */
+    @Override
+    public boolean increase(ItemSourcePool itemSourcePool) {
+
+        int initialPoolSize = itemSourcePool.getInitialSize();
+        int additionalPoolSize = (int) (initialPoolSize * resizeFactor);
+
+        if (additionalPoolSize == 0) {
+            throw new ConfigurationException(String.format("Applying %s with resizeFactor %s will not resize given pool [%s] with initialPoolSize %s",
+                    ResizePolicy.class.getSimpleName(),
+                    resizeFactor,
+                    itemSourcePool.getName(),
+                    itemSourcePool.getInitialSize()));
+        }
+
+        int remaining = maxSize - itemSourcePool.getTotalSize();
+        if (remaining > 0) {
+            itemSourcePool.incrementPoolSize(Math.min(additionalPoolSize, remaining));
+            return true;
+        }
+
+        if (exhaustionStrategy == ExhaustionStrategy.BLOCK) {
+            return awaitAvailable(itemSourcePool);
+        }
+
+        return false;
+    }
+
+    private boolean awaitAvailable(ItemSourcePool itemSourcePool) {
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(blockTimeout);
+        long parkNanos = TimeUnit.MILLISECONDS.toNanos(1);
+
+        while (itemSourcePool.getAvailableSize() == 0) {
+            if (System.nanoTime() - deadline >= 0 || Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            LockSupport.parkNanos(parkNanos);
+        }
+
+        return true;
+    }
+
+    /**
+     * Attempts to resize given pool.
+     * <p>
+     * Number of removed elements is calculated based on {@link ItemSourcePool#getTotalSize()}
+     * <p>
+     * Single resize operation will never decrease pool's size below it's {@link ItemSourcePool#getInitialSize()}
+     *
+     * @param itemSourcePool pool to be resized
+     * @return true, if resize operation was successful, false otherwise
+     */
+    @Override
+    public boolean decrease(ItemSourcePool itemSourcePool) {
+
+        int availableSize = itemSourcePool.getAvailableSize();
+        int decreaseSize = (int)(itemSourcePool.getTotalSize() * resizeFactor);
+
+        if (decreaseSize > availableSize) {
+            return false;
+        }
+
+        if (availableSize - decreaseSize < itemSourcePool.getInitialSize()) {
+            decreaseSize = availableSize - itemSourcePool.getInitialSize();
+        }
+
+        for (int ii = 0; ii < decreaseSize; ii++) {
+            itemSourcePool.remove();
+        }
+
+        return true;
+
+    }
+
+    /**
+     * Drops given item or, if {@link ExhaustionStrategy#FAILOVER} is configured, serializes it to unpooled buffer.
+     * Returned {@link FailoverItemSource} will be redirected to {@link FailoverPolicy} once target name is known.
+     *
+     * @param source item that couldn't be serialized
+     * @param objectWriter writer configured for given item
+     * @param cause pool failure
+     * @return {@link FailoverItemSource} if {@link ExhaustionStrategy#FAILOVER} is configured and given item was serialized, null otherwise
+     */
+    @Override
+    public ItemSource handle(Object source, ObjectWriter objectWriter, PoolResourceException cause) {
+
+        if (exhaustionStrategy == ExhaustionStrategy.FAILOVER) {
+            try {
+                ByteBuf buffer = Unpooled.wrappedBuffer(objectWriter.writeValueAsBytes(source));
+                return new FailoverItemSource<>(
+                        new ByteBufItemSource(buffer, itemSource -> buffer.release()),
+                        this::redirect);
+            } catch (JsonProcessingException | RuntimeException e) {
+                getLogger().error("{}: Unable to serialize item: {}",
+                        PLUGIN_NAME,
+                        e.getMessage());
+            }
+        }
+
+        drop(cause.getMessage());
+
+        return null;
+
+    }
+
+    private void redirect(FailedItemSource<ByteBuf> failedItemSource, BatchDelivery batchDelivery) {
+        retryTarget = batchDelivery;
+        try {
+            failoverPolicy.deliver(failedItemSource);
+        } catch (RuntimeException e) {
+            getLogger().error("{}: Unable to redirect item to {}: {}",
+                    PLUGIN_NAME,
+                    FailoverPolicy.class.getSimpleName(),
+                    e.getMessage());
+            drop(e.getMessage());
+        }
+    }
+
+    /**
+     * @return listener adding retried items to {@link BatchDelivery} they were redirected from
+     */
+    RetryListener retryListener() {
+        return failedItemSource -> {
+
+            BatchDelivery batchDelivery = retryTarget;
+            if (batchDelivery == null) {
+                // retried before anything was redirected in this run; store it again
+                failoverPolicy.deliver(failedItemSource);
+                return false;
+            }
+
+            batchDelivery.add(failedItemSource.getInfo().getTargetName(), failedItemSource);
+            return true;
+
+        };
+    }
+
+    private void drop(String cause) {
+        long dropped = droppedCount.incrementAndGet();
+        if (dropped % DROPPED_LOG_INTERVAL == 1) {
+            getLogger().warn("{}: Pool exhausted. {} items dropped so far. Cause: {}",
+                    PLUGIN_NAME,
+                    dropped,
+                    cause);
+        }
+    }
+
+    /**
+     * @return number of items dropped since this policy was created
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public ExhaustionStrategy getExhaustionStrategy() {
+        return exhaustionStrategy;
+    }
+
+    @PluginBuilderFactory
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public static class Builder implements org.apache.logging.log4j.core.util.Builder<LimitedResizePolicy> {
+
+        /**
+         * Default resize factor
+         */
+        public static final double DEFAULT_RESIZE_FACTOR = 0.50;
+
+        /**
+         * Default exhaustion strategy
+         */
+        public static final String DEFAULT_EXHAUSTION_STRATEGY = ExhaustionStrategy.BLOCK.name();
+
+        /**
+         * Default {@link ExhaustionStrategy#BLOCK} timeout
+         */
+        public static final long DEFAULT_BLOCK_TIMEOUT = 1000L;
+
+        @PluginBuilderAttribute
+        private double resizeFactor = DEFAULT_RESIZE_FACTOR;
+
+        @PluginBuilderAttribute
+        private int maxSize;
+
+        @PluginBuilderAttribute
+        private String exhaustionStrategy = DEFAULT_EXHAUSTION_STRATEGY;
+
+        @PluginBuilderAttribute
+        private long blockTimeout = DEFAULT_BLOCK_TIMEOUT;
+
+        @PluginElement(FailoverPolicy.ELEMENT_TYPE)
+        private FailoverPolicy failoverPolicy;
+
+        @Override
+        public LimitedResizePolicy build() {
+
+            if (resizeFactor <= 0) {
+                throw new ConfigurationException("resizeFactor must be higher than 0");
+            }
+
+            if (resizeFactor > 1) {
+                throw new ConfigurationException("resizeFactor must be lower or equal 1");
+            }
+
+            if (maxSize <= 0) {
+                throw new ConfigurationException("maxSize must be higher than 0 for " + PLUGIN_NAME);
+            }
+
+            if (blockTimeout < 0) {
+                throw new ConfigurationException("blockTimeout must be higher or equal 0 for " + PLUGIN_NAME);
+            }
+
+            ExhaustionStrategy strategy = parseExhaustionStrategy();
+
+            if (strategy == ExhaustionStrategy.FAILOVER && failoverPolicy == null) {
+                throw new ConfigurationException(FailoverPolicy.ELEMENT_TYPE + " must be provided when exhaustionStrategy is "
+                        + ExhaustionStrategy.FAILOVER + " for " + PLUGIN_NAME);
+            }
+
+            return new LimitedResizePolicy(resizeFactor, maxSize, strategy, blockTimeout, failoverPolicy);
+        }
+
+        private ExhaustionStrategy parseExhaustionStrategy() {
+
+            if (exhaustionStrategy == null) {
+                throw new ConfigurationException("exhaustionStrategy cannot be null for " + PLUGIN_NAME);
+            }
+
+            try {
+                return ExhaustionStrategy.valueOf(exhaustionStrategy.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new ConfigurationException("Unknown exhaustionStrategy: " + exhaustionStrategy + " for " + PLUGIN_NAME);
+            }
+
+        }
+
+        /**
+         * @param resizeFactor fraction of {@link ItemSourcePool#getInitialSize()} by which given pool will be increased
+         * @return this
+         */
+        public Builder withResizeFactor(double resizeFactor) {
+            this.resizeFactor = resizeFactor;
+            return this;
+        }
+
+        /**
+         * @param maxSize maximum number of elements managed by the pool
+         * @return this
+         */
+        public Builder withMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * Default: {@link #DEFAULT_EXHAUSTION_STRATEGY}
+         *
+         * @param exhaustionStrategy case-insensitive {@link ExhaustionStrategy} name
+         * @return this
+         */
+        public Builder withExhaustionStrategy(String exhaustionStrategy) {
+            this.exhaustionStrategy = exhaustionStrategy;
+            return this;
+        }
+
+        /**
+         * Default: {@link #DEFAULT_BLOCK_TIMEOUT}
+         *
+         * @param blockTimeout millis to wait for released elements when {@link ExhaustionStrategy#BLOCK} is configured
+         * @return this
+         */
+        public Builder withBlockTimeout(long blockTimeout) {
+            this.blockTimeout = blockTimeout;
+            return this;
+        }
+
+        /**
+         * @param failoverPolicy policy to redirect items to when {@link ExhaustionStrategy#FAILOVER} is configured
+         * @return this
+         */
+        public Builder withFailoverPolicy(FailoverPolicy failoverPolicy) {
+            this.failoverPolicy = failoverPolicy;
+            return this;
+        }
+
+    }
+
+    // ==========
+    // LIFECYCLE
+    // ==========
+
+    @Override
+    public void start() {
+
+        LifeCycle failoverPolicyLifeCycle = LifeCycle.of(failoverPolicy);
+        if (failoverPolicy != null && !failoverPolicyLifeCycle.isStarted()) {
+            failoverPolicy.addListener(retryListener());
+            failoverPolicyLifeCycle.start();
+        }
+
+        state = State.STARTED;
+
+    }
+
+    @Override
+    public void stop() {
+
+        LifeCycle failoverPolicyLifeCycle = LifeCycle.of(failoverPolicy);
+        if (!failoverPolicyLifeCycle.isStopped()) {
+            failoverPolicyLifeCycle.stop();
+        }
+
+        state = State.STOPPED;
+
+    }
+
+    @Override
+    public boolean isStarted() {
+        return state == State.STARTED;
+    }
+
+    @Override
+    public boolean isStopped() {
+        return state == State.STOPPED;
+    }
+
+}
@@ -0,0 +1,105 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.appenders.core.logging.InternalLogging.getLogger;
+
+/**
+ * Hands given task over to given executor, so the thread that calls {@link #run()} (e.g. {@link SharedScheduler} thread)
+ * is never blocked by it.
+ * <p>
+ * Given task runs on at most one thread at a time. Calls made while it's running are coalesced into one more run.
+ * Exceptions thrown by given task are logged, so subsequent runs are not affected.
+ */
+public class OffloadedTask implements Runnable {
+
+    private final AtomicInteger triggers = new AtomicInteger();
+
+    private final Runnable task;
+    private final Executor executor;
+
+    /**
+     * @param task task to run on {@link SharedScheduler#getWorkers()}
+     */
+    public OffloadedTask(Runnable task) {
+        this(task, SharedScheduler.getWorkers());
+    }
+
+    /**
+     * @param task task to run on given executor
+     * @param executor task executor
+     */
+    public OffloadedTask(Runnable task, Executor executor) {
+        this.task = task;
+        this.executor = executor;
+    }
+
+    /**
+     * Submits given task unless it's already submitted or running. MUST NOT block.
+     */
+    @Override
+    public final void run() {
+
+        if (triggers.getAndIncrement() != 0) {
+            // pending or running; running task will run again
+            return;
+        }
+
+        try {
+            executor.execute(this::runTask);
+        } catch (RejectedExecutionException e) {
+            triggers.set(0);
+            getLogger().error("{}: Task rejected: {}", OffloadedTask.class.getSimpleName(), e.getMessage());
+        }
+
+    }
+
+    private void runTask() {
+
+        int current;
+        do {
+
+            current = triggers.get();
+
+            try {
+                task.run();
+            } catch (Exception e) {
+                getLogger().error("{}: Task failed: {}", OffloadedTask.class.getSimpleName(), e.getMessage());
+            }
+
+        } while (!triggers.compareAndSet(current, 0));
+
+    }
+
+    /**
+     * @return true, if given task is submitted or running, false otherwise
+     */
+    public boolean isPending() {
+        return triggers.get() != 0;
+    }
+
+}
@@ -0,0 +1,76 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.appenders.core.logging.InternalLogging.getLogger;
+
+/**
+ * Queue of {@link Operation}s that MUST be executed before next batch is delivered.
+ * <p>
+ * Batches delivered concurrently will wait until all pending operations are completed. Operation is removed only
+ * after it was executed, so no locking is involved once the queue is empty.
+ */
+public class OperationQueue {
+
+    private final ConcurrentLinkedQueue<Operation> operations = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param operation operation to be executed before next batch
+     */
+    public void add(Operation operation) {
+        operations.add(operation);
+    }
+
+    /**
+     * Executes all pending operations. Operation failures are logged and don't prevent execution of subsequent ones.
+     */
+    public void executeAll() {
+
+        if (operations.isEmpty()) {
+            return;
+        }
+
+        synchronized (operations) {
+            Operation operation;
+            while ((operation = operations.peek()) != null) {
+                try {
+                    operation.execute();
+                } catch (Exception e) {
+                    // TODO: redirect to failover (?) retry with exp. backoff (?) multiple options here
+                    getLogger().error("Deferred operation failed: {}", e.getMessage());
+                } finally {
+                    operations.poll();
+                }
+            }
+        }
+
+    }
+
+    /**
+     * @return <i>true</i>, if there are no pending operations, <i>false</i> otherwise
+     */
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+}
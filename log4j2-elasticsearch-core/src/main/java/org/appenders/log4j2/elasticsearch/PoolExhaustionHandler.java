@@ -0,0 +1,41 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Implementation of this interface SHOULD handle items that couldn't be serialized because underlying
+ * {@link ItemSourcePool} couldn't provide any more elements.
+ */
+public interface PoolExhaustionHandler {
+
+    /**
+     * @param source item that couldn't be serialized
+     * @param objectWriter writer configured for given item
+     * @param cause pool failure
+     * @return {@link ItemSource} to be delivered instead or null, if given item should not be delivered
+     */
+    ItemSource handle(Object source, ObjectWriter objectWriter, PoolResourceException cause);
+
+}
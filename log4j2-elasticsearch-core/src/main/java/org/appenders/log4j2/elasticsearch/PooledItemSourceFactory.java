@@ -22,7 +22,7 @@ package org.appenders.log4j2.elasticsearch;
 
 import com.fasterxml.jackson.databind.ObjectWriter;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.buffer.ByteBufAllocator;
 import org.apache.logging.log4j.core.config.ConfigurationException;
 import org.apache.logging.log4j.core.config.Node;
 import org.apache.logging.log4j.core.config.plugins.Plugin;
@@ -46,10 +46,27 @@ public class PooledItemSourceFactory implements ItemSourceFactory {
 
     private volatile State state = State.STOPPED;
 
+    /**
+     * Default {@link PoolExhaustionHandler}. Throws {@code IllegalStateException}.
+     */
+    static final PoolExhaustionHandler DEFAULT_EXHAUSTION_HANDLER = (source, objectWriter, cause) -> {
+        throw new IllegalStateException(cause);
+    };
+
     final ItemSourcePool bufferedItemSourcePool;
+    final PoolExhaustionHandler exhaustionHandler;
 
     protected PooledItemSourceFactory(ItemSourcePool bufferedItemSourcePool) {
+        this(bufferedItemSourcePool, DEFAULT_EXHAUSTION_HANDLER);
+    }
+
+    /**
+     * @param bufferedItemSourcePool pool of {@link ItemSource} instances
+     * @param exhaustionHandler handler of items that couldn't be serialized because given pool was exhausted
+     */
+    protected PooledItemSourceFactory(ItemSourcePool bufferedItemSourcePool, PoolExhaustionHandler exhaustionHandler) {
         this.bufferedItemSourcePool = bufferedItemSourcePool;
+        this.exhaustionHandler = exhaustionHandler;
     }
 
     /**
@@ -65,9 +82,12 @@ public class PooledItemSourceFactory implements ItemSourceFactory {
      *
      * @param source item to serialize
      * @param objectWriter writer to be used to serialize given item
-     * @throws IllegalStateException if underlying pool cannot provide {@link ByteBufItemSource}
+     * @throws IllegalStateException if underlying pool cannot provide {@link ByteBufItemSource} and
+     *                               {@link PoolExhaustionHandler} was not configured
      * @throws IllegalArgumentException if serialization failed
-     * @return {@link ByteBufItemSource} with serialized event
+     * @return {@link ByteBufItemSource} with serialized event or result of
+     *         {@link PoolExhaustionHandler#handle(Object, ObjectWriter, PoolResourceException)} if underlying pool
+     *         cannot provide {@link ByteBufItemSource}
      */
     @Override
     public ItemSource create(Object source, ObjectWriter objectWriter) {
@@ -75,8 +95,7 @@ public class PooledItemSourceFactory implements ItemSourceFactory {
         try {
             pooled = bufferedItemSourcePool.getPooled();
         } catch (PoolResourceException e) {
-            // FIXME: stop throwing and redirect to failover policy here
-            throw new IllegalStateException(e);
+            return exhaustionHandler.handle(source, objectWriter, e);
         }
 
         try {
@@ -110,6 +129,7 @@ public class PooledItemSourceFactory implements ItemSourceFactory {
 
         public static final long DEFAULT_RESIZE_TIMEOUT = 1000L;
         public static final long DEFAULT_MONITOR_TASK_INTERVAL = 30000L;
+        public static final int DEFAULT_THREAD_CACHE_SIZE = 0;
 
         @PluginBuilderAttribute
         protected String poolName;
@@ -132,6 +152,12 @@ public class PooledItemSourceFactory implements ItemSourceFactory {
         @PluginBuilderAttribute
         protected long resizeTimeout = DEFAULT_RESIZE_TIMEOUT;
 
+        @PluginBuilderAttribute
+        protected int threadCacheSize = DEFAULT_THREAD_CACHE_SIZE;
+
+        @PluginElement(ByteBufAllocatorFactory.ELEMENT_TYPE)
+        protected ByteBufAllocatorFactory byteBufAllocatorFactory;
+
         @Override
         public PooledItemSourceFactory build() {
 
@@ -141,6 +167,9 @@ public class PooledItemSourceFactory implements ItemSourceFactory {
             if (itemSizeInBytes <= 0) {
                 throw new ConfigurationException("itemSizeInBytes must be higher than 0 for " + PLUGIN_NAME);
             }
+            if (threadCacheSize < 0) {
+                throw new ConfigurationException("threadCacheSize must be higher or equal 0 for " + PLUGIN_NAME);
+            }
 
             if (poolName == null) {
                 poolName = ItemSourcePool.class.getSimpleName();
@@ -158,8 +187,18 @@ public class PooledItemSourceFactory implements ItemSourceFactory {
                 this.resizePolicy = resizePolicy;
             }
 
-            return new PooledItemSourceFactory(configuredItemSourcePool());
+            return new PooledItemSourceFactory(configuredItemSourcePool(), configuredExhaustionHandler());
+
+        }
 
+        /**
+         * @return {@link ResizePolicy} if it's a {@link PoolExhaustionHandler}, {@link #DEFAULT_EXHAUSTION_HANDLER} otherwise
+         */
+        PoolExhaustionHandler configuredExhaustionHandler() {
+            if (resizePolicy instanceof PoolExhaustionHandler) {
+                return (PoolExhaustionHandler) resizePolicy;
+            }
+            return DEFAULT_EXHAUSTION_HANDLER;
         }
 
         /**
@@ -170,13 +209,39 @@ public class PooledItemSourceFactory implements ItemSourceFactory {
             return UnlimitedResizePolicy.newBuilder().build();
         }
 
+        /**
+         * Creates default {@link ByteBufAllocatorFactory} if one was not configured
+         * @return {@link ByteBufAllocatorFactory} of unpooled, heap buffers
+         */
+        ByteBufAllocatorFactory createByteBufAllocatorFactory() {
+            return ByteBufAllocatorFactory.newBuilder().build();
+        }
+
         /* extension point */
         ItemSourcePool configuredItemSourcePool() {
 
-            UnpooledByteBufAllocator byteBufAllocator = new UnpooledByteBufAllocator(false, false, false);
+            if (byteBufAllocatorFactory == null) {
+                byteBufAllocatorFactory = createByteBufAllocatorFactory();
+            }
+
+            ByteBufAllocator byteBufAllocator = byteBufAllocatorFactory.create();
             ByteBufPooledObjectOps pooledObjectOps = new ByteBufPooledObjectOps(
                     byteBufAllocator,
-                    itemSizeInBytes);
+                    itemSizeInBytes,
+                    byteBufAllocatorFactory.isDirect());
+
+            if (threadCacheSize > 0) {
+                return new ThreadAffineItemSourcePool<>(
+                        poolName,
+                        pooledObjectOps,
+                        resizePolicy,
+                        resizeTimeout,
+                        monitored,
+                        monitorTaskInterval,
+                        initialPoolSize,
+                        threadCacheSize
+                );
+            }
 
             return new GenericItemSourcePool<>(
                     poolName,
@@ -257,6 +322,29 @@ public class PooledItemSourceFactory implements ItemSourceFactory {
             return this;
         }
 
+        /**
+         * Default: unpooled, heap {@code io.netty.buffer.ByteBufAllocator}
+         *
+         * @param byteBufAllocatorFactory allocator provider for pooled buffers
+         * @return this
+         */
+        public Builder withByteBufAllocatorFactory(ByteBufAllocatorFactory byteBufAllocatorFactory) {
+            this.byteBufAllocatorFactory = byteBufAllocatorFactory;
+            return this;
+        }
+
+        /**
+         * Default: {@link #DEFAULT_THREAD_CACHE_SIZE} (disabled)
+         *
+         * @param threadCacheSize if higher than 0, {@link ThreadAffineItemSourcePool} caching up to given number of
+         *                        pooled elements per thread will be used, {@link GenericItemSourcePool} otherwise
+         * @return this
+         */
+        public Builder withThreadCacheSize(int threadCacheSize) {
+            this.threadCacheSize = threadCacheSize;
+            return this;
+        }
+
     }
 
     // ==========
@@ -268,6 +356,10 @@ public class PooledItemSourceFactory implements ItemSourceFactory {
         if (!bufferedItemSourcePool.isStarted()) {
             bufferedItemSourcePool.start();
         }
+        LifeCycle exhaustionHandlerLifeCycle = LifeCycle.of(exhaustionHandler);
+        if (!exhaustionHandlerLifeCycle.isStarted()) {
+            exhaustionHandlerLifeCycle.start();
+        }
         state = State.STARTED;
     }
 
@@ -276,6 +368,10 @@ public class PooledItemSourceFactory implements ItemSourceFactory {
         if (!bufferedItemSourcePool.isStopped()) {
             bufferedItemSourcePool.stop();
         }
+        LifeCycle exhaustionHandlerLifeCycle = LifeCycle.of(exhaustionHandler);
+        if (!exhaustionHandlerLifeCycle.isStopped()) {
+            exhaustionHandlerLifeCycle.stop();
+        }
         state = State.STOPPED;
     }
 
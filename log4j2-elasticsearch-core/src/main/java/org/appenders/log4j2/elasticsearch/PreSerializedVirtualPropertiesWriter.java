@@ -0,0 +1,212 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonAppend;
+import com.fasterxml.jackson.databind.cfg.MapperConfig;
+import com.fasterxml.jackson.databind.introspect.AnnotatedClass;
+import com.fasterxml.jackson.databind.introspect.AnnotationCollector;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.util.Annotations;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link VirtualPropertiesWriter} that resolves and filters non-dynamic {@link VirtualProperty}-ies once and
+ * pre-encodes them. First one is written with pre-encoded name and value, all remaining ones are written with one
+ * {@code JsonGenerator#writeRaw(SerializableString)} call. Dynamic properties are resolved, filtered and written on
+ * each call after non-dynamic ones.
+ * <p>
+ * NOTE: Raw block assumes compact output: {@code ','} between entries and {@code ':'} between name and value.
+ * <p>
+ * NOTE: Pre-encoded block uses default JSON escaping. If given {@code JsonGenerator} has custom {@code CharacterEscapes}
+ * or escapes non-ASCII characters, non-dynamic properties are written one by one with generator's own escaping instead.
+ * <p>
+ * NOTE: {@link VirtualPropertyFilter}-s MUST return the same result for the same name and value.
+ */
+public class PreSerializedVirtualPropertiesWriter extends VirtualPropertiesWriter {
+
+    private final SerializableString firstStaticName;
+    private final SerializableString firstStaticValue;
+    private final SerializableString remainingStatic;
+    private final String[] staticNames;
+    private final String[] staticValues;
+
+    /**
+     * @param virtualProperties {@link VirtualProperty}-ies to append
+     * @param valueResolver {@link ValueResolver} dynamic variables resolver
+     * @param filters {@link VirtualPropertyFilter} inclusion filters. Allow to include/exclude
+     * {@link VirtualProperty} by name or value returned by {@link ValueResolver}
+     */
+    public PreSerializedVirtualPropertiesWriter(VirtualProperty[] virtualProperties, ValueResolver valueResolver, VirtualPropertyFilter[] filters) {
+        this(dynamicOnly(virtualProperties), valueResolver, filters, new StaticBlock(virtualProperties, valueResolver, filters));
+    }
+
+    private PreSerializedVirtualPropertiesWriter(VirtualProperty[] dynamicProperties, ValueResolver valueResolver, VirtualPropertyFilter[] filters, StaticBlock staticBlock) {
+        super(dynamicProperties, valueResolver, filters);
+        this.firstStaticName = staticBlock.firstName;
+        this.firstStaticValue = staticBlock.firstValue;
+        this.remainingStatic = staticBlock.remaining;
+        this.staticNames = staticBlock.names.toArray(new String[0]);
+        this.staticValues = staticBlock.values.toArray(new String[0]);
+    }
+
+    /**
+     * This constructor should not be invoked directly and should only be used within
+     * {@link #withConfig(MapperConfig, AnnotatedClass, BeanPropertyDefinition, JavaType)} call.
+     *
+     * @param propDef property definition created by {@code by com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector}
+     * @param annotations contains only @JsonAppend at the moment
+     * @param type {@link VirtualProperty}[]
+     * @param source writer to copy pre-encoded properties from
+     */
+    PreSerializedVirtualPropertiesWriter(
+            BeanPropertyDefinition propDef,
+            Annotations annotations,
+            JavaType type,
+            PreSerializedVirtualPropertiesWriter source
+    ) {
+        super(propDef, annotations, type, source.virtualProperties, source.valueResolver, source.filters);
+        this.firstStaticName = source.firstStaticName;
+        this.firstStaticValue = source.firstStaticValue;
+        this.remainingStatic = source.remainingStatic;
+        this.staticNames = source.staticNames;
+        this.staticValues = source.staticValues;
+    }
+
+    @Override
+    public void serializeAsField(Object bean, JsonGenerator gen, SerializerProvider prov) throws IOException {
+
+        if (firstStaticName != null && hasCustomEscaping(gen)) {
+
+            for (int i = 0; i < staticNames.length; i++) {
+                gen.writeFieldName(staticNames[i]);
+                gen.writeString(staticValues[i]);
+            }
+
+        } else if (firstStaticName != null) {
+
+            // regular write, so generator context knows that entries were written
+            gen.writeFieldName(firstStaticName);
+            gen.writeString(firstStaticValue);
+
+            if (remainingStatic != null) {
+                gen.writeRaw(remainingStatic);
+            }
+
+        }
+
+        super.serializeAsField(bean, gen, prov);
+
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VirtualPropertiesWriter withConfig(MapperConfig<?> config, AnnotatedClass declaringClass, BeanPropertyDefinition propDef, JavaType type) {
+        return new PreSerializedVirtualPropertiesWriter(
+                propDef,
+                new AnnotationCollector.OneAnnotation(
+                        declaringClass.getRawType(),
+                        declaringClass.getAnnotations().get(JsonAppend.class)
+                ),
+                type,
+                this
+        );
+    }
+
+    private static boolean hasCustomEscaping(JsonGenerator gen) {
+        // ESCAPE_NON_ASCII sets highest non-escaped char as well
+        return gen.getCharacterEscapes() != null || gen.getHighestEscapedChar() != 0;
+    }
+
+    private static VirtualProperty[] dynamicOnly(VirtualProperty[] virtualProperties) {
+
+        List<VirtualProperty> result = new ArrayList<>();
+        for (VirtualProperty property : virtualProperties) {
+            if (property.isDynamic()) {
+                result.add(property);
+            }
+        }
+
+        return result.toArray(new VirtualProperty[0]);
+    }
+
+    private static class StaticBlock {
+
+        private SerializableString firstName;
+        private SerializableString firstValue;
+        private SerializableString remaining;
+        private final List<String> names = new ArrayList<>();
+        private final List<String> values = new ArrayList<>();
+
+        StaticBlock(VirtualProperty[] virtualProperties, ValueResolver valueResolver, VirtualPropertyFilter[] filters) {
+
+            JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+            StringBuilder sb = new StringBuilder();
+
+            for (VirtualProperty property : virtualProperties) {
+
+                if (property.isDynamic()) {
+                    continue;
+                }
+
+                String resolved = valueResolver.resolve(property);
+                if (isExcluded(property, resolved, filters)) {
+                    continue;
+                }
+
+                names.add(property.getName());
+                values.add(resolved);
+
+                if (firstName == null) {
+                    firstName = new SerializedString(property.getName());
+                    firstValue = new SerializedString(resolved);
+                    continue;
+                }
+
+                sb.append(',')
+                        .append('"').append(encoder.quoteAsString(property.getName())).append('"')
+                        .append(':')
+                        .append('"').append(encoder.quoteAsString(resolved)).append('"');
+
+            }
+
+            if (sb.length() > 0) {
+                remaining = new SerializedString(sb.toString());
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,292 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.ConfigurationException;
+import org.apache.logging.log4j.core.config.Node;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderFactory;
+import org.appenders.log4j2.elasticsearch.failover.FailedItemSource;
+import org.appenders.log4j2.elasticsearch.failover.FailoverListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.appenders.core.logging.InternalLogging.getLogger;
+
+/**
+ * Splits {@link AsyncBatchDelivery} items into high- and low-priority lanes by log level. Each lane is delivered by its
+ * own {@link BatchEmitter}, so high-priority events never wait behind low-priority ones.
+ * <p>
+ * Every batch (or its part) redirected to {@link FailoverPolicy} (request failed or {@code BackoffPolicy} applied) is
+ * treated as back-pressure. While under back-pressure, low-priority events are shed or sampled before they're enqueued,
+ * so available cluster capacity is left for high-priority events. If all are shed (no sampling), low-priority batches
+ * queued before back-pressure started are shed on delivery as well.
+ * <p>
+ * Lanes are not dispatched with weights. Instead, {@link ClientObjectFactory} implementations provided by this project
+ * don't apply their {@code BackoffPolicy} to high-priority {@link Lane} batches, so low-priority batches in flight
+ * can't exhaust backoff budget (batch limit, tokens, concurrency) of high-priority ones.
+ */
+@Plugin(name = PriorityLanes.PLUGIN_NAME, category = Node.CATEGORY, elementType = PriorityLanes.ELEMENT_TYPE, printObject = true)
+public class PriorityLanes {
+
+    public static final String PLUGIN_NAME = "PriorityLanes";
+    public static final String ELEMENT_TYPE = "priorityLanes";
+
+    private final Level level;
+    private final int lowPrioritySamplingRate;
+    private final long backpressureWindowMillis;
+    private final LongSupplier clock;
+
+    private final AtomicLong lowPriorityCounter = new AtomicLong();
+    private final AtomicLong shedCount = new AtomicLong();
+    private volatile long backpressureDeadline;
+
+    /**
+     * @param level least severe level delivered by high-priority lane
+     * @param lowPrioritySamplingRate every N-th low-priority event is delivered while under back-pressure. All are shed if 0
+     * @param backpressureWindowMillis millis after last failover redirect until back-pressure ends
+     */
+    public PriorityLanes(Level level, int lowPrioritySamplingRate, long backpressureWindowMillis) {
+        this(level, lowPrioritySamplingRate, backpressureWindowMillis, System::currentTimeMillis);
+    }
+
+    PriorityLanes(Level level, int lowPrioritySamplingRate, long backpressureWindowMillis, LongSupplier clock) {
+        this.level = level;
+        this.lowPrioritySamplingRate = lowPrioritySamplingRate;
+        this.backpressureWindowMillis = backpressureWindowMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * @param eventLevel log event level
+     * @return true, if given level is at least as severe as configured level or unknown (null), false otherwise
+     */
+    public boolean isHighPriority(Level eventLevel) {
+        return eventLevel == null || eventLevel.isMoreSpecificThan(level);
+    }
+
+    /**
+     * @return true, if low-priority event should be enqueued, false if it should be shed
+     */
+    public boolean acceptLowPriority() {
+
+        if (!isUnderBackpressure()) {
+            return true;
+        }
+
+        if (lowPrioritySamplingRate > 0 && lowPriorityCounter.getAndIncrement() % lowPrioritySamplingRate == 0) {
+            return true;
+        }
+
+        shedCount.incrementAndGet();
+        return false;
+
+    }
+
+    /**
+     * @return true, if failover redirect happened within last {@code backpressureWindowMillis}, false otherwise
+     */
+    public boolean isUnderBackpressure() {
+        return clock.getAsLong() < backpressureDeadline;
+    }
+
+    /**
+     * Starts or extends back-pressure window
+     */
+    public void onBackpressure() {
+
+        long now = clock.getAsLong();
+        if (now >= backpressureDeadline) {
+            getLogger().warn("{}: Back-pressure detected. Low-priority events will be {} for at least {}ms. Shed so far: {}",
+                    PLUGIN_NAME,
+                    lowPrioritySamplingRate > 0 ? "sampled (1 in " + lowPrioritySamplingRate + ")" : "shed",
+                    backpressureWindowMillis,
+                    shedCount.get());
+        }
+
+        backpressureDeadline = now + backpressureWindowMillis;
+
+    }
+
+    /**
+     * @return number of low-priority events shed so far
+     */
+    public long getShedCount() {
+        return shedCount.get();
+    }
+
+    /**
+     * @param failoverPolicy actual failover policy
+     * @return {@link FailoverPolicy} of high-priority lane that starts back-pressure window on every redirected item
+     */
+    public Lane highPriorityLane(FailoverPolicy failoverPolicy) {
+        return new Lane(failoverPolicy, true);
+    }
+
+    /**
+     * @param failoverPolicy actual failover policy
+     * @return {@link FailoverPolicy} of low-priority lane that starts back-pressure window on every redirected item
+     */
+    public Lane lowPriorityLane(FailoverPolicy failoverPolicy) {
+        return new Lane(failoverPolicy, false);
+    }
+
+    /**
+     * @param failoverPolicy failover policy given to {@link ClientObjectFactory#createBatchListener(FailoverPolicy)}
+     * @return {@link Lane} if given policy was created by {@link #highPriorityLane(FailoverPolicy)} or
+     * {@link #lowPriorityLane(FailoverPolicy)}, null otherwise
+     */
+    public static Lane laneOf(FailoverPolicy failoverPolicy) {
+        return failoverPolicy instanceof Lane ? (Lane) failoverPolicy : null;
+    }
+
+    @PluginBuilderFactory
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public static class Builder implements org.apache.logging.log4j.core.util.Builder<PriorityLanes> {
+
+        public static final String DEFAULT_LEVEL = "WARN";
+        public static final int DEFAULT_LOW_PRIORITY_SAMPLING_RATE = 0;
+        public static final long DEFAULT_BACKPRESSURE_WINDOW_MILLIS = 1000;
+
+        @PluginBuilderAttribute
+        private String level = DEFAULT_LEVEL;
+
+        @PluginBuilderAttribute
+        private int lowPrioritySamplingRate = DEFAULT_LOW_PRIORITY_SAMPLING_RATE;
+
+        @PluginBuilderAttribute
+        private long backpressureWindowMillis = DEFAULT_BACKPRESSURE_WINDOW_MILLIS;
+
+        @Override
+        public PriorityLanes build() {
+
+            Level resolved = level == null ? null : Level.toLevel(level, null);
+            if (resolved == null) {
+                throw new ConfigurationException("Unknown level: " + level + " for " + PLUGIN_NAME);
+            }
+
+            if (lowPrioritySamplingRate < 0) {
+                throw new ConfigurationException("lowPrioritySamplingRate must be higher than or equal to 0 for " + PLUGIN_NAME);
+            }
+
+            if (backpressureWindowMillis <= 0) {
+                throw new ConfigurationException("backpressureWindowMillis must be higher than 0 for " + PLUGIN_NAME);
+            }
+
+            return new PriorityLanes(resolved, lowPrioritySamplingRate, backpressureWindowMillis);
+
+        }
+
+        /**
+         * @param level least severe level delivered by high-priority lane
+         * @return this
+         */
+        public Builder withLevel(String level) {
+            this.level = level;
+            return this;
+        }
+
+        /**
+         * @param lowPrioritySamplingRate every N-th low-priority event is delivered while under back-pressure. All are shed if 0
+         * @return this
+         */
+        public Builder withLowPrioritySamplingRate(int lowPrioritySamplingRate) {
+            this.lowPrioritySamplingRate = lowPrioritySamplingRate;
+            return this;
+        }
+
+        /**
+         * @param backpressureWindowMillis millis after last failover redirect until back-pressure ends
+         * @return this
+         */
+        public Builder withBackpressureWindowMillis(long backpressureWindowMillis) {
+            this.backpressureWindowMillis = backpressureWindowMillis;
+            return this;
+        }
+
+    }
+
+    /**
+     * {@link FailoverPolicy} of one of the lanes. Identifies the lane of the batch listener it was given to.
+     */
+    public class Lane implements FailoverPolicy<Object> {
+
+        private final FailoverPolicy<Object> delegate;
+        private final boolean highPriority;
+
+        @SuppressWarnings("unchecked")
+        Lane(FailoverPolicy delegate, boolean highPriority) {
+            this.delegate = delegate;
+            this.highPriority = highPriority;
+        }
+
+        /**
+         * @return true, if batches of this lane SHOULD NOT be limited by client {@code BackoffPolicy}, false otherwise
+         */
+        public boolean isHighPriority() {
+            return highPriority;
+        }
+
+        /**
+         * @return true, if batches of this lane should be shed instead of delivered, false otherwise
+         */
+        public boolean isShedding() {
+            return !highPriority && lowPrioritySamplingRate == 0 && isUnderBackpressure();
+        }
+
+        /**
+         * Counts given number of items shed on delivery
+         *
+         * @param itemCount number of items in shed batch
+         */
+        public void shed(int itemCount) {
+            getLogger().debug("{}: Low-priority batch of {} items shed", PLUGIN_NAME, itemCount);
+            shedCount.addAndGet(itemCount);
+        }
+
+        @Override
+        public void deliver(Object failedPayload) {
+            onBackpressure();
+            delegate.deliver(failedPayload);
+        }
+
+        @Override
+        public void deliver(FailedItemSource<Object> failedPayload) {
+            onBackpressure();
+            delegate.deliver(failedPayload);
+        }
+
+        @Override
+        public <U extends FailoverListener> void addListener(U failoverListener) {
+            delegate.addListener(failoverListener);
+        }
+
+    }
+
+}
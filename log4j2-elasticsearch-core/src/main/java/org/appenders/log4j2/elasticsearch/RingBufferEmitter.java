@@ -0,0 +1,481 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import static org.appenders.core.logging.InternalLogging.getLogger;
+
+/**
+ * Time- and size-based batch scheduler backed by pre-sized, multi-producer ring buffer.
+ * <p>
+ * Producers claim slots with a single CAS and never wait for batch delivery to complete. Only when the ring buffer
+ * is full, producers will spin until enough slots are freed by the current delivery.
+ * <p>
+ * Delivery drains contiguous ranges of published slots into {@link BatchBuilder}(s) produced by given
+ * {@link BatchOperations} and delivers them to provided listener. Single delivery will never produce batches larger
+ * than configured batch size.
+ * <p>
+ * Since 1.5, delivery can also be triggered when total size of published items reaches configured number of bytes.
+ * In such case, single delivery will cut the batch as soon as its size reaches configured number of bytes.
+ * See {@link #add(Object, long)}.
+ *
+ * @param <BATCH_TYPE> type of processed batches
+ */
+public class RingBufferEmitter<BATCH_TYPE> implements BatchEmitter {
+
+    /**
+     * Default number of slots per one batch item: 4
+     */
+    public static final int DEFAULT_CAPACITY_FACTOR = 4;
+
+    private volatile State state = State.STOPPED;
+
+    /**
+     * Set on {@link #tail} once {@link #doStop()} begins. New items are rejected from this point on.
+     * Since it's set with the same CAS that producers use to claim slots, every slot is either claimed before
+     * the emitter was closed (and drained by {@link #drain()}) or rejected
+     */
+    private static final long CLOSED = 1L << 62;
+
+    private final AtomicReferenceArray<Object> slots;
+    private final long[] sizes;
+    private final int mask;
+    private final int capacity;
+
+    /**
+     * Next sequence to be claimed by producers, with {@link #CLOSED} bit set once stopping began
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Next sequence to be drained. Written by notifying thread only
+     */
+    private volatile long head;
+
+    private final AtomicBoolean notifying = new AtomicBoolean();
+
+    /**
+     * Total size of items published and not delivered yet
+     */
+    private final AtomicLong sizeInBytes = new AtomicLong();
+
+    private final int maxSize;
+    private final long maxSizeInBytes;
+    private final int deliveryInterval;
+    private final BatchOperations<BATCH_TYPE> batchOperations;
+    private volatile long deadline;
+    private ScheduledFuture<?> scheduledTask;
+    private final OffloadedTask scheduledDelivery = new OffloadedTask(this::scheduledNotification);
+    private final DelayedShutdown delayedShutdown = new DelayedShutdown(this::doStop)
+            .onDecrement(remaining -> {
+                getLogger().info(
+                        "Waiting for last items... {}s, {} items enqueued",
+                        remaining / 1000,
+                        size()
+                );
+                notifyListener();
+            });
+
+    private Function<BATCH_TYPE, Boolean> listener;
+
+    /**
+     * @param atSize number of items that should trigger the delivery
+     * @param intervalInMillis millis between two time-triggered deliveries
+     * @param batchOperations batch builder provider
+     */
+    public RingBufferEmitter(int atSize, int intervalInMillis, BatchOperations<BATCH_TYPE> batchOperations) {
+        this(atSize, intervalInMillis, batchOperations, atSize * DEFAULT_CAPACITY_FACTOR);
+    }
+
+    /**
+     * @param atSize number of items that should trigger the delivery
+     * @param intervalInMillis millis between two time-triggered deliveries
+     * @param batchOperations batch builder provider
+     * @param minCapacity minimum number of ring buffer slots. Actual capacity will be rounded up to the nearest power of 2
+     */
+    public RingBufferEmitter(int atSize, int intervalInMillis, BatchOperations<BATCH_TYPE> batchOperations, int minCapacity) {
+        this(atSize, Long.MAX_VALUE, intervalInMillis, batchOperations, minCapacity);
+    }
+
+    /**
+     * @param atSize number of items that should trigger the delivery
+     * @param atSizeInBytes total size of items that should trigger the delivery
+     * @param intervalInMillis millis between two time-triggered deliveries
+     * @param batchOperations batch builder provider
+     * @param minCapacity minimum number of ring buffer slots. Actual capacity will be rounded up to the nearest power of 2
+     */
+    public RingBufferEmitter(int atSize, long atSizeInBytes, int intervalInMillis, BatchOperations<BATCH_TYPE> batchOperations, int minCapacity) {
+
+        if (minCapacity < atSize) {
+            throw new IllegalArgumentException(String.format(
+                    "Ring buffer capacity cannot be lower than batch size. Got capacity: %s, batch size: %s",
+                    minCapacity,
+                    atSize));
+        }
+
+        this.maxSize = atSize;
+        this.maxSizeInBytes = atSizeInBytes;
+        this.deliveryInterval = intervalInMillis;
+        this.batchOperations = batchOperations;
+        this.capacity = ceilingPowerOfTwo(minCapacity);
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.sizes = new long[capacity];
+        this.deadline = System.currentTimeMillis() + intervalInMillis;
+    }
+
+    /**
+     * Delivers published items to the listener if at least one item is waiting for delivery, no-op otherwise.
+     * <p>
+     * If delivery is already in progress, returns immediately. Full batches published during the delivery are
+     * delivered by the notifying thread, remaining ones will be delivered on next trigger.
+     */
+    public final void notifyListener() {
+
+        if (!notifying.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+
+            deadline = System.currentTimeMillis() + deliveryInterval;
+
+            // everything claimed before this point should be delivered by this call
+            long snapshot = tail();
+            long start = head;
+            long current = start;
+
+            while (true) {
+
+                long limit = tail();
+                if (current >= limit) {
+                    break;
+                }
+
+                // items claimed after the snapshot are delivered only if they form a full batch,
+                // and no more than one full ring buffer per call to give this thread a chance to carry on
+                if (current >= snapshot && (isBelowThresholds(limit - current) || current - start >= capacity)) {
+                    break;
+                }
+
+                long batchLimit = Math.min(current + maxSize, limit);
+
+                BatchBuilder<BATCH_TYPE> batch = null;
+                long drained = current;
+                long batchSizeInBytes = 0;
+                boolean full = false;
+
+                // drain contiguous range of published slots only; claimed but not published yet will be picked up later
+                while (drained < batchLimit) {
+
+                    int index = (int) (drained & mask);
+                    Object item = slots.get(index);
+                    if (item == null) {
+                        break;
+                    }
+                    // size MUST be read before the slot is released
+                    batchSizeInBytes += sizes[index];
+                    slots.lazySet(index, null);
+
+                    if (batch == null) {
+                        batch = batchOperations.createBatchBuilder();
+                    }
+                    batch.add(item);
+                    drained++;
+
+                    if (batchSizeInBytes >= maxSizeInBytes) {
+                        full = true;
+                        break;
+                    }
+
+                }
+
+                if (batch == null) {
+                    break;
+                }
+
+                // release slots before delivery so producers can carry on
+                head = drained;
+                current = drained;
+                if (batchSizeInBytes > 0) {
+                    sizeInBytes.addAndGet(-batchSizeInBytes);
+                }
+
+                listener.apply(batch.build());
+
+                if (!full && drained < batchLimit) {
+                    break;
+                }
+
+            }
+
+        } finally {
+            notifying.set(false);
+        }
+
+    }
+
+    private boolean isBelowThresholds(long available) {
+        return available < maxSize && sizeInBytes.get() < maxSizeInBytes;
+    }
+
+    @Override
+    public void add(Object batchItem) {
+        add(batchItem, 0L);
+    }
+
+    /**
+     * Publishes given item. Triggers the delivery if number of published items or their total size reached configured
+     * thresholds.
+     *
+     * @param batchItem batch item to be processed
+     * @param itemSizeInBytes size of given item
+     * @throws IllegalStateException if this emitter was stopped
+     */
+    @Override
+    public void add(Object batchItem, long itemSizeInBytes) {
+
+        long sequence;
+        while (true) {
+            sequence = tail.get();
+            if ((sequence & CLOSED) != 0) {
+                // nothing will free the slots anymore
+                throw new IllegalStateException(getClass().getSimpleName() + " was stopped. Item rejected");
+            }
+            if (sequence - head >= capacity) {
+                // ring buffer full; wait for current or triggered delivery to free the slots
+                trigger();
+                LockSupport.parkNanos(1L);
+                continue;
+            }
+            if (tail.compareAndSet(sequence, sequence + 1)) {
+                break;
+            }
+        }
+
+        int index = (int) (sequence & mask);
+
+        // size is published together with the item
+        sizes[index] = itemSizeInBytes;
+        slots.lazySet(index, batchItem);
+
+        if (itemSizeInBytes > 0 && sizeInBytes.addAndGet(itemSizeInBytes) >= maxSizeInBytes) {
+            trigger();
+            return;
+        }
+
+        if (sequence + 1 - head >= maxSize) {
+            trigger();
+        }
+
+    }
+
+    private long tail() {
+        return tail.get() & ~CLOSED;
+    }
+
+    /**
+     * Invoked by producers when batch size was reached or ring buffer is full. Delivers on current thread by default.
+     * <p>
+     * Extension point. MUST NOT block.
+     */
+    protected void trigger() {
+        notifyListener();
+    }
+
+    /**
+     * @return number of claimed slots, including claimed but not published ones
+     */
+    public int size() {
+        return (int) (tail() - head);
+    }
+
+    /**
+     * @return number of items that should trigger the delivery
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return total size of items that should trigger the delivery
+     */
+    public long getMaxSizeInBytes() {
+        return maxSizeInBytes;
+    }
+
+    /**
+     * @return millis between two time-triggered deliveries
+     */
+    public int getDeliveryInterval() {
+        return deliveryInterval;
+    }
+
+    /**
+     * @return actual number of ring buffer slots
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Invoked by the scheduler. Hands due delivery over to the worker. MUST NOT block.
+     */
+    private void onTick() {
+        if (System.currentTimeMillis() >= deadline) {
+            scheduledDelivery.run();
+        }
+    }
+
+    private void scheduledNotification() {
+
+        // deliveries triggered by size move the deadline
+        if (System.currentTimeMillis() < deadline) {
+            return;
+        }
+
+        try {
+            notifyListener();
+        } catch (Exception e) {
+            // scheduled task MUST survive listener failures
+            getLogger().error("Scheduled delivery failed: {}", e.getMessage());
+        }
+
+    }
+
+    /**
+     * Sets new batch listener. Currently only one listener may be set. However, since it's an extension point, this
+     * limitation can be overridden.
+     *
+     * @param onReadyListener batch-to-client handler
+     */
+    public void addListener(Function<BATCH_TYPE, Boolean> onReadyListener) {
+        this.listener = onReadyListener;
+    }
+
+    static int ceilingPowerOfTwo(int value) {
+        if (value <= 1) {
+            return 1;
+        }
+        int result = Integer.highestOneBit(value - 1) << 1;
+        if (result <= 0) {
+            throw new IllegalArgumentException("Ring buffer capacity too large: " + value);
+        }
+        return result;
+    }
+
+    // ==========
+    // LIFECYCLE
+    // ==========
+
+    @Override
+    public void start() {
+        this.deadline = System.currentTimeMillis() + deliveryInterval;
+        tail.getAndUpdate(sequence -> sequence & ~CLOSED);
+        state = State.STARTED;
+        startTimeTrigger();
+    }
+
+    /**
+     * Starts time-triggered deliveries. Invoked on {@link #start()}.
+     * <p>
+     * Extension point. Subclasses that own the delivery interval MUST override {@link #stopTimeTrigger()} as well.
+     */
+    protected void startTimeTrigger() {
+        long tickInterval = BulkEmitter.tickInterval(deliveryInterval);
+        this.scheduledTask = SharedScheduler.getInstance().scheduleAtFixedRate(
+                this::onTick,
+                tickInterval,
+                tickInterval,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops time-triggered deliveries. Invoked on {@link #stop()} before remaining items are delivered.
+     * <p>
+     * Extension point.
+     */
+    protected void stopTimeTrigger() {
+        if (scheduledTask != null) {
+            scheduledTask.cancel(false);
+        }
+    }
+
+    @Override
+    public void stop() {
+        stop(0, false);
+    }
+
+    @Override
+    public LifeCycle stop(long timeout, boolean runInBackground) {
+        delayedShutdown.delay(timeout).start(runInBackground);
+        return this;
+    }
+
+    private void doStop() {
+        if (!isStopped()) {
+            getLogger().debug("Stopping {}. Flushing last batch if possible.", getClass().getSimpleName());
+
+            // slots claimed before this point will be drained, all subsequent claims will fail
+            tail.getAndUpdate(sequence -> sequence | CLOSED);
+            stopTimeTrigger();
+
+            drain();
+
+            state = State.STOPPED;
+
+            getLogger().debug("{} stopped", getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Waits for in-flight delivery (if any) and delivers remaining items until the ring buffer is empty.
+     */
+    private void drain() {
+        while (size() > 0) {
+            long before = head;
+            notifyListener();
+            if (head == before) {
+                // another thread is delivering or producer did not publish claimed slot yet
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+    }
+
+    @Override
+    public boolean isStarted() {
+        return state == State.STARTED;
+    }
+
+    @Override
+    public boolean isStopped() {
+        return state == State.STOPPED;
+    }
+
+}
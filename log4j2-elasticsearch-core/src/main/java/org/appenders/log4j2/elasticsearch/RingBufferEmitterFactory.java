@@ -0,0 +1,80 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+/**
+ * Produces {@link RingBufferEmitter} instances for any {@link ClientObjectFactory}.
+ * <p>
+ * NOTE: Not registered as a {@code java.util.ServiceLoader} service. Can be selected with
+ * {@link org.appenders.log4j2.elasticsearch.spi.BatchEmitterServiceProvider#BATCH_EMITTER_FACTORY_PROPERTY}
+ * <p>
+ * Ring buffer capacity can be adjusted with {@link #CAPACITY_FACTOR_PROPERTY} system property.
+ */
+public class RingBufferEmitterFactory implements BatchEmitterFactory<RingBufferEmitter> {
+
+    /**
+     * Number of ring buffer slots per one batch item. Default: {@link RingBufferEmitter#DEFAULT_CAPACITY_FACTOR}
+     */
+    public static final String CAPACITY_FACTOR_PROPERTY = "appenders.RingBufferEmitter.capacityFactor";
+
+    @Override
+    public boolean accepts(Class<? extends ClientObjectFactory> clientObjectFactoryClass) {
+        return ClientObjectFactory.class.isAssignableFrom(clientObjectFactoryClass);
+    }
+
+    @Override
+    public RingBufferEmitter createInstance(int batchSize, int deliveryInterval, ClientObjectFactory clientObjectFactory, FailoverPolicy failoverPolicy) {
+        return createInstance(batchSize, Long.MAX_VALUE, deliveryInterval, clientObjectFactory, failoverPolicy);
+    }
+
+    @Override
+    public RingBufferEmitter createInstance(int batchSize, long batchSizeInBytes, int deliveryInterval, ClientObjectFactory clientObjectFactory, FailoverPolicy failoverPolicy) {
+
+        int capacityFactor = Integer.parseInt(System.getProperty(
+                CAPACITY_FACTOR_PROPERTY,
+                String.valueOf(RingBufferEmitter.DEFAULT_CAPACITY_FACTOR)));
+
+        RingBufferEmitter emitter = createEmitter(
+                batchSize,
+                batchSizeInBytes,
+                deliveryInterval,
+                clientObjectFactory.createBatchOperations(),
+                batchSize * capacityFactor);
+        emitter.addListener(clientObjectFactory.createBatchListener(failoverPolicy));
+        return emitter;
+    }
+
+    /**
+     * Extension point. Allows to provide {@link RingBufferEmitter} subclasses with the same configuration.
+     *
+     * @param batchSize number of items that should trigger the delivery
+     * @param batchSizeInBytes total size of items that should trigger the delivery
+     * @param deliveryInterval millis between two time-triggered deliveries
+     * @param batchOperations batch builder provider
+     * @param minCapacity minimum number of ring buffer slots
+     * @return new, not started emitter
+     */
+    protected RingBufferEmitter createEmitter(int batchSize, long batchSizeInBytes, int deliveryInterval, BatchOperations batchOperations, int minCapacity) {
+        return new RingBufferEmitter(batchSize, batchSizeInBytes, deliveryInterval, batchOperations, minCapacity);
+    }
+
+}
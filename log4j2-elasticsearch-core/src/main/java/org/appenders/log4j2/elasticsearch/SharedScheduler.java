@@ -0,0 +1,169 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.appenders.core.logging.InternalLogging.getLogger;
+
+/**
+ * Single scheduler shared by all emitters, pools and failover policies, so number of scheduler threads doesn't depend
+ * on number of configured appenders.
+ * <p>
+ * Threads are daemons and they're started on demand. Idle threads are terminated after {@link #KEEP_ALIVE_MILLIS}
+ * when no tasks are scheduled, so components MUST cancel their tasks on shutdown. Shutdown of shared instance is not
+ * allowed and will be ignored.
+ * <p>
+ * Number of threads can be adjusted with {@link #THREAD_COUNT_PROPERTY} system property. Scheduled tasks SHOULD NOT
+ * block as they may delay tasks of other components. Scheduled tasks that may take long (e.g. batch delivery or failover
+ * retries) SHOULD only trigger the work and hand it over to {@link #getWorkers()} with {@link OffloadedTask}.
+ * <p>
+ * Workers are daemon threads started on demand and terminated after {@link #KEEP_ALIVE_MILLIS} of inactivity. Since
+ * each {@link OffloadedTask} runs on at most one worker at a time, number of workers is limited by number of components
+ * that are busy at the same time, and a slow component doesn't delay the work of other ones.
+ */
+public final class SharedScheduler {
+
+    /**
+     * Number of scheduler threads. Default: 2
+     */
+    public static final String THREAD_COUNT_PROPERTY = "appenders.SharedScheduler.threadCount";
+
+    /**
+     * Default: 2
+     */
+    public static final int DEFAULT_THREAD_COUNT = 2;
+
+    /**
+     * Idle thread keep-alive time: 60 seconds
+     */
+    public static final long KEEP_ALIVE_MILLIS = 60000L;
+
+    static final String THREAD_NAME_FORMAT = "SharedScheduler-%s";
+    static final String WORKER_THREAD_NAME_FORMAT = "SharedScheduler-worker-%s";
+
+    private SharedScheduler() {
+        // static access only
+    }
+
+    /**
+     * @return shared {@code java.util.concurrent.ScheduledExecutorService}
+     */
+    public static ScheduledExecutorService getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * @return shared {@code java.util.concurrent.ExecutorService} for the work triggered by scheduled tasks
+     */
+    public static ExecutorService getWorkers() {
+        return WorkersHolder.INSTANCE;
+    }
+
+    static ScheduledThreadPoolExecutor createExecutor(int threadCount) {
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threadCount, createThreadFactory(THREAD_NAME_FORMAT)) {
+
+            @Override
+            public void shutdown() {
+                getLogger().warn("{} cannot be shutdown. Cancel scheduled tasks instead", SharedScheduler.class.getSimpleName());
+            }
+
+            @Override
+            public List<Runnable> shutdownNow() {
+                shutdown();
+                return Collections.emptyList();
+            }
+
+        };
+
+        executor.setKeepAliveTime(KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        executor.setRemoveOnCancelPolicy(true);
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+        return executor;
+
+    }
+
+    static ThreadPoolExecutor createWorkers() {
+
+        // no queue; thread is started if all workers are busy, so tasks never wait for each other
+        return new ThreadPoolExecutor(
+                0,
+                Integer.MAX_VALUE,
+                KEEP_ALIVE_MILLIS,
+                TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>(),
+                createThreadFactory(WORKER_THREAD_NAME_FORMAT)) {
+
+            @Override
+            public void shutdown() {
+                getLogger().warn("{} workers cannot be shutdown", SharedScheduler.class.getSimpleName());
+            }
+
+            @Override
+            public List<Runnable> shutdownNow() {
+                shutdown();
+                return Collections.emptyList();
+            }
+
+        };
+
+    }
+
+    private static ThreadFactory createThreadFactory(String threadNameFormat) {
+
+        AtomicInteger threadIndex = new AtomicInteger();
+
+        return r -> {
+            Thread thread = new Thread(r, String.format(threadNameFormat, threadIndex.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        };
+
+    }
+
+    private static class Holder {
+
+        private static final ScheduledThreadPoolExecutor INSTANCE = createExecutor(
+                Integer.parseInt(System.getProperty(THREAD_COUNT_PROPERTY, String.valueOf(DEFAULT_THREAD_COUNT))));
+
+    }
+
+    private static class WorkersHolder {
+
+        private static final ThreadPoolExecutor INSTANCE = createWorkers();
+
+    }
+
+}
@@ -40,14 +40,14 @@ public class StringAppender implements ItemAppender<LogEvent> {
     }
 
     /**
-     * Serializes given {@link LogEvent} to {@link String} and invokes {@link BatchDelivery#add(String, Object)}
+     * Serializes given {@link LogEvent} to {@link String} and invokes {@link BatchDelivery#add(String, Object, org.apache.logging.log4j.Level)}
      *
      * @param formattedIndexName delivery target
      * @param logEvent event to process
      */
     @Override
     public void append(String formattedIndexName, LogEvent logEvent) {
-        batchDelivery.add(formattedIndexName, serializer.apply(logEvent));
+        batchDelivery.add(formattedIndexName, serializer.apply(logEvent), logEvent.getLevel());
     }
 
     // ==========
@@ -0,0 +1,208 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.appenders.core.logging.InternalLogging.getLogger;
+
+/**
+ * Time- and size-based batch scheduler backed by a number of independent {@link BulkEmitter}s (stripes).
+ * <p>
+ * Each producer thread is assigned to one stripe based on its id, so batches can be assembled and delivered to the
+ * same listener concurrently by multiple threads. Each stripe triggers the delivery on its own when given batch size is
+ * reached. Delivery deadline of each stripe is checked by this emitter {@link BulkEmitter#TICKS_PER_INTERVAL} times
+ * per delivery interval.
+ * <p>
+ * NOTE: Up to {@code batchSize * numberOfStripes} items may wait for delivery.
+ *
+ * @param <BATCH_TYPE> type of processed batches
+ */
+public class StripedEmitter<BATCH_TYPE> implements BatchEmitter {
+
+    private volatile State state = State.STOPPED;
+
+    private final BulkEmitter<BATCH_TYPE>[] stripes;
+    private final int deliveryInterval;
+    private ScheduledFuture<?> scheduledTask;
+    private final OffloadedTask scheduledDelivery = new OffloadedTask(this::scheduledNotification);
+    private final DelayedShutdown delayedShutdown = new DelayedShutdown(this::doStop)
+            .onDecrement(remaining -> {
+                getLogger().info(
+                        "Waiting for last items... {}s",
+                        remaining / 1000
+                );
+                notifyListener();
+            });
+
+    /**
+     * @param numberOfStripes number of independent {@link BulkEmitter}s
+     * @param atSize number of items that should trigger the delivery of each stripe
+     * @param intervalInMillis millis between two time-triggered deliveries
+     * @param batchOperations batch builder provider
+     */
+    public StripedEmitter(int numberOfStripes, int atSize, int intervalInMillis, BatchOperations<BATCH_TYPE> batchOperations) {
+        this(numberOfStripes, atSize, Long.MAX_VALUE, intervalInMillis, batchOperations);
+    }
+
+    /**
+     * @param numberOfStripes number of independent {@link BulkEmitter}s
+     * @param atSize number of items that should trigger the delivery of each stripe
+     * @param atSizeInBytes total size of items that should trigger the delivery of each stripe
+     * @param intervalInMillis millis between two time-triggered deliveries
+     * @param batchOperations batch builder provider
+     */
+    @SuppressWarnings("unchecked")
+    public StripedEmitter(int numberOfStripes, int atSize, long atSizeInBytes, int intervalInMillis, BatchOperations<BATCH_TYPE> batchOperations) {
+
+        if (numberOfStripes <= 0) {
+            throw new IllegalArgumentException("Number of stripes must be higher than 0. Got: " + numberOfStripes);
+        }
+
+        this.deliveryInterval = intervalInMillis;
+        this.stripes = new BulkEmitter[numberOfStripes];
+        for (int ii = 0; ii < numberOfStripes; ii++) {
+            stripes[ii] = new BulkEmitter<>(atSize, atSizeInBytes, intervalInMillis, batchOperations);
+        }
+    }
+
+    @Override
+    public void add(Object batchItem) {
+        stripes[stripeIndex(Thread.currentThread().getId())].add(batchItem);
+    }
+
+    @Override
+    public void add(Object batchItem, long sizeInBytes) {
+        stripes[stripeIndex(Thread.currentThread().getId())].add(batchItem, sizeInBytes);
+    }
+
+    int stripeIndex(long threadId) {
+        // spread sequential thread ids
+        long hash = threadId ^ (threadId >>> 16);
+        return (int) ((hash & Long.MAX_VALUE) % stripes.length);
+    }
+
+    /**
+     * Delivers current batch of each stripe to the listener if at least one item is waiting for delivery
+     */
+    public final void notifyListener() {
+        for (BulkEmitter<BATCH_TYPE> stripe : stripes) {
+            stripe.notifyListener();
+        }
+    }
+
+    /**
+     * Sets new batch listener on all stripes. Given listener MUST be thread-safe.
+     *
+     * @param onReadyListener batch-to-client handler
+     */
+    public void addListener(Function<BATCH_TYPE, Boolean> onReadyListener) {
+        for (BulkEmitter<BATCH_TYPE> stripe : stripes) {
+            stripe.addListener(onReadyListener);
+        }
+    }
+
+    /**
+     * @return number of independent {@link BulkEmitter}s
+     */
+    public int getNumberOfStripes() {
+        return stripes.length;
+    }
+
+    /**
+     * Invoked by the scheduler. Hands due deliveries over to the worker. MUST NOT block.
+     */
+    private void onTick() {
+        for (BulkEmitter<BATCH_TYPE> stripe : stripes) {
+            if (stripe.isDeliveryDue()) {
+                scheduledDelivery.run();
+                return;
+            }
+        }
+    }
+
+    private void scheduledNotification() {
+        for (BulkEmitter<BATCH_TYPE> stripe : stripes) {
+            try {
+                stripe.onSchedule();
+            } catch (Exception e) {
+                // scheduled task MUST survive listener failures
+                getLogger().error("Scheduled delivery failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    // ==========
+    // LIFECYCLE
+    // ==========
+
+    @Override
+    public void start() {
+        // stripes are not started - one scheduled task for all of them
+        long tickInterval = BulkEmitter.tickInterval(deliveryInterval);
+        this.scheduledTask = SharedScheduler.getInstance().scheduleAtFixedRate(
+                this::onTick,
+                tickInterval,
+                tickInterval,
+                TimeUnit.MILLISECONDS);
+        state = State.STARTED;
+    }
+
+    @Override
+    public void stop() {
+        stop(0, false);
+    }
+
+    @Override
+    public LifeCycle stop(long timeout, boolean runInBackground) {
+        delayedShutdown.delay(timeout).start(runInBackground);
+        return this;
+    }
+
+    private void doStop() {
+        if (!isStopped()) {
+            getLogger().debug("Stopping {}. Flushing last batches if possible.", getClass().getSimpleName());
+
+            notifyListener();
+            if (scheduledTask != null) {
+                scheduledTask.cancel(false);
+            }
+
+            state = State.STOPPED;
+
+            getLogger().debug("{} stopped", getClass().getSimpleName());
+        }
+    }
+
+    @Override
+    public boolean isStarted() {
+        return state == State.STARTED;
+    }
+
+    @Override
+    public boolean isStopped() {
+        return state == State.STOPPED;
+    }
+
+}
@@ -0,0 +1,66 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+/**
+ * Produces {@link StripedEmitter} instances for any {@link ClientObjectFactory}.
+ * <p>
+ * NOTE: Not registered as a {@code java.util.ServiceLoader} service. Can be selected with
+ * {@link org.appenders.log4j2.elasticsearch.spi.BatchEmitterServiceProvider#BATCH_EMITTER_FACTORY_PROPERTY}
+ * <p>
+ * Number of stripes can be adjusted with {@link #NUMBER_OF_STRIPES_PROPERTY} system property.
+ */
+public class StripedEmitterFactory implements BatchEmitterFactory<StripedEmitter> {
+
+    /**
+     * Number of independent {@link BulkEmitter}s. Default: number of available processors
+     */
+    public static final String NUMBER_OF_STRIPES_PROPERTY = "appenders.StripedEmitter.numberOfStripes";
+
+    @Override
+    public boolean accepts(Class<? extends ClientObjectFactory> clientObjectFactoryClass) {
+        return ClientObjectFactory.class.isAssignableFrom(clientObjectFactoryClass);
+    }
+
+    @Override
+    public StripedEmitter createInstance(int batchSize, int deliveryInterval, ClientObjectFactory clientObjectFactory, FailoverPolicy failoverPolicy) {
+        return createInstance(batchSize, Long.MAX_VALUE, deliveryInterval, clientObjectFactory, failoverPolicy);
+    }
+
+    @Override
+    public StripedEmitter createInstance(int batchSize, long batchSizeInBytes, int deliveryInterval, ClientObjectFactory clientObjectFactory, FailoverPolicy failoverPolicy) {
+
+        int numberOfStripes = Integer.parseInt(System.getProperty(
+                NUMBER_OF_STRIPES_PROPERTY,
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        StripedEmitter emitter = new StripedEmitter(
+                numberOfStripes,
+                batchSize,
+                batchSizeInBytes,
+                deliveryInterval,
+                clientObjectFactory.createBatchOperations());
+        emitter.addListener(clientObjectFactory.createBatchListener(failoverPolicy));
+        return emitter;
+    }
+
+}
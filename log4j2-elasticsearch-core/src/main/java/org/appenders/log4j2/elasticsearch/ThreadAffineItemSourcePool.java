@@ -0,0 +1,543 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * {@link GenericItemSourcePool} with per-thread caches (magazines) in front of shared pool (depot).
+ * <p>Elements are acquired from and released to magazine of current thread, so acquire-release pair executed by the
+ * same thread doesn't touch shared state. When magazine is empty, it's refilled with one chunk of returned elements
+ * or, if there are none, with half of its capacity taken from the depot. When magazine is full, half of its elements
+ * are published as one chunk. If there are no elements left, {@link ResizePolicy} is applied as usual.
+ * <p>Magazines are created for threads that acquire elements only. Elements released by other threads (e.g. I/O threads
+ * completing batch requests) are collected in per-thread return buffers and published as one chunk once half of
+ * {@code magazineSize} is collected, so acquire-on-one-thread, release-on-another pair costs one shared queue
+ * operation per chunk, not per element. Partially filled return buffers are taken over by acquiring threads when no
+ * other elements are available.
+ * <p>Magazines and return buffers of terminated threads are periodically moved back to the depot.
+ * <p>NOTE: Up to {@code magazineSize} elements may be cached by each acquiring thread. Elements cached in magazines are
+ * reserved for their owners and are not included in {@link #getAvailableSize()}. Returned chunks and return buffers
+ * are included, so {@link ResizePolicy} (e.g. {@link LimitedResizePolicy} waiting for released elements) can see
+ * and use them.
+ * <p>NOTE: Consider this class <i>private</i>. Design may change before the code is stabilized.
+ */
+public class ThreadAffineItemSourcePool<T> extends GenericItemSourcePool<T> {
+
+    static final long RECLAIM_TASK_INTERVAL = 10000L;
+
+    private final int magazineSize;
+    private final int transferSize;
+    private final ConcurrentLinkedQueue<Magazine<T>> magazines = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<ReturnBuffer<T>> returnBuffers = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<ItemSource<T>[]> returnedChunks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger returnedSize = new AtomicInteger();
+    private volatile ThreadLocal<Magazine<T>> currentMagazine = createThreadLocal();
+    private volatile ThreadLocal<ReturnBuffer<T>> currentReturnBuffer = createThreadLocal();
+
+    public ThreadAffineItemSourcePool(String poolName,
+                                      PooledObjectOps<T> pooledObjectOps,
+                                      ResizePolicy resizePolicy,
+                                      long resizeTimeout,
+                                      boolean monitored,
+                                      long monitorTaskInterval,
+                                      int initialPoolSize,
+                                      int magazineSize) {
+        super(poolName, pooledObjectOps, resizePolicy, resizeTimeout, monitored, monitorTaskInterval, initialPoolSize);
+
+        if (magazineSize <= 0) {
+            throw new IllegalArgumentException("magazineSize must be higher than 0. Got: " + magazineSize);
+        }
+
+        this.magazineSize = magazineSize;
+        this.transferSize = Math.max(1, magazineSize / 2);
+    }
+
+    private <E> ThreadLocal<E> createThreadLocal() {
+        return new ThreadLocal<>();
+    }
+
+    private Magazine<T> createMagazine() {
+        Magazine<T> magazine = new Magazine<>(Thread.currentThread(), magazineSize);
+        magazines.add(magazine);
+        return magazine;
+    }
+
+    private ReturnBuffer<T> createReturnBuffer() {
+        ReturnBuffer<T> returnBuffer = new ReturnBuffer<>(Thread.currentThread(), transferSize);
+        returnBuffers.add(returnBuffer);
+        return returnBuffer;
+    }
+
+    /**
+     * Elements returned by this method MUST be returned to the pool by calling {@link ItemSource#release()}.
+     * If magazine of current thread is empty, returned or depot elements are moved to the magazine. If there are none,
+     * {@link ResizePolicy} will try to create more pooled elements.
+     *
+     * @throws PoolResourceException if {@link ResizePolicy} was not sufficient or didn't create any new elements or thread calling this method was interrupted
+     * @return pooled {@link ItemSource}
+     */
+    @Override
+    public ItemSource<T> getPooled() throws PoolResourceException {
+
+        Magazine<T> magazine = currentMagazine.get();
+        if (magazine == null) {
+            magazine = createMagazine();
+            currentMagazine.set(magazine);
+        }
+
+        ItemSource<T> pooled = magazine.pop();
+        if (pooled != null) {
+            return pooled;
+        }
+
+        if (refill(magazine)) {
+            pooled = magazine.pop();
+            if (pooled != null) {
+                return pooled;
+            }
+        }
+
+        // nothing left - resize
+        return super.getPooled();
+
+    }
+
+    private boolean refill(Magazine<T> magazine) {
+
+        ItemSource<T>[] chunk = returnedChunks.poll();
+        if (chunk == null) {
+
+            if (magazine.refill(super::pollPooled, transferSize) > 0) {
+                return true;
+            }
+
+            // releasing threads may be idle - take over their partially filled buffers
+            if (publishReturnBuffers() == 0 || (chunk = returnedChunks.poll()) == null) {
+                return false;
+            }
+
+        }
+
+        returnedSize.addAndGet(-chunk.length);
+        magazine.pushAll(chunk, super::offerPooled);
+
+        return true;
+
+    }
+
+    @Override
+    void offerPooled(ItemSource<T> itemSource) {
+
+        Magazine<T> magazine = currentMagazine.get();
+
+        // releasing thread doesn't acquire elements from this pool
+        if (magazine == null) {
+
+            ReturnBuffer<T> returnBuffer = currentReturnBuffer.get();
+            if (returnBuffer == null) {
+                returnBuffer = createReturnBuffer();
+                currentReturnBuffer.set(returnBuffer);
+            }
+
+            ItemSource<T>[] chunk = returnBuffer.add(itemSource);
+            if (chunk != null) {
+                publish(chunk);
+            }
+            return;
+
+        }
+
+        if (!magazine.push(itemSource)) {
+            publish(magazine.take(transferSize));
+            magazine.push(itemSource);
+        }
+
+    }
+
+    /**
+     * Used by {@link GenericItemSourcePool} on resize and {@link #remove()}. Polls the depot first, then returned
+     * elements.
+     *
+     * @return available element or null, if there are none
+     */
+    @Override
+    ItemSource<T> pollPooled() {
+
+        ItemSource<T> pooled = super.pollPooled();
+        if (pooled != null) {
+            return pooled;
+        }
+
+        ItemSource<T>[] chunk = returnedChunks.poll();
+        if (chunk == null && publishReturnBuffers() > 0) {
+            chunk = returnedChunks.poll();
+        }
+
+        if (chunk == null) {
+            return null;
+        }
+
+        returnedSize.addAndGet(-chunk.length);
+        for (int ii = 1; ii < chunk.length; ii++) {
+            super.offerPooled(chunk[ii]);
+        }
+
+        return chunk[0];
+
+    }
+
+    private void publish(ItemSource<T>[] chunk) {
+        returnedSize.addAndGet(chunk.length);
+        returnedChunks.add(chunk);
+    }
+
+    /**
+     * Publishes partially filled return buffers
+     *
+     * @return number of published chunks
+     */
+    private int publishReturnBuffers() {
+
+        int published = 0;
+        for (ReturnBuffer<T> returnBuffer : returnBuffers) {
+            ItemSource<T>[] chunk = returnBuffer.takeAll();
+            if (chunk != null) {
+                publish(chunk);
+                published++;
+            }
+        }
+
+        return published;
+    }
+
+    /**
+     * Moves all returned elements to the depot
+     */
+    private void moveReturnedToDepot() {
+
+        publishReturnBuffers();
+
+        ItemSource<T>[] chunk;
+        while ((chunk = returnedChunks.poll()) != null) {
+            returnedSize.addAndGet(-chunk.length);
+            for (ItemSource<T> itemSource : chunk) {
+                super.offerPooled(itemSource);
+            }
+        }
+
+    }
+
+    /**
+     * @return Number of elements available in the depot, returned chunks and return buffers
+     */
+    @Override
+    public int getAvailableSize() {
+
+        int result = super.getAvailableSize() + returnedSize.get();
+        for (ReturnBuffer<T> returnBuffer : returnBuffers) {
+            result += returnBuffer.size();
+        }
+
+        return result;
+    }
+
+    // visible for testing
+    int getDepotSize() {
+        return super.getAvailableSize();
+    }
+
+    // visible for testing
+    int getReturnedChunkCount() {
+        return returnedChunks.size();
+    }
+
+    /**
+     * @return number of magazines created by this pool
+     */
+    int getNumberOfMagazines() {
+        return magazines.size();
+    }
+
+    /**
+     * @return approximate number of elements cached by all threads
+     */
+    public int getCachedSize() {
+        int result = 0;
+        for (Magazine<T> magazine : magazines) {
+            result += magazine.size();
+        }
+        return result;
+    }
+
+    /**
+     * Moves elements cached or collected by terminated threads back to the depot
+     */
+    void reclaimOrphanedMagazines() {
+
+        Iterator<Magazine<T>> iterator = magazines.iterator();
+        while (iterator.hasNext()) {
+            Magazine<T> magazine = iterator.next();
+            if (!magazine.isOwnerAlive()) {
+                iterator.remove();
+                magazine.drainTo(super::offerPooled, magazineSize);
+            }
+        }
+
+        Iterator<ReturnBuffer<T>> returnBufferIterator = returnBuffers.iterator();
+        while (returnBufferIterator.hasNext()) {
+            ReturnBuffer<T> returnBuffer = returnBufferIterator.next();
+            if (!returnBuffer.isOwnerAlive()) {
+                returnBufferIterator.remove();
+                ItemSource<T>[] chunk = returnBuffer.takeAll();
+                if (chunk != null) {
+                    publish(chunk);
+                }
+            }
+        }
+
+    }
+
+    @Override
+    public void shutdown() {
+
+        // cached and returned elements are moved to the depot, so they can be purged by GenericItemSourcePool
+        Iterator<Magazine<T>> iterator = magazines.iterator();
+        while (iterator.hasNext()) {
+            Magazine<T> magazine = iterator.next();
+            iterator.remove();
+            magazine.drainTo(super::offerPooled, magazineSize);
+        }
+        currentMagazine = createThreadLocal();
+
+        moveReturnedToDepot();
+        returnBuffers.clear();
+        currentReturnBuffer = createThreadLocal();
+
+        super.shutdown();
+
+    }
+
+    // ==========
+    // LIFECYCLE
+    // ==========
+
+    @Override
+    public void start() {
+
+        if (!isStarted()) {
+            super.start();
+            addScheduledTask(executor.scheduleAtFixedRate(
+                    this::reclaimOrphanedMagazines,
+                    RECLAIM_TASK_INTERVAL,
+                    RECLAIM_TASK_INTERVAL,
+                    TimeUnit.MILLISECONDS));
+        }
+
+    }
+
+    /**
+     * Bounded stack of pooled elements owned by one thread. Not thread-safe: other threads access it only after owner
+     * terminated or when pool shuts down.
+     */
+    static final class Magazine<T> {
+
+        private final WeakReference<Thread> owner;
+        private final ItemSource<T>[] elements;
+        private int size;
+
+        @SuppressWarnings("unchecked")
+        Magazine(Thread owner, int capacity) {
+            this.owner = new WeakReference<>(owner);
+            this.elements = new ItemSource[capacity];
+        }
+
+        ItemSource<T> pop() {
+            if (size == 0) {
+                return null;
+            }
+            ItemSource<T> result = elements[--size];
+            elements[size] = null;
+            return result;
+        }
+
+        boolean push(ItemSource<T> itemSource) {
+            if (size == elements.length) {
+                return false;
+            }
+            elements[size++] = itemSource;
+            return true;
+        }
+
+        /**
+         * @param chunk elements to add
+         * @param overflow consumer of elements that didn't fit
+         */
+        void pushAll(ItemSource<T>[] chunk, Consumer<ItemSource<T>> overflow) {
+            int moved = Math.min(chunk.length, elements.length - size);
+            System.arraycopy(chunk, 0, elements, size, moved);
+            size += moved;
+            for (int ii = moved; ii < chunk.length; ii++) {
+                overflow.accept(chunk[ii]);
+            }
+        }
+
+        /**
+         * @param source element provider; returns null when exhausted
+         * @param count maximum number of elements to move
+         * @return number of moved elements
+         */
+        int refill(Supplier<ItemSource<T>> source, int count) {
+            int moved = 0;
+            while (moved < count && size < elements.length) {
+                ItemSource<T> itemSource = source.get();
+                if (itemSource == null) {
+                    break;
+                }
+                elements[size++] = itemSource;
+                moved++;
+            }
+            return moved;
+        }
+
+        /**
+         * Removes oldest elements, so recently used elements stay in the magazine
+         *
+         * @param count maximum number of elements to remove
+         * @return removed elements
+         */
+        @SuppressWarnings("unchecked")
+        ItemSource<T>[] take(int count) {
+            int moved = Math.min(count, size);
+            ItemSource<T>[] result = new ItemSource[moved];
+            System.arraycopy(elements, 0, result, 0, moved);
+            System.arraycopy(elements, moved, elements, 0, size - moved);
+            Arrays.fill(elements, size - moved, size, null);
+            size -= moved;
+            return result;
+        }
+
+        /**
+         * Moves oldest elements to given consumer, so recently used elements stay in the magazine
+         *
+         * @param target element consumer
+         * @param count maximum number of elements to move
+         */
+        void drainTo(Consumer<ItemSource<T>> target, int count) {
+            int moved = Math.min(count, size);
+            for (int ii = 0; ii < moved; ii++) {
+                target.accept(elements[ii]);
+            }
+            System.arraycopy(elements, moved, elements, 0, size - moved);
+            for (int ii = size - moved; ii < size; ii++) {
+                elements[ii] = null;
+            }
+            size -= moved;
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isOwnerAlive() {
+            Thread thread = owner.get();
+            return thread != null && thread.isAlive();
+        }
+
+    }
+
+    /**
+     * Collects elements released by one non-acquiring thread until chunk is complete. Other threads access it only
+     * to take over partially filled chunk, so locks are mostly uncontended.
+     */
+    static final class ReturnBuffer<T> {
+
+        private final WeakReference<Thread> owner;
+        private final int capacity;
+        private ItemSource<T>[] elements;
+        private int size;
+
+        ReturnBuffer(Thread owner, int capacity) {
+            this.owner = new WeakReference<>(owner);
+            this.capacity = capacity;
+            this.elements = newChunk(capacity);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> ItemSource<T>[] newChunk(int capacity) {
+            return new ItemSource[capacity];
+        }
+
+        /**
+         * @param itemSource released element
+         * @return complete chunk, or null if it's not complete yet
+         */
+        synchronized ItemSource<T>[] add(ItemSource<T> itemSource) {
+
+            elements[size++] = itemSource;
+            if (size < capacity) {
+                return null;
+            }
+
+            ItemSource<T>[] result = elements;
+            elements = newChunk(capacity);
+            size = 0;
+
+            return result;
+        }
+
+        /**
+         * @return collected elements, or null if there are none
+         */
+        synchronized ItemSource<T>[] takeAll() {
+
+            if (size == 0) {
+                return null;
+            }
+
+            ItemSource<T>[] result = Arrays.copyOf(elements, size);
+            Arrays.fill(elements, 0, size, null);
+            size = 0;
+
+            return result;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        boolean isOwnerAlive() {
+            Thread thread = owner.get();
+            return thread != null && thread.isAlive();
+        }
+
+    }
+
+}
@@ -0,0 +1,249 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.io.CharacterEscapes;
+import com.fasterxml.jackson.core.io.IOContext;
+import com.fasterxml.jackson.core.json.JsonWriteContextAccessor;
+import com.fasterxml.jackson.core.util.BufferRecycler;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+
+/**
+ * Instances of this class are thread safe.
+ * <br>
+ * Instances of {@code com.fasterxml.jackson.core.JsonGenerator} based
+ * writers created by this class are NOT tread safe and MUST NOT be shared between threads!
+ * <br>
+ * Thread-safe counterpart of {@link SingleThreadJsonFactory}. Allows to reuse <i>ONE(!)</i>
+ * {@code com.fasterxml.jackson.core.JsonGenerator} per thread for every {@link #_createUTF8Generator(OutputStream, IOContext)}
+ * call by keeping one-per-thread {@code com.fasterxml.jackson.core.io.IOContext},
+ * {@code com.fasterxml.jackson.core.util.BufferRecycler} and {@code com.fasterxml.jackson.core.json.JsonWriteContext}.
+ * <br>
+ * Generator returned by previous call on the same thread is reset, so one serialization per thread at a time is allowed.
+ * <br>
+ * NOTE: Each thread holds its own generator buffers until it dies. Use with bounded number of logging threads.
+ */
+public class ThreadLocalJsonFactory extends JsonFactory {
+
+    protected final ThreadLocal<ThreadBoundGenerator> generators = ThreadLocal.withInitial(this::createThreadBoundGenerator);
+
+    /**
+     * Incremented on every config change, so generators created before the change are reconfigured
+     */
+    private volatile int configVersion;
+
+    /**
+     * Creates default, ready-to-use instance
+     */
+    public ThreadLocalJsonFactory() {
+        super();
+    }
+
+    /**
+     * Used by {@link #copy()}.
+     * <br>
+     * Copies only inherited fields.
+     *
+     * @param factory source factory
+     * @param codec codec to use with new factory
+     */
+    public ThreadLocalJsonFactory(ThreadLocalJsonFactory factory, ObjectCodec codec) {
+        super(factory, codec);
+    }
+
+    /**
+     * Not supported
+     *
+     * @param w irrelevant
+     * @return throws
+     * @throws UnsupportedOperationException {@code java.io.UnsupportedEncodingException} is always thrown here
+     */
+    @Override
+    public JsonGenerator createGenerator(Writer w) {
+        throw new UnsupportedOperationException("Writer not supported. Use OutputStream");
+    }
+
+    /**
+     * Not supported
+     *
+     * @param f irrelevant
+     * @param enc irrelevant
+     * @return throws
+     * @throws UnsupportedOperationException {@code java.io.UnsupportedEncodingException} is always thrown here
+     */
+    @Override
+    public JsonGenerator createGenerator(File f, JsonEncoding enc) {
+        throw new UnsupportedOperationException("File not supported. Use OutputStream");
+    }
+
+    /**
+     * Returns current thread's {@code com.fasterxml.jackson.core.JsonGenerator} instance with new target.
+     * Supports UTF-8 only.
+     *
+     * @param out new {@code java.io.OutputStream} to write to
+     * @param enc MUST be UTF-8
+     * @return write-ready {@code com.fasterxml.jackson.core.JsonGenerator}
+     * @throws IOException if {@code enc} is not UTF-8
+     */
+    @Override
+    public JsonGenerator createGenerator(OutputStream out, JsonEncoding enc) throws IOException {
+
+        if (enc != JsonEncoding.UTF8) {
+            throw new UnsupportedEncodingException("Encoding not supported: " + enc.getJavaName());
+        }
+
+        ThreadBoundGenerator current = generators.get();
+        return _createUTF8Generator(_decorate(out, current.ioContext), current.ioContext);
+
+    }
+
+    /**
+     * Replaces target of current thread's {@link ThreadBoundGenerator#dataOutputDelegate} with new {@link java.io.DataOutput}
+     *
+     * @param out new {@code java.io.DataOutput}
+     * @return current thread's {@link ThreadBoundGenerator#dataOutputDelegate} with new target
+     */
+    @Override
+    protected OutputStream _createDataOutputWrapper(DataOutput out) {
+        DataOutputAsStreamDelegate dataOutputDelegate = generators.get().dataOutputDelegate;
+        dataOutputDelegate.setDelegate(out);
+        return dataOutputDelegate;
+    }
+
+    /**
+     * Returns current thread's {@code com.fasterxml.jackson.core.JsonGenerator} instance with new target
+     *
+     * @param out new {@code java.io.OutputStream} to write to
+     * @param ctxt omitted, reusing current thread's {@link ThreadBoundGenerator#ioContext}
+     * @return write-ready {@code com.fasterxml.jackson.core.JsonGenerator}
+     *
+     */
+    @Override
+    protected JsonGenerator _createUTF8Generator(OutputStream out, IOContext ctxt) {
+
+        ThreadBoundGenerator current = generators.get();
+        if (current.configVersion != configVersion) {
+            configure(current);
+        }
+
+        current.outputStreamDelegate.setDelegate(out);
+        current.ioContext.setSourceReference(out);
+        return current.jsonGenerator.reset();
+
+    }
+
+    @Override
+    public final JsonFactory setCharacterEscapes(CharacterEscapes esc) {
+
+        if (esc != null) {
+            super.setCharacterEscapes(esc);
+            configVersion++;
+        }
+
+        return this;
+    }
+
+    /**
+     * Since it may allocate {@code com.fasterxml.jackson.core.SerializableString}, configure only once.
+     *
+     * @param sep new separator
+     * @return this
+     */
+    @Override
+    public JsonFactory setRootValueSeparator(String sep) {
+
+        if (!DefaultPrettyPrinter.DEFAULT_ROOT_VALUE_SEPARATOR.getValue().equals(sep)) {
+            super.setRootValueSeparator(sep);
+            configVersion++;
+        }
+
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ThreadLocalJsonFactory copy()
+    {
+        _checkInvalidCopy(ThreadLocalJsonFactory.class);
+        return new ThreadLocalJsonFactory(this, null);
+    }
+
+    private ThreadBoundGenerator createThreadBoundGenerator() {
+        return configure(new ThreadBoundGenerator(this));
+    }
+
+    private ThreadBoundGenerator configure(ThreadBoundGenerator threadBoundGenerator) {
+
+        threadBoundGenerator.configVersion = configVersion;
+
+        if (_characterEscapes != null) {
+            threadBoundGenerator.jsonGenerator.setCharacterEscapes(_characterEscapes);
+        }
+
+        if (_rootValueSeparator != DEFAULT_ROOT_VALUE_SEPARATOR) {
+            threadBoundGenerator.jsonGenerator.setRootValueSeparator(_rootValueSeparator);
+        }
+
+        return threadBoundGenerator;
+    }
+
+    /**
+     * Components reused by one thread
+     */
+    protected static class ThreadBoundGenerator {
+
+        protected final DataOutputAsStreamDelegate dataOutputDelegate = new DataOutputAsStreamDelegate(null);
+        protected final OutputStreamDelegate outputStreamDelegate = new OutputStreamDelegate(dataOutputDelegate);
+        protected final JsonWriteContextAccessor writeCtxAccessor = new JsonWriteContextAccessor();
+        protected final ReusableIOContext ioContext = new ReusableIOContext(new BufferRecycler(), outputStreamDelegate, false);
+        protected final ReusableUTF8JsonGenerator jsonGenerator;
+
+        private int configVersion;
+
+        ThreadBoundGenerator(ThreadLocalJsonFactory factory) {
+            this.jsonGenerator = new ReusableUTF8JsonGenerator(
+                    ioContext,
+                    factory._generatorFeatures,
+                    factory._objectCodec,
+                    outputStreamDelegate,
+                    factory._quoteChar,
+                    writeCtxAccessor
+            );
+        }
+
+    }
+
+}
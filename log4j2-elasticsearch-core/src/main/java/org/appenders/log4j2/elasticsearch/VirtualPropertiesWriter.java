@@ -32,6 +32,8 @@ import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
 import com.fasterxml.jackson.databind.ser.VirtualBeanPropertyWriter;
 import com.fasterxml.jackson.databind.util.Annotations;
 
+import java.io.IOException;
+
 /**
  * This custom FasterXML Jackson {@code com.fasterxml.jackson.databind.ser.VirtualBeanPropertyWriter}
  * allows to append {@link VirtualProperty}-ies at the end of JSON output
@@ -129,14 +131,14 @@ public class VirtualPropertiesWriter extends VirtualBeanPropertyWriter {
     }
 
     @Override
-    public void serializeAsField(Object bean, JsonGenerator gen, SerializerProvider prov) throws Exception {
+    public void serializeAsField(Object bean, JsonGenerator gen, SerializerProvider prov) throws IOException {
 
         for (int i = 0; i < virtualProperties.length; i++) {
 
             VirtualProperty property = virtualProperties[i];
 
             String resolved = valueResolver.resolve(property);
-            if (isExcluded(property, resolved)) {
+            if (isExcluded(property, resolved, filters)) {
                 continue;
             }
 
@@ -146,7 +148,13 @@ public class VirtualPropertiesWriter extends VirtualBeanPropertyWriter {
         }
     }
 
-    private boolean isExcluded(VirtualProperty property, String resolved) {
+    /**
+     * @param property {@link VirtualProperty} to check
+     * @param resolved value resolved by {@link ValueResolver}
+     * @param filters {@link VirtualPropertyFilter} inclusion filters
+     * @return true, if any of given filters excludes given property, false otherwise
+     */
+    protected static boolean isExcluded(VirtualProperty property, String resolved, VirtualPropertyFilter[] filters) {
 
         for (int i = 0; i < filters.length; i++) {
             if (!filters[i].isIncluded(property.getName(), resolved)) {
@@ -0,0 +1,186 @@
+package org.appenders.log4j2.elasticsearch.backoff;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Allows to limit the number of batches delivered at the same time. Unlike {@link BatchLimitBackoffPolicy}, limit is
+ * adjusted based on response latency (gradient-based concurrency limit).
+ * <p>
+ * Round-trip time of each batch (time between {@link #register(Object)} and {@link #deregister(Object)}) is compared
+ * with a long-term average. If latency grows, limit is reduced proportionally. If latency is stable and the limit was
+ * actually used, limit grows by square root of current limit. Changes are smoothed and limit is always kept between
+ * configured min. and max.
+ *
+ * @param <T> batch type. Instances MUST be unique by {@code equals()} while being delivered
+ */
+public class AdaptiveConcurrencyBackoffPolicy<T> implements BackoffPolicy<T> {
+
+    static final double LONG_RTT_WEIGHT = 0.05;
+    static final double SMOOTHING = 0.2;
+    static final double MIN_GRADIENT = 0.5;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<T, Long> startTimes = new ConcurrentHashMap<>();
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final LongSupplier nanoClock;
+
+    private volatile double limit;
+    private double longRtt;
+
+    /**
+     * @param initialLimit initial number of concurrent batches allowed
+     * @param minLimit min. number of concurrent batches allowed
+     * @param maxLimit max. number of concurrent batches allowed
+     * @param latencyTolerance ratio of latency increase tolerated before the limit is reduced
+     */
+    public AdaptiveConcurrencyBackoffPolicy(int initialLimit, int minLimit, int maxLimit, double latencyTolerance) {
+        this(initialLimit, minLimit, maxLimit, latencyTolerance, System::nanoTime);
+    }
+
+    AdaptiveConcurrencyBackoffPolicy(int initialLimit, int minLimit, int maxLimit, double latencyTolerance, LongSupplier nanoClock) {
+
+        if (minLimit <= 0) {
+            throw new IllegalArgumentException("minLimit must be higher than 0");
+        }
+
+        if (maxLimit < minLimit) {
+            throw new IllegalArgumentException("maxLimit must be higher than or equal to minLimit");
+        }
+
+        if (latencyTolerance < 1) {
+            throw new IllegalArgumentException("latencyTolerance must be higher than or equal to 1");
+        }
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+        this.nanoClock = nanoClock;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * @param data not used
+     * @return true, if current number of pending batches is equal or higher than current limit, false otherwise
+     */
+    @Override
+    public boolean shouldApply(T data) {
+        return inFlight.get() >= getLimit();
+    }
+
+    /**
+     * Increments number of pending batches and records start time of given batch
+     *
+     * @param data batch
+     */
+    @Override
+    public void register(T data) {
+        startTimes.put(data, nanoClock.getAsLong());
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Increments number of pending batches and records start time of given batch only if current number of pending
+     * batches is lower than current limit
+     *
+     * @param data batch
+     * @return true, if given batch was registered, false otherwise
+     */
+    @Override
+    public boolean tryRegister(T data) {
+
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= getLimit()) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+
+        startTimes.put(data, nanoClock.getAsLong());
+        return true;
+
+    }
+
+    /**
+     * Decrements number of pending batches and adjusts the limit based on round-trip time of given batch.
+     * No-op if given batch was not registered.
+     *
+     * @param data batch
+     */
+    @Override
+    public void deregister(T data) {
+
+        Long start = startTimes.remove(data);
+        if (start == null) {
+            return;
+        }
+
+        int pending = inFlight.decrementAndGet();
+        onSample(Math.max(1, nanoClock.getAsLong() - start), pending + 1);
+
+    }
+
+    /**
+     * @return current number of concurrent batches allowed
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    synchronized void onSample(long rtt, int pending) {
+
+        if (longRtt == 0) {
+            longRtt = rtt;
+        } else {
+            longRtt = longRtt * (1 - LONG_RTT_WEIGHT) + rtt * LONG_RTT_WEIGHT;
+        }
+
+        // let long-term average recover faster once latency goes back to normal
+        if (longRtt / rtt > 2) {
+            longRtt *= 0.95;
+        }
+
+        double currentLimit = limit;
+
+        // limit can't be verified if it wasn't used
+        if (pending < currentLimit / 2 && rtt <= longRtt * latencyTolerance) {
+            return;
+        }
+
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, latencyTolerance * longRtt / rtt));
+        double newLimit = gradient < 1.0 ? currentLimit * gradient : currentLimit + Math.sqrt(currentLimit);
+
+        newLimit = currentLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+
+    }
+
+}
@@ -20,6 +20,8 @@ package org.appenders.log4j2.elasticsearch.backoff;
  * #L%
  */
 
+import java.util.function.Consumer;
+
 /**
  * Allows to accumulate data and make decision based on it.
  *
@@ -47,4 +49,41 @@ public interface BackoffPolicy<T> {
      */
     void deregister(T data);
 
+    /**
+     * Registers given data only if this policy doesn't apply. Since 1.5, implementations SHOULD override it if
+     * {@link #shouldApply(Object)} and {@link #register(Object)} can't be called separately without exceeding the limit
+     * under concurrent access.
+     *
+     * @param data data to collect before next decision
+     * @return true, if given data was registered, false if policy applies
+     */
+    default boolean tryRegister(T data) {
+
+        if (shouldApply(data)) {
+            return false;
+        }
+
+        register(data);
+        return true;
+
+    }
+
+    /**
+     * Registers given data only if this policy doesn't apply and invokes exactly one of given callbacks.
+     * Since 1.5, implementations MAY defer the decision and invoke given callbacks on another thread.
+     *
+     * @param data data to collect before next decision
+     * @param onRegistered invoked if given data was registered
+     * @param onRejected invoked if policy applies
+     */
+    default void tryRegister(T data, Consumer<T> onRegistered, Consumer<T> onRejected) {
+
+        if (tryRegister(data)) {
+            onRegistered.accept(data);
+        } else {
+            onRejected.accept(data);
+        }
+
+    }
+
 }
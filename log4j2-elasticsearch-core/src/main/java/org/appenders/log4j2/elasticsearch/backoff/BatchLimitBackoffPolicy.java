@@ -63,6 +63,27 @@ public class BatchLimitBackoffPolicy<T> implements BackoffPolicy<T> {
         batchesInFlight.incrementAndGet();
     }
 
+    /**
+     * Increments number of pending batches only if it's lower than {@link #maxBatchesInFlight}
+     *
+     * @param request not used, may be null
+     * @return true, if request was registered, false otherwise
+     */
+    @Override
+    public boolean tryRegister(T request) {
+
+        int current;
+        do {
+            current = batchesInFlight.get();
+            if (current >= maxBatchesInFlight) {
+                return false;
+            }
+        } while (!batchesInFlight.compareAndSet(current, current + 1));
+
+        return true;
+
+    }
+
     /**
      * Decrements number of pending batches
      *
@@ -0,0 +1,148 @@
+package org.appenders.log4j2.elasticsearch.backoff;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Token bucket rate limiter. Allows to limit the rate of delivered documents or bytes.
+ * <p>
+ * Bucket is refilled continuously with {@code tokensPerSecond} up to {@code capacity}. Every registered batch consumes
+ * the number of tokens returned by given weigher. Bucket may go into debt if batch weight is higher than number of
+ * available tokens, so batches larger than bucket capacity can be delivered as well. Policy applies until bucket is
+ * refilled above zero.
+ *
+ * @param <T> batch type
+ */
+public class TokenBucketBackoffPolicy<T> implements BackoffPolicy<T> {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+    private final long capacity;
+    private final double tokensPerNano;
+    private final ToLongFunction<T> weigher;
+    private final LongSupplier nanoClock;
+
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param tokensPerSecond bucket refill rate
+     * @param capacity max. number of available tokens (burst size)
+     * @param weigher number of tokens consumed by given batch
+     */
+    public TokenBucketBackoffPolicy(long tokensPerSecond, long capacity, ToLongFunction<T> weigher) {
+        this(tokensPerSecond, capacity, weigher, System::nanoTime);
+    }
+
+    TokenBucketBackoffPolicy(long tokensPerSecond, long capacity, ToLongFunction<T> weigher, LongSupplier nanoClock) {
+
+        if (tokensPerSecond <= 0) {
+            throw new IllegalArgumentException("tokensPerSecond must be higher than 0");
+        }
+
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be higher than 0");
+        }
+
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / NANOS_PER_SECOND;
+        this.weigher = weigher;
+        this.nanoClock = nanoClock;
+        this.tokens = capacity;
+        this.lastRefill = nanoClock.getAsLong();
+    }
+
+    /**
+     * @param data not used
+     * @return true, if bucket is empty or in debt, false otherwise
+     */
+    @Override
+    public synchronized boolean shouldApply(T data) {
+        refill();
+        return tokens <= 0;
+    }
+
+    /**
+     * Consumes tokens
+     *
+     * @param data batch to weigh
+     */
+    @Override
+    public synchronized void register(T data) {
+        refill();
+        tokens -= weigher.applyAsLong(data);
+    }
+
+    /**
+     * Consumes tokens only if bucket is not empty or in debt
+     *
+     * @param data batch to weigh
+     * @return true, if tokens were consumed, false otherwise
+     */
+    @Override
+    public synchronized boolean tryRegister(T data) {
+
+        refill();
+
+        if (tokens <= 0) {
+            return false;
+        }
+
+        tokens -= weigher.applyAsLong(data);
+        return true;
+
+    }
+
+    /**
+     * No-op. Tokens are not given back
+     *
+     * @param data not used
+     */
+    @Override
+    public void deregister(T data) {
+        // noop
+    }
+
+    /**
+     * @return number of currently available tokens, negative if bucket is in debt
+     */
+    public synchronized long getAvailableTokens() {
+        refill();
+        return (long) Math.floor(tokens);
+    }
+
+    private void refill() {
+
+        long now = nanoClock.getAsLong();
+        long elapsed = now - lastRefill;
+
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            lastRefill = now;
+        }
+
+    }
+
+}
@@ -0,0 +1,336 @@
+package org.appenders.log4j2.elasticsearch.backoff;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import org.appenders.log4j2.elasticsearch.LifeCycle;
+import org.appenders.log4j2.elasticsearch.OffloadedTask;
+import org.appenders.log4j2.elasticsearch.SharedScheduler;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static org.appenders.core.logging.InternalLogging.getLogger;
+
+/**
+ * Delays the decision of given {@link BackoffPolicy}. If given policy applies, batch passed to
+ * {@link #tryRegister(Object, Consumer, Consumer)} is deferred for up to {@code maxWaitMillis} before it is rejected.
+ * Deferred batches are checked again on every {@link #deregister(Object)} call and every {@code checkIntervalMillis}
+ * (time-based policies).
+ * <p>
+ * Calling thread is never blocked. Deferred batches are registered or rejected on given executor thread. By default,
+ * checks are scheduled with {@link SharedScheduler} and run on {@link SharedScheduler#getWorkers()}, as registered
+ * batches are executed (serialized and sent) by {@code onRegistered} callback.
+ * If {@code onRegistered} callback of deferred batch fails (e.g. client was stopped in the meantime), batch is
+ * deregistered and passed to {@code onRejected} callback.
+ * <p>
+ * On {@link #stop()}, all deferred batches are rejected, so their owner can redirect them to failover before
+ * underlying resources are stopped.
+ *
+ * @param <T> batch type
+ */
+public class WaitThenRejectBackoffPolicy<T> implements BackoffPolicy<T>, LifeCycle {
+
+    private final Queue<Deferred<T>> deferred = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean checkScheduled = new AtomicBoolean();
+
+    private final BackoffPolicy<T> delegate;
+    private final long maxWaitNanos;
+    private final long checkIntervalMillis;
+    private final ScheduledExecutorService scheduler;
+    private final OffloadedTask deferredCheck;
+
+    private volatile State state = State.STOPPED;
+
+    /**
+     * @param delegate actual policy
+     * @param maxWaitMillis max. time to wait for given policy to stop applying
+     * @param checkIntervalMillis max. time between two checks of given policy
+     */
+    public WaitThenRejectBackoffPolicy(BackoffPolicy<T> delegate, long maxWaitMillis, long checkIntervalMillis) {
+        this(delegate, maxWaitMillis, checkIntervalMillis, SharedScheduler.getInstance(), SharedScheduler.getWorkers());
+    }
+
+    /**
+     * @param delegate actual policy
+     * @param maxWaitMillis max. time to wait for given policy to stop applying
+     * @param checkIntervalMillis max. time between two checks of given policy
+     * @param scheduler deferred batches executor
+     */
+    public WaitThenRejectBackoffPolicy(BackoffPolicy<T> delegate, long maxWaitMillis, long checkIntervalMillis, ScheduledExecutorService scheduler) {
+        this(delegate, maxWaitMillis, checkIntervalMillis, scheduler, Runnable::run);
+    }
+
+    /**
+     * @param delegate actual policy
+     * @param maxWaitMillis max. time to wait for given policy to stop applying
+     * @param checkIntervalMillis max. time between two checks of given policy
+     * @param scheduler deferred batches check trigger
+     * @param executor deferred batches executor
+     */
+    public WaitThenRejectBackoffPolicy(
+            BackoffPolicy<T> delegate,
+            long maxWaitMillis,
+            long checkIntervalMillis,
+            ScheduledExecutorService scheduler,
+            Executor executor) {
+
+        if (maxWaitMillis < 0) {
+            throw new IllegalArgumentException("maxWaitMillis must be higher than or equal to 0");
+        }
+
+        if (checkIntervalMillis <= 0) {
+            throw new IllegalArgumentException("checkIntervalMillis must be higher than 0");
+        }
+
+        this.delegate = delegate;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.checkIntervalMillis = checkIntervalMillis;
+        this.scheduler = scheduler;
+        this.deferredCheck = new OffloadedTask(this::checkDeferred, executor);
+    }
+
+    /**
+     * Doesn't wait. Use {@link #tryRegister(Object, Consumer, Consumer)} to defer the decision
+     *
+     * @param data batch
+     * @return true, if given policy applies, false otherwise
+     */
+    @Override
+    public boolean shouldApply(T data) {
+        return delegate.shouldApply(data);
+    }
+
+    @Override
+    public void register(T data) {
+        delegate.register(data);
+    }
+
+    @Override
+    public boolean tryRegister(T data) {
+        return delegate.tryRegister(data);
+    }
+
+    /**
+     * Registers given batch if given policy doesn't apply. Otherwise, given batch is deferred and registered as soon as
+     * given policy stops applying, or rejected if it still applies after {@code maxWaitMillis}.
+     *
+     * @param data batch
+     * @param onRegistered invoked if given batch was registered
+     * @param onRejected invoked if given policy still applies after {@code maxWaitMillis}
+     */
+    @Override
+    public void tryRegister(T data, Consumer<T> onRegistered, Consumer<T> onRejected) {
+
+        // deferred batches go first
+        if (deferred.isEmpty() && delegate.tryRegister(data)) {
+            onRegistered.accept(data);
+            return;
+        }
+
+        if (maxWaitNanos == 0) {
+            onRejected.accept(data);
+            return;
+        }
+
+        deferred.offer(new Deferred<>(data, System.nanoTime() + maxWaitNanos, onRegistered, onRejected));
+        scheduleCheck();
+
+    }
+
+    /**
+     * Deregisters given batch and checks deferred batches
+     *
+     * @param data batch
+     */
+    @Override
+    public void deregister(T data) {
+
+        delegate.deregister(data);
+
+        if (!deferred.isEmpty()) {
+            submit(deferredCheck, 0);
+        }
+
+    }
+
+    private void scheduleCheck() {
+        if (checkScheduled.compareAndSet(false, true)) {
+            submit(() -> {
+                checkScheduled.set(false);
+                deferredCheck.run();
+            }, checkIntervalMillis);
+        }
+    }
+
+    private void submit(Runnable task, long delayMillis) {
+        try {
+            scheduler.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            getLogger().warn("{}: Scheduler rejected the check. Deferred batches will be rejected",
+                    WaitThenRejectBackoffPolicy.class.getSimpleName());
+            rejectAll();
+        }
+    }
+
+    /**
+     * Registers deferred batches in order until given policy applies and rejects expired ones
+     */
+    synchronized void checkDeferred() {
+
+        long now = System.nanoTime();
+        boolean applies = false;
+
+        Iterator<Deferred<T>> it = deferred.iterator();
+        while (it.hasNext()) {
+
+            Deferred<T> next = it.next();
+
+            if (!applies && delegate.tryRegister(next.data)) {
+                it.remove();
+                registered(next);
+                continue;
+            }
+            applies = true;
+
+            if (now - next.deadline >= 0) {
+                it.remove();
+                next.reject();
+            }
+
+        }
+
+        if (!deferred.isEmpty()) {
+            scheduleCheck();
+        }
+
+    }
+
+    private void registered(Deferred<T> next) {
+        try {
+            next.onRegistered.accept(next.data);
+        } catch (RuntimeException e) {
+            getLogger().error("{}: Deferred batch could not be processed: {}. Batch will be rejected",
+                    WaitThenRejectBackoffPolicy.class.getSimpleName(),
+                    e.getMessage());
+            delegate.deregister(next.data);
+            next.reject();
+        }
+    }
+
+    private synchronized void rejectAll() {
+        Deferred<T> next;
+        while ((next = deferred.poll()) != null) {
+            next.reject();
+        }
+    }
+
+    // ==========
+    // LIFECYCLE
+    // ==========
+
+    @Override
+    public void start() {
+
+        LifeCycle delegateLifeCycle = LifeCycle.of(delegate);
+        if (!delegateLifeCycle.isStarted()) {
+            delegateLifeCycle.start();
+        }
+
+        state = State.STARTED;
+
+    }
+
+    /**
+     * Rejects all deferred batches
+     */
+    @Override
+    public void stop() {
+
+        if (isStopped()) {
+            return;
+        }
+
+        getLogger().debug("Stopping {}. Rejecting {} deferred batches",
+                WaitThenRejectBackoffPolicy.class.getSimpleName(),
+                deferred.size());
+
+        rejectAll();
+
+        LifeCycle delegateLifeCycle = LifeCycle.of(delegate);
+        if (!delegateLifeCycle.isStopped()) {
+            delegateLifeCycle.stop();
+        }
+
+        state = State.STOPPED;
+
+    }
+
+    @Override
+    public boolean isStarted() {
+        return state == State.STARTED;
+    }
+
+    @Override
+    public boolean isStopped() {
+        return state == State.STOPPED;
+    }
+
+    /* visible for testing */
+    int getDeferredCount() {
+        return deferred.size();
+    }
+
+    private static class Deferred<T> {
+
+        private final T data;
+        private final long deadline;
+        private final Consumer<T> onRegistered;
+        private final Consumer<T> onRejected;
+
+        Deferred(T data, long deadline, Consumer<T> onRegistered, Consumer<T> onRejected) {
+            this.data = data;
+            this.deadline = deadline;
+            this.onRegistered = onRegistered;
+            this.onRejected = onRejected;
+        }
+
+        void reject() {
+            try {
+                onRejected.accept(data);
+            } catch (RuntimeException e) {
+                getLogger().error("{}: Deferred batch rejection failed: {}",
+                        WaitThenRejectBackoffPolicy.class.getSimpleName(),
+                        e.getMessage());
+            }
+        }
+
+    }
+
+}
@@ -33,6 +33,8 @@ import org.appenders.log4j2.elasticsearch.DelayedShutdown;
 import org.appenders.log4j2.elasticsearch.FailoverPolicy;
 import org.appenders.log4j2.elasticsearch.ItemSource;
 import org.appenders.log4j2.elasticsearch.LifeCycle;
+import org.appenders.log4j2.elasticsearch.OffloadedTask;
+import org.appenders.log4j2.elasticsearch.SharedScheduler;
 
 import java.io.File;
 import java.io.IOException;
@@ -42,9 +44,8 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
@@ -53,7 +54,8 @@ import static org.appenders.core.logging.InternalLogging.getLogger;
 
 /**
  * Uses Chronicle-Map (https://github.com/OpenHFT/Chronicle-Map) to store failed items.
- * Uses {@link RetryProcessor} to retry failed items.
+ * Uses {@link RetryProcessor} to retry failed items. Since 1.5, retries are triggered by {@link SharedScheduler} and run on
+ * {@link SharedScheduler#getWorkers()}.
  */
 @Plugin(name = ChronicleMapRetryFailoverPolicy.PLUGIN_NAME, category = Node.CATEGORY, elementType = FailoverPolicy.ELEMENT_TYPE, printObject = true)
 public class ChronicleMapRetryFailoverPolicy implements FailoverPolicy<FailedItemSource>, LifeCycle {
@@ -68,7 +70,7 @@ public class ChronicleMapRetryFailoverPolicy implements FailoverPolicy<FailedIte
 
     private DelayedShutdown shutdown;
 
-    Collection<ScheduledExecutorService> executors = new ConcurrentLinkedQueue<>();
+    Collection<ScheduledFuture<?>> scheduledTasks = new ConcurrentLinkedQueue<>();
 
     /**
      * Number of exceptions occurred during failed item processing.
@@ -164,18 +166,16 @@ public class ChronicleMapRetryFailoverPolicy implements FailoverPolicy<FailedIte
         return new MetricsPrinter();
     }
 
+    /**
+     * @param threadName not used since 1.5
+     * @return {@link SharedScheduler#getInstance()}
+     */
     ScheduledExecutorService createExecutor(String threadName) {
-
-        ScheduledExecutorService executor =
-                Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, threadName));
-
-        executors.add(executor);
-
-        return executor;
+        return SharedScheduler.getInstance();
     }
 
     DelayedShutdown delayedShutdown() {
-        return new DelayedShutdown(() -> executors.forEach(ExecutorService::shutdown))
+        return new DelayedShutdown(() -> scheduledTasks.forEach(scheduledTask -> scheduledTask.cancel(false)))
                 .onDecrement(remaining -> getLogger().warn("{} ms before proceeding", remaining))
                 .afterDelay(() -> {
 
@@ -194,13 +194,17 @@ public class ChronicleMapRetryFailoverPolicy implements FailoverPolicy<FailedIte
     }
 
     private void schedule(ScheduledExecutorService executor, Runnable runnable, long interval) {
-        executor.scheduleAtFixedRate(
+        ScheduledFuture<?> scheduledTask = executor.scheduleAtFixedRate(
                 runnable,
                 0,
                 interval,
                 TimeUnit.MILLISECONDS
         );
 
+        if (scheduledTask != null) {
+            scheduledTasks.add(scheduledTask);
+        }
+
     }
 
     private void validateSetup() {
@@ -468,7 +472,8 @@ public class ChronicleMapRetryFailoverPolicy implements FailoverPolicy<FailedIte
 
             this.shutdown = delayedShutdown();
 
-            schedule(createExecutor("Retry-main"), createRetryProcessor(), retryDelay);
+            // retries re-add and deliver failed items, so they MUST NOT run on the scheduler thread
+            schedule(createExecutor("Retry-main"), new OffloadedTask(createRetryProcessor()), retryDelay);
 
             if (monitored) {
                 schedule(createExecutor("Retry-metrics"), createMetricPrinter(), monitorTaskInterval);
@@ -38,10 +38,19 @@ import static org.appenders.core.logging.InternalLogging.getLogger;
 
 /**
  * {@link BatchEmitterFactory} SPI loader.
+ * <p>
+ * Since 1.5, {@link BatchEmitterFactory} can be selected explicitly with {@link #BATCH_EMITTER_FACTORY_PROPERTY}
+ * system property. Selected factory does not have to be registered as a {@code java.util.ServiceLoader} service.
  */
 public class BatchEmitterServiceProvider {
 
+    /**
+     * Fully qualified class name of {@link BatchEmitterFactory} to use instead of {@code java.util.ServiceLoader} lookup
+     */
+    public static final String BATCH_EMITTER_FACTORY_PROPERTY = "appenders.BatchEmitterFactory.className";
+
     private final Collection<Iterable<BatchEmitterFactory>> serviceLoaders;
+    private final String selectedFactoryClassName;
 
     public BatchEmitterServiceProvider() {
         this(Arrays.asList(serviceLoader(Thread.currentThread().getContextClassLoader()),
@@ -49,11 +58,16 @@ public class BatchEmitterServiceProvider {
     }
 
     BatchEmitterServiceProvider(Collection<Iterable<BatchEmitterFactory>> serviceLoaders) {
+        this(serviceLoaders, System.getProperty(BATCH_EMITTER_FACTORY_PROPERTY));
+    }
+
+    BatchEmitterServiceProvider(Collection<Iterable<BatchEmitterFactory>> serviceLoaders, String selectedFactoryClassName) {
         this.serviceLoaders = Collections.unmodifiableList(
                 serviceLoaders.stream()
                         .filter(Objects::nonNull)
                         .collect(Collectors.toList())
         );
+        this.selectedFactoryClassName = selectedFactoryClassName;
     }
 
     /**
@@ -71,16 +85,53 @@ public class BatchEmitterServiceProvider {
      * @param clientObjectFactory client-specific objects provider
      * @param failoverPolicy      sink for failed batch items
      * @return T configured {@link BatchEmitter}
+     * @throws ConfigurationException if no compatible {@link BatchEmitterFactory} was found or selected one is not
+     * compatible with given {@link ClientObjectFactory}
      */
     public BatchEmitter createInstance(int batchSize,
                                        int deliveryInterval,
                                        ClientObjectFactory clientObjectFactory,
                                        FailoverPolicy failoverPolicy) {
+        return createInstance(batchSize, Long.MAX_VALUE, deliveryInterval, clientObjectFactory, failoverPolicy);
+    }
+
+    /**
+     * Creates instance of {@link BatchEmitter} which triggers the delivery when number of items or their total size
+     * reached given thresholds. See {@link #createInstance(int, int, ClientObjectFactory, FailoverPolicy)}
+     *
+     * @param batchSize           number of elements in a current batch that should trigger a delivery, regardless of
+     *                            the delivery interval value
+     * @param batchSizeInBytes    total size of elements in a current batch that should trigger a delivery, regardless
+     *                            of the delivery interval value
+     * @param deliveryInterval    number of millis between two time-triggered deliveries, regardless of the batch size
+     *                            value
+     * @param clientObjectFactory client-specific objects provider
+     * @param failoverPolicy      sink for failed batch items
+     * @return T configured {@link BatchEmitter}
+     * @throws ConfigurationException if no compatible {@link BatchEmitterFactory} was found or selected one is not
+     * compatible with given {@link ClientObjectFactory}
+     */
+    public BatchEmitter createInstance(int batchSize,
+                                       long batchSizeInBytes,
+                                       int deliveryInterval,
+                                       ClientObjectFactory clientObjectFactory,
+                                       FailoverPolicy failoverPolicy) {
+
+        if (selectedFactoryClassName != null) {
+            return createInstance(
+                    batchSize,
+                    batchSizeInBytes,
+                    deliveryInterval,
+                    clientObjectFactory,
+                    failoverPolicy,
+                    loadSelectedFactory());
+        }
 
         for (Iterable<BatchEmitterFactory> serviceLoader : serviceLoaders) {
 
             BatchEmitter batchEmitter = createInstance(
                     batchSize,
+                    batchSizeInBytes,
                     deliveryInterval,
                     clientObjectFactory,
                     failoverPolicy,
@@ -97,6 +148,7 @@ public class BatchEmitterServiceProvider {
     }
 
     private BatchEmitter createInstance(int batchSize,
+                                        long batchSizeInBytes,
                                         int deliveryInterval,
                                         ClientObjectFactory clientObjectFactory,
                                         FailoverPolicy failoverPolicy,
@@ -106,13 +158,81 @@ public class BatchEmitterServiceProvider {
             getLogger().info("{} class found {}", BatchEmitterFactory.class.getSimpleName(), factory.getClass().getName());
             if (factory.accepts(clientObjectFactory.getClass())) {
                 getLogger().info("Using {} as {}", factory.getClass().getName(), getClass().getSimpleName());
-                return factory.createInstance(batchSize, deliveryInterval, clientObjectFactory, failoverPolicy);
+                return createInstance(factory, batchSize, batchSizeInBytes, deliveryInterval, clientObjectFactory, failoverPolicy);
             }
         }
 
         return null;
     }
 
+    private BatchEmitter createInstance(int batchSize,
+                                        long batchSizeInBytes,
+                                        int deliveryInterval,
+                                        ClientObjectFactory clientObjectFactory,
+                                        FailoverPolicy failoverPolicy,
+                                        BatchEmitterFactory factory) {
+
+        if (!factory.accepts(clientObjectFactory.getClass())) {
+            throw new ConfigurationException(String.format(
+                    "Selected %s is not compatible with %s",
+                    factory.getClass().getName(),
+                    clientObjectFactory.getClass().getName()));
+        }
+
+        getLogger().info("Using {} as {}", factory.getClass().getName(), getClass().getSimpleName());
+        return createInstance(factory, batchSize, batchSizeInBytes, deliveryInterval, clientObjectFactory, failoverPolicy);
+
+    }
+
+    private BatchEmitter createInstance(BatchEmitterFactory factory,
+                                        int batchSize,
+                                        long batchSizeInBytes,
+                                        int deliveryInterval,
+                                        ClientObjectFactory clientObjectFactory,
+                                        FailoverPolicy failoverPolicy) {
+
+        // preserve pre-1.5 path for factories that don't support size in bytes
+        if (batchSizeInBytes == Long.MAX_VALUE) {
+            return factory.createInstance(batchSize, deliveryInterval, clientObjectFactory, failoverPolicy);
+        }
+
+        return factory.createInstance(batchSize, batchSizeInBytes, deliveryInterval, clientObjectFactory, failoverPolicy);
+
+    }
+
+    private BatchEmitterFactory loadSelectedFactory() {
+
+        ClassLoader[] classLoaders = new ClassLoader[] {
+                Thread.currentThread().getContextClassLoader(),
+                BatchEmitterServiceProvider.class.getClassLoader()
+        };
+
+        for (ClassLoader classLoader : classLoaders) {
+
+            if (classLoader == null) {
+                continue;
+            }
+
+            try {
+                Class<?> factoryClass = Class.forName(selectedFactoryClassName, true, classLoader);
+                return (BatchEmitterFactory) factoryClass.getDeclaredConstructor().newInstance();
+            } catch (ClassNotFoundException e) {
+                // try next one
+            } catch (Exception e) {
+                throw new ConfigurationException(String.format(
+                        "Unable to create %s: %s",
+                        selectedFactoryClassName,
+                        e.getMessage()), e);
+            }
+
+        }
+
+        throw new ConfigurationException(String.format(
+                "%s not found: %s",
+                BatchEmitterFactory.class.getSimpleName(),
+                selectedFactoryClassName));
+    }
+
     private static Iterable<BatchEmitterFactory> serviceLoader(ClassLoader classLoader) {
         return ServiceLoader.load(BatchEmitterFactory.class, classLoader);
     }
@@ -0,0 +1,145 @@
+package org.apache.logging.log4j.core.jackson;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FormattedMessageSerializerTest {
+
+    @Test
+    public void serializerFormatsStringBuilderFormattableMessagesWithoutFormattedMessage() throws IOException {
+
+        // given
+        JsonSerializer<Message> serializer = new FormattedMessageSerializer();
+
+        String param = UUID.randomUUID().toString();
+        Message message = spy(new ParameterizedMessage("test {}", param));
+
+        JsonGenerator jsonGenerator = mock(JsonGenerator.class);
+
+        // when
+        serializer.serialize(message, jsonGenerator, mock(SerializerProvider.class));
+
+        // then
+        verify(message, never()).getFormattedMessage();
+        verify(jsonGenerator, never()).writeString(anyString());
+        verify(jsonGenerator).writeString(any(char[].class), eq(0), eq(("test " + param).length()));
+
+    }
+
+    @Test
+    public void serializerUsesFormattedMessageIfMessageIsNotStringBuilderFormattable() throws IOException {
+
+        // given
+        JsonSerializer<Message> serializer = new FormattedMessageSerializer();
+
+        Message message = mock(Message.class);
+
+        String expectedValue = UUID.randomUUID().toString();
+        when(message.getFormattedMessage()).thenReturn(expectedValue);
+
+        JsonGenerator jsonGenerator = mock(JsonGenerator.class);
+
+        // when
+        serializer.serialize(message, jsonGenerator, mock(SerializerProvider.class));
+
+        // then
+        verify(jsonGenerator).writeString(eq(expectedValue));
+
+    }
+
+    @Test
+    public void serializerEscapesFormattedMessage() throws IOException {
+
+        // given
+        JsonSerializer<Message> serializer = new FormattedMessageSerializer();
+
+        Message message = new ParameterizedMessage("\"{}\"\n", "\u0105");
+
+        StringWriter writer = new StringWriter();
+        JsonGenerator jsonGenerator = new JsonFactory().createGenerator(writer);
+
+        // when
+        serializer.serialize(message, jsonGenerator, mock(SerializerProvider.class));
+        jsonGenerator.flush();
+
+        // then
+        assertEquals("\"\\\"\u0105\\\"\\n\"", writer.toString());
+
+    }
+
+    @Test
+    public void serializerFallsBackToFormattedMessageOnReentrantSerialization() throws IOException {
+
+        // given
+        JsonSerializer<Message> serializer = new FormattedMessageSerializer();
+
+        String expectedValue = UUID.randomUUID().toString();
+        Message nested = spy(new ParameterizedMessage("nested {}", expectedValue));
+
+        StringWriter nestedWriter = new StringWriter();
+        JsonGenerator nestedGenerator = new JsonFactory().createGenerator(nestedWriter);
+
+        // e.g. formatTo() logging to another appender on the same thread
+        Message message = new ReentrantMessage(() -> {
+            try {
+                serializer.serialize(nested, nestedGenerator, mock(SerializerProvider.class));
+                nestedGenerator.flush();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        StringWriter writer = new StringWriter();
+        JsonGenerator jsonGenerator = new JsonFactory().createGenerator(writer);
+
+        // when
+        serializer.serialize(message, jsonGenerator, mock(SerializerProvider.class));
+        jsonGenerator.flush();
+
+        // then
+        verify(nested).getFormattedMessage();
+        assertEquals("\"nested " + expectedValue + "\"", nestedWriter.toString());
+        assertEquals("\"outer\"", writer.toString());
+
+    }
+
+}
@@ -24,13 +24,19 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.message.SimpleMessage;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.util.UUID;
 
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -73,4 +79,75 @@ public class JacksonJsonMessageSerializerTest {
 
     }
 
+    @Test
+    public void serializerWritesRawFormattedCharsOfStringBuilderFormattableMessages() throws IOException {
+
+        // given
+        JsonSerializer<Message> serializer = new JacksonJsonMessageSerializer();
+
+        String expectedValue = UUID.randomUUID().toString();
+        Message message = spy(new SimpleMessage(expectedValue));
+
+        JsonGenerator jsonGenerator = mock(JsonGenerator.class);
+
+        // when
+        serializer.serialize(message, jsonGenerator, mock(SerializerProvider.class));
+
+        // then
+        verify(message, never()).getFormattedMessage();
+        verify(jsonGenerator).writeRaw(any(char[].class), eq(0), eq(expectedValue.length()));
+
+    }
+
+    @Test
+    public void serializerFallsBackToFormattedMessageOnReentrantSerialization() throws IOException {
+
+        // given
+        JsonSerializer<Message> serializer = new JacksonJsonMessageSerializer();
+        JsonGenerator jsonGenerator = mock(JsonGenerator.class);
+
+        String expectedValue = UUID.randomUUID().toString();
+        Message nested = spy(new SimpleMessage(expectedValue));
+
+        Message message = new ReentrantMessage(() -> {
+            try {
+                serializer.serialize(nested, jsonGenerator, mock(SerializerProvider.class));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        // when
+        serializer.serialize(message, jsonGenerator, mock(SerializerProvider.class));
+
+        // then
+        verify(nested).getFormattedMessage();
+        verify(jsonGenerator).writeRaw(eq(expectedValue));
+
+    }
+
+    @Test
+    public void serializerReleasesBufferOnWriteFailure() throws IOException {
+
+        // given
+        JsonSerializer<Message> serializer = new JacksonJsonMessageSerializer();
+
+        JsonGenerator jsonGenerator = mock(JsonGenerator.class);
+        doThrow(new IOException("test")).when(jsonGenerator).writeRaw(any(char[].class), eq(0), eq(4));
+
+        try {
+            serializer.serialize(new SimpleMessage("test"), jsonGenerator, mock(SerializerProvider.class));
+        } catch (IOException e) {
+            // expected
+        }
+
+        // when
+        MessageFormatBuffer buffer = MessageFormatBuffer.acquire();
+
+        // then
+        assertNotNull(buffer);
+        buffer.release();
+
+    }
+
 }
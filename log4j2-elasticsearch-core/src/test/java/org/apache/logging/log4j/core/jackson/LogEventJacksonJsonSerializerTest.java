@@ -0,0 +1,133 @@
+package org.apache.logging.log4j.core.jackson;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.appenders.log4j2.elasticsearch.VirtualPropertiesWriter;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LogEventJacksonJsonSerializerTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void writesFieldsInBeanSerializerOrder() throws IOException {
+
+        // given
+        VirtualPropertiesWriter virtualPropertiesWriter = mock(VirtualPropertiesWriter.class);
+        LogEventJacksonJsonSerializer serializer = new LogEventJacksonJsonSerializer(virtualPropertiesWriter);
+
+        Marker marker = MarkerManager.getMarker(UUID.randomUUID().toString());
+        String loggerName = UUID.randomUUID().toString();
+        String threadName = UUID.randomUUID().toString();
+        String message = UUID.randomUUID().toString();
+
+        LogEvent logEvent = Log4jLogEvent.newBuilder()
+                .setTimeMillis(1L)
+                .setLoggerName(loggerName)
+                .setLevel(Level.INFO)
+                .setMarker(marker)
+                .setMessage(new SimpleMessage(message))
+                .setThrown(new IllegalStateException())
+                .setThreadName(threadName)
+                .build();
+
+        JsonGenerator gen = mock(JsonGenerator.class);
+        SerializerProvider provider = mock(SerializerProvider.class);
+        JsonSerializer<Object> delegate = mock(JsonSerializer.class);
+        when(provider.findTypedValueSerializer(any(Class.class), anyBoolean(), any())).thenReturn(delegate);
+
+        // when
+        serializer.serialize(logEvent, gen, provider);
+
+        // then
+        InOrder inOrder = inOrder(gen, delegate, virtualPropertiesWriter);
+        inOrder.verify(gen).writeStartObject();
+        inOrder.verify(gen).writeFieldName(eq(LogEventJacksonJsonSerializer.TIME_MILLIS));
+        inOrder.verify(gen).writeNumber(eq(1L));
+        inOrder.verify(gen).writeFieldName(eq(LogEventJacksonJsonSerializer.LOGGER_NAME));
+        inOrder.verify(gen).writeString(eq(loggerName));
+        inOrder.verify(gen).writeFieldName(eq(LogEventJacksonJsonSerializer.LEVEL));
+        inOrder.verify(gen).writeString(eq(Level.INFO.name()));
+        inOrder.verify(gen).writeFieldName(eq(LogEventJacksonJsonSerializer.MARKER));
+        inOrder.verify(delegate).serialize(eq(marker), eq(gen), eq(provider));
+        inOrder.verify(gen).writeFieldName(eq(LogEventJacksonJsonSerializer.MESSAGE));
+        inOrder.verify(gen).writeString(any(char[].class), eq(0), eq(message.length()));
+        inOrder.verify(gen).writeFieldName(eq(LogEventJacksonJsonSerializer.THROWN));
+        inOrder.verify(delegate).serialize(eq(logEvent.getThrownProxy()), eq(gen), eq(provider));
+        inOrder.verify(gen).writeFieldName(eq(LogEventJacksonJsonSerializer.THREAD));
+        inOrder.verify(gen).writeString(eq(threadName));
+        inOrder.verify(virtualPropertiesWriter).serializeAsField(eq(logEvent), eq(gen), eq(provider));
+        inOrder.verify(gen).writeEndObject();
+
+    }
+
+    @Test
+    public void doesNotWriteNullAndEmptyFields() throws IOException {
+
+        // given
+        LogEventJacksonJsonSerializer serializer = new LogEventJacksonJsonSerializer(mock(VirtualPropertiesWriter.class));
+
+        LogEvent logEvent = mock(LogEvent.class);
+        when(logEvent.getLoggerName()).thenReturn("");
+        when(logEvent.getThreadName()).thenReturn("");
+
+        JsonGenerator gen = mock(JsonGenerator.class);
+        SerializerProvider provider = mock(SerializerProvider.class);
+
+        // when
+        serializer.serialize(logEvent, gen, provider);
+
+        // then
+        verify(gen).writeFieldName(eq(LogEventJacksonJsonSerializer.TIME_MILLIS));
+        verify(gen, never()).writeFieldName(eq(LogEventJacksonJsonSerializer.LOGGER_NAME));
+        verify(gen, never()).writeFieldName(eq(LogEventJacksonJsonSerializer.LEVEL));
+        verify(gen, never()).writeFieldName(eq(LogEventJacksonJsonSerializer.MARKER));
+        verify(gen, never()).writeFieldName(eq(LogEventJacksonJsonSerializer.MESSAGE));
+        verify(gen, never()).writeFieldName(eq(LogEventJacksonJsonSerializer.THROWN));
+        verify(gen, never()).writeFieldName(eq(LogEventJacksonJsonSerializer.THREAD));
+        verify(gen, never()).writeString(anyString());
+        verify(provider, never()).findTypedValueSerializer(any(Class.class), anyBoolean(), any());
+
+    }
+
+}
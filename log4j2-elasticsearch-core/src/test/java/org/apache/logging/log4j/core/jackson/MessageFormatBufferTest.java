@@ -0,0 +1,144 @@
+package org.apache.logging.log4j.core.jackson;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.logging.log4j.core.util.Constants;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MessageFormatBufferTest {
+
+    @Test
+    public void bufferIsBoundToThread() throws InterruptedException {
+
+        // given
+        MessageFormatBuffer buffer = MessageFormatBuffer.acquire();
+        MessageFormatBuffer[] otherThreadBuffer = new MessageFormatBuffer[1];
+
+        Thread thread = new Thread(() -> {
+            otherThreadBuffer[0] = MessageFormatBuffer.acquire();
+            otherThreadBuffer[0].release();
+        });
+
+        // when
+        thread.start();
+        thread.join();
+
+        // then
+        assertNotNull(otherThreadBuffer[0]);
+        assertTrue(buffer != otherThreadBuffer[0]);
+        buffer.release();
+
+    }
+
+    @Test
+    public void formatReplacesPreviousContent() {
+
+        // given
+        MessageFormatBuffer buffer = new MessageFormatBuffer();
+        buffer.format(new SimpleMessage("longer message"));
+
+        // when
+        buffer.format(new SimpleMessage("short"));
+
+        // then
+        assertEquals(5, buffer.length());
+        assertEquals("short", new String(buffer.getChars(), 0, buffer.length()));
+
+    }
+
+    @Test
+    public void formatGrowsBufferIfNeeded() {
+
+        // given
+        MessageFormatBuffer buffer = new MessageFormatBuffer();
+
+        char[] chars = new char[Constants.INITIAL_REUSABLE_MESSAGE_SIZE * 2];
+        Arrays.fill(chars, 'a');
+        String expected = new String(chars);
+
+        // when
+        buffer.format(new SimpleMessage(expected));
+
+        // then
+        assertEquals(expected, new String(buffer.getChars(), 0, buffer.length()));
+
+    }
+
+    @Test
+    public void trimReleasesBuffersGrownBeyondMaxReusableSize() {
+
+        // given
+        MessageFormatBuffer buffer = new MessageFormatBuffer();
+
+        char[] chars = new char[Constants.MAX_REUSABLE_MESSAGE_SIZE + 1];
+        Arrays.fill(chars, 'a');
+        buffer.format(new SimpleMessage(new String(chars)));
+
+        // when
+        buffer.trim();
+
+        // then
+        assertEquals(Constants.INITIAL_REUSABLE_MESSAGE_SIZE, buffer.getChars().length);
+
+    }
+
+    @Test
+    public void acquireReturnsNullIfBufferIsAlreadyInUse() {
+
+        // given
+        MessageFormatBuffer buffer = MessageFormatBuffer.acquire();
+
+        // when
+        MessageFormatBuffer nested = MessageFormatBuffer.acquire();
+
+        // then
+        assertNotNull(buffer);
+        assertNull(nested);
+        buffer.release();
+
+    }
+
+    @Test
+    public void releaseMakesBufferAvailableAgain() {
+
+        // given
+        MessageFormatBuffer buffer = MessageFormatBuffer.acquire();
+
+        // when
+        buffer.release();
+
+        // then
+        MessageFormatBuffer reacquired = MessageFormatBuffer.acquire();
+        assertSame(buffer, reacquired);
+        reacquired.release();
+
+    }
+
+}
@@ -0,0 +1,63 @@
+package org.apache.logging.log4j.core.jackson;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.util.StringBuilderFormattable;
+
+/**
+ * Runs given action inside {@link #formatTo(StringBuilder)}, e.g. to simulate logging while formatting
+ */
+class ReentrantMessage implements Message, StringBuilderFormattable {
+
+    private final Runnable onFormat;
+
+    ReentrantMessage(Runnable onFormat) {
+        this.onFormat = onFormat;
+    }
+
+    @Override
+    public void formatTo(StringBuilder buffer) {
+        onFormat.run();
+        buffer.append("outer");
+    }
+
+    @Override
+    public String getFormattedMessage() {
+        return "outer";
+    }
+
+    @Override
+    public String getFormat() {
+        return "outer";
+    }
+
+    @Override
+    public Object[] getParameters() {
+        return new Object[0];
+    }
+
+    @Override
+    public Throwable getThrowable() {
+        return null;
+    }
+
+}
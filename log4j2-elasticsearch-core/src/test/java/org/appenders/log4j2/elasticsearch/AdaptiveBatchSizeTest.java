@@ -0,0 +1,238 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import org.apache.logging.log4j.core.config.ConfigurationException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdaptiveBatchSizeTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    public static AdaptiveBatchSize.Builder createDefaultTestAdaptiveBatchSizeBuilder() {
+        return AdaptiveBatchSize.newBuilder()
+                .withMinBatchSize(10)
+                .withMaxBatchSize(100)
+                .withBatchSizeIncrement(10)
+                .withDecreaseFactor(0.5)
+                .withTargetLatencyMillis(100)
+                .withMaxDeliveryInterval(1000);
+    }
+
+    @Test
+    public void builderThrowsIfMinBatchSizeIsNotPositive() {
+
+        // given
+        AdaptiveBatchSize.Builder builder = createDefaultTestAdaptiveBatchSizeBuilder()
+                .withMinBatchSize(0);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("minBatchSize must be higher than 0");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderThrowsIfMaxBatchSizeIsLowerThanMinBatchSize() {
+
+        // given
+        AdaptiveBatchSize.Builder builder = createDefaultTestAdaptiveBatchSizeBuilder()
+                .withMaxBatchSize(9);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("maxBatchSize cannot be lower than minBatchSize");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderThrowsIfDecreaseFactorIsOutOfRange() {
+
+        // given
+        AdaptiveBatchSize.Builder builder = createDefaultTestAdaptiveBatchSizeBuilder()
+                .withDecreaseFactor(1);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("decreaseFactor must be between 0 and 1");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void resetAdjustsBatchSizeToConfiguredBounds() {
+
+        // given
+        AdaptiveBatchSize adaptiveBatchSize = createDefaultTestAdaptiveBatchSizeBuilder().build();
+
+        // when
+        adaptiveBatchSize.reset(1000, 100);
+
+        // then
+        assertEquals(100, adaptiveBatchSize.getBatchSize());
+        assertEquals(100, adaptiveBatchSize.getDeliveryInterval());
+
+        // when
+        adaptiveBatchSize.reset(1, 100);
+
+        // then
+        assertEquals(10, adaptiveBatchSize.getBatchSize());
+
+    }
+
+    @Test
+    public void copyHasSameConfigurationAndIndependentState() {
+
+        // given
+        AdaptiveBatchSize adaptiveBatchSize = createDefaultTestAdaptiveBatchSizeBuilder().build();
+        adaptiveBatchSize.reset(80, 100);
+
+        AdaptiveBatchSize copy = adaptiveBatchSize.copy();
+        copy.reset(80, 100);
+
+        // when
+        copy.onRejection();
+
+        // then
+        assertEquals(40, copy.getBatchSize());
+        assertEquals(200, copy.getDeliveryInterval());
+        assertEquals(80, adaptiveBatchSize.getBatchSize());
+        assertEquals(100, adaptiveBatchSize.getDeliveryInterval());
+
+        // when
+        copy.reset(1, 100);
+
+        // then
+        assertEquals(10, copy.getBatchSize());
+
+    }
+
+    @Test
+    public void batchSizeGrowsAdditivelyUpToMaxBatchSizeIfWithinTargetLatency() {
+
+        // given
+        AdaptiveBatchSize adaptiveBatchSize = createDefaultTestAdaptiveBatchSizeBuilder().build();
+        adaptiveBatchSize.reset(85, 100);
+
+        // when
+        adaptiveBatchSize.onSuccess(50, 100);
+
+        // then
+        assertEquals(95, adaptiveBatchSize.getBatchSize());
+
+        // when
+        adaptiveBatchSize.onSuccess(50, 100);
+
+        // then
+        assertEquals(100, adaptiveBatchSize.getBatchSize());
+        assertEquals(100, adaptiveBatchSize.getDeliveryInterval());
+
+    }
+
+    @Test
+    public void batchSizeShrinksMultiplicativelyIfServiceTimeExceedsTargetLatency() {
+
+        // given
+        AdaptiveBatchSize adaptiveBatchSize = createDefaultTestAdaptiveBatchSizeBuilder().build();
+        adaptiveBatchSize.reset(80, 100);
+
+        // when
+        adaptiveBatchSize.onSuccess(101, 0);
+
+        // then
+        assertEquals(40, adaptiveBatchSize.getBatchSize());
+        assertEquals(200, adaptiveBatchSize.getDeliveryInterval());
+
+    }
+
+    @Test
+    public void batchSizeShrinksMultiplicativelyIfLatencyExceedsTargetLatency() {
+
+        // given
+        AdaptiveBatchSize adaptiveBatchSize = createDefaultTestAdaptiveBatchSizeBuilder().build();
+        adaptiveBatchSize.reset(80, 100);
+
+        // when
+        adaptiveBatchSize.onSuccess(0, 101);
+
+        // then
+        assertEquals(40, adaptiveBatchSize.getBatchSize());
+        assertEquals(200, adaptiveBatchSize.getDeliveryInterval());
+
+    }
+
+    @Test
+    public void rejectionsShrinkBatchSizeAndExtendDeliveryIntervalWithinBounds() {
+
+        // given
+        AdaptiveBatchSize adaptiveBatchSize = createDefaultTestAdaptiveBatchSizeBuilder().build();
+        adaptiveBatchSize.reset(100, 100);
+
+        // when
+        for (int ii = 0; ii < 10; ii++) {
+            adaptiveBatchSize.onRejection();
+        }
+
+        // then
+        assertEquals(10, adaptiveBatchSize.getBatchSize());
+        assertEquals(1000, adaptiveBatchSize.getDeliveryInterval());
+
+    }
+
+    @Test
+    public void deliveryIntervalShrinksBackToInitialValueIfWithinTargetLatency() {
+
+        // given
+        AdaptiveBatchSize adaptiveBatchSize = createDefaultTestAdaptiveBatchSizeBuilder().build();
+        adaptiveBatchSize.reset(100, 100);
+        adaptiveBatchSize.onRejection();
+        adaptiveBatchSize.onRejection();
+
+        assertEquals(400, adaptiveBatchSize.getDeliveryInterval());
+
+        // when
+        adaptiveBatchSize.onSuccess(0, 0);
+
+        // then
+        assertEquals(200, adaptiveBatchSize.getDeliveryInterval());
+
+        // when
+        adaptiveBatchSize.onSuccess(0, 0);
+        adaptiveBatchSize.onSuccess(0, 0);
+
+        // then
+        assertEquals(100, adaptiveBatchSize.getDeliveryInterval());
+
+    }
+
+}
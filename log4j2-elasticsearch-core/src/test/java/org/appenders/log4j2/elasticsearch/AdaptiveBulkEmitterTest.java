@@ -0,0 +1,126 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import org.appenders.log4j2.elasticsearch.BulkEmitterTest.TestBatch;
+import org.appenders.log4j2.elasticsearch.BulkEmitterTest.TestBatchOperations;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.function.Function;
+
+import static org.appenders.log4j2.elasticsearch.AdaptiveBatchSizeTest.createDefaultTestAdaptiveBatchSizeBuilder;
+import static org.appenders.log4j2.elasticsearch.BulkEmitterTest.LARGE_TEST_INTERVAL;
+import static org.appenders.log4j2.elasticsearch.BulkEmitterTest.TEST_DATA;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class AdaptiveBulkEmitterTest {
+
+    @Test
+    public void notifiesOnCurrentBatchSize() {
+
+        // given
+        AdaptiveBatchSize adaptiveBatchSize = createDefaultTestAdaptiveBatchSizeBuilder().build();
+        AdaptiveBulkEmitter<TestBatch> emitter = new AdaptiveBulkEmitter<>(20, Long.MAX_VALUE, LARGE_TEST_INTERVAL, new TestBatchOperations(), adaptiveBatchSize);
+        Function<TestBatch, Boolean> listener = dummyObserver();
+        emitter.addListener(listener);
+
+        adaptiveBatchSize.onSuccess(0, 0);
+
+        // when
+        for (int ii = 0; ii < 30; ii++) {
+            emitter.add(new BulkEmitterTest.TestBatchItem(TEST_DATA));
+        }
+
+        // then
+        ArgumentCaptor<TestBatch> captor = ArgumentCaptor.forClass(TestBatch.class);
+        verify(listener, times(1)).apply(captor.capture());
+        assertEquals(30, captor.getValue().items.size());
+
+    }
+
+    @Test
+    public void constructorResetsAdaptiveBatchSize() {
+
+        // given
+        AdaptiveBatchSize adaptiveBatchSize = createDefaultTestAdaptiveBatchSizeBuilder().build();
+
+        // when
+        new AdaptiveBulkEmitter<>(20, Long.MAX_VALUE, 300, new TestBatchOperations(), adaptiveBatchSize);
+
+        // then
+        assertEquals(20, adaptiveBatchSize.getBatchSize());
+        assertEquals(300, adaptiveBatchSize.getDeliveryInterval());
+
+    }
+
+    @Test
+    public void scheduledDeliveryIsSkippedUntilCurrentDeliveryIntervalElapsed() throws InterruptedException {
+
+        // given
+        AdaptiveBatchSize adaptiveBatchSize = createDefaultTestAdaptiveBatchSizeBuilder().build();
+        AdaptiveBulkEmitter<TestBatch> emitter = new AdaptiveBulkEmitter<>(20, Long.MAX_VALUE, 100, new TestBatchOperations(), adaptiveBatchSize);
+        Function<TestBatch, Boolean> listener = dummyObserver();
+        emitter.addListener(listener);
+
+        // extends delivery interval to 800ms
+        adaptiveBatchSize.onRejection();
+        adaptiveBatchSize.onRejection();
+        adaptiveBatchSize.onRejection();
+
+        // moves the deadline
+        emitter.notifyListener();
+
+        emitter.add(new BulkEmitterTest.TestBatchItem(TEST_DATA));
+
+        // when
+        Thread.sleep(200);
+        emitter.onSchedule();
+
+        // then
+        verify(listener, never()).apply(any());
+
+        // when
+        Thread.sleep(600);
+        emitter.onSchedule();
+
+        // then
+        verify(listener, times(1)).apply(any());
+
+    }
+
+    private Function<TestBatch, Boolean> dummyObserver() {
+        return spy(new Function<TestBatch, Boolean>() {
+            @Override
+            public Boolean apply(TestBatch batch) {
+                return true;
+            }
+        });
+    }
+
+}
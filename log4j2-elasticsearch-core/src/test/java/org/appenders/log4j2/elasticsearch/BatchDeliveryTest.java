@@ -21,6 +21,9 @@ package org.appenders.log4j2.elasticsearch;
  */
 
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.core.config.ConfigurationException;
 import org.appenders.log4j2.elasticsearch.AsyncBatchDelivery.Builder;
 import org.appenders.log4j2.elasticsearch.failover.FailedItemInfo;
@@ -33,6 +36,12 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.ArgumentCaptor;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
 import java.util.Random;
 import java.util.UUID;
 
@@ -44,6 +53,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
@@ -211,6 +221,312 @@ public class BatchDeliveryTest {
         assertEquals(testMessage, captor.getValue().getData(null));
     }
 
+    @Test
+    public void deliveryAddsBatchItemWithSizeToBatchEmitterIfBatchSizeInBytesIsConfigured() {
+
+        // given
+        TestHttpObjectFactory objectFactory = createTestObjectFactoryBuilder().build();
+
+        TestBatchEmitterFactory batchEmitterFactory = spy(new TestBatchEmitterFactory());
+
+        AsyncBatchDelivery delivery = new AsyncBatchDelivery(createTestBatchDeliveryBuilder()
+                .withClientObjectFactory(objectFactory)
+                .withBatchSizeInBytes(1024)) {
+            @Override
+            protected BatchEmitterServiceProvider createBatchEmitterServiceProvider() {
+                return batchEmitterFactory;
+            }
+        };
+
+        String testMessage = "test message";
+        ByteBufItemSource itemSource = createTestItemSource("longer test message");
+
+        // when
+        delivery.add("testIndexName", testMessage);
+        delivery.add("testIndexName", itemSource);
+
+        // then
+        verify(batchEmitterFactory).createInstance(eq(TEST_BATCH_SIZE), eq(1024L), eq(TEST_DELIVERY_INTERVAL), eq(objectFactory), any());
+
+        BatchEmitter emitter = batchEmitterFactory.createInstance(TEST_BATCH_SIZE, 1024L, TEST_DELIVERY_INTERVAL, objectFactory, new NoopFailoverPolicy());
+        verify(emitter).add(any(), eq((long) testMessage.length()));
+        verify(emitter).add(any(), eq((long) itemSource.getSource().readableBytes()));
+
+    }
+
+    @Test
+    public void deliveryDoesNotTrackSizeInBytesByDefault() {
+
+        // given
+        TestHttpObjectFactory objectFactory = createTestObjectFactoryBuilder().build();
+
+        TestBatchEmitterFactory batchEmitterFactory = spy(new TestBatchEmitterFactory());
+
+        AsyncBatchDelivery delivery = new AsyncBatchDelivery(createTestBatchDeliveryBuilder()
+                .withClientObjectFactory(objectFactory)) {
+            @Override
+            protected BatchEmitterServiceProvider createBatchEmitterServiceProvider() {
+                return batchEmitterFactory;
+            }
+        };
+
+        // when
+        delivery.add("testIndexName", "test message");
+
+        // then
+        verify(batchEmitterFactory, never()).createInstance(anyInt(), anyLong(), anyInt(), any(), any());
+
+        BatchEmitter emitter = batchEmitterFactory.createInstance(TEST_BATCH_SIZE, TEST_DELIVERY_INTERVAL, objectFactory, new NoopFailoverPolicy());
+        verify(emitter).add(any());
+        verify(emitter, never()).add(any(), anyLong());
+
+    }
+
+    @Test
+    public void sizeInBytesIsResolvedFromItemSource() {
+
+        // given
+        String testMessage = "test message";
+
+        // when
+        long byteBufSize = AsyncBatchDelivery.sizeInBytes(createTestItemSource(testMessage));
+        long stringSize = AsyncBatchDelivery.sizeInBytes(new StringItemSource(testMessage));
+        long unknownSize = AsyncBatchDelivery.sizeInBytes(() -> new Object());
+
+        // then
+        assertEquals(testMessage.getBytes().length, byteBufSize);
+        assertEquals(testMessage.length(), stringSize);
+        assertEquals(0, unknownSize);
+
+    }
+
+    @Test
+    public void stringSizeInBytesIsUtf8EncodedLength() {
+
+        // given
+        String[] testMessages = new String[] {
+                "",
+                "test message",
+                "za\u017c\u00f3\u0142\u0107 g\u0119\u015bl\u0105 ja\u017a\u0144",
+                "\u65e5\u672c\u8a9e",
+                "emoji \ud83d\ude00 end",
+                "unpaired \ud83d surrogate \ude00"
+        };
+
+        for (String testMessage : testMessages) {
+
+            // when
+            long stringSize = AsyncBatchDelivery.sizeInBytes(new StringItemSource(testMessage));
+
+            // then
+            assertEquals(testMessage.getBytes(StandardCharsets.UTF_8).length, stringSize);
+
+        }
+
+    }
+
+    private ByteBufItemSource createTestItemSource(String content) {
+        ByteBuf buffer = UnpooledByteBufAllocator.DEFAULT.heapBuffer();
+        buffer.writeBytes(content.getBytes());
+        return new ByteBufItemSource(buffer, source -> {});
+    }
+
+    @Test
+    public void priorityLanesDeliverHighPriorityItemsWithSeparateEmitter() {
+
+        // given
+        BatchEmitter highPriorityEmitter = mock(BatchEmitter.class);
+        BatchEmitter lowPriorityEmitter = mock(BatchEmitter.class);
+
+        AsyncBatchDelivery delivery = createTestPriorityLanesDelivery(
+                PriorityLanes.newBuilder().build(),
+                highPriorityEmitter,
+                lowPriorityEmitter);
+
+        // when
+        delivery.add("testIndexName", "error message", Level.ERROR);
+        delivery.add("testIndexName", "warn message", Level.WARN);
+        delivery.add("testIndexName", "info message", Level.INFO);
+        delivery.add("testIndexName", createTestItemSource("debug message"), Level.DEBUG);
+
+        // then
+        verify(highPriorityEmitter, times(2)).add(any());
+        verify(lowPriorityEmitter, times(2)).add(any());
+
+    }
+
+    @Test
+    public void priorityLanesDeliverItemsWithoutLevelWithHighPriorityEmitter() {
+
+        // given
+        BatchEmitter highPriorityEmitter = mock(BatchEmitter.class);
+        BatchEmitter lowPriorityEmitter = mock(BatchEmitter.class);
+
+        AsyncBatchDelivery delivery = createTestPriorityLanesDelivery(
+                PriorityLanes.newBuilder().build(),
+                highPriorityEmitter,
+                lowPriorityEmitter);
+
+        // when
+        delivery.add("testIndexName", "test message");
+        delivery.add("testIndexName", createTestItemSource("test message"));
+        delivery.add("testIndexName", "test message", null);
+
+        // then
+        verify(highPriorityEmitter, times(3)).add(any());
+        verify(lowPriorityEmitter, never()).add(any());
+
+    }
+
+    @Test
+    public void priorityLanesShedLowPriorityItemsUnderBackpressure() {
+
+        // given
+        BatchEmitter highPriorityEmitter = mock(BatchEmitter.class);
+        BatchEmitter lowPriorityEmitter = mock(BatchEmitter.class);
+
+        PriorityLanes priorityLanes = PriorityLanes.newBuilder()
+                .withBackpressureWindowMillis(60000)
+                .build();
+        AsyncBatchDelivery delivery = createTestPriorityLanesDelivery(
+                priorityLanes,
+                highPriorityEmitter,
+                lowPriorityEmitter);
+
+        priorityLanes.onBackpressure();
+
+        ItemSource itemSource = mock(ItemSource.class);
+
+        // when
+        delivery.add("testIndexName", "info message", Level.INFO);
+        delivery.add("testIndexName", itemSource, Level.DEBUG);
+        delivery.add("testIndexName", "error message", Level.ERROR);
+
+        // then
+        verify(lowPriorityEmitter, never()).add(any());
+        verify(itemSource).release();
+        verify(highPriorityEmitter).add(any());
+        assertEquals(2, priorityLanes.getShedCount());
+
+    }
+
+    @Test
+    public void priorityLanesDetectBackpressureOnFailover() {
+
+        // given
+        PriorityLanes priorityLanes = PriorityLanes.newBuilder().build();
+        List<FailoverPolicy> failoverPolicies = new ArrayList<>();
+
+        BatchEmitterServiceProvider batchEmitterFactory = new TestBatchEmitterFactory() {
+            @Override
+            public BatchEmitter createInstance(int batchSize, int deliveryInterval, ClientObjectFactory clientObjectFactory, FailoverPolicy failoverPolicy) {
+                failoverPolicies.add(failoverPolicy);
+                return mock(BatchEmitter.class);
+            }
+        };
+
+        FailoverPolicy failoverPolicy = mock(FailoverPolicy.class);
+        new AsyncBatchDelivery(createTestBatchDeliveryBuilder()
+                .withFailoverPolicy(failoverPolicy)
+                .withPriorityLanes(priorityLanes)) {
+            @Override
+            protected BatchEmitterServiceProvider createBatchEmitterServiceProvider() {
+                return batchEmitterFactory;
+            }
+        };
+
+        assertEquals(2, failoverPolicies.size());
+        assertFalse(priorityLanes.isUnderBackpressure());
+
+        Object failedItem = new Object();
+
+        // when
+        failoverPolicies.get(0).deliver(failedItem);
+
+        // then
+        verify(failoverPolicy).deliver(failedItem);
+        assertTrue(priorityLanes.isUnderBackpressure());
+
+    }
+
+    @Test
+    public void priorityLanesCreateEmittersWithFailoverPolicyOfTheirLane() {
+
+        // given
+        PriorityLanes priorityLanes = PriorityLanes.newBuilder().build();
+        List<FailoverPolicy> failoverPolicies = new ArrayList<>();
+
+        BatchEmitterServiceProvider batchEmitterFactory = new TestBatchEmitterFactory() {
+            @Override
+            public BatchEmitter createInstance(int batchSize, int deliveryInterval, ClientObjectFactory clientObjectFactory, FailoverPolicy failoverPolicy) {
+                failoverPolicies.add(failoverPolicy);
+                return mock(BatchEmitter.class);
+            }
+        };
+
+        // when
+        new AsyncBatchDelivery(createTestBatchDeliveryBuilder()
+                .withPriorityLanes(priorityLanes)) {
+            @Override
+            protected BatchEmitterServiceProvider createBatchEmitterServiceProvider() {
+                return batchEmitterFactory;
+            }
+        };
+
+        // then
+        assertEquals(2, failoverPolicies.size());
+        assertTrue(PriorityLanes.laneOf(failoverPolicies.get(0)).isHighPriority());
+        assertFalse(PriorityLanes.laneOf(failoverPolicies.get(1)).isHighPriority());
+
+    }
+
+    @Test
+    public void priorityLanesLifecycleStartsAndStopsBothEmitters() {
+
+        // given
+        BatchEmitter highPriorityEmitter = mock(BatchEmitter.class);
+        BatchEmitter lowPriorityEmitter = mock(BatchEmitter.class);
+
+        AsyncBatchDelivery delivery = createTestPriorityLanesDelivery(
+                PriorityLanes.newBuilder().build(),
+                highPriorityEmitter,
+                lowPriorityEmitter);
+
+        // when
+        delivery.start();
+        delivery.stop();
+
+        // then
+        verify(highPriorityEmitter).start();
+        verify(lowPriorityEmitter).start();
+        verify(highPriorityEmitter).stop(anyLong(), eq(false));
+        verify(lowPriorityEmitter).stop(anyLong(), eq(true));
+
+    }
+
+    private AsyncBatchDelivery createTestPriorityLanesDelivery(
+            PriorityLanes priorityLanes,
+            BatchEmitter highPriorityEmitter,
+            BatchEmitter lowPriorityEmitter) {
+
+        Queue<BatchEmitter> emitters = new LinkedList<>(Arrays.asList(highPriorityEmitter, lowPriorityEmitter));
+        BatchEmitterServiceProvider batchEmitterFactory = new TestBatchEmitterFactory() {
+            @Override
+            public BatchEmitter createInstance(int batchSize, int deliveryInterval, ClientObjectFactory clientObjectFactory, FailoverPolicy failoverPolicy) {
+                return emitters.remove();
+            }
+        };
+
+        return new AsyncBatchDelivery(createTestBatchDeliveryBuilder()
+                .withPriorityLanes(priorityLanes)) {
+            @Override
+            protected BatchEmitterServiceProvider createBatchEmitterServiceProvider() {
+                return batchEmitterFactory;
+            }
+        };
+
+    }
+
     @Test
     public void lifecycleStartSetsUpIndexTemplateExecutionIfIndexTemplateIsConfigured() {
 
@@ -28,9 +28,14 @@ import org.junit.rules.ExpectedException;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
 import static org.junit.Assert.assertFalse;
@@ -196,6 +201,67 @@ public class BulkEmitterTest {
         Assert.assertEquals(batchSize, captor.getValue().items.size());
     }
 
+    @Test
+    public void notifiesOnBatchWithGivenSizeInBytes() {
+
+        // given
+        BulkEmitter emitter = new BulkEmitter(TEST_BATCH_SIZE * 10, 100, LARGE_TEST_INTERVAL, new TestBatchOperations());
+        Function<TestBatch, Boolean> dummyObserver = dummyObserver();
+        emitter.addListener(dummyObserver);
+
+        // when
+        emitter.add(new TestBatchItem(TEST_DATA), 60);
+
+        // then
+        verify(dummyObserver, never()).apply(any());
+
+        // when
+        emitter.add(new TestBatchItem(TEST_DATA), 40);
+
+        // then
+        ArgumentCaptor<TestBatch> captor = ArgumentCaptor.forClass(TestBatch.class);
+        Mockito.verify(dummyObserver, Mockito.times(1)).apply(captor.capture());
+        Assert.assertEquals(2, captor.getValue().items.size());
+
+    }
+
+    @Test
+    public void sizeInBytesIsResetAfterDelivery() {
+
+        // given
+        BulkEmitter emitter = new BulkEmitter(TEST_BATCH_SIZE * 10, 100, LARGE_TEST_INTERVAL, new TestBatchOperations());
+        Function<TestBatch, Boolean> dummyObserver = dummyObserver();
+        emitter.addListener(dummyObserver);
+
+        emitter.add(new TestBatchItem(TEST_DATA), 60);
+        emitter.notifyListener();
+
+        // when
+        emitter.add(new TestBatchItem(TEST_DATA), 60);
+
+        // then
+        Mockito.verify(dummyObserver, Mockito.times(1)).apply(any());
+
+    }
+
+    @Test
+    public void notifiesOnBatchWithGivenSizeIfSizeInBytesNotReached() {
+
+        // given
+        BulkEmitter emitter = new BulkEmitter(TEST_BATCH_SIZE, Long.MAX_VALUE, LARGE_TEST_INTERVAL, new TestBatchOperations());
+        Function<TestBatch, Boolean> dummyObserver = dummyObserver();
+        emitter.addListener(dummyObserver);
+
+        // when
+        for (int ii = 0; ii < TEST_BATCH_SIZE; ii++) {
+            emitter.add(new TestBatchItem(TEST_DATA), 1);
+        }
+
+        // then
+        Mockito.verify(dummyObserver, Mockito.times(1)).apply(any());
+
+    }
+
     @Test
     public void notifiesOnEveryCompletedBatch() throws InterruptedException {
 
@@ -256,6 +322,109 @@ public class BulkEmitterTest {
 
     }
 
+    @Test
+    public void scheduledDeliveryRunsOnWorkerThread() throws InterruptedException {
+
+        // given
+        BulkEmitter emitter = createTestBulkEmitter(TEST_BATCH_SIZE, 100, new TestBatchOperations());
+        AtomicReference<String> threadName = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        emitter.addListener(batch -> {
+            threadName.set(Thread.currentThread().getName());
+            latch.countDown();
+            return true;
+        });
+
+        // when
+        emitter.start();
+        emitter.add(new Object());
+
+        // then
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(threadName.get().startsWith(SharedScheduler.WORKER_THREAD_NAME_FORMAT.replace("%s", "")));
+
+        emitter.stop();
+
+    }
+
+    @Test
+    public void slowScheduledDeliveriesDoNotDelayScheduledDeliveriesOfOtherEmitters() throws InterruptedException {
+
+        // given
+        CountDownLatch release = new CountDownLatch(1);
+        List<BulkEmitter> slowEmitters = new ArrayList<>();
+
+        // more than scheduler threads
+        for (int ii = 0; ii < SharedScheduler.DEFAULT_THREAD_COUNT + 1; ii++) {
+            BulkEmitter slowEmitter = createTestBulkEmitter(TEST_BATCH_SIZE, 10, new TestBatchOperations());
+            slowEmitter.addListener(batch -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            });
+            slowEmitters.add(slowEmitter);
+        }
+
+        BulkEmitter emitter = createTestBulkEmitter(TEST_BATCH_SIZE, 50, new TestBatchOperations());
+        CountDownLatch delivered = new CountDownLatch(1);
+        emitter.addListener(batch -> {
+            delivered.countDown();
+            return true;
+        });
+
+        for (BulkEmitter slowEmitter : slowEmitters) {
+            slowEmitter.start();
+            slowEmitter.add(new Object());
+        }
+
+        // when
+        emitter.start();
+        emitter.add(new Object());
+
+        // then
+        try {
+            assertTrue(delivered.await(2, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            emitter.stop();
+            slowEmitters.forEach(BulkEmitter::stop);
+        }
+
+    }
+
+    @Test
+    public void scheduledDeliveryIsPostponedBySizeTriggeredDelivery() throws InterruptedException {
+
+        // given
+        BulkEmitter emitter = createTestBulkEmitter(TEST_BATCH_SIZE, 500, new TestBatchOperations());
+        Function<TestBatch, Boolean> dummyObserver = dummyObserver();
+        emitter.addListener(dummyObserver);
+
+        Thread.sleep(500);
+
+        for (int ii = 0; ii < TEST_BATCH_SIZE; ii++) {
+            emitter.add(new Object());
+        }
+        emitter.add(new Object());
+
+        // when
+        emitter.onSchedule();
+
+        // then
+        verify(dummyObserver, times(1)).apply(any());
+
+        // when
+        Thread.sleep(500);
+        emitter.onSchedule();
+
+        // then
+        verify(dummyObserver, times(2)).apply(any());
+
+    }
+
     @Test
     public void listenerIsNotifiedOnLifecycleStop() {
 
@@ -0,0 +1,217 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.apache.logging.log4j.core.config.ConfigurationException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ByteBufAllocatorFactoryTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void defaultAllocatorIsUnpooledHeapAllocator() {
+
+        // given
+        ByteBufAllocatorFactory factory = ByteBufAllocatorFactory.newBuilder().build();
+
+        // when
+        ByteBufAllocator allocator = factory.create();
+
+        // then
+        assertFalse(factory.isPooled());
+        assertFalse(factory.isDirect());
+        assertEquals(UnpooledByteBufAllocator.class, allocator.getClass());
+        assertFalse(allocator.isDirectBufferPooled());
+
+    }
+
+    @Test
+    public void createsUnpooledDirectAllocator() {
+
+        // given
+        ByteBufAllocatorFactory factory = ByteBufAllocatorFactory.newBuilder()
+                .withDirect(true)
+                .build();
+
+        // when
+        ByteBuf byteBuf = factory.create().buffer(16);
+
+        // then
+        assertTrue(byteBuf.isDirect());
+        byteBuf.release();
+
+    }
+
+    @Test
+    public void createsPooledDirectAllocator() {
+
+        // given
+        ByteBufAllocatorFactory factory = ByteBufAllocatorFactory.newBuilder()
+                .withPooled(true)
+                .withDirect(true)
+                .withNumArenas(1)
+                .build();
+
+        // when
+        ByteBufAllocator allocator = factory.create();
+        ByteBuf byteBuf = allocator.buffer(16);
+
+        // then
+        assertEquals(PooledByteBufAllocator.class, allocator.getClass());
+        assertTrue(byteBuf.isDirect());
+        assertEquals(1, ((PooledByteBufAllocator) allocator).metric().numDirectArenas());
+        assertEquals(0, ((PooledByteBufAllocator) allocator).metric().numHeapArenas());
+        byteBuf.release();
+
+    }
+
+    @Test
+    public void createsPooledHeapAllocator() {
+
+        // given
+        ByteBufAllocatorFactory factory = ByteBufAllocatorFactory.newBuilder()
+                .withPooled(true)
+                .withNumArenas(2)
+                .build();
+
+        // when
+        ByteBufAllocator allocator = factory.create();
+        ByteBuf byteBuf = allocator.buffer(16);
+
+        // then
+        assertFalse(byteBuf.isDirect());
+        assertEquals(2, ((PooledByteBufAllocator) allocator).metric().numHeapArenas());
+        assertEquals(0, ((PooledByteBufAllocator) allocator).metric().numDirectArenas());
+        byteBuf.release();
+
+    }
+
+    @Test
+    public void chunkSizeIsConvertedToMaxOrder() {
+
+        // given
+        ByteBufAllocatorFactory.Builder builder = ByteBufAllocatorFactory.newBuilder()
+                .withPooled(true)
+                .withPageSize(8192)
+                .withChunkSize(8192 * 64);
+
+        // when
+        ByteBufAllocatorFactory factory = builder.build();
+
+        // then
+        assertEquals(8192, factory.getPageSize());
+        assertEquals(6, factory.getMaxOrder());
+        assertEquals(8192 * 64, ((PooledByteBufAllocator) factory.create()).metric().chunkSize());
+
+    }
+
+    @Test
+    public void builderThrowsOnNegativeNumArenas() {
+
+        // given
+        ByteBufAllocatorFactory.Builder builder = ByteBufAllocatorFactory.newBuilder()
+                .withNumArenas(-2);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("numArenas must be higher or equal 0");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderThrowsOnPageSizeNotPowerOfTwo() {
+
+        // given
+        ByteBufAllocatorFactory.Builder builder = ByteBufAllocatorFactory.newBuilder()
+                .withPageSize(5000);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("pageSize must be a power of 2");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderThrowsOnTooSmallPageSize() {
+
+        // given
+        ByteBufAllocatorFactory.Builder builder = ByteBufAllocatorFactory.newBuilder()
+                .withPageSize(2048);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("pageSize must be a power of 2");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderThrowsOnChunkSizeLowerThanPageSize() {
+
+        // given
+        ByteBufAllocatorFactory.Builder builder = ByteBufAllocatorFactory.newBuilder()
+                .withPageSize(8192)
+                .withChunkSize(4096);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("chunkSize must be a power of 2");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderThrowsOnChunkSizeNotPowerOfTwo() {
+
+        // given
+        ByteBufAllocatorFactory.Builder builder = ByteBufAllocatorFactory.newBuilder()
+                .withPageSize(8192)
+                .withChunkSize(8192 * 3);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("chunkSize must be a power of 2");
+
+        // when
+        builder.build();
+
+    }
+
+}
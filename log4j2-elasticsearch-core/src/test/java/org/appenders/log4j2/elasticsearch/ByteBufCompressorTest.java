@@ -0,0 +1,333 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.apache.logging.log4j.core.config.ConfigurationException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ByteBufCompressorTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void defaultCompressorIsGzip() {
+
+        // when
+        ByteBufCompressor compressor = ByteBufCompressor.newBuilder().build();
+
+        // then
+        assertEquals(ByteBufCompressor.Format.GZIP, compressor.getFormat());
+        assertEquals("gzip", compressor.getContentEncoding());
+        assertEquals(ByteBufCompressor.Builder.DEFAULT_LEVEL, compressor.getLevel());
+
+    }
+
+    @Test
+    public void builderResolvesTypeIgnoringCase() {
+
+        // when
+        ByteBufCompressor compressor = ByteBufCompressor.newBuilder()
+                .withType("Deflate")
+                .build();
+
+        // then
+        assertEquals(ByteBufCompressor.Format.DEFLATE, compressor.getFormat());
+        assertEquals("deflate", compressor.getContentEncoding());
+
+    }
+
+    @Test
+    public void builderThrowsOnUnknownType() {
+
+        // given
+        ByteBufCompressor.Builder builder = ByteBufCompressor.newBuilder()
+                .withType("zstd");
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("Unknown type: zstd");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderThrowsOnLevelOutOfRange() {
+
+        // given
+        ByteBufCompressor.Builder builder = ByteBufCompressor.newBuilder()
+                .withLevel(10);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("level must be between 1 and 9");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderThrowsOnNonPositiveBufferSize() {
+
+        // given
+        ByteBufCompressor.Builder builder = ByteBufCompressor.newBuilder()
+                .withBufferSize(0);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("bufferSize must be higher than 0");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void gzipOutputCanBeDecompressed() throws IOException {
+
+        // given
+        ByteBufCompressor compressor = ByteBufCompressor.newBuilder()
+                .withType("gzip")
+                .withBufferSize(16)
+                .build();
+
+        byte[] expected = createTestBytes(10000);
+        ByteBuf source = UnpooledByteBufAllocator.DEFAULT.heapBuffer().writeBytes(expected);
+        ByteBuf target = UnpooledByteBufAllocator.DEFAULT.heapBuffer();
+
+        // when
+        compressor.compress(source, target);
+
+        // then
+        assertArrayEquals(expected, readAll(new GZIPInputStream(new ByteBufInputStream(target))));
+        assertEquals(0, source.readerIndex());
+
+    }
+
+    @Test
+    public void deflateOutputCanBeDecompressed() throws IOException {
+
+        // given
+        ByteBufCompressor compressor = ByteBufCompressor.newBuilder()
+                .withType("deflate")
+                .build();
+
+        byte[] expected = createTestBytes(10000);
+        ByteBuf source = UnpooledByteBufAllocator.DEFAULT.heapBuffer().writeBytes(expected);
+        ByteBuf target = UnpooledByteBufAllocator.DEFAULT.heapBuffer();
+
+        // when
+        compressor.compress(source, target);
+
+        // then
+        assertArrayEquals(expected, readAll(new InflaterInputStream(new ByteBufInputStream(target))));
+
+    }
+
+    @Test
+    public void canCompressCompositeDirectSourceToDirectTarget() throws IOException {
+
+        // given
+        ByteBufCompressor compressor = ByteBufCompressor.newBuilder()
+                .withBufferSize(16)
+                .build();
+
+        byte[] expected = createTestBytes(10000);
+        CompositeByteBuf source = UnpooledByteBufAllocator.DEFAULT.compositeDirectBuffer();
+        source.addComponent(true, UnpooledByteBufAllocator.DEFAULT.directBuffer().writeBytes(expected, 0, 5000));
+        source.addComponent(true, UnpooledByteBufAllocator.DEFAULT.heapBuffer().writeBytes(expected, 5000, 5000));
+        ByteBuf target = UnpooledByteBufAllocator.DEFAULT.directBuffer();
+
+        // when
+        compressor.compress(source, target);
+
+        // then
+        assertArrayEquals(expected, readAll(new GZIPInputStream(new ByteBufInputStream(target))));
+
+    }
+
+    @Test
+    public void reusesPooledDeflaters() throws IOException {
+
+        // given
+        ByteBufCompressor compressor = ByteBufCompressor.newBuilder().build();
+        compressor.start();
+
+        byte[] expected = createTestBytes(1000);
+        ByteBuf source = UnpooledByteBufAllocator.DEFAULT.heapBuffer().writeBytes(expected);
+
+        // when
+        for (int ii = 0; ii < 3; ii++) {
+            ByteBuf target = UnpooledByteBufAllocator.DEFAULT.heapBuffer();
+            compressor.compress(source, target);
+            assertArrayEquals(expected, readAll(new GZIPInputStream(new ByteBufInputStream(target))));
+        }
+
+        // then
+        assertEquals(1, compressor.getPoolSize());
+
+    }
+
+    @Test
+    public void doesNotPoolDeflatersIfNotStarted() throws IOException {
+
+        // given
+        ByteBufCompressor compressor = ByteBufCompressor.newBuilder().build();
+
+        byte[] expected = createTestBytes(1000);
+        ByteBuf source = UnpooledByteBufAllocator.DEFAULT.heapBuffer().writeBytes(expected);
+        ByteBuf target = UnpooledByteBufAllocator.DEFAULT.heapBuffer();
+
+        // when
+        compressor.compress(source, target);
+
+        // then
+        assertArrayEquals(expected, readAll(new GZIPInputStream(new ByteBufInputStream(target))));
+        assertEquals(0, compressor.getPoolSize());
+
+    }
+
+    @Test
+    public void lifecycleStopEndsPooledDeflaters() throws IOException {
+
+        // given
+        ByteBufCompressor compressor = ByteBufCompressor.newBuilder().build();
+        compressor.start();
+
+        byte[] expected = createTestBytes(1000);
+        ByteBuf source = UnpooledByteBufAllocator.DEFAULT.heapBuffer().writeBytes(expected);
+        compressor.compress(source, UnpooledByteBufAllocator.DEFAULT.heapBuffer());
+
+        assertEquals(1, compressor.getPoolSize());
+
+        // when
+        compressor.stop();
+
+        // then
+        assertEquals(0, compressor.getPoolSize());
+
+        ByteBuf target = UnpooledByteBufAllocator.DEFAULT.heapBuffer();
+        compressor.compress(source, target);
+        assertArrayEquals(expected, readAll(new GZIPInputStream(new ByteBufInputStream(target))));
+        assertEquals(0, compressor.getPoolSize());
+
+    }
+
+    @Test
+    public void builderThrowsOnNonPositiveMaxPoolSize() {
+
+        // given
+        ByteBufCompressor.Builder builder = ByteBufCompressor.newBuilder()
+                .withMaxPoolSize(0);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("maxPoolSize must be higher than 0");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void lifecycleStartStop() {
+
+        // given
+        LifeCycle lifeCycle = ByteBufCompressor.newBuilder().build();
+
+        assertTrue(lifeCycle.isStopped());
+
+        // when
+        lifeCycle.start();
+
+        // then
+        assertTrue(lifeCycle.isStarted());
+
+        // when
+        lifeCycle.stop();
+
+        // then
+        assertTrue(lifeCycle.isStopped());
+
+    }
+
+    @Test
+    public void compressesRepetitivePayload() {
+
+        // given
+        ByteBufCompressor compressor = ByteBufCompressor.newBuilder()
+                .withLevel(1)
+                .build();
+
+        byte[] payload = new byte[10000];
+        for (int ii = 0; ii < payload.length; ii++) {
+            payload[ii] = (byte) ('a' + ii % 8);
+        }
+        ByteBuf source = UnpooledByteBufAllocator.DEFAULT.heapBuffer().writeBytes(payload);
+        ByteBuf target = UnpooledByteBufAllocator.DEFAULT.heapBuffer();
+
+        // when
+        compressor.compress(source, target);
+
+        // then
+        assertTrue(target.readableBytes() < payload.length / 10);
+
+    }
+
+    private byte[] createTestBytes(int size) {
+        byte[] bytes = new byte[size];
+        Random random = new Random();
+        for (int ii = 0; ii < size; ii++) {
+            // limited alphabet, so it's actually compressed
+            bytes[ii] = (byte) ('a' + random.nextInt(16));
+        }
+        return bytes;
+    }
+
+    private byte[] readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+}
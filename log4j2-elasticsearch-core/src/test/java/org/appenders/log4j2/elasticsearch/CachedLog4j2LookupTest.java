@@ -0,0 +1,238 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.logging.log4j.ThreadContext;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.lookup.StrLookup;
+import org.apache.logging.log4j.core.lookup.StrSubstitutor;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CachedLog4j2LookupTest {
+
+    @Test
+    public void doesNotResolveNonDynamicVirtualProperties() {
+
+        // given
+        StrLookup strLookup = mock(StrLookup.class);
+        StrSubstitutor strSubstitutor = spy(new StrSubstitutor(strLookup));
+        CachedLog4j2Lookup lookup = new CachedLog4j2Lookup(strSubstitutor, 1000);
+
+        String expectedValue = UUID.randomUUID().toString();
+        VirtualProperty virtualProperty = new VirtualProperty("test", expectedValue, false);
+
+        // when
+        String result = lookup.resolve(virtualProperty);
+
+        // then
+        assertEquals(expectedValue, result);
+        verify(strSubstitutor, never()).replace(anyString());
+        verify(strLookup, never()).lookup(anyString());
+
+    }
+
+    @Test
+    public void resolvesSingleLookupWithoutStrSubstitutorReplace() {
+
+        // given
+        String expectedValue = UUID.randomUUID().toString();
+        StrLookup strLookup = mock(StrLookup.class);
+        when(strLookup.lookup(eq("sys:test"))).thenReturn(expectedValue);
+
+        StrSubstitutor strSubstitutor = spy(new StrSubstitutor(strLookup));
+        CachedLog4j2Lookup lookup = new CachedLog4j2Lookup(strSubstitutor, 1000);
+
+        VirtualProperty virtualProperty = new VirtualProperty("test", "${sys:test}", true);
+
+        // when
+        String result = lookup.resolve(virtualProperty);
+
+        // then
+        assertEquals(expectedValue, result);
+        verify(strSubstitutor, never()).replace(anyString());
+
+    }
+
+    @Test
+    public void resolvesDefaultValueIfLookupReturnsNull() {
+
+        // given
+        StrLookup strLookup = mock(StrLookup.class);
+        CachedLog4j2Lookup lookup = new CachedLog4j2Lookup(new StrSubstitutor(strLookup), 1000);
+
+        VirtualProperty virtualProperty = new VirtualProperty("test", "${sys:test:-defaultValue}", true);
+
+        // when
+        String result = lookup.resolve(virtualProperty);
+
+        // then
+        assertEquals("defaultValue", result);
+        verify(strLookup).lookup(eq("sys:test"));
+
+    }
+
+    @Test
+    public void returnsUnresolvedExpressionIfLookupReturnsNullAndNoDefaultValue() {
+
+        // given
+        StrLookup strLookup = mock(StrLookup.class);
+        CachedLog4j2Lookup lookup = new CachedLog4j2Lookup(new StrSubstitutor(strLookup), 1000);
+
+        VirtualProperty virtualProperty = new VirtualProperty("test", "${sys:test}", true);
+
+        // when
+        String result = lookup.resolve(virtualProperty);
+
+        // then
+        assertEquals("${sys:test}", result);
+
+    }
+
+    @Test
+    public void resolvesComplexExpressionsWithStrSubstitutor() {
+
+        // given
+        StrLookup strLookup = mock(StrLookup.class);
+        when(strLookup.lookup(isNull(), eq("sys:test1"))).thenReturn("value1");
+        when(strLookup.lookup(isNull(), eq("sys:test2"))).thenReturn("value2");
+
+        StrSubstitutor strSubstitutor = spy(new StrSubstitutor(strLookup));
+        CachedLog4j2Lookup lookup = new CachedLog4j2Lookup(strSubstitutor, 1000);
+
+        VirtualProperty virtualProperty = new VirtualProperty("test", "${sys:test1}-${sys:test2}", true);
+
+        // when
+        String result = lookup.resolve(virtualProperty);
+
+        // then
+        assertEquals("value1-value2", result);
+        verify(strSubstitutor).replace(eq("${sys:test1}-${sys:test2}"));
+
+    }
+
+    @Test
+    public void cachesResolvedValueUntilTtlExpires() {
+
+        // given
+        StrLookup strLookup = mock(StrLookup.class);
+        when(strLookup.lookup(eq("sys:test"))).thenReturn("value1", "value2");
+
+        AtomicLong clock = new AtomicLong();
+        CachedLog4j2Lookup lookup = new CachedLog4j2Lookup(new StrSubstitutor(strLookup), 1000, clock::get);
+
+        VirtualProperty virtualProperty = new VirtualProperty("test", "${sys:test}", true);
+
+        // when
+        String result1 = lookup.resolve(virtualProperty);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        String result2 = lookup.resolve(virtualProperty);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        String result3 = lookup.resolve(virtualProperty);
+
+        // then
+        assertEquals("value1", result1);
+        assertEquals("value1", result2);
+        assertEquals("value2", result3);
+        verify(strLookup, times(2)).lookup(eq("sys:test"));
+
+    }
+
+    @Test
+    public void doesNotCacheThreadContextLookups() {
+
+        // given
+        StrLookup strLookup = mock(StrLookup.class);
+        when(strLookup.lookup(eq("ctx:test"))).thenReturn("value1", "value2");
+
+        CachedLog4j2Lookup lookup = new CachedLog4j2Lookup(new StrSubstitutor(strLookup), 1000, () -> 0);
+
+        VirtualProperty virtualProperty = new VirtualProperty("test", "${ctx:test}", true);
+
+        // when
+        String result1 = lookup.resolve(virtualProperty);
+        String result2 = lookup.resolve(virtualProperty);
+
+        // then
+        assertEquals("value1", result1);
+        assertEquals("value2", result2);
+
+    }
+
+    @Test
+    public void resolvesThreadContextLookupsWithConfiguredStrSubstitutor() {
+
+        // given
+        StrSubstitutor strSubstitutor = LoggerContext.getContext(false).getConfiguration().getStrSubstitutor();
+        CachedLog4j2Lookup lookup = new CachedLog4j2Lookup(strSubstitutor, 1000);
+
+        String key = UUID.randomUUID().toString();
+        VirtualProperty virtualProperty = new VirtualProperty("test", "${ctx:" + key + "}", true);
+
+        try {
+            // when
+            ThreadContext.put(key, "value1");
+            String result1 = lookup.resolve(virtualProperty);
+
+            ThreadContext.put(key, "value2");
+            String result2 = lookup.resolve(virtualProperty);
+
+            // then
+            assertEquals("value1", result1);
+            assertEquals("value2", result2);
+        } finally {
+            ThreadContext.remove(key);
+        }
+
+    }
+
+    @Test
+    public void resolvesSystemPropertiesWithConfiguredStrSubstitutor() {
+
+        // given
+        StrSubstitutor strSubstitutor = LoggerContext.getContext(false).getConfiguration().getStrSubstitutor();
+        CachedLog4j2Lookup lookup = new CachedLog4j2Lookup(strSubstitutor, 1000);
+
+        VirtualProperty virtualProperty = new VirtualProperty("test", "${sys:java.version}", true);
+
+        // when
+        String result = lookup.resolve(virtualProperty);
+
+        // then
+        assertEquals(System.getProperty("java.version"), result);
+
+    }
+
+}
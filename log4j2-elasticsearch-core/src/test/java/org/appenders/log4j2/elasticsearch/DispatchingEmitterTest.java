@@ -0,0 +1,245 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.appenders.log4j2.elasticsearch.BulkEmitterTest.TestBatch;
+import org.appenders.log4j2.elasticsearch.BulkEmitterTest.TestBatchOperations;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.appenders.log4j2.elasticsearch.BulkEmitterTest.LARGE_TEST_INTERVAL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+public class DispatchingEmitterTest {
+
+    @Test
+    public void deliversOnDispatcherThread() throws InterruptedException {
+
+        // given
+        CountDownLatch delivered = new CountDownLatch(1);
+        AtomicReference<Thread> deliveringThread = new AtomicReference<>();
+
+        DispatchingEmitter<TestBatch> emitter = createTestEmitter(1, LARGE_TEST_INTERVAL);
+        emitter.addListener(batch -> {
+            deliveringThread.set(Thread.currentThread());
+            delivered.countDown();
+            return true;
+        });
+        emitter.start();
+
+        // when
+        emitter.add(new Object());
+
+        // then
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertNotSame(Thread.currentThread(), deliveringThread.get());
+        assertEquals("BatchDispatcher", deliveringThread.get().getName());
+
+        emitter.stop();
+
+    }
+
+    @Test
+    public void producersAreNotBlockedBySlowDelivery() throws InterruptedException {
+
+        // given
+        CountDownLatch deliveryReleased = new CountDownLatch(1);
+
+        DispatchingEmitter<TestBatch> emitter = createTestEmitter(1, LARGE_TEST_INTERVAL);
+        emitter.addListener(batch -> {
+            try {
+                deliveryReleased.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        });
+        emitter.start();
+
+        // when
+        long start = System.currentTimeMillis();
+        for (int ii = 0; ii < 4; ii++) {
+            emitter.add(new Object());
+        }
+        long end = System.currentTimeMillis();
+
+        // then
+        assertTrue(end - start < 1000);
+
+        deliveryReleased.countDown();
+        emitter.stop();
+
+    }
+
+    @Test
+    public void deliversOnCurrentThreadIfNotStarted() {
+
+        // given
+        DispatchingEmitter<TestBatch> emitter = createTestEmitter(1, LARGE_TEST_INTERVAL);
+        Function<TestBatch, Boolean> listener = dummyObserver();
+        emitter.addListener(listener);
+
+        // when
+        emitter.add(new Object());
+
+        // then
+        verify(listener).apply(any());
+
+    }
+
+    @Test
+    public void dispatcherDeliversOnInterval() {
+
+        // given
+        DispatchingEmitter<TestBatch> emitter = createTestEmitter(10, 100);
+        Function<TestBatch, Boolean> listener = dummyObserver();
+        emitter.addListener(listener);
+        emitter.start();
+
+        // when
+        emitter.add(new Object());
+
+        // then
+        verify(listener, timeout(1000)).apply(any());
+
+        emitter.stop();
+
+    }
+
+    @Test
+    public void dispatcherStopsAfterLifecycleStop() throws InterruptedException {
+
+        // given
+        DispatchingEmitter<TestBatch> emitter = createTestEmitter(10, 10);
+        emitter.addListener(dummyObserver());
+        emitter.start();
+
+        assertTrue(emitter.isDispatcherAlive());
+
+        // when
+        emitter.stop();
+        Thread.sleep(100);
+
+        // then
+        assertFalse(emitter.isDispatcherAlive());
+
+    }
+
+    @Test
+    public void intervalDeliveriesAreOwnedByDispatcherThread() throws InterruptedException {
+
+        // given
+        CountDownLatch delivered = new CountDownLatch(1);
+        AtomicReference<Thread> deliveringThread = new AtomicReference<>();
+
+        DispatchingEmitter<TestBatch> emitter = createTestEmitter(10, 50);
+        emitter.addListener(batch -> {
+            deliveringThread.set(Thread.currentThread());
+            delivered.countDown();
+            return true;
+        });
+        emitter.start();
+
+        // when
+        emitter.add(new Object());
+
+        // then
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertEquals("BatchDispatcher", deliveringThread.get().getName());
+
+        emitter.stop();
+
+    }
+
+    @Test
+    public void canBeRestarted() throws InterruptedException {
+
+        // given
+        CountDownLatch delivered = new CountDownLatch(1);
+
+        DispatchingEmitter<TestBatch> emitter = createTestEmitter(1, LARGE_TEST_INTERVAL);
+        emitter.addListener(batch -> {
+            delivered.countDown();
+            return true;
+        });
+
+        emitter.start();
+        emitter.stop();
+
+        // when
+        emitter.start();
+        emitter.add(new Object());
+
+        // then
+        assertTrue(emitter.isDispatcherAlive());
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+
+        emitter.stop();
+
+    }
+
+    @Test
+    public void factoryCreatesBatchListenerAndBatchOperations() {
+
+        // given
+        DispatchingEmitterFactory factory = new DispatchingEmitterFactory();
+        ClientObjectFactory clientObjectFactory = Mockito.spy(BatchDeliveryTest.createTestObjectFactoryBuilder().build());
+        NoopFailoverPolicy failoverPolicy = new NoopFailoverPolicy();
+
+        // when
+        RingBufferEmitter emitter = factory.createInstance(1, 1, clientObjectFactory, failoverPolicy);
+
+        // then
+        assertTrue(factory.accepts(TestHttpObjectFactory.class));
+        assertTrue(emitter instanceof DispatchingEmitter);
+        assertTrue(emitter.isStopped());
+        verify(clientObjectFactory).createBatchListener(failoverPolicy);
+        verify(clientObjectFactory).createBatchOperations();
+
+    }
+
+    private DispatchingEmitter<TestBatch> createTestEmitter(int batchSize, int interval) {
+        return new DispatchingEmitter<>(batchSize, interval, new TestBatchOperations(), batchSize * 4);
+    }
+
+    private Function<TestBatch, Boolean> dummyObserver() {
+        return spy(new Function<TestBatch, Boolean>() {
+            @Override
+            public Boolean apply(TestBatch batch) {
+                return true;
+            }
+        });
+    }
+
+}
@@ -192,7 +192,7 @@ public class ElasticsearchAppenderTest {
         appender.append(logEvent);
 
         // then
-        verify(batchDelivery, times(1)).add(eq("formattedIndexName"), any(ItemSource.class));
+        verify(batchDelivery, times(1)).add(eq("formattedIndexName"), any(ItemSource.class), eq(logEvent.getLevel()));
     }
 
     @Test
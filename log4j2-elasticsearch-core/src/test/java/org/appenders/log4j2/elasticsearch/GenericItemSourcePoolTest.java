@@ -36,18 +36,22 @@ import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -69,10 +73,12 @@ public class GenericItemSourcePoolTest {
     public ExpectedException expectedException = ExpectedException.none();
 
     @Test
-    public void poolShutdownShutsDownExecutor() {
+    public void poolShutdownCancelsScheduledTasks() {
 
         // given
         final ScheduledExecutorService mockedExecutor = mock(ScheduledExecutorService.class);
+        ScheduledFuture scheduledTask = mock(ScheduledFuture.class);
+        when(mockedExecutor.scheduleAtFixedRate(any(), anyLong(), anyLong(), any())).thenReturn(scheduledTask);
 
         GenericItemSourcePool pool = createDefaultTestGenericItemSourcePool(true, mockedExecutor);
         pool.start();
@@ -81,7 +87,29 @@ public class GenericItemSourcePoolTest {
         pool.shutdown();
 
         // then
-        verify(mockedExecutor).shutdown();
+        verify(mockedExecutor, never()).shutdown();
+        verify(scheduledTask, times(2)).cancel(false);
+
+    }
+
+    @Test
+    public void executorFactoryReturnsSharedScheduler() {
+
+        // given
+        GenericItemSourcePool pool = new GenericItemSourcePool<>(
+                DEFAULT_TEST_ITEM_POOL_NAME,
+                mock(PooledObjectOps.class),
+                mock(ResizePolicy.class),
+                DEFAULT_TEST_RESIZE_TIMEOUT,
+                false,
+                DEFAULT_TEST_MONITOR_TASK_INTERVAL,
+                0);
+
+        // when
+        ScheduledExecutorService executor = pool.createExecutor();
+
+        // then
+        assertSame(SharedScheduler.getInstance(), executor);
 
     }
 
@@ -93,7 +93,7 @@ public class ItemAppenderFactoryTest {
 
         verify(Layout, never()).toSerializable(any());
 
-        verify(batchDelivery).add(indexNameCaptor.capture(), stringLogCaptor.capture());
+        verify(batchDelivery).add(indexNameCaptor.capture(), stringLogCaptor.capture(), any());
         assertEquals(formattedIndexName, indexNameCaptor.getValue());
         assertEquals(expectedMessage, stringLogCaptor.getValue());
 
@@ -124,7 +124,7 @@ public class ItemAppenderFactoryTest {
         verify(stringBasedLayout).toSerializable(logEventCaptor.capture());
         assertEquals(logEvent, logEventCaptor.getValue());
 
-        verify(batchDelivery).add(indexNameCaptor.capture(), stringLogCaptor.capture());
+        verify(batchDelivery).add(indexNameCaptor.capture(), stringLogCaptor.capture(), any());
         assertEquals(formattedIndexName, indexNameCaptor.getValue());
         assertEquals(expectedMessage, stringLogCaptor.getValue());
 
@@ -173,7 +173,7 @@ public class ItemAppenderFactoryTest {
         verify(itemSourceLayout).serialize(logEventCaptor.capture());
         assertEquals(logEvent, logEventCaptor.getValue());
 
-        verify(batchDelivery).add(indexNameCaptor.capture(), itemSourceCaptor.capture());
+        verify(batchDelivery).add(indexNameCaptor.capture(), itemSourceCaptor.capture(), any());
         assertEquals(formattedIndexName, indexNameCaptor.getValue());
         assertEquals(expectedMessage, itemSourceCaptor.getValue().getSource());
 
@@ -209,7 +209,7 @@ public class ItemAppenderFactoryTest {
         verify(itemSourceLayout).serialize(messageCaptor.capture());
         assertEquals(message, messageCaptor.getValue());
 
-        verify(batchDelivery).add(indexNameCaptor.capture(), itemSourceCaptor.capture());
+        verify(batchDelivery).add(indexNameCaptor.capture(), itemSourceCaptor.capture(), any());
         assertEquals(formattedIndexName, indexNameCaptor.getValue());
         assertEquals(expectedMessage, itemSourceCaptor.getValue().getSource());
 
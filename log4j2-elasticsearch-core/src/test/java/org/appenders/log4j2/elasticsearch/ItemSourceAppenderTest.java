@@ -20,12 +20,17 @@ package org.appenders.log4j2.elasticsearch;
  * #L%
  */
 
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
 import org.junit.Test;
 
 import static org.appenders.log4j2.elasticsearch.mock.LifecycleTestHelper.falseOnlyOnce;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -68,6 +73,58 @@ public class ItemSourceAppenderTest {
 
     }
 
+    @Test
+    public void appendDeliversSerializedItemSource() {
+
+        // given
+        BatchDelivery batchDelivery = mock(BatchDelivery.class);
+        ItemSource itemSource = mock(ItemSource.class);
+        ItemAppender<LogEvent> itemAppender = new ItemSourceAppender(batchDelivery, logEvent -> itemSource);
+
+        LogEvent logEvent = mock(LogEvent.class);
+        when(logEvent.getLevel()).thenReturn(Level.ERROR);
+
+        // when
+        itemAppender.append("testIndex", logEvent);
+
+        // then
+        verify(batchDelivery).add("testIndex", itemSource, Level.ERROR);
+
+    }
+
+    @Test
+    public void appendIgnoresNullItemSource() {
+
+        // given
+        BatchDelivery batchDelivery = mock(BatchDelivery.class);
+        ItemAppender<LogEvent> itemAppender = new ItemSourceAppender(batchDelivery, logEvent -> null);
+
+        // when
+        itemAppender.append("testIndex", mock(LogEvent.class));
+
+        // then
+        verify(batchDelivery, never()).add(anyString(), any(ItemSource.class));
+        verify(batchDelivery, never()).add(anyString(), any(ItemSource.class), any());
+
+    }
+
+    @Test
+    public void appendRedirectsFailoverItemSourceWithTargetName() {
+
+        // given
+        BatchDelivery batchDelivery = mock(BatchDelivery.class);
+        FailoverItemSource itemSource = mock(FailoverItemSource.class);
+        ItemAppender<LogEvent> itemAppender = new ItemSourceAppender(batchDelivery, logEvent -> itemSource);
+
+        // when
+        itemAppender.append("testIndex", mock(LogEvent.class));
+
+        // then
+        verify(itemSource).failover("testIndex", batchDelivery);
+        verify(batchDelivery, never()).add(anyString(), any(ItemSource.class), any());
+
+    }
+
     @Test
     public void lifecycleStartStartsBatchDelivery() {
 
@@ -48,6 +48,30 @@ public class JacksonHandlerInstantiatorTest {
         Assert.assertNotNull(result);
     }
 
+    @Test
+    public void virtualPropertyWriterInstanceReturnsGivenWriter() {
+
+        // given
+        VirtualPropertiesWriter writer = new PreSerializedVirtualPropertiesWriter(
+                new VirtualProperty[0],
+                new Log4j2Lookup(null),
+                new VirtualPropertyFilter[0]
+        );
+        JacksonHandlerInstantiator handlerInstantiator = new JacksonHandlerInstantiator(writer);
+
+        MapperConfig config = new ObjectMapper().getSerializationConfig();
+
+        // when
+        VirtualBeanPropertyWriter result = handlerInstantiator.virtualPropertyWriterInstance(
+                config,
+                VirtualPropertiesWriter.class
+        );
+
+        // then
+        Assert.assertTrue(result == writer);
+
+    }
+
     @Test
     public void virtualPropertyWriterInstanceReturnsSingleton() {
 
@@ -22,12 +22,15 @@ package org.appenders.log4j2.elasticsearch;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationConfig;
 import com.fasterxml.jackson.databind.cfg.HandlerInstantiator;
 import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.MarkerManager;
 import org.apache.logging.log4j.core.LogEvent;
 import org.apache.logging.log4j.core.LoggerContext;
 import org.apache.logging.log4j.core.config.ConfigurationException;
@@ -35,6 +38,7 @@ import org.apache.logging.log4j.core.impl.Log4jLogEvent;
 import org.apache.logging.log4j.core.jackson.ExtendedLog4j2JsonModule;
 import org.apache.logging.log4j.core.jackson.LogEventJacksonJsonMixIn;
 import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.message.SimpleMessage;
 import org.appenders.log4j2.elasticsearch.mock.LifecycleTestHelper;
 import org.hamcrest.CoreMatchers;
 import org.junit.Assert;
@@ -43,7 +47,9 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.ArgumentCaptor;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
@@ -58,6 +64,7 @@ import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -361,6 +368,38 @@ public class JacksonJsonLayoutTest {
 
     }
 
+    @Test
+    public void createsThreadLocalJsonFactoryIfConfigured() {
+
+        // given
+        JacksonJsonLayout.Builder builder = spy(createDefaultTestBuilder());
+        builder.withThreadLocal(true);
+
+        // when
+        ObjectMapper defaultObjectMapper = builder.createDefaultObjectMapper();
+
+        // then
+        verify(builder).createJsonFactory();
+        assertTrue(defaultObjectMapper.getFactory() instanceof ThreadLocalJsonFactory);
+
+    }
+
+    @Test
+    public void createsSingleThreadJsonFactoryIfBothSingleThreadAndThreadLocalConfigured() {
+
+        // given
+        JacksonJsonLayout.Builder builder = spy(createDefaultTestBuilder());
+        builder.withSingleThread(true);
+        builder.withThreadLocal(true);
+
+        // when
+        ObjectMapper defaultObjectMapper = builder.createDefaultObjectMapper();
+
+        // then
+        assertTrue(defaultObjectMapper.getFactory() instanceof SingleThreadJsonFactory);
+
+    }
+
 
     @Test
     public void createsJsonFactoryByDefault() {
@@ -378,6 +417,205 @@ public class JacksonJsonLayoutTest {
 
     }
 
+    @Test
+    public void builderRegistersDirectLogEventSerializerIfConfigured() {
+
+        // given
+        JacksonJsonLayout.Builder builder = spy(createDefaultTestBuilder());
+        builder.withDirectLogEventSerializer(true);
+
+        ObjectMapper objectMapper = spy(ObjectMapper.class);
+        when(builder.createDefaultObjectMapper()).thenReturn(objectMapper);
+
+        // when
+        builder.build();
+
+        // then
+        verify(builder).createDirectLogEventSerializerModule(any());
+        verify(objectMapper, times(2)).registerModule(any());
+
+    }
+
+    @Test
+    public void builderDoesNotRegisterDirectLogEventSerializerByDefault() {
+
+        // given
+        JacksonJsonLayout.Builder builder = spy(createDefaultTestBuilder());
+
+        // when
+        builder.build();
+
+        // then
+        verify(builder, never()).createDirectLogEventSerializerModule(any());
+
+    }
+
+    @Test
+    public void directLogEventSerializerOutputIsEquivalentToBeanSerializerOutput() throws JsonProcessingException {
+
+        // given
+        VirtualProperty virtualProperty = new VirtualProperty.Builder()
+                .withName("hostname")
+                .withValue("localhost")
+                .withDynamic(false)
+                .build();
+
+        ObjectWriter beanWriter = createDefaultTestBuilder()
+                .withVirtualProperties(virtualProperty)
+                .createConfiguredWriter(new ArrayList<>());
+
+        ObjectWriter directWriter = createDefaultTestBuilder()
+                .withVirtualProperties(virtualProperty)
+                .withDirectLogEventSerializer(true)
+                .createConfiguredWriter(new ArrayList<>());
+
+        LogEvent logEvent = Log4jLogEvent.newBuilder()
+                .setTimeMillis(System.currentTimeMillis())
+                .setLoggerName(UUID.randomUUID().toString())
+                .setLevel(Level.ERROR)
+                .setMarker(MarkerManager.getMarker(UUID.randomUUID().toString()))
+                .setMessage(new SimpleMessage("\"quoted\" message"))
+                .setThrown(new IllegalStateException("test"))
+                .setThreadName(UUID.randomUUID().toString())
+                .build();
+
+        // when
+        String beanOutput = beanWriter.writeValueAsString(logEvent);
+        String directOutput = directWriter.writeValueAsString(logEvent);
+
+        // then
+        assertEquals(beanOutput, directOutput);
+
+    }
+
+    @Test
+    public void directLogEventSerializerOmitsEmptyFieldsLikeBeanSerializer() throws JsonProcessingException {
+
+        // given
+        ObjectWriter beanWriter = createDefaultTestBuilder()
+                .createConfiguredWriter(new ArrayList<>());
+
+        ObjectWriter directWriter = createDefaultTestBuilder()
+                .withDirectLogEventSerializer(true)
+                .createConfiguredWriter(new ArrayList<>());
+
+        LogEvent logEvent = Log4jLogEvent.newBuilder()
+                .setLoggerName("")
+                .setMessage(new SimpleMessage("test"))
+                .build();
+
+        // when
+        String beanOutput = beanWriter.writeValueAsString(logEvent);
+        String directOutput = directWriter.writeValueAsString(logEvent);
+
+        // then
+        assertEquals(beanOutput, directOutput);
+
+    }
+
+    @Test
+    public void builderCreatesPreSerializedVirtualPropertiesWriterIfConfigured() {
+
+        // given
+        JacksonJsonLayout.Builder builder = createDefaultTestBuilder()
+                .withPreSerializedVirtualProperties(true);
+
+        // when
+        VirtualPropertiesWriter writer = builder.createVirtualPropertiesWriter(ValueResolver.NO_OP);
+
+        // then
+        assertEquals(PreSerializedVirtualPropertiesWriter.class, writer.getClass());
+
+    }
+
+    @Test
+    public void builderCreatesVirtualPropertiesWriterByDefault() {
+
+        // given
+        JacksonJsonLayout.Builder builder = createDefaultTestBuilder();
+
+        // when
+        VirtualPropertiesWriter writer = builder.createVirtualPropertiesWriter(ValueResolver.NO_OP);
+
+        // then
+        assertEquals(VirtualPropertiesWriter.class, writer.getClass());
+
+    }
+
+    @Test
+    public void preSerializedVirtualPropertiesOutputContainsSameFields() throws IOException {
+
+        // given
+        VirtualProperty[] virtualProperties = new VirtualProperty[] {
+                new VirtualProperty("static1", "value1", false),
+                new VirtualProperty("dynamic1", "${sys:java.version}", true),
+                new VirtualProperty("static2", "value2", false),
+        };
+
+        ObjectWriter writer = createDefaultTestBuilder()
+                .withVirtualProperties(virtualProperties)
+                .createConfiguredWriter(new ArrayList<>());
+
+        ObjectWriter preSerializedWriter = createDefaultTestBuilder()
+                .withVirtualProperties(virtualProperties)
+                .withPreSerializedVirtualProperties(true)
+                .createConfiguredWriter(new ArrayList<>());
+
+        ObjectWriter directPreSerializedWriter = createDefaultTestBuilder()
+                .withVirtualProperties(virtualProperties)
+                .withPreSerializedVirtualProperties(true)
+                .withDirectLogEventSerializer(true)
+                .createConfiguredWriter(new ArrayList<>());
+
+        LogEvent logEvent = Log4jLogEvent.newBuilder()
+                .setLoggerName(UUID.randomUUID().toString())
+                .setLevel(Level.INFO)
+                .setMessage(new SimpleMessage(UUID.randomUUID().toString()))
+                .build();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        // when
+        Map<String, Object> expected = objectMapper.readValue(writer.writeValueAsString(logEvent), new TypeReference<Map<String, Object>>() {});
+        Map<String, Object> result1 = objectMapper.readValue(preSerializedWriter.writeValueAsString(logEvent), new TypeReference<Map<String, Object>>() {});
+        Map<String, Object> result2 = objectMapper.readValue(directPreSerializedWriter.writeValueAsString(logEvent), new TypeReference<Map<String, Object>>() {});
+
+        // then
+        assertEquals(System.getProperty("java.version"), expected.get("dynamic1"));
+        assertEquals(expected, result1);
+        assertEquals(expected, result2);
+
+    }
+
+    @Test
+    public void builderCreatesCachedLog4j2LookupIfTtlConfigured() {
+
+        // given
+        JacksonJsonLayout.Builder builder = createDefaultTestBuilder()
+                .withVirtualPropertiesCacheTtlMillis(1000);
+
+        // when
+        ValueResolver result = builder.createValueResolver();
+
+        // then
+        assertTrue(result instanceof CachedLog4j2Lookup);
+
+    }
+
+    @Test
+    public void builderCreatesLog4j2LookupIfTtlNotConfigured() {
+
+        // given
+        JacksonJsonLayout.Builder builder = createDefaultTestBuilder();
+
+        // when
+        ValueResolver result = builder.createValueResolver();
+
+        // then
+        assertEquals(Log4j2Lookup.class, result.getClass());
+
+    }
+
     private JacksonJsonLayout.Builder createDefaultTestBuilder() {
         return JacksonJsonLayout.newBuilder()
                 .setConfiguration(LoggerContext.getContext(false).getConfiguration());
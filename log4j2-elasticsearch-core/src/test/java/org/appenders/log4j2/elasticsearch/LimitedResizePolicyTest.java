@@ -0,0 +1,638 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.netty.buffer.ByteBuf;
+import org.apache.logging.log4j.core.config.ConfigurationException;
+import org.appenders.log4j2.elasticsearch.failover.ChronicleMapRetryFailoverPolicy;
+import org.appenders.log4j2.elasticsearch.failover.FailedItemInfo;
+import org.appenders.log4j2.elasticsearch.failover.FailedItemSource;
+import org.appenders.log4j2.elasticsearch.failover.SingleKeySequenceSelector;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LimitedResizePolicyTest {
+
+    public static final int TEST_MAX_SIZE = 20;
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    public static LimitedResizePolicy.Builder createDefaultTestLimitedResizePolicyBuilder() {
+        return LimitedResizePolicy.newBuilder()
+                .withMaxSize(TEST_MAX_SIZE)
+                .withBlockTimeout(10);
+    }
+
+    @Test
+    public void builderBuildsSuccessfully() {
+
+        // given
+        LimitedResizePolicy.Builder builder = createDefaultTestLimitedResizePolicyBuilder();
+
+        // when
+        LimitedResizePolicy policy = builder.build();
+
+        // then
+        assertNotNull(policy);
+        assertEquals(TEST_MAX_SIZE, policy.getMaxSize());
+        assertEquals(LimitedResizePolicy.ExhaustionStrategy.BLOCK, policy.getExhaustionStrategy());
+
+    }
+
+    @Test
+    public void builderThrowsWhenResizeFactorIsZero() {
+
+        // given
+        LimitedResizePolicy.Builder builder = createDefaultTestLimitedResizePolicyBuilder()
+                .withResizeFactor(0);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("must be higher than 0");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderThrowsWhenResizeFactorIsHigherThanOne() {
+
+        // given
+        LimitedResizePolicy.Builder builder = createDefaultTestLimitedResizePolicyBuilder()
+                .withResizeFactor(1.01);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("must be lower or equal 1");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderThrowsWhenMaxSizeIsNotConfigured() {
+
+        // given
+        LimitedResizePolicy.Builder builder = LimitedResizePolicy.newBuilder();
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("maxSize must be higher than 0");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderThrowsWhenBlockTimeoutIsLowerThanZero() {
+
+        // given
+        LimitedResizePolicy.Builder builder = createDefaultTestLimitedResizePolicyBuilder()
+                .withBlockTimeout(-1);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("blockTimeout must be higher or equal 0");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderThrowsOnUnknownExhaustionStrategy() {
+
+        // given
+        LimitedResizePolicy.Builder builder = createDefaultTestLimitedResizePolicyBuilder()
+                .withExhaustionStrategy("unknown");
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("Unknown exhaustionStrategy: unknown");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderThrowsOnNullExhaustionStrategy() {
+
+        // given
+        LimitedResizePolicy.Builder builder = createDefaultTestLimitedResizePolicyBuilder()
+                .withExhaustionStrategy(null);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("exhaustionStrategy cannot be null");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderParsesExhaustionStrategyCaseInsensitive() {
+
+        // given
+        LimitedResizePolicy.Builder builder = createDefaultTestLimitedResizePolicyBuilder()
+                .withExhaustionStrategy("Drop");
+
+        // when
+        LimitedResizePolicy policy = builder.build();
+
+        // then
+        assertEquals(LimitedResizePolicy.ExhaustionStrategy.DROP, policy.getExhaustionStrategy());
+
+    }
+
+    @Test
+    public void builderThrowsWhenFailoverStrategyHasNoFailoverPolicy() {
+
+        // given
+        LimitedResizePolicy.Builder builder = createDefaultTestLimitedResizePolicyBuilder()
+                .withExhaustionStrategy("failover");
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage(FailoverPolicy.ELEMENT_TYPE + " must be provided");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void increaseThrowsWhenResizeWouldNotTakeAnyEffect() {
+
+        // given
+        ResizePolicy policy = createDefaultTestLimitedResizePolicyBuilder().withResizeFactor(0.1).build();
+
+        ItemSourcePool pool = mock(ItemSourcePool.class);
+        when(pool.getInitialSize()).thenReturn(5);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("will not resize given pool");
+
+        // when
+        policy.increase(pool);
+
+    }
+
+    @Test
+    public void increaseIncrementsPoolSizeByResizeFactorMultipliedByInitialPoolSize() {
+
+        // given
+        ResizePolicy policy = createDefaultTestLimitedResizePolicyBuilder().withResizeFactor(0.2).build();
+
+        ItemSourcePool pool = mock(ItemSourcePool.class);
+        when(pool.getInitialSize()).thenReturn(10);
+        when(pool.getTotalSize()).thenReturn(10);
+
+        // when
+        boolean resized = policy.increase(pool);
+
+        // then
+        assertTrue(resized);
+        verify(pool).incrementPoolSize(2);
+
+    }
+
+    @Test
+    public void increaseNeverExceedsMaxSize() {
+
+        // given
+        ResizePolicy policy = createDefaultTestLimitedResizePolicyBuilder().withResizeFactor(0.5).build();
+
+        ItemSourcePool pool = mock(ItemSourcePool.class);
+        when(pool.getInitialSize()).thenReturn(10);
+        when(pool.getTotalSize()).thenReturn(TEST_MAX_SIZE - 3);
+
+        // when
+        boolean resized = policy.increase(pool);
+
+        // then
+        assertTrue(resized);
+        verify(pool).incrementPoolSize(3);
+
+    }
+
+    @Test
+    public void increaseReturnsFalseWhenMaxSizeReachedAndStrategyIsDrop() {
+
+        // given
+        ResizePolicy policy = createDefaultTestLimitedResizePolicyBuilder()
+                .withExhaustionStrategy("drop")
+                .build();
+
+        ItemSourcePool pool = mock(ItemSourcePool.class);
+        when(pool.getInitialSize()).thenReturn(10);
+        when(pool.getTotalSize()).thenReturn(TEST_MAX_SIZE);
+
+        // when
+        boolean resized = policy.increase(pool);
+
+        // then
+        assertFalse(resized);
+        verify(pool, never()).incrementPoolSize(anyInt());
+        verify(pool, never()).getAvailableSize();
+
+    }
+
+    @Test
+    public void increaseReturnsFalseWhenMaxSizeReachedAndNothingWasReleasedBeforeBlockTimeout() {
+
+        // given
+        ResizePolicy policy = createDefaultTestLimitedResizePolicyBuilder().build();
+
+        ItemSourcePool pool = mock(ItemSourcePool.class);
+        when(pool.getInitialSize()).thenReturn(10);
+        when(pool.getTotalSize()).thenReturn(TEST_MAX_SIZE);
+        when(pool.getAvailableSize()).thenReturn(0);
+
+        // when
+        boolean resized = policy.increase(pool);
+
+        // then
+        assertFalse(resized);
+        verify(pool, never()).incrementPoolSize(anyInt());
+
+    }
+
+    @Test
+    public void increaseReturnsTrueWhenMaxSizeReachedAndElementWasReleasedBeforeBlockTimeout() {
+
+        // given
+        ResizePolicy policy = createDefaultTestLimitedResizePolicyBuilder()
+                .withBlockTimeout(5000)
+                .build();
+
+        ItemSourcePool pool = mock(ItemSourcePool.class);
+        when(pool.getInitialSize()).thenReturn(10);
+        when(pool.getTotalSize()).thenReturn(TEST_MAX_SIZE);
+        when(pool.getAvailableSize()).thenReturn(0, 0, 1);
+
+        // when
+        boolean resized = policy.increase(pool);
+
+        // then
+        assertTrue(resized);
+        verify(pool, times(3)).getAvailableSize();
+
+    }
+
+    @Test
+    public void pooledItemSourceFactoryDropsItemsWhenMaxSizeIsReached() {
+
+        // given
+        LimitedResizePolicy policy = createDefaultTestLimitedResizePolicyBuilder()
+                .withExhaustionStrategy("drop")
+                .withMaxSize(2)
+                .build();
+
+        PooledItemSourceFactory factory = PooledItemSourceFactory.newBuilder()
+                .withInitialPoolSize(2)
+                .withItemSizeInBytes(32)
+                .withResizePolicy(policy)
+                .build();
+        factory.start();
+
+        ObjectWriter objectWriter = new ObjectMapper().writerFor(String.class);
+
+        // when
+        ItemSource<ByteBuf> first = factory.create("test1", objectWriter);
+        ItemSource<ByteBuf> second = factory.create("test2", objectWriter);
+        ItemSource<ByteBuf> third = factory.create("test3", objectWriter);
+
+        // then
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(third);
+        assertEquals(1, policy.getDroppedCount());
+
+        factory.stop();
+
+    }
+
+    @Test
+    public void handleDropsItemWhenStrategyIsNotFailover() {
+
+        // given
+        LimitedResizePolicy policy = createDefaultTestLimitedResizePolicyBuilder()
+                .withExhaustionStrategy("block")
+                .build();
+
+        // when
+        ItemSource result = policy.handle("test", new ObjectMapper().writer(), new PoolResourceException("test"));
+
+        // then
+        assertNull(result);
+        assertEquals(1, policy.getDroppedCount());
+
+    }
+
+    @Test
+    public void handleReturnsFailoverItemSourceWhenStrategyIsFailover() {
+
+        // given
+        FailoverPolicy failoverPolicy = mock(FailoverPolicy.class);
+        LimitedResizePolicy policy = createDefaultTestLimitedResizePolicyBuilder()
+                .withExhaustionStrategy("failover")
+                .withFailoverPolicy(failoverPolicy)
+                .build();
+
+        // when
+        ItemSource result = policy.handle("test", new ObjectMapper().writer(), new PoolResourceException("test"));
+
+        // then
+        assertTrue(result instanceof FailoverItemSource);
+        assertEquals("\"test\"", result.toString());
+        verify(failoverPolicy, never()).deliver(any());
+        assertEquals(0, policy.getDroppedCount());
+
+    }
+
+    @Test
+    public void failoverRedirectsFailedItemSourceWithTargetName() {
+
+        // given
+        FailoverPolicy failoverPolicy = mock(FailoverPolicy.class);
+        LimitedResizePolicy policy = createDefaultTestLimitedResizePolicyBuilder()
+                .withExhaustionStrategy("failover")
+                .withFailoverPolicy(failoverPolicy)
+                .build();
+
+        FailoverItemSource itemSource = (FailoverItemSource) policy.handle("test", new ObjectMapper().writer(), new PoolResourceException("test"));
+
+        String expectedTargetName = UUID.randomUUID().toString();
+
+        // when
+        itemSource.failover(expectedTargetName, mock(BatchDelivery.class));
+
+        // then
+        ArgumentCaptor<FailedItemSource> captor = ArgumentCaptor.forClass(FailedItemSource.class);
+        verify(failoverPolicy).deliver(captor.capture());
+        assertEquals(expectedTargetName, captor.getValue().getInfo().getTargetName());
+        assertEquals(0, policy.getDroppedCount());
+
+    }
+
+    @Test
+    public void failoverReleasesRedirectedItem() {
+
+        // given
+        LimitedResizePolicy policy = createDefaultTestLimitedResizePolicyBuilder()
+                .withExhaustionStrategy("failover")
+                .withFailoverPolicy(mock(FailoverPolicy.class))
+                .build();
+
+        FailoverItemSource<ByteBuf> itemSource = (FailoverItemSource<ByteBuf>) policy.handle("test", new ObjectMapper().writer(), new PoolResourceException("test"));
+        ByteBuf buffer = itemSource.getSource();
+
+        // when
+        itemSource.failover("test-index", mock(BatchDelivery.class));
+
+        // then
+        assertEquals(0, buffer.refCnt());
+
+    }
+
+    @Test
+    public void failoverDropsItemWhenFailoverPolicyThrows() {
+
+        // given
+        FailoverPolicy failoverPolicy = mock(FailoverPolicy.class);
+        doThrow(new IllegalStateException("test")).when(failoverPolicy).deliver(any(FailedItemSource.class));
+
+        LimitedResizePolicy policy = createDefaultTestLimitedResizePolicyBuilder()
+                .withExhaustionStrategy("failover")
+                .withFailoverPolicy(failoverPolicy)
+                .build();
+
+        FailoverItemSource itemSource = (FailoverItemSource) policy.handle("test", new ObjectMapper().writer(), new PoolResourceException("test"));
+
+        // when
+        itemSource.failover("test-index", mock(BatchDelivery.class));
+
+        // then
+        assertEquals(1, policy.getDroppedCount());
+
+    }
+
+    @Test
+    public void retryListenerAddsRetriedItemToBatchDeliveryItWasRedirectedFrom() {
+
+        // given
+        LimitedResizePolicy policy = createDefaultTestLimitedResizePolicyBuilder()
+                .withExhaustionStrategy("failover")
+                .withFailoverPolicy(mock(FailoverPolicy.class))
+                .build();
+
+        BatchDelivery batchDelivery = mock(BatchDelivery.class);
+        FailoverItemSource itemSource = (FailoverItemSource) policy.handle("test", new ObjectMapper().writer(), new PoolResourceException("test"));
+        itemSource.failover("test-index", batchDelivery);
+
+        FailedItemSource failedItemSource = new FailedItemSource<>(mock(ItemSource.class), new FailedItemInfo("retried-index"));
+
+        // when
+        boolean result = policy.retryListener().notify(failedItemSource);
+
+        // then
+        assertTrue(result);
+        verify(batchDelivery).add(eq("retried-index"), eq(failedItemSource));
+
+    }
+
+    @Test
+    public void retryListenerRedeliversRetriedItemIfNothingWasRedirectedYet() {
+
+        // given
+        FailoverPolicy failoverPolicy = mock(FailoverPolicy.class);
+        LimitedResizePolicy policy = createDefaultTestLimitedResizePolicyBuilder()
+                .withExhaustionStrategy("failover")
+                .withFailoverPolicy(failoverPolicy)
+                .build();
+
+        FailedItemSource failedItemSource = new FailedItemSource<>(mock(ItemSource.class), new FailedItemInfo("retried-index"));
+
+        // when
+        boolean result = policy.retryListener().notify(failedItemSource);
+
+        // then
+        assertFalse(result);
+        verify(failoverPolicy).deliver(eq(failedItemSource));
+
+    }
+
+    @Test
+    public void failoverRetriesWithChronicleMapRetryFailoverPolicy() throws IOException {
+
+        // given
+        File tempFile = File.createTempFile("failedItems", "test");
+        tempFile.deleteOnExit();
+
+        ChronicleMapRetryFailoverPolicy failoverPolicy = ChronicleMapRetryFailoverPolicy.newBuilder()
+                .withKeySequenceSelector(new SingleKeySequenceSelector(1))
+                .withFileName(tempFile.getAbsolutePath())
+                .withNumberOfEntries(100)
+                .withRetryDelay(100)
+                .build();
+
+        LimitedResizePolicy policy = createDefaultTestLimitedResizePolicyBuilder()
+                .withExhaustionStrategy("failover")
+                .withFailoverPolicy(failoverPolicy)
+                .build();
+        policy.start();
+
+        BatchDelivery batchDelivery = mock(BatchDelivery.class);
+        FailoverItemSource itemSource = (FailoverItemSource) policy.handle("test", new ObjectMapper().writer(), new PoolResourceException("test"));
+
+        String expectedTargetName = UUID.randomUUID().toString();
+
+        // when
+        itemSource.failover(expectedTargetName, batchDelivery);
+
+        // then
+        ArgumentCaptor<ItemSource> captor = ArgumentCaptor.forClass(ItemSource.class);
+        verify(batchDelivery, timeout(5000)).add(eq(expectedTargetName), captor.capture());
+        assertEquals("\"test\"", captor.getValue().toString());
+        assertEquals(0, policy.getDroppedCount());
+
+        policy.stop();
+
+    }
+
+    @Test
+    public void lifecycleStartStartsFailoverPolicy() {
+
+        // given
+        TestLifeCycleFailoverPolicy failoverPolicy = new TestLifeCycleFailoverPolicy();
+        LimitedResizePolicy policy = createDefaultTestLimitedResizePolicyBuilder()
+                .withExhaustionStrategy("failover")
+                .withFailoverPolicy(failoverPolicy)
+                .build();
+
+        // when
+        policy.start();
+
+        // then
+        assertTrue(policy.isStarted());
+        assertTrue(failoverPolicy.isStarted());
+
+    }
+
+    @Test
+    public void lifecycleStopStopsFailoverPolicy() {
+
+        // given
+        TestLifeCycleFailoverPolicy failoverPolicy = new TestLifeCycleFailoverPolicy();
+        LimitedResizePolicy policy = createDefaultTestLimitedResizePolicyBuilder()
+                .withExhaustionStrategy("failover")
+                .withFailoverPolicy(failoverPolicy)
+                .build();
+        policy.start();
+
+        // when
+        policy.stop();
+
+        // then
+        assertTrue(policy.isStopped());
+        assertTrue(failoverPolicy.isStopped());
+
+    }
+
+    @Test
+    public void lifecycleStartStop() {
+
+        // given
+        LifeCycle lifeCycle = createDefaultTestLimitedResizePolicyBuilder().build();
+
+        assertTrue(lifeCycle.isStopped());
+
+        // when
+        lifeCycle.start();
+
+        // then
+        assertTrue(lifeCycle.isStarted());
+
+        // when
+        lifeCycle.stop();
+
+        // then
+        assertTrue(lifeCycle.isStopped());
+
+    }
+
+    private static class TestLifeCycleFailoverPolicy implements FailoverPolicy<String>, LifeCycle {
+
+        private volatile State state = State.STOPPED;
+
+        @Override
+        public void deliver(String failedPayload) {
+        }
+
+        @Override
+        public void start() {
+            state = State.STARTED;
+        }
+
+        @Override
+        public LifeCycle stop(long timeout, boolean runInBackground) {
+            state = State.STOPPED;
+            return this;
+        }
+
+        @Override
+        public boolean isStarted() {
+            return state == State.STARTED;
+        }
+
+        @Override
+        public boolean isStopped() {
+            return state == State.STOPPED;
+        }
+
+    }
+
+}
@@ -0,0 +1,154 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class OffloadedTaskTest {
+
+    @Test
+    public void runsGivenTaskOnSharedWorkerByDefault() throws InterruptedException {
+
+        // given
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Thread> thread = new AtomicReference<>();
+
+        OffloadedTask offloadedTask = new OffloadedTask(() -> {
+            thread.set(Thread.currentThread());
+            latch.countDown();
+        });
+
+        // when
+        offloadedTask.run();
+
+        // then
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertTrue(thread.get().isDaemon());
+        assertTrue(thread.get().getName().startsWith(SharedScheduler.WORKER_THREAD_NAME_FORMAT.replace("%s", "")));
+
+    }
+
+    @Test
+    public void submitsGivenTaskOnlyOnceUntilItCompletes() {
+
+        // given
+        Executor executor = mock(Executor.class);
+        AtomicInteger runs = new AtomicInteger();
+        OffloadedTask offloadedTask = new OffloadedTask(runs::incrementAndGet, executor);
+
+        // when
+        offloadedTask.run();
+        offloadedTask.run();
+        offloadedTask.run();
+
+        // then
+        verify(executor, times(1)).execute(any());
+        assertTrue(offloadedTask.isPending());
+        assertEquals(0, runs.get());
+
+    }
+
+    @Test
+    public void callsMadeWhileRunningAreCoalescedIntoOneMoreRun() {
+
+        // given
+        AtomicInteger runs = new AtomicInteger();
+        AtomicReference<OffloadedTask> offloadedTask = new AtomicReference<>();
+
+        offloadedTask.set(new OffloadedTask(() -> {
+            if (runs.incrementAndGet() == 1) {
+                offloadedTask.get().run();
+                offloadedTask.get().run();
+            }
+        }, Runnable::run));
+
+        // when
+        offloadedTask.get().run();
+
+        // then
+        assertEquals(2, runs.get());
+        assertFalse(offloadedTask.get().isPending());
+
+    }
+
+    @Test
+    public void failedTaskCanBeRunAgain() {
+
+        // given
+        AtomicInteger runs = new AtomicInteger();
+        OffloadedTask offloadedTask = new OffloadedTask(() -> {
+            runs.incrementAndGet();
+            throw new IllegalStateException("test exception");
+        }, Runnable::run);
+
+        // when
+        offloadedTask.run();
+        offloadedTask.run();
+
+        // then
+        assertEquals(2, runs.get());
+        assertFalse(offloadedTask.isPending());
+
+    }
+
+    @Test
+    public void rejectedTaskCanBeSubmittedAgain() {
+
+        // given
+        Executor executor = mock(Executor.class);
+        doThrow(new RejectedExecutionException("test exception")).doNothing().when(executor).execute(any());
+
+        OffloadedTask offloadedTask = new OffloadedTask(() -> {}, executor);
+
+        // when
+        offloadedTask.run();
+
+        // then
+        assertFalse(offloadedTask.isPending());
+
+        // when
+        offloadedTask.run();
+
+        // then
+        verify(executor, times(2)).execute(any());
+
+    }
+
+}
@@ -0,0 +1,135 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class OperationQueueTest {
+
+    @Test
+    public void executesAllPendingOperationsInOrder() throws Exception {
+
+        // given
+        OperationQueue queue = new OperationQueue();
+        Operation first = mock(Operation.class);
+        Operation second = mock(Operation.class);
+        queue.add(first);
+        queue.add(second);
+
+        // when
+        queue.executeAll();
+
+        // then
+        InOrder inOrder = inOrder(first, second);
+        inOrder.verify(first).execute();
+        inOrder.verify(second).execute();
+        assertTrue(queue.isEmpty());
+
+    }
+
+    @Test
+    public void executesOperationsOnlyOnce() throws Exception {
+
+        // given
+        OperationQueue queue = new OperationQueue();
+        Operation operation = mock(Operation.class);
+        queue.add(operation);
+
+        // when
+        queue.executeAll();
+        queue.executeAll();
+
+        // then
+        verify(operation, times(1)).execute();
+
+    }
+
+    @Test
+    public void failedOperationDoesNotPreventExecutionOfSubsequentOperations() throws Exception {
+
+        // given
+        OperationQueue queue = new OperationQueue();
+        Operation failing = mock(Operation.class);
+        doThrow(new Exception("test")).when(failing).execute();
+        Operation operation = mock(Operation.class);
+        queue.add(failing);
+        queue.add(operation);
+
+        // when
+        queue.executeAll();
+
+        // then
+        verify(operation).execute();
+        assertTrue(queue.isEmpty());
+
+    }
+
+    @Test
+    public void concurrentCallWaitsUntilPendingOperationIsCompleted() throws InterruptedException {
+
+        // given
+        OperationQueue queue = new OperationQueue();
+        CountDownLatch operationStarted = new CountDownLatch(1);
+        CountDownLatch operationReleased = new CountDownLatch(1);
+        AtomicBoolean completed = new AtomicBoolean();
+        queue.add(() -> {
+            operationStarted.countDown();
+            operationReleased.await(5, TimeUnit.SECONDS);
+            completed.set(true);
+        });
+
+        Thread first = new Thread(queue::executeAll);
+        first.start();
+        assertTrue(operationStarted.await(5, TimeUnit.SECONDS));
+
+        AtomicBoolean completedBeforeReturn = new AtomicBoolean();
+        Thread second = new Thread(() -> {
+            queue.executeAll();
+            completedBeforeReturn.set(completed.get());
+        });
+        second.start();
+
+        // when
+        second.join(100);
+        assertFalse(completed.get());
+        operationReleased.countDown();
+        first.join(5000);
+        second.join(5000);
+
+        // then
+        assertTrue(completedBeforeReturn.get());
+
+    }
+
+}
@@ -44,6 +44,7 @@ import static org.appenders.log4j2.elasticsearch.ByteBufItemSourceTest.createTes
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -153,6 +154,75 @@ public class PooledItemSourceFactoryTest {
 
     }
 
+    @Test
+    public void builderThrowsOnThreadCacheSizeLessThanZero() {
+
+        // given
+        PooledItemSourceFactory.Builder builder = createDefaultTestSourceFactoryConfig()
+                .withThreadCacheSize(-1);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("threadCacheSize must be higher or equal 0");
+        expectedException.expectMessage(PooledItemSourceFactory.PLUGIN_NAME);
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderConfiguresGenericItemSourcePoolByDefault() {
+
+        // given
+        PooledItemSourceFactory.Builder builder = createDefaultTestSourceFactoryConfig();
+
+        // when
+        PooledItemSourceFactory factory = builder.build();
+
+        // then
+        Assert.assertEquals(GenericItemSourcePool.class, factory.bufferedItemSourcePool.getClass());
+
+    }
+
+    @Test
+    public void builderConfiguresThreadAffineItemSourcePoolIfThreadCacheSizeIsConfigured() {
+
+        // given
+        PooledItemSourceFactory.Builder builder = createDefaultTestSourceFactoryConfig()
+                .withThreadCacheSize(8);
+
+        // when
+        PooledItemSourceFactory factory = builder.build();
+
+        // then
+        Assert.assertEquals(ThreadAffineItemSourcePool.class, factory.bufferedItemSourcePool.getClass());
+
+    }
+
+    @Test
+    public void builderConfiguresByteBufAllocator() throws PoolResourceException {
+
+        // given
+        PooledItemSourceFactory.Builder builder = createDefaultTestSourceFactoryConfig()
+                .withByteBufAllocatorFactory(ByteBufAllocatorFactory.newBuilder()
+                        .withPooled(true)
+                        .withDirect(true)
+                        .build());
+
+        PooledItemSourceFactory factory = builder.build();
+        factory.start();
+
+        // when
+        ItemSource<ByteBuf> itemSource = factory.createEmptySource();
+
+        // then
+        assertTrue(itemSource.getSource().isDirect());
+
+        itemSource.release();
+        factory.stop();
+
+    }
+
     @Test
     public void throwsWhenCreateCantGetPooledElement() throws PoolResourceException {
         // given
@@ -171,6 +241,68 @@ public class PooledItemSourceFactoryTest {
 
     }
 
+    @Test
+    public void createDelegatesToExhaustionHandlerWhenCantGetPooledElement() throws PoolResourceException {
+
+        // given
+        ItemSourcePool mockedPool = mock(ItemSourcePool.class);
+        PoolResourceException exception = new PoolResourceException(UUID.randomUUID().toString());
+        when(mockedPool.getPooled()).thenThrow(exception);
+
+        ItemSource expected = mock(ItemSource.class);
+        PoolExhaustionHandler exhaustionHandler = mock(PoolExhaustionHandler.class);
+        when(exhaustionHandler.handle(any(), any(), any())).thenReturn(expected);
+
+        PooledItemSourceFactory pooledItemSourceFactory = new PooledItemSourceFactory(mockedPool, exhaustionHandler);
+
+        LogEvent logEvent = mock(LogEvent.class);
+        ObjectWriter objectWriter = new ObjectMapper().writerFor(LogEvent.class);
+
+        // when
+        ItemSource result = pooledItemSourceFactory.create(logEvent, objectWriter);
+
+        // then
+        assertSame(expected, result);
+        verify(exhaustionHandler).handle(logEvent, objectWriter, exception);
+
+    }
+
+    @Test
+    public void builderUsesResizePolicyAsExhaustionHandlerIfPossible() {
+
+        // given
+        LimitedResizePolicy resizePolicy = LimitedResizePolicyTest.createDefaultTestLimitedResizePolicyBuilder().build();
+        PooledItemSourceFactory.Builder builder = createDefaultTestSourceFactoryConfig()
+                .withResizePolicy(resizePolicy);
+
+        // when
+        PooledItemSourceFactory factory = builder.build();
+
+        // then
+        assertSame(resizePolicy, factory.exhaustionHandler);
+
+    }
+
+    @Test
+    public void lifecycleStartStartsExhaustionHandler() {
+
+        // given
+        LimitedResizePolicy resizePolicy = LimitedResizePolicyTest.createDefaultTestLimitedResizePolicyBuilder().build();
+        PooledItemSourceFactory factory = createDefaultTestSourceFactoryConfig()
+                .withResizePolicy(resizePolicy)
+                .build();
+
+        // when
+        factory.start();
+
+        // then
+        assertTrue(resizePolicy.isStarted());
+
+        factory.stop();
+        assertTrue(resizePolicy.isStopped());
+
+    }
+
     @Test
     public void throwsWhenCreateEmptySourceCantGetPooledElement() throws PoolResourceException {
 
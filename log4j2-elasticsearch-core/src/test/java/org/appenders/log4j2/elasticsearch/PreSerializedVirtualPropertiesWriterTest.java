@@ -0,0 +1,345 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.CharacterEscapes;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.introspect.AnnotatedClass;
+import com.fasterxml.jackson.databind.introspect.AnnotatedClassResolver;
+import com.fasterxml.jackson.databind.introspect.VirtualAnnotatedMember;
+import com.fasterxml.jackson.databind.util.SimpleBeanPropertyDefinition;
+import org.apache.logging.log4j.core.LogEvent;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PreSerializedVirtualPropertiesWriterTest {
+
+    @Test
+    public void writesStaticPropertiesBeforeDynamicProperties() throws IOException {
+
+        // given
+        ValueResolver valueResolver = ValueResolver.NO_OP;
+        VirtualPropertiesWriter writer = new PreSerializedVirtualPropertiesWriter(
+                new VirtualProperty[] {
+                        new VirtualProperty("dynamic1", "dynamicValue1", true),
+                        new VirtualProperty("static1", "staticValue1", false),
+                        new VirtualProperty("static2", "staticValue2", false),
+                },
+                valueResolver,
+                new VirtualPropertyFilter[0]
+        );
+
+        // when
+        String result = writeWithFields(writer, true);
+
+        // then
+        assertEquals(
+                "{\"before\":\"value\",\"static1\":\"staticValue1\",\"static2\":\"staticValue2\",\"dynamic1\":\"dynamicValue1\",\"after\":\"value\"}",
+                result
+        );
+
+    }
+
+    @Test
+    public void writesValidJsonIfNoFieldsWereWrittenBefore() throws IOException {
+
+        // given
+        VirtualPropertiesWriter writer = new PreSerializedVirtualPropertiesWriter(
+                new VirtualProperty[] {
+                        new VirtualProperty("static1", "staticValue1", false),
+                        new VirtualProperty("static2", "staticValue2", false),
+                },
+                ValueResolver.NO_OP,
+                new VirtualPropertyFilter[0]
+        );
+
+        // when
+        String result = writeWithFields(writer, false);
+
+        // then
+        Map<String, String> parsed = new ObjectMapper().readValue(result, new TypeReference<Map<String, String>>() {});
+        assertEquals(3, parsed.size());
+        assertEquals("staticValue1", parsed.get("static1"));
+        assertEquals("staticValue2", parsed.get("static2"));
+        assertEquals("value", parsed.get("after"));
+
+    }
+
+    @Test
+    public void escapesStaticProperties() throws IOException {
+
+        // given
+        String name = "\"quoted\"ą";
+        String value = "line1\nline2\\ć";
+
+        VirtualPropertiesWriter writer = new PreSerializedVirtualPropertiesWriter(
+                new VirtualProperty[] {
+                        new VirtualProperty("static1", "staticValue1", false),
+                        new VirtualProperty(name, value, false),
+                },
+                ValueResolver.NO_OP,
+                new VirtualPropertyFilter[0]
+        );
+
+        // when
+        String result = writeWithFields(writer, true);
+
+        // then
+        Map<String, String> parsed = new ObjectMapper().readValue(result, new TypeReference<Map<String, String>>() {});
+        assertEquals(value, parsed.get(name));
+
+    }
+
+    @Test
+    public void usesGeneratorEscapingIfNonAsciiEscapingIsEnabled() throws IOException {
+
+        // given
+        VirtualProperty[] virtualProperties = {
+                new VirtualProperty("static1", "staticValueą", false),
+                new VirtualProperty("staticć", "staticValueę", false),
+        };
+
+        JsonFactory jsonFactory = new JsonFactory().enable(JsonGenerator.Feature.ESCAPE_NON_ASCII);
+
+        VirtualPropertiesWriter writer = new PreSerializedVirtualPropertiesWriter(
+                virtualProperties,
+                ValueResolver.NO_OP,
+                new VirtualPropertyFilter[0]
+        );
+
+        // when
+        String result = writeWithFields(writer, true, jsonFactory);
+
+        // then
+        String expected = writeWithFields(
+                new VirtualPropertiesWriter(virtualProperties, ValueResolver.NO_OP, new VirtualPropertyFilter[0]),
+                true,
+                jsonFactory
+        );
+        assertEquals(expected, result);
+        assertTrue(result.contains("\\u0105"));
+        assertTrue(result.contains("\\u0107"));
+
+    }
+
+    @Test
+    public void usesGeneratorEscapingIfCustomCharacterEscapesAreConfigured() throws IOException {
+
+        // given
+        VirtualProperty[] virtualProperties = {
+                new VirtualProperty("static1", "static<Value>1", false),
+                new VirtualProperty("static2", "static<Value>2", false),
+        };
+
+        JsonFactory jsonFactory = new JsonFactory().setCharacterEscapes(new TestCharacterEscapes('<'));
+
+        VirtualPropertiesWriter writer = new PreSerializedVirtualPropertiesWriter(
+                virtualProperties,
+                ValueResolver.NO_OP,
+                new VirtualPropertyFilter[0]
+        );
+
+        // when
+        String result = writeWithFields(writer, true, jsonFactory);
+
+        // then
+        String expected = writeWithFields(
+                new VirtualPropertiesWriter(virtualProperties, ValueResolver.NO_OP, new VirtualPropertyFilter[0]),
+                true,
+                jsonFactory
+        );
+        assertEquals(expected, result);
+        assertFalse(result.contains("<"));
+
+    }
+
+    @Test
+    public void resolvesAndFiltersStaticPropertiesOnlyOnce() throws IOException {
+
+        // given
+        VirtualProperty staticProperty = new VirtualProperty("static1", "staticValue1", false);
+        VirtualProperty dynamicProperty = new VirtualProperty("dynamic1", "dynamicValue1", true);
+
+        ValueResolver valueResolver = spy(new TestValueResolver());
+        VirtualPropertyFilter filter = mock(VirtualPropertyFilter.class);
+        when(filter.isIncluded(anyString(), anyString())).thenReturn(true);
+
+        VirtualPropertiesWriter writer = new PreSerializedVirtualPropertiesWriter(
+                new VirtualProperty[] { staticProperty, dynamicProperty },
+                valueResolver,
+                new VirtualPropertyFilter[] { filter }
+        );
+
+        // when
+        writeWithFields(writer, true);
+        writeWithFields(writer, true);
+
+        // then
+        verify(valueResolver, times(1)).resolve(eq(staticProperty));
+        verify(filter, times(1)).isIncluded(eq("static1"), eq("staticValue1"));
+        verify(valueResolver, times(2)).resolve(eq(dynamicProperty));
+        verify(filter, times(2)).isIncluded(eq("dynamic1"), eq("dynamicValue1"));
+
+    }
+
+    @Test
+    public void doesNotWriteStaticPropertiesExcludedByFilters() throws IOException {
+
+        // given
+        VirtualPropertyFilter filter = mock(VirtualPropertyFilter.class);
+        when(filter.isIncluded(anyString(), anyString())).thenReturn(true);
+        when(filter.isIncluded(eq("excluded"), anyString())).thenReturn(false);
+
+        VirtualPropertiesWriter writer = new PreSerializedVirtualPropertiesWriter(
+                new VirtualProperty[] {
+                        new VirtualProperty("excluded", "value", false),
+                        new VirtualProperty("static1", "staticValue1", false),
+                },
+                ValueResolver.NO_OP,
+                new VirtualPropertyFilter[] { filter }
+        );
+
+        // when
+        String result = writeWithFields(writer, true);
+
+        // then
+        assertFalse(result.contains("excluded"));
+        assertTrue(result.contains("\"static1\":\"staticValue1\""));
+
+    }
+
+    @Test
+    public void withConfigReturnsPreSerializedWriter() throws IOException {
+
+        // given
+        ObjectMapper objectMapper = new ObjectMapper();
+        SerializationConfig config = objectMapper.getSerializationConfig();
+
+        PreSerializedVirtualPropertiesWriter writer = new PreSerializedVirtualPropertiesWriter(
+                new VirtualProperty[] {
+                        new VirtualProperty("static1", "staticValue1", false),
+                        new VirtualProperty("static2", "staticValue2", false),
+                },
+                ValueResolver.NO_OP,
+                new VirtualPropertyFilter[0]
+        );
+
+        JavaType javaType = config.constructType(LogEvent.class);
+        AnnotatedClass annotatedClass = AnnotatedClassResolver.resolve(config, javaType, null);
+        SimpleBeanPropertyDefinition propertyDefinition = SimpleBeanPropertyDefinition.construct(
+                config,
+                new VirtualAnnotatedMember(annotatedClass, LogEvent.class, "virtualProperties", javaType)
+        );
+
+        // when
+        VirtualPropertiesWriter result = writer.withConfig(
+                config,
+                annotatedClass,
+                propertyDefinition,
+                config.constructType(VirtualProperty.class)
+        );
+
+        // then
+        assertTrue(result instanceof PreSerializedVirtualPropertiesWriter);
+        assertEquals(writeWithFields(writer, true), writeWithFields(result, true));
+
+    }
+
+    private String writeWithFields(VirtualPropertiesWriter writer, boolean fieldBefore) throws IOException {
+        return writeWithFields(writer, fieldBefore, new JsonFactory());
+    }
+
+    private String writeWithFields(VirtualPropertiesWriter writer, boolean fieldBefore, JsonFactory jsonFactory) throws IOException {
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        JsonGenerator gen = jsonFactory.createGenerator(outputStream);
+
+        gen.writeStartObject();
+        if (fieldBefore) {
+            gen.writeStringField("before", "value");
+        }
+        writer.serializeAsField(null, gen, mock(SerializerProvider.class));
+        gen.writeStringField("after", "value");
+        gen.writeEndObject();
+        gen.close();
+
+        return outputStream.toString("UTF-8");
+    }
+
+    public static class TestValueResolver implements ValueResolver {
+
+        @Override
+        public String resolve(String unresolved) {
+            return unresolved;
+        }
+
+        @Override
+        public String resolve(VirtualProperty property) {
+            return property.getValue();
+        }
+
+    }
+
+    private static class TestCharacterEscapes extends CharacterEscapes {
+
+        private final int[] escapes = standardAsciiEscapesForJSON();
+        private final char escaped;
+
+        TestCharacterEscapes(char escaped) {
+            this.escaped = escaped;
+            escapes[escaped] = ESCAPE_CUSTOM;
+        }
+
+        @Override
+        public int[] getEscapeCodesForAscii() {
+            return escapes;
+        }
+
+        @Override
+        public SerializableString getEscapeSequence(int ch) {
+            return ch == escaped ? new SerializedString("\\u003c") : null;
+        }
+
+    }
+
+}
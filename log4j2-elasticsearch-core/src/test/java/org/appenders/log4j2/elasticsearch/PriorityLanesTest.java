@@ -0,0 +1,291 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.ConfigurationException;
+import org.appenders.log4j2.elasticsearch.failover.FailedItemSource;
+import org.appenders.log4j2.elasticsearch.failover.FailoverListener;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class PriorityLanesTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void defaultLevelSplitsWarnAndMoreSevereEvents() {
+
+        // given
+        PriorityLanes priorityLanes = PriorityLanes.newBuilder().build();
+
+        // then
+        assertTrue(priorityLanes.isHighPriority(Level.FATAL));
+        assertTrue(priorityLanes.isHighPriority(Level.ERROR));
+        assertTrue(priorityLanes.isHighPriority(Level.WARN));
+        assertFalse(priorityLanes.isHighPriority(Level.INFO));
+        assertFalse(priorityLanes.isHighPriority(Level.DEBUG));
+        assertFalse(priorityLanes.isHighPriority(Level.TRACE));
+
+    }
+
+    @Test
+    public void eventsWithoutLevelAreHighPriority() {
+
+        // given
+        PriorityLanes priorityLanes = PriorityLanes.newBuilder().build();
+
+        // then
+        assertTrue(priorityLanes.isHighPriority(null));
+
+    }
+
+    @Test
+    public void levelIsConfigurable() {
+
+        // given
+        PriorityLanes priorityLanes = PriorityLanes.newBuilder()
+                .withLevel("error")
+                .build();
+
+        // then
+        assertTrue(priorityLanes.isHighPriority(Level.ERROR));
+        assertFalse(priorityLanes.isHighPriority(Level.WARN));
+
+    }
+
+    @Test
+    public void acceptsLowPriorityEventsIfNotUnderBackpressure() {
+
+        // given
+        PriorityLanes priorityLanes = PriorityLanes.newBuilder().build();
+
+        // then
+        assertFalse(priorityLanes.isUnderBackpressure());
+        assertTrue(priorityLanes.acceptLowPriority());
+        assertEquals(0, priorityLanes.getShedCount());
+
+    }
+
+    @Test
+    public void shedsAllLowPriorityEventsUnderBackpressureByDefault() {
+
+        // given
+        PriorityLanes priorityLanes = PriorityLanes.newBuilder()
+                .withBackpressureWindowMillis(60000)
+                .build();
+
+        // when
+        priorityLanes.onBackpressure();
+
+        // then
+        for (int ii = 0; ii < 10; ii++) {
+            assertFalse(priorityLanes.acceptLowPriority());
+        }
+        assertEquals(10, priorityLanes.getShedCount());
+
+    }
+
+    @Test
+    public void samplesLowPriorityEventsUnderBackpressureIfConfigured() {
+
+        // given
+        PriorityLanes priorityLanes = PriorityLanes.newBuilder()
+                .withBackpressureWindowMillis(60000)
+                .withLowPrioritySamplingRate(5)
+                .build();
+
+        priorityLanes.onBackpressure();
+
+        // when
+        int accepted = 0;
+        for (int ii = 0; ii < 100; ii++) {
+            if (priorityLanes.acceptLowPriority()) {
+                accepted++;
+            }
+        }
+
+        // then
+        assertEquals(20, accepted);
+        assertEquals(80, priorityLanes.getShedCount());
+
+    }
+
+    @Test
+    public void backpressureEndsAfterConfiguredWindow() {
+
+        // given
+        AtomicLong clock = new AtomicLong();
+        PriorityLanes priorityLanes = new PriorityLanes(Level.WARN, 0, 10, clock::get);
+
+        priorityLanes.onBackpressure();
+        clock.addAndGet(9);
+        assertTrue(priorityLanes.isUnderBackpressure());
+
+        // when
+        clock.addAndGet(1);
+
+        // then
+        assertFalse(priorityLanes.isUnderBackpressure());
+        assertTrue(priorityLanes.acceptLowPriority());
+
+    }
+
+    @Test
+    public void laneFailoverPolicyDelegatesAndStartsBackpressure() {
+
+        // given
+        PriorityLanes priorityLanes = PriorityLanes.newBuilder().build();
+        FailoverPolicy<Object> failoverPolicy = mock(FailoverPolicy.class);
+        FailoverPolicy<Object> wrapped = priorityLanes.lowPriorityLane(failoverPolicy);
+
+        FailedItemSource<Object> failedItemSource = mock(FailedItemSource.class);
+        FailoverListener failoverListener = mock(FailoverListener.class);
+
+        // when
+        wrapped.deliver(failedItemSource);
+        wrapped.addListener(failoverListener);
+
+        // then
+        verify(failoverPolicy).deliver(failedItemSource);
+        verify(failoverPolicy).addListener(failoverListener);
+        assertTrue(priorityLanes.isUnderBackpressure());
+
+    }
+
+    @Test
+    public void laneOfReturnsLaneOfGivenFailoverPolicy() {
+
+        // given
+        PriorityLanes priorityLanes = PriorityLanes.newBuilder().build();
+        FailoverPolicy<Object> failoverPolicy = mock(FailoverPolicy.class);
+
+        // when
+        PriorityLanes.Lane highPriorityLane = PriorityLanes.laneOf(priorityLanes.highPriorityLane(failoverPolicy));
+        PriorityLanes.Lane lowPriorityLane = PriorityLanes.laneOf(priorityLanes.lowPriorityLane(failoverPolicy));
+
+        // then
+        assertTrue(highPriorityLane.isHighPriority());
+        assertFalse(lowPriorityLane.isHighPriority());
+        assertNull(PriorityLanes.laneOf(failoverPolicy));
+
+    }
+
+    @Test
+    public void lowPriorityLaneShedsQueuedBatchesUnderBackpressure() {
+
+        // given
+        PriorityLanes priorityLanes = PriorityLanes.newBuilder()
+                .withBackpressureWindowMillis(60000)
+                .build();
+        FailoverPolicy<Object> failoverPolicy = mock(FailoverPolicy.class);
+
+        PriorityLanes.Lane highPriorityLane = priorityLanes.highPriorityLane(failoverPolicy);
+        PriorityLanes.Lane lowPriorityLane = priorityLanes.lowPriorityLane(failoverPolicy);
+        assertFalse(lowPriorityLane.isShedding());
+
+        // when
+        highPriorityLane.deliver(mock(FailedItemSource.class));
+        lowPriorityLane.shed(10);
+
+        // then
+        assertTrue(lowPriorityLane.isShedding());
+        assertFalse(highPriorityLane.isShedding());
+        assertEquals(10, priorityLanes.getShedCount());
+
+    }
+
+    @Test
+    public void lowPriorityLaneDoesNotShedQueuedBatchesIfSamplingIsConfigured() {
+
+        // given
+        PriorityLanes priorityLanes = PriorityLanes.newBuilder()
+                .withBackpressureWindowMillis(60000)
+                .withLowPrioritySamplingRate(5)
+                .build();
+
+        PriorityLanes.Lane lowPriorityLane = priorityLanes.lowPriorityLane(mock(FailoverPolicy.class));
+
+        // when
+        priorityLanes.onBackpressure();
+
+        // then
+        assertFalse(lowPriorityLane.isShedding());
+
+    }
+
+    @Test
+    public void builderThrowsOnUnknownLevel() {
+
+        // given
+        PriorityLanes.Builder builder = PriorityLanes.newBuilder()
+                .withLevel("unknown");
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("Unknown level: unknown");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderThrowsOnNegativeLowPrioritySamplingRate() {
+
+        // given
+        PriorityLanes.Builder builder = PriorityLanes.newBuilder()
+                .withLowPrioritySamplingRate(-1);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("lowPrioritySamplingRate must be higher than or equal to 0");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderThrowsOnNonPositiveBackpressureWindow() {
+
+        // given
+        PriorityLanes.Builder builder = PriorityLanes.newBuilder()
+                .withBackpressureWindowMillis(0);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("backpressureWindowMillis must be higher than 0");
+
+        // when
+        builder.build();
+
+    }
+
+}
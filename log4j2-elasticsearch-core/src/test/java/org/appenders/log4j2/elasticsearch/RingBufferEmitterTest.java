@@ -0,0 +1,575 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.appenders.log4j2.elasticsearch.BulkEmitterTest.TestBatch;
+import org.appenders.log4j2.elasticsearch.BulkEmitterTest.TestBatchOperations;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.appenders.log4j2.elasticsearch.BulkEmitterTest.LARGE_TEST_INTERVAL;
+import static org.appenders.log4j2.elasticsearch.BulkEmitterTest.TEST_BATCH_SIZE;
+import static org.appenders.log4j2.elasticsearch.BulkEmitterTest.TEST_DATA;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class RingBufferEmitterTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void throwsWhenCapacityIsLowerThanBatchSize() {
+
+        // given
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Ring buffer capacity cannot be lower than batch size");
+
+        // when
+        new RingBufferEmitter<>(10, LARGE_TEST_INTERVAL, new TestBatchOperations(), 9);
+
+    }
+
+    @Test
+    public void capacityIsRoundedUpToPowerOfTwo() {
+
+        // when
+        RingBufferEmitter emitter = new RingBufferEmitter<>(10, LARGE_TEST_INTERVAL, new TestBatchOperations(), 33);
+
+        // then
+        assertEquals(64, emitter.getCapacity());
+
+    }
+
+    @Test
+    public void defaultCapacityIsBasedOnBatchSize() {
+
+        // when
+        RingBufferEmitter emitter = new RingBufferEmitter<>(16, LARGE_TEST_INTERVAL, new TestBatchOperations());
+
+        // then
+        assertEquals(16 * RingBufferEmitter.DEFAULT_CAPACITY_FACTOR, emitter.getCapacity());
+
+    }
+
+    @Test
+    public void notifiesOnBatchWithGivenSize() {
+
+        // given
+        int batchSize = 3;
+        RingBufferEmitter emitter = createTestRingBufferEmitter(batchSize, LARGE_TEST_INTERVAL);
+        Function<TestBatch, Boolean> dummyObserver = dummyObserver();
+        emitter.addListener(dummyObserver);
+
+        // when
+        for (int ii = 0; ii < batchSize; ii++) {
+            emitter.add(new BulkEmitterTest.TestBatchItem(TEST_DATA));
+        }
+
+        // then
+        ArgumentCaptor<TestBatch> captor = ArgumentCaptor.forClass(TestBatch.class);
+        verify(dummyObserver, times(1)).apply(captor.capture());
+        assertEquals(batchSize, captor.getValue().items.size());
+        assertEquals(0, emitter.size());
+
+    }
+
+    @Test
+    public void notifiesOnBatchWithGivenSizeInBytes() {
+
+        // given
+        RingBufferEmitter emitter = new RingBufferEmitter<>(TEST_BATCH_SIZE * 10, 100, LARGE_TEST_INTERVAL, new TestBatchOperations(), TEST_BATCH_SIZE * 10);
+        Function<TestBatch, Boolean> dummyObserver = dummyObserver();
+        emitter.addListener(dummyObserver);
+
+        // when
+        emitter.add(new BulkEmitterTest.TestBatchItem(TEST_DATA), 60);
+
+        // then
+        verify(dummyObserver, never()).apply(any());
+
+        // when
+        emitter.add(new BulkEmitterTest.TestBatchItem(TEST_DATA), 40);
+
+        // then
+        ArgumentCaptor<TestBatch> captor = ArgumentCaptor.forClass(TestBatch.class);
+        verify(dummyObserver, times(1)).apply(captor.capture());
+        assertEquals(2, captor.getValue().items.size());
+        assertEquals(0, emitter.size());
+
+    }
+
+    @Test
+    public void cutsBatchesAtGivenSizeInBytes() {
+
+        // given
+        RingBufferEmitter emitter = new RingBufferEmitter<>(TEST_BATCH_SIZE * 10, 100, LARGE_TEST_INTERVAL, new TestBatchOperations(), TEST_BATCH_SIZE * 10);
+        Function<TestBatch, Boolean> dummyObserver = dummyObserver();
+        emitter.addListener(dummyObserver);
+
+        // not triggered by size
+        emitter.add(new BulkEmitterTest.TestBatchItem(TEST_DATA), 0);
+        emitter.add(new BulkEmitterTest.TestBatchItem(TEST_DATA), 0);
+
+        // when
+        emitter.add(new BulkEmitterTest.TestBatchItem(TEST_DATA), 150);
+
+        // then
+        ArgumentCaptor<TestBatch> captor = ArgumentCaptor.forClass(TestBatch.class);
+        verify(dummyObserver, times(1)).apply(captor.capture());
+        assertEquals(3, captor.getValue().items.size());
+
+        // when
+        emitter.add(new BulkEmitterTest.TestBatchItem(TEST_DATA), 70);
+        emitter.add(new BulkEmitterTest.TestBatchItem(TEST_DATA), 70);
+        emitter.add(new BulkEmitterTest.TestBatchItem(TEST_DATA), 70);
+        emitter.notifyListener();
+
+        // then
+        verify(dummyObserver, times(3)).apply(captor.capture());
+        assertEquals(2, captor.getAllValues().get(captor.getAllValues().size() - 2).items.size());
+        assertEquals(1, captor.getAllValues().get(captor.getAllValues().size() - 1).items.size());
+        assertEquals(0, emitter.size());
+
+    }
+
+    @Test
+    public void notifiesOnEveryCompletedBatch() {
+
+        // given
+        RingBufferEmitter emitter = createTestRingBufferEmitter(TEST_BATCH_SIZE, LARGE_TEST_INTERVAL);
+        Function<TestBatch, Boolean> dummyObserver = dummyObserver();
+        emitter.addListener(dummyObserver);
+
+        int expectedNumberOfBatches = 4;
+
+        // when
+        for (int ii = 0; ii < TEST_BATCH_SIZE * expectedNumberOfBatches; ii++) {
+            emitter.add(new BulkEmitterTest.TestBatchItem(TEST_DATA));
+        }
+
+        // then
+        ArgumentCaptor<TestBatch> captor = ArgumentCaptor.forClass(TestBatch.class);
+        verify(dummyObserver, times(expectedNumberOfBatches)).apply(captor.capture());
+        for (TestBatch batch : captor.getAllValues()) {
+            assertEquals(TEST_BATCH_SIZE, batch.items.size());
+        }
+
+    }
+
+    @Test
+    public void deliversItemsInOrder() {
+
+        // given
+        int batchSize = 5;
+        RingBufferEmitter emitter = createTestRingBufferEmitter(batchSize, LARGE_TEST_INTERVAL);
+        Function<TestBatch, Boolean> dummyObserver = dummyObserver();
+        emitter.addListener(dummyObserver);
+
+        // when
+        for (int ii = 0; ii < batchSize * 3; ii++) {
+            emitter.add(ii);
+        }
+
+        // then
+        ArgumentCaptor<TestBatch> captor = ArgumentCaptor.forClass(TestBatch.class);
+        verify(dummyObserver, times(3)).apply(captor.capture());
+
+        List<Object> delivered = new ArrayList<>();
+        captor.getAllValues().forEach(batch -> delivered.addAll(batch.items));
+
+        for (int ii = 0; ii < batchSize * 3; ii++) {
+            assertEquals(ii, delivered.get(ii));
+        }
+
+    }
+
+    @Test
+    public void listenerIsNotNotifiedWhenThereNoItemsToBatch() {
+
+        // given
+        RingBufferEmitter emitter = createTestRingBufferEmitter(TEST_BATCH_SIZE, LARGE_TEST_INTERVAL);
+        Function<TestBatch, Boolean> dummyObserver = dummyObserver();
+        emitter.addListener(dummyObserver);
+
+        // when
+        emitter.notifyListener();
+
+        // then
+        verify(dummyObserver, never()).apply(any());
+
+    }
+
+    @Test
+    public void producersAreNotBlockedByOngoingDelivery() throws InterruptedException {
+
+        // given
+        CountDownLatch deliveryStarted = new CountDownLatch(1);
+        CountDownLatch deliveryReleased = new CountDownLatch(1);
+
+        Function<TestBatch, Boolean> listener = spy(new Function<TestBatch, Boolean>() {
+            @Override
+            public Boolean apply(TestBatch batch) {
+                deliveryStarted.countDown();
+                try {
+                    deliveryReleased.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Assert.fail();
+                }
+                return true;
+            }
+        });
+
+        RingBufferEmitter emitter = createTestRingBufferEmitter(1, LARGE_TEST_INTERVAL);
+        emitter.addListener(listener);
+
+        Thread t1 = new Thread(() -> emitter.add(0));
+        t1.start();
+        assertTrue(deliveryStarted.await(5, TimeUnit.SECONDS));
+
+        // when
+        long start = System.currentTimeMillis();
+        emitter.add(1);
+        emitter.add(2);
+        long end = System.currentTimeMillis();
+
+        deliveryReleased.countDown();
+        t1.join();
+
+        // then
+        assertTrue(end - start < 1000);
+
+        emitter.notifyListener();
+        verify(listener, times(3)).apply(any());
+
+    }
+
+    @Test
+    public void deliversAllItemsAddedConcurrently() throws InterruptedException {
+
+        // given
+        int batchSize = 10;
+        int numberOfThreads = 8;
+        int itemsPerThread = 1000;
+
+        AtomicInteger delivered = new AtomicInteger();
+        RingBufferEmitter<TestBatch> emitter = new RingBufferEmitter<>(batchSize, LARGE_TEST_INTERVAL, new TestBatchOperations(), batchSize * 2);
+        emitter.addListener(batch -> {
+            delivered.addAndGet(batch.items.size());
+            return true;
+        });
+
+        List<Thread> threads = new ArrayList<>();
+        for (int ii = 0; ii < numberOfThreads; ii++) {
+            threads.add(new Thread(() -> {
+                for (int jj = 0; jj < itemsPerThread; jj++) {
+                    emitter.add(new Object());
+                }
+            }));
+        }
+
+        // when
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        emitter.notifyListener();
+
+        // then
+        assertEquals(numberOfThreads * itemsPerThread, delivered.get());
+        assertEquals(0, emitter.size());
+
+    }
+
+    @Test
+    public void listenerIsNotifiedByScheduledTask() {
+
+        // given
+        RingBufferEmitter emitter = createTestRingBufferEmitter(TEST_BATCH_SIZE, 1000);
+        Function<TestBatch, Boolean> dummyObserver = dummyObserver();
+        emitter.addListener(dummyObserver);
+        emitter.start();
+
+        assertTrue(TEST_BATCH_SIZE > 1);
+
+        // when
+        emitter.add(new Object());
+
+        // then
+        verify(dummyObserver, timeout(2000)).apply(any());
+
+    }
+
+    @Test
+    public void listenerIsNotifiedOnLifecycleStop() {
+
+        // given
+        RingBufferEmitter emitter = createTestRingBufferEmitter(TEST_BATCH_SIZE, 1000);
+        Function<TestBatch, Boolean> dummyObserver = dummyObserver();
+        emitter.addListener(dummyObserver);
+
+        assertTrue(TEST_BATCH_SIZE > 1);
+
+        emitter.start();
+
+        // when
+        emitter.add(new Object());
+        emitter.stop();
+
+        // then
+        verify(dummyObserver).apply(any());
+
+    }
+
+    @Test
+    public void lifecycleStopWaitsForInFlightDeliveryAndDeliversRemainingItems() throws InterruptedException {
+
+        // given
+        CountDownLatch deliveryStarted = new CountDownLatch(1);
+        CountDownLatch deliveryReleased = new CountDownLatch(1);
+        AtomicInteger delivered = new AtomicInteger();
+
+        Function<TestBatch, Boolean> listener = batch -> {
+            deliveryStarted.countDown();
+            try {
+                deliveryReleased.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Assert.fail();
+            }
+            delivered.addAndGet(batch.items.size());
+            return true;
+        };
+
+        RingBufferEmitter emitter = createTestRingBufferEmitter(2, LARGE_TEST_INTERVAL);
+        emitter.addListener(listener);
+        emitter.start();
+
+        Thread producer = new Thread(() -> {
+            emitter.add(0);
+            emitter.add(1);
+        });
+        producer.start();
+        assertTrue(deliveryStarted.await(5, TimeUnit.SECONDS));
+
+        emitter.add(2);
+
+        Thread stopping = new Thread(emitter::stop);
+        stopping.start();
+
+        // when
+        deliveryReleased.countDown();
+        stopping.join(5000);
+        producer.join(5000);
+
+        // then
+        assertTrue(emitter.isStopped());
+        assertEquals(0, emitter.size());
+        assertEquals(3, delivered.get());
+
+    }
+
+    @Test
+    public void addThrowsWhenEmitterWasStopped() {
+
+        // given
+        RingBufferEmitter emitter = createTestRingBufferEmitter(TEST_BATCH_SIZE, LARGE_TEST_INTERVAL);
+        emitter.addListener(dummyObserver());
+        emitter.start();
+        emitter.stop();
+
+        expectedException.expect(IllegalStateException.class);
+        expectedException.expectMessage("was stopped");
+
+        // when
+        emitter.add(new Object());
+
+    }
+
+    @Test
+    public void itemsAcceptedConcurrentlyWithLifecycleStopAreDelivered() throws InterruptedException {
+
+        // given
+        AtomicInteger delivered = new AtomicInteger();
+        Function<TestBatch, Boolean> listener = batch -> {
+            delivered.addAndGet(batch.items.size());
+            return true;
+        };
+
+        RingBufferEmitter emitter = createTestRingBufferEmitter(TEST_BATCH_SIZE, LARGE_TEST_INTERVAL);
+        emitter.addListener(listener);
+        emitter.start();
+
+        int producerCount = 4;
+        AtomicInteger accepted = new AtomicInteger();
+        CountDownLatch producersStarted = new CountDownLatch(producerCount);
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < producerCount; i++) {
+            Thread producer = new Thread(() -> {
+                producersStarted.countDown();
+                try {
+                    while (true) {
+                        emitter.add(new Object());
+                        accepted.incrementAndGet();
+                    }
+                } catch (IllegalStateException e) {
+                    // expected once stopped
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        assertTrue(producersStarted.await(5, TimeUnit.SECONDS));
+
+        // when
+        emitter.stop();
+        for (Thread producer : producers) {
+            producer.join(5000);
+        }
+
+        // then
+        assertTrue(emitter.isStopped());
+        assertEquals(0, emitter.size());
+        assertEquals(accepted.get(), delivered.get());
+
+    }
+
+    @Test
+    public void canAddAfterRestart() {
+
+        // given
+        Function<TestBatch, Boolean> dummyObserver = dummyObserver();
+        RingBufferEmitter emitter = createTestRingBufferEmitter(TEST_BATCH_SIZE, LARGE_TEST_INTERVAL);
+        emitter.addListener(dummyObserver);
+        emitter.start();
+        emitter.stop();
+
+        emitter.start();
+
+        // when
+        emitter.add(new Object());
+        emitter.stop();
+
+        // then
+        verify(dummyObserver).apply(any());
+
+    }
+
+    @Test
+    public void lifecycleStart() {
+
+        // given
+        LifeCycle lifeCycle = createTestRingBufferEmitter(TEST_BATCH_SIZE, LARGE_TEST_INTERVAL);
+
+        assertTrue(lifeCycle.isStopped());
+
+        // when
+        lifeCycle.start();
+
+        // then
+        assertFalse(lifeCycle.isStopped());
+        assertTrue(lifeCycle.isStarted());
+
+    }
+
+    @Test
+    public void lifecycleStop() {
+
+        // given
+        LifeCycle lifeCycle = createTestRingBufferEmitter(TEST_BATCH_SIZE, LARGE_TEST_INTERVAL);
+
+        assertTrue(lifeCycle.isStopped());
+
+        lifeCycle.start();
+        assertTrue(lifeCycle.isStarted());
+
+        // when
+        lifeCycle.stop();
+
+        // then
+        assertFalse(lifeCycle.isStarted());
+        assertTrue(lifeCycle.isStopped());
+
+    }
+
+    @Test
+    public void factoryAcceptsAnyClientObjectFactory() {
+
+        // given
+        RingBufferEmitterFactory factory = new RingBufferEmitterFactory();
+
+        // when
+        boolean result = factory.accepts(TestHttpObjectFactory.class);
+
+        // then
+        assertTrue(result);
+
+    }
+
+    @Test
+    public void factoryCreatesBatchListenerAndBatchOperations() {
+
+        // given
+        RingBufferEmitterFactory factory = new RingBufferEmitterFactory();
+        ClientObjectFactory clientObjectFactory = Mockito.spy(BatchDeliveryTest.createTestObjectFactoryBuilder().build());
+        NoopFailoverPolicy failoverPolicy = new NoopFailoverPolicy();
+
+        // when
+        factory.createInstance(1, 1, clientObjectFactory, failoverPolicy);
+
+        // then
+        verify(clientObjectFactory).createBatchListener(failoverPolicy);
+        verify(clientObjectFactory).createBatchOperations();
+
+    }
+
+    private RingBufferEmitter createTestRingBufferEmitter(int batchSize, int interval) {
+        return new RingBufferEmitter<>(batchSize, interval, new TestBatchOperations());
+    }
+
+    private Function<TestBatch, Boolean> dummyObserver() {
+        return spy(new Function<TestBatch, Boolean>() {
+            @Override
+            public Boolean apply(TestBatch batch) {
+                return true;
+            }
+        });
+    }
+
+}
@@ -0,0 +1,170 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SharedSchedulerTest {
+
+    @Test
+    public void returnsSameInstance() {
+
+        // when
+        ScheduledExecutorService executor1 = SharedScheduler.getInstance();
+        ScheduledExecutorService executor2 = SharedScheduler.getInstance();
+
+        // then
+        assertSame(executor1, executor2);
+
+    }
+
+    @Test
+    public void shutdownIsIgnored() {
+
+        // given
+        ScheduledExecutorService executor = SharedScheduler.createExecutor(1);
+
+        // when
+        executor.shutdown();
+        executor.shutdownNow();
+
+        // then
+        assertFalse(executor.isShutdown());
+
+    }
+
+    @Test
+    public void runsTasksOnDaemonThreads() throws InterruptedException {
+
+        // given
+        ScheduledExecutorService executor = SharedScheduler.createExecutor(1);
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Thread> thread = new AtomicReference<>();
+
+        // when
+        executor.schedule(() -> {
+            thread.set(Thread.currentThread());
+            latch.countDown();
+        }, 1, TimeUnit.MILLISECONDS);
+
+        // then
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertTrue(thread.get().isDaemon());
+        assertEquals(String.format(SharedScheduler.THREAD_NAME_FORMAT, 1), thread.get().getName());
+
+    }
+
+    @Test
+    public void cancelledTasksAreRemoved() {
+
+        // given
+        ScheduledThreadPoolExecutor executor = SharedScheduler.createExecutor(1);
+        ScheduledFuture<?> scheduledTask = executor.scheduleAtFixedRate(() -> {}, 1000, 1000, TimeUnit.MILLISECONDS);
+
+        assertEquals(1, executor.getQueue().size());
+
+        // when
+        scheduledTask.cancel(false);
+
+        // then
+        assertEquals(0, executor.getQueue().size());
+
+    }
+
+    @Test
+    public void returnsSameWorkersInstance() {
+
+        // when
+        ExecutorService workers1 = SharedScheduler.getWorkers();
+        ExecutorService workers2 = SharedScheduler.getWorkers();
+
+        // then
+        assertSame(workers1, workers2);
+
+    }
+
+    @Test
+    public void workersShutdownIsIgnored() {
+
+        // given
+        ExecutorService workers = SharedScheduler.createWorkers();
+
+        // when
+        workers.shutdown();
+        workers.shutdownNow();
+
+        // then
+        assertFalse(workers.isShutdown());
+
+    }
+
+    @Test
+    public void workersRunTasksConcurrentlyOnDaemonThreads() throws InterruptedException {
+
+        // given
+        ExecutorService workers = SharedScheduler.createWorkers();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(2);
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        Runnable task = () -> {
+            threads.add(Thread.currentThread());
+            started.countDown();
+            try {
+                release.await(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        // when
+        workers.execute(task);
+        workers.execute(task);
+
+        // then
+        try {
+            assertTrue(started.await(1, TimeUnit.SECONDS));
+            assertEquals(2, threads.size());
+            threads.forEach(thread -> assertTrue(thread.isDaemon()));
+        } finally {
+            release.countDown();
+        }
+
+    }
+
+}
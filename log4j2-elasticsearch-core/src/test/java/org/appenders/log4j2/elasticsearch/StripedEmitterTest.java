@@ -0,0 +1,268 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.appenders.log4j2.elasticsearch.BulkEmitterTest.TestBatch;
+import org.appenders.log4j2.elasticsearch.BulkEmitterTest.TestBatchOperations;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.appenders.log4j2.elasticsearch.BulkEmitterTest.LARGE_TEST_INTERVAL;
+import static org.appenders.log4j2.elasticsearch.BulkEmitterTest.TEST_BATCH_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class StripedEmitterTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void throwsOnInvalidNumberOfStripes() {
+
+        // given
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Number of stripes must be higher than 0");
+
+        // when
+        new StripedEmitter<>(0, TEST_BATCH_SIZE, LARGE_TEST_INTERVAL, new TestBatchOperations());
+
+    }
+
+    @Test
+    public void stripeIndexIsAlwaysInRange() {
+
+        // given
+        StripedEmitter emitter = new StripedEmitter<>(3, TEST_BATCH_SIZE, LARGE_TEST_INTERVAL, new TestBatchOperations());
+        Set<Integer> indices = new HashSet<>();
+
+        // when
+        for (long threadId = 0; threadId < 100; threadId++) {
+            indices.add(emitter.stripeIndex(threadId));
+        }
+        indices.add(emitter.stripeIndex(Long.MAX_VALUE));
+        indices.add(emitter.stripeIndex(Long.MIN_VALUE));
+
+        // then
+        assertEquals(3, indices.size());
+        assertTrue(indices.contains(0));
+        assertTrue(indices.contains(1));
+        assertTrue(indices.contains(2));
+
+    }
+
+    @Test
+    public void eachStripeNotifiesOnItsOwnBatchSize() throws InterruptedException {
+
+        // given
+        int batchSize = 3;
+        StripedEmitter<TestBatch> emitter = new StripedEmitter<>(2, batchSize, LARGE_TEST_INTERVAL, new TestBatchOperations());
+        Function<TestBatch, Boolean> listener = dummyObserver();
+        emitter.addListener(listener);
+
+        // when
+        for (int ii = 0; ii < batchSize; ii++) {
+            emitter.add(new Object());
+        }
+
+        // then
+        verify(listener, times(1)).apply(any());
+
+    }
+
+    @Test
+    public void eachStripeNotifiesOnItsOwnBatchSizeInBytes() {
+
+        // given
+        StripedEmitter<TestBatch> emitter = new StripedEmitter<>(2, 1000, 100, LARGE_TEST_INTERVAL, new TestBatchOperations());
+        Function<TestBatch, Boolean> listener = dummyObserver();
+        emitter.addListener(listener);
+
+        // when
+        emitter.add(new Object(), 50);
+        emitter.add(new Object(), 50);
+
+        // then
+        verify(listener, times(1)).apply(any());
+
+    }
+
+    @Test
+    public void notifiesAllStripes() throws InterruptedException {
+
+        // given
+        int numberOfStripes = 4;
+        StripedEmitter<TestBatch> emitter = new StripedEmitter<>(numberOfStripes, 1000, LARGE_TEST_INTERVAL, new TestBatchOperations());
+        Set<Integer> usedStripes = new HashSet<>();
+        AtomicInteger delivered = new AtomicInteger();
+        emitter.addListener(batch -> {
+            delivered.addAndGet(batch.items.size());
+            return true;
+        });
+
+        List<Thread> threads = new ArrayList<>();
+        for (int ii = 0; ii < 16; ii++) {
+            Thread thread = new Thread(() -> emitter.add(new Object()));
+            usedStripes.add(emitter.stripeIndex(thread.getId()));
+            threads.add(thread);
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+            thread.join();
+        }
+
+        // when
+        emitter.notifyListener();
+
+        // then
+        assertTrue(usedStripes.size() > 1);
+        assertEquals(16, delivered.get());
+
+    }
+
+    @Test
+    public void listenerIsNotNotifiedWhenThereNoItemsToBatch() {
+
+        // given
+        StripedEmitter<TestBatch> emitter = new StripedEmitter<>(2, TEST_BATCH_SIZE, LARGE_TEST_INTERVAL, new TestBatchOperations());
+        Function<TestBatch, Boolean> listener = dummyObserver();
+        emitter.addListener(listener);
+
+        // when
+        emitter.notifyListener();
+
+        // then
+        verify(listener, never()).apply(any());
+
+    }
+
+    @Test
+    public void listenerIsNotifiedByScheduledTask() {
+
+        // given
+        StripedEmitter<TestBatch> emitter = new StripedEmitter<>(2, TEST_BATCH_SIZE, 1000, new TestBatchOperations());
+        Function<TestBatch, Boolean> listener = dummyObserver();
+        emitter.addListener(listener);
+        emitter.start();
+
+        // when
+        emitter.add(new Object());
+
+        // then
+        verify(listener, timeout(2000)).apply(any());
+
+        emitter.stop();
+
+    }
+
+    @Test
+    public void listenerIsNotifiedOnLifecycleStop() {
+
+        // given
+        StripedEmitter<TestBatch> emitter = new StripedEmitter<>(2, TEST_BATCH_SIZE, LARGE_TEST_INTERVAL, new TestBatchOperations());
+        Function<TestBatch, Boolean> listener = dummyObserver();
+        emitter.addListener(listener);
+        emitter.start();
+
+        // when
+        emitter.add(new Object());
+        emitter.stop();
+
+        // then
+        verify(listener).apply(any());
+
+    }
+
+    @Test
+    public void lifecycleStartStop() {
+
+        // given
+        LifeCycle lifeCycle = new StripedEmitter<>(2, TEST_BATCH_SIZE, LARGE_TEST_INTERVAL, new TestBatchOperations());
+
+        assertTrue(lifeCycle.isStopped());
+
+        // when
+        lifeCycle.start();
+
+        // then
+        assertTrue(lifeCycle.isStarted());
+
+        // when
+        lifeCycle.stop();
+
+        // then
+        assertFalse(lifeCycle.isStarted());
+        assertTrue(lifeCycle.isStopped());
+
+    }
+
+    @Test
+    public void factoryCreatesConfiguredNumberOfStripes() {
+
+        // given
+        System.setProperty(StripedEmitterFactory.NUMBER_OF_STRIPES_PROPERTY, "3");
+        StripedEmitterFactory factory = new StripedEmitterFactory();
+        ClientObjectFactory clientObjectFactory = Mockito.spy(BatchDeliveryTest.createTestObjectFactoryBuilder().build());
+        NoopFailoverPolicy failoverPolicy = new NoopFailoverPolicy();
+
+        // when
+        StripedEmitter emitter;
+        try {
+            emitter = factory.createInstance(1, 1, clientObjectFactory, failoverPolicy);
+        } finally {
+            System.clearProperty(StripedEmitterFactory.NUMBER_OF_STRIPES_PROPERTY);
+        }
+
+        // then
+        assertTrue(factory.accepts(TestHttpObjectFactory.class));
+        assertEquals(3, emitter.getNumberOfStripes());
+        verify(clientObjectFactory, times(1)).createBatchListener(failoverPolicy);
+
+    }
+
+    private Function<TestBatch, Boolean> dummyObserver() {
+        return spy(new Function<TestBatch, Boolean>() {
+            @Override
+            public Boolean apply(TestBatch batch) {
+                return true;
+            }
+        });
+    }
+
+}
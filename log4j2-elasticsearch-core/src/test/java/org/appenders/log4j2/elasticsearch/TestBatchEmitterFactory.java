@@ -43,4 +43,14 @@ public class TestBatchEmitterFactory extends BatchEmitterServiceProvider impleme
         }
         return spiedEmitter;
     }
+
+    @Override
+    public BatchEmitter createInstance(int batchSize, long batchSizeInBytes, int deliveryInterval, ClientObjectFactory clientObjectFactory, FailoverPolicy failoverPolicy) {
+        if (spiedEmitter == null) {
+            BulkEmitter emitter = new BulkEmitter(batchSize, batchSizeInBytes, deliveryInterval, clientObjectFactory.createBatchOperations());
+            emitter.addListener(clientObjectFactory.createBatchListener(failoverPolicy));
+            spiedEmitter = Mockito.spy(emitter);
+        }
+        return spiedEmitter;
+    }
 }
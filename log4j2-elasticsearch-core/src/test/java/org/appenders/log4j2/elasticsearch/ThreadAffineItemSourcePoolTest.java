@@ -0,0 +1,484 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import io.netty.buffer.ByteBuf;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.appenders.log4j2.elasticsearch.GenericItemSourcePoolTest.DEFAULT_TEST_INITIAL_POOL_SIZE;
+import static org.appenders.log4j2.elasticsearch.GenericItemSourcePoolTest.DEFAULT_TEST_ITEM_POOL_NAME;
+import static org.appenders.log4j2.elasticsearch.GenericItemSourcePoolTest.DEFAULT_TEST_ITEM_SIZE_IN_BYTES;
+import static org.appenders.log4j2.elasticsearch.GenericItemSourcePoolTest.DEFAULT_TEST_MONITOR_TASK_INTERVAL;
+import static org.appenders.log4j2.elasticsearch.GenericItemSourcePoolTest.DEFAULT_TEST_RESIZE_TIMEOUT;
+import static org.appenders.log4j2.elasticsearch.GenericItemSourcePoolTest.byteBufAllocator;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class ThreadAffineItemSourcePoolTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void throwsOnInvalidMagazineSize() {
+
+        // given
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("magazineSize must be higher than 0");
+
+        // when
+        createTestPool(DEFAULT_TEST_INITIAL_POOL_SIZE, 0);
+
+    }
+
+    @Test
+    public void getPooledMovesHalfOfMagazineSizeFromDepot() throws PoolResourceException {
+
+        // given
+        ThreadAffineItemSourcePool<ByteBuf> pool = createTestPool(DEFAULT_TEST_INITIAL_POOL_SIZE, 4);
+        pool.start();
+
+        // when
+        pool.getPooled();
+
+        // then
+        assertEquals(DEFAULT_TEST_INITIAL_POOL_SIZE - 2, pool.getAvailableSize());
+        assertEquals(1, pool.getCachedSize());
+
+        pool.shutdown();
+
+    }
+
+    @Test
+    public void releasedElementIsReusedBySameThread() throws PoolResourceException {
+
+        // given
+        ThreadAffineItemSourcePool<ByteBuf> pool = createTestPool(DEFAULT_TEST_INITIAL_POOL_SIZE, 4);
+        pool.start();
+
+        ItemSource<ByteBuf> first = pool.getPooled();
+        int availableSize = pool.getAvailableSize();
+
+        // when
+        first.release();
+        ItemSource<ByteBuf> second = pool.getPooled();
+
+        // then
+        assertSame(first, second);
+        assertEquals(availableSize, pool.getAvailableSize());
+
+        pool.shutdown();
+
+    }
+
+    @Test
+    public void releasePublishesHalfOfMagazineAsOneChunkWhenMagazineIsFull() throws PoolResourceException {
+
+        // given
+        ThreadAffineItemSourcePool<ByteBuf> pool = createTestPool(DEFAULT_TEST_INITIAL_POOL_SIZE, 2);
+        pool.start();
+
+        ItemSource[] itemSources = new ItemSource[4];
+        for (int ii = 0; ii < itemSources.length; ii++) {
+            itemSources[ii] = pool.getPooled();
+        }
+
+        assertEquals(DEFAULT_TEST_INITIAL_POOL_SIZE - 4, pool.getAvailableSize());
+        assertEquals(0, pool.getCachedSize());
+
+        // when
+        for (ItemSource itemSource : itemSources) {
+            itemSource.release();
+        }
+
+        // then
+        assertEquals(DEFAULT_TEST_INITIAL_POOL_SIZE - 2, pool.getAvailableSize());
+        assertEquals(DEFAULT_TEST_INITIAL_POOL_SIZE - 4, pool.getDepotSize());
+        // magazineSize 2 - one element per chunk
+        assertEquals(2, pool.getReturnedChunkCount());
+        assertEquals(2, pool.getCachedSize());
+
+        pool.shutdown();
+
+    }
+
+    @Test
+    public void elementReleasedByNonAcquiringThreadIsAvailableToOtherThreads() throws PoolResourceException, InterruptedException {
+
+        // given
+        ThreadAffineItemSourcePool<ByteBuf> pool = createTestPool(DEFAULT_TEST_INITIAL_POOL_SIZE, 4);
+        pool.start();
+
+        ItemSource<ByteBuf> itemSource = pool.getPooled();
+        int availableSize = pool.getAvailableSize();
+
+        // when
+        Thread thread = new Thread(itemSource::release);
+        thread.start();
+        thread.join();
+
+        // then
+        assertEquals(1, pool.getNumberOfMagazines());
+        assertEquals(1, pool.getCachedSize());
+        assertEquals(availableSize + 1, pool.getAvailableSize());
+        assertEquals(availableSize, pool.getDepotSize());
+
+        pool.shutdown();
+
+    }
+
+    @Test
+    public void elementsAcquiredByOneThreadAndReleasedByAnotherAreReusedWithoutResize() throws InterruptedException {
+
+        // given
+        int initialPoolSize = 4;
+        ThreadAffineItemSourcePool<ByteBuf> pool = createTestPool(initialPoolSize, 4);
+        pool.start();
+
+        BlockingQueue<ItemSource<ByteBuf>> inFlight = new LinkedBlockingQueue<>();
+        // at most initialPoolSize elements are in use at any time
+        Semaphore permits = new Semaphore(initialPoolSize);
+        AtomicReference<Exception> caught = new AtomicReference<>();
+        int iterations = initialPoolSize * 10;
+
+        Thread acquiring = new Thread(() -> {
+            try {
+                for (int ii = 0; ii < iterations; ii++) {
+                    permits.acquire();
+                    inFlight.put(pool.getPooled());
+                }
+            } catch (Exception e) {
+                caught.set(e);
+            }
+        });
+
+        AtomicInteger released = new AtomicInteger();
+        Thread releasing = new Thread(() -> {
+            try {
+                while (released.get() < iterations) {
+                    ItemSource<ByteBuf> itemSource = inFlight.poll(5, TimeUnit.SECONDS);
+                    if (itemSource == null) {
+                        return;
+                    }
+                    itemSource.release();
+                    released.incrementAndGet();
+                    permits.release();
+                }
+            } catch (InterruptedException e) {
+                caught.set(e);
+            }
+        });
+
+        // when
+        acquiring.start();
+        releasing.start();
+        acquiring.join(10000);
+        releasing.join(10000);
+
+        // then
+        assertEquals(null, caught.get());
+        assertEquals(iterations, released.get());
+        assertEquals(1, pool.getNumberOfMagazines());
+        assertEquals(initialPoolSize, pool.getTotalSize());
+        assertEquals(initialPoolSize, pool.getAvailableSize() + pool.getCachedSize());
+
+        pool.shutdown();
+
+    }
+
+    @Test
+    public void elementsAcquiredByOneThreadAndReleasedByAnotherAreTransferredInChunks() throws PoolResourceException, InterruptedException {
+
+        // given
+        int initialPoolSize = 16;
+        int magazineSize = 8;
+        int transferSize = magazineSize / 2;
+        ThreadAffineItemSourcePool<ByteBuf> pool = createTestPool(initialPoolSize, magazineSize);
+        pool.start();
+
+        List<ItemSource<ByteBuf>> acquired = new ArrayList<>();
+        for (int ii = 0; ii < initialPoolSize; ii++) {
+            acquired.add(pool.getPooled());
+        }
+        assertEquals(0, pool.getDepotSize());
+
+        // when
+        Thread releasing = new Thread(() -> acquired.forEach(ItemSource::release));
+        releasing.start();
+        releasing.join();
+
+        // then
+        assertEquals(0, pool.getDepotSize());
+        assertEquals(initialPoolSize / transferSize, pool.getReturnedChunkCount());
+        assertEquals(initialPoolSize, pool.getAvailableSize());
+
+        // when
+        for (int ii = 0; ii < initialPoolSize; ii++) {
+            pool.getPooled();
+        }
+
+        // then
+        assertEquals(0, pool.getDepotSize());
+        assertEquals(0, pool.getReturnedChunkCount());
+        assertEquals(initialPoolSize, pool.getTotalSize());
+
+        pool.shutdown();
+
+    }
+
+    @Test
+    public void partiallyFilledReturnBufferIsTakenOverWhenNoOtherElementsAreAvailable() throws PoolResourceException, InterruptedException {
+
+        // given
+        int initialPoolSize = 3;
+        ThreadAffineItemSourcePool<ByteBuf> pool = createTestPool(initialPoolSize, 4);
+        pool.start();
+
+        List<ItemSource<ByteBuf>> acquired = new ArrayList<>();
+        for (int ii = 0; ii < initialPoolSize; ii++) {
+            acquired.add(pool.getPooled());
+        }
+
+        Thread releasing = new Thread(() -> acquired.forEach(ItemSource::release));
+        releasing.start();
+        releasing.join();
+
+        assertEquals(1, pool.getReturnedChunkCount());
+        assertEquals(initialPoolSize, pool.getAvailableSize());
+
+        // when
+        for (int ii = 0; ii < initialPoolSize; ii++) {
+            pool.getPooled();
+        }
+
+        // then
+        assertEquals(initialPoolSize, pool.getTotalSize());
+        assertEquals(0, pool.getAvailableSize());
+
+        pool.shutdown();
+
+    }
+
+    @Test
+    public void blockingResizePolicyGetsElementReleasedByNonAcquiringThread() throws PoolResourceException {
+
+        // given
+        int initialPoolSize = 2;
+        ThreadAffineItemSourcePool<ByteBuf> pool = new ThreadAffineItemSourcePool<>(
+                DEFAULT_TEST_ITEM_POOL_NAME,
+                new ByteBufPooledObjectOps(byteBufAllocator, DEFAULT_TEST_ITEM_SIZE_IN_BYTES),
+                LimitedResizePolicy.newBuilder()
+                        .withMaxSize(initialPoolSize)
+                        .withExhaustionStrategy(LimitedResizePolicy.ExhaustionStrategy.BLOCK.name())
+                        .withBlockTimeout(5000)
+                        .build(),
+                DEFAULT_TEST_RESIZE_TIMEOUT,
+                false,
+                DEFAULT_TEST_MONITOR_TASK_INTERVAL,
+                initialPoolSize,
+                4
+        );
+        pool.start();
+
+        ItemSource<ByteBuf> first = pool.getPooled();
+        pool.getPooled();
+
+        Thread releasing = new Thread(() -> {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+            first.release();
+        });
+        releasing.start();
+
+        // when
+        ItemSource<ByteBuf> result = pool.getPooled();
+
+        // then
+        assertSame(first, result);
+        assertEquals(initialPoolSize, pool.getTotalSize());
+
+        pool.shutdown();
+
+    }
+
+    @Test
+    public void resizesWhenMagazineAndDepotAreEmpty() throws PoolResourceException {
+
+        // given
+        int initialPoolSize = 2;
+        ThreadAffineItemSourcePool<ByteBuf> pool = createTestPool(initialPoolSize, 4);
+        pool.start();
+
+        // when
+        for (int ii = 0; ii < initialPoolSize + 1; ii++) {
+            pool.getPooled();
+        }
+
+        // then
+        assertEquals(initialPoolSize + 1, pool.getTotalSize());
+
+        pool.shutdown();
+
+    }
+
+    @Test
+    public void reclaimMovesMagazinesOfTerminatedThreadsToDepot() throws InterruptedException {
+
+        // given
+        ThreadAffineItemSourcePool<ByteBuf> pool = createTestPool(DEFAULT_TEST_INITIAL_POOL_SIZE, 4);
+        pool.start();
+
+        AtomicReference<Exception> caught = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                pool.getPooled().release();
+            } catch (PoolResourceException e) {
+                caught.set(e);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertEquals(null, caught.get());
+        assertEquals(1, pool.getNumberOfMagazines());
+        assertEquals(2, pool.getCachedSize());
+
+        // when
+        pool.reclaimOrphanedMagazines();
+
+        // then
+        assertEquals(0, pool.getNumberOfMagazines());
+        assertEquals(0, pool.getCachedSize());
+        assertEquals(DEFAULT_TEST_INITIAL_POOL_SIZE, pool.getAvailableSize());
+
+        pool.shutdown();
+
+    }
+
+    @Test
+    public void reclaimDoesNotMoveMagazinesOfLiveThreads() throws PoolResourceException {
+
+        // given
+        ThreadAffineItemSourcePool<ByteBuf> pool = createTestPool(DEFAULT_TEST_INITIAL_POOL_SIZE, 4);
+        pool.start();
+
+        pool.getPooled().release();
+
+        // when
+        pool.reclaimOrphanedMagazines();
+
+        // then
+        assertEquals(1, pool.getNumberOfMagazines());
+        assertEquals(2, pool.getCachedSize());
+
+        pool.shutdown();
+
+    }
+
+    @Test
+    public void shutdownPurgesCachedElements() throws PoolResourceException {
+
+        // given
+        ThreadAffineItemSourcePool<ByteBuf> pool = createTestPool(DEFAULT_TEST_INITIAL_POOL_SIZE, 4);
+        pool.start();
+
+        pool.getPooled().release();
+        assertEquals(2, pool.getCachedSize());
+
+        // when
+        pool.stop();
+
+        // then
+        assertEquals(0, pool.getNumberOfMagazines());
+        assertEquals(0, pool.getCachedSize());
+        assertEquals(0, pool.getAvailableSize());
+
+    }
+
+    @Test
+    public void lifecycleStartSchedulesReclaimTask() {
+
+        // given
+        ScheduledExecutorService mockedExecutor = mock(ScheduledExecutorService.class);
+        ThreadAffineItemSourcePool<ByteBuf> pool = createTestPool(DEFAULT_TEST_INITIAL_POOL_SIZE, 4, mockedExecutor);
+
+        // when
+        pool.start();
+
+        // then
+        verify(mockedExecutor).scheduleAtFixedRate(
+                any(),
+                eq(ThreadAffineItemSourcePool.RECLAIM_TASK_INTERVAL),
+                eq(ThreadAffineItemSourcePool.RECLAIM_TASK_INTERVAL),
+                eq(TimeUnit.MILLISECONDS));
+
+    }
+
+    private ThreadAffineItemSourcePool<ByteBuf> createTestPool(int initialPoolSize, int magazineSize) {
+        return new ThreadAffineItemSourcePool<>(
+                DEFAULT_TEST_ITEM_POOL_NAME,
+                new ByteBufPooledObjectOps(byteBufAllocator, DEFAULT_TEST_ITEM_SIZE_IN_BYTES),
+                UnlimitedResizePolicy.newBuilder().build(),
+                DEFAULT_TEST_RESIZE_TIMEOUT,
+                false,
+                DEFAULT_TEST_MONITOR_TASK_INTERVAL,
+                initialPoolSize,
+                magazineSize
+        );
+    }
+
+    private ThreadAffineItemSourcePool<ByteBuf> createTestPool(int initialPoolSize, int magazineSize, ScheduledExecutorService mockedExecutor) {
+        return new ThreadAffineItemSourcePool<ByteBuf>(
+                DEFAULT_TEST_ITEM_POOL_NAME,
+                new ByteBufPooledObjectOps(byteBufAllocator, DEFAULT_TEST_ITEM_SIZE_IN_BYTES),
+                UnlimitedResizePolicy.newBuilder().build(),
+                DEFAULT_TEST_RESIZE_TIMEOUT,
+                false,
+                DEFAULT_TEST_MONITOR_TASK_INTERVAL,
+                initialPoolSize,
+                magazineSize
+        ) {
+            @Override
+            ScheduledExecutorService createExecutor(String threadName) {
+                return mockedExecutor;
+            }
+        };
+    }
+
+}
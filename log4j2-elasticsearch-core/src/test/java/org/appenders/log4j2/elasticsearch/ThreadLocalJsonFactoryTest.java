@@ -0,0 +1,295 @@
+package org.appenders.log4j2.elasticsearch;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonpCharacterEscapes;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class ThreadLocalJsonFactoryTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void createFileBasedGeneratorNotSupported() {
+
+        // given
+        ThreadLocalJsonFactory factory = new ThreadLocalJsonFactory();
+
+        expectedException.expect(UnsupportedOperationException.class);
+        expectedException.expectMessage("File not supported. Use OutputStream");
+
+        // when
+        factory.createGenerator(mock(File.class), JsonEncoding.UTF8);
+
+    }
+
+    @Test
+    public void createGeneratorWithNonUtf8EncodingNotSupported() throws IOException {
+
+        // given
+        ThreadLocalJsonFactory factory = new ThreadLocalJsonFactory();
+
+        expectedException.expect(UnsupportedEncodingException.class);
+        expectedException.expectMessage("Encoding not supported: " + JsonEncoding.UTF16_BE.getJavaName());
+
+        // when
+        factory.createGenerator(mock(OutputStream.class), JsonEncoding.UTF16_BE);
+
+    }
+
+    @Test
+    public void createWriterBasedGeneratorNotSupported() {
+
+        // given
+        ThreadLocalJsonFactory factory = new ThreadLocalJsonFactory();
+
+        expectedException.expect(UnsupportedOperationException.class);
+        expectedException.expectMessage("Writer not supported. Use OutputStream");
+
+        // when
+        factory.createGenerator(mock(Writer.class));
+
+    }
+
+    @Test
+    public void createOutputStreamBasedGeneratorReplacesDelegateTarget() throws IOException {
+
+        // given
+        ThreadLocalJsonFactory factory = new ThreadLocalJsonFactory();
+        OutputStream os1 = mock(OutputStream.class);
+
+        factory.createGenerator(os1, JsonEncoding.UTF8);
+        assertSame(factory.generators.get().outputStreamDelegate.getDelegate(), os1);
+
+        // when
+        OutputStream os2 = mock(OutputStream.class);
+        factory.createGenerator(os2, JsonEncoding.UTF8);
+
+        // then
+        assertSame(factory.generators.get().outputStreamDelegate.getDelegate(), os2);
+        assertSame(factory.generators.get().ioContext.getSourceReference(), os2);
+
+    }
+
+    @Test
+    public void createGeneratorCallsReturnSameInstanceOnSameThread() throws IOException {
+
+        // given
+        ThreadLocalJsonFactory factory = new ThreadLocalJsonFactory();
+
+        // when
+        JsonGenerator generator1 = factory.createGenerator(mock(OutputStream.class), JsonEncoding.UTF8);
+        JsonGenerator generator2 = factory.createGenerator(mock(OutputStream.class), JsonEncoding.UTF8);
+
+        // then
+        assertNotNull(generator1);
+        assertSame(generator1, generator2);
+
+    }
+
+    @Test
+    public void createGeneratorCallsReturnDifferentInstancesOnDifferentThreads() throws Exception {
+
+        // given
+        ThreadLocalJsonFactory factory = new ThreadLocalJsonFactory();
+        JsonGenerator generator1 = factory.createGenerator(mock(OutputStream.class), JsonEncoding.UTF8);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        // when
+        JsonGenerator generator2 = executor.submit(() -> factory.createGenerator(mock(OutputStream.class), JsonEncoding.UTF8)).get();
+        executor.shutdown();
+
+        // then
+        assertNotNull(generator2);
+        assertNotSame(generator1, generator2);
+
+    }
+
+    @Test
+    public void createDataOutputWrapperCallsReplaceDelegateTarget() {
+
+        // given
+        ThreadLocalJsonFactory factory = new ThreadLocalJsonFactory();
+
+        DataOutput dataOutput1 = mock(DataOutput.class);
+        OutputStream outputStream1 = factory._createDataOutputWrapper(dataOutput1);
+        assertSame(factory.generators.get().dataOutputDelegate.getDelegate(), dataOutput1);
+
+        // when
+        DataOutput dataOutput2 = mock(DataOutput.class);
+        OutputStream outputStream2 = factory._createDataOutputWrapper(dataOutput2);
+
+        // then
+        assertSame(outputStream1, outputStream2);
+        assertSame(factory.generators.get().dataOutputDelegate.getDelegate(), dataOutput2);
+
+    }
+
+    @Test
+    public void canSetCharacterEscapesAfterGeneratorWasCreated() throws IOException {
+
+        // given
+        ThreadLocalJsonFactory factory = new ThreadLocalJsonFactory();
+        factory.createGenerator(mock(OutputStream.class), JsonEncoding.UTF8);
+
+        // when
+        factory.setCharacterEscapes(JsonpCharacterEscapes.instance());
+        JsonGenerator generator = factory.createGenerator(mock(OutputStream.class), JsonEncoding.UTF8);
+
+        // then
+        assertSame(JsonpCharacterEscapes.instance(), factory.getCharacterEscapes());
+        assertSame(JsonpCharacterEscapes.instance(), generator.getCharacterEscapes());
+
+    }
+
+    @Test
+    public void doesNotSetCharacterEscapesIfNull() throws IOException {
+
+        // given
+        ThreadLocalJsonFactory factory = new ThreadLocalJsonFactory();
+        factory.setCharacterEscapes(JsonpCharacterEscapes.instance());
+
+        // when
+        factory.setCharacterEscapes(null);
+        JsonGenerator generator = factory.createGenerator(mock(OutputStream.class), JsonEncoding.UTF8);
+
+        // then
+        assertSame(JsonpCharacterEscapes.instance(), factory.getCharacterEscapes());
+        assertSame(JsonpCharacterEscapes.instance(), generator.getCharacterEscapes());
+
+    }
+
+    @Test
+    public void canSetRootValueSeparator() throws IOException {
+
+        // given
+        ThreadLocalJsonFactory factory = new ThreadLocalJsonFactory();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // when
+        factory.setRootValueSeparator("#");
+
+        JsonGenerator generator = factory.createGenerator(outputStream, JsonEncoding.UTF8);
+        generator.writeStartObject();
+        generator.writeStringField("field1", "value1");
+        generator.writeEndObject();
+        generator.close();
+
+        generator.writeStartObject();
+        generator.writeStringField("field2", "value2");
+        generator.writeEndObject();
+        generator.close();
+
+        // then
+        assertTrue(outputStream.toString("UTF-8").contains("#"));
+
+    }
+
+    @Test
+    public void concurrentWritesDoNotInterfere() throws Exception {
+
+        // given
+        ObjectWriter writer = new ObjectMapper(new ThreadLocalJsonFactory()).writer();
+
+        int numberOfThreads = 4;
+        int numberOfWrites = 1000;
+        CountDownLatch startLatch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int ii = 0; ii < numberOfThreads; ii++) {
+            String value = "thread-" + ii;
+            results.add(executor.submit(() -> {
+                startLatch.await();
+                Map<String, String> source = Collections.singletonMap("field", value);
+                for (int jj = 0; jj < numberOfWrites; jj++) {
+                    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                    writer.writeValue(outputStream, source);
+                    if (!outputStream.toString("UTF-8").equals("{\"field\":\"" + value + "\"}")) {
+                        return false;
+                    }
+                }
+                return true;
+            }));
+        }
+
+        // when
+        startLatch.countDown();
+
+        // then
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get(10, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+    }
+
+    @Test
+    public void copyDoesNotUseSourceThreadBoundComponents() throws IOException {
+
+        // given
+        ThreadLocalJsonFactory factory1 = new ThreadLocalJsonFactory();
+        JsonGenerator generator1 = factory1.createGenerator(mock(OutputStream.class), JsonEncoding.UTF8);
+
+        // when
+        ThreadLocalJsonFactory factory2 = factory1.copy();
+        JsonGenerator generator2 = factory2.createGenerator(mock(OutputStream.class), JsonEncoding.UTF8);
+
+        // then
+        assertNotSame(generator1, generator2);
+        assertNotSame(factory1.generators.get().ioContext, factory2.generators.get().ioContext);
+        assertNotSame(factory1.generators.get().writeCtxAccessor, factory2.generators.get().writeCtxAccessor);
+
+    }
+
+}
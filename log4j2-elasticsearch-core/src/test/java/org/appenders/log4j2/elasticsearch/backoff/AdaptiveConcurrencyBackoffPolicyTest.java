@@ -0,0 +1,256 @@
+package org.appenders.log4j2.elasticsearch.backoff;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveConcurrencyBackoffPolicyTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void appliesIfLimitReached() {
+
+        // given
+        BackoffPolicy<Object> policy = new AdaptiveConcurrencyBackoffPolicy<>(2, 1, 10, 1.5);
+        policy.register(new Object());
+        assertFalse(policy.shouldApply(null));
+
+        // when
+        policy.register(new Object());
+
+        // then
+        assertTrue(policy.shouldApply(null));
+
+    }
+
+    @Test
+    public void tryRegisterDoesNotExceedLimitUnderConcurrentAccess() throws InterruptedException {
+
+        // given
+        int limit = 5;
+        BackoffPolicy<Object> policy = new AdaptiveConcurrencyBackoffPolicy<>(limit, 1, 10, 1.5);
+
+        int threadCount = 20;
+        AtomicInteger registered = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threadCount);
+
+        for (int ii = 0; ii < threadCount; ii++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                    if (policy.tryRegister(new Object())) {
+                        registered.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        // when
+        start.countDown();
+
+        // then
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(limit, registered.get());
+        assertTrue(policy.shouldApply(null));
+
+    }
+
+    @Test
+    public void tryRegisteredBatchCanBeDeregistered() {
+
+        // given
+        BackoffPolicy<Object> policy = new AdaptiveConcurrencyBackoffPolicy<>(1, 1, 10, 1.5);
+        Object batch = new Object();
+        assertTrue(policy.tryRegister(batch));
+        assertFalse(policy.tryRegister(new Object()));
+
+        // when
+        policy.deregister(batch);
+
+        // then
+        assertFalse(policy.shouldApply(null));
+
+    }
+
+    @Test
+    public void deregisterOfUnknownBatchIsIgnored() {
+
+        // given
+        BackoffPolicy<Object> policy = new AdaptiveConcurrencyBackoffPolicy<>(1, 1, 10, 1.5);
+        policy.register(new Object());
+
+        // when
+        policy.deregister(new Object());
+
+        // then
+        assertTrue(policy.shouldApply(null));
+
+    }
+
+    @Test
+    public void limitGrowsIfLatencyIsStableAndLimitIsUsed() {
+
+        // given
+        AtomicLong clock = new AtomicLong();
+        AdaptiveConcurrencyBackoffPolicy<Object> policy = new AdaptiveConcurrencyBackoffPolicy<>(4, 1, 100, 1.5, clock::get);
+
+        // when
+        for (int ii = 0; ii < 20; ii++) {
+            deliverFullBatchRound(policy, clock, 100);
+        }
+
+        // then
+        assertTrue(policy.getLimit() > 4);
+
+    }
+
+    @Test
+    public void limitDoesNotGrowIfLimitIsNotUsed() {
+
+        // given
+        AtomicLong clock = new AtomicLong();
+        AdaptiveConcurrencyBackoffPolicy<Object> policy = new AdaptiveConcurrencyBackoffPolicy<>(8, 1, 100, 1.5, clock::get);
+
+        // when
+        for (int ii = 0; ii < 20; ii++) {
+            Object batch = new Object();
+            policy.register(batch);
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+            policy.deregister(batch);
+        }
+
+        // then
+        assertEquals(8, policy.getLimit());
+
+    }
+
+    @Test
+    public void limitDecreasesIfLatencyGrows() {
+
+        // given
+        AtomicLong clock = new AtomicLong();
+        AdaptiveConcurrencyBackoffPolicy<Object> policy = new AdaptiveConcurrencyBackoffPolicy<>(20, 1, 100, 1.5, clock::get);
+        deliverFullBatchRound(policy, clock, 100);
+        int limitBefore = policy.getLimit();
+
+        // when
+        deliverFullBatchRound(policy, clock, 1000);
+
+        // then
+        assertTrue(policy.getLimit() < limitBefore);
+
+    }
+
+    @Test
+    public void limitIsKeptWithinBounds() {
+
+        // given
+        AtomicLong clock = new AtomicLong();
+        AdaptiveConcurrencyBackoffPolicy<Object> policy = new AdaptiveConcurrencyBackoffPolicy<>(4, 2, 6, 1.5, clock::get);
+
+        // when
+        for (int ii = 0; ii < 50; ii++) {
+            deliverFullBatchRound(policy, clock, 100);
+        }
+        int maxReached = policy.getLimit();
+
+        for (int ii = 0; ii < 20; ii++) {
+            deliverFullBatchRound(policy, clock, 100L << (ii + 1));
+        }
+
+        // then
+        assertEquals(6, maxReached);
+        assertEquals(2, policy.getLimit());
+
+    }
+
+    @Test
+    public void throwsIfMinLimitIsZero() {
+
+        // given
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("minLimit must be higher than 0");
+
+        // when
+        new AdaptiveConcurrencyBackoffPolicy<>(1, 0, 10, 1.5);
+
+    }
+
+    @Test
+    public void throwsIfMaxLimitIsLowerThanMinLimit() {
+
+        // given
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("maxLimit must be higher than or equal to minLimit");
+
+        // when
+        new AdaptiveConcurrencyBackoffPolicy<>(1, 2, 1, 1.5);
+
+    }
+
+    @Test
+    public void throwsIfLatencyToleranceIsLowerThanOne() {
+
+        // given
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("latencyTolerance must be higher than or equal to 1");
+
+        // when
+        new AdaptiveConcurrencyBackoffPolicy<>(1, 1, 10, 0.5);
+
+    }
+
+    private void deliverFullBatchRound(AdaptiveConcurrencyBackoffPolicy<Object> policy, AtomicLong clock, long latencyMillis) {
+
+        int limit = policy.getLimit();
+        Object[] batches = new Object[limit];
+        for (int ii = 0; ii < limit; ii++) {
+            batches[ii] = new Object();
+            policy.register(batches[ii]);
+        }
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+
+        for (Object batch : batches) {
+            policy.deregister(batch);
+        }
+
+    }
+
+}
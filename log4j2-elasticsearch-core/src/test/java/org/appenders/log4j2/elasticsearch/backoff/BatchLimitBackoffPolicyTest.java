@@ -56,6 +56,28 @@ public class BatchLimitBackoffPolicyTest {
 
     }
 
+    @Test
+    public void tryRegisterIncrementsCurrentCountOnlyIfLimitIsNotReached() {
+
+        // given
+        BackoffPolicy<Object> policy = new BatchLimitBackoffPolicy<>(1);
+
+        // when
+        boolean first = policy.tryRegister(null);
+        boolean second = policy.tryRegister(null);
+
+        // then
+        assertTrue(first);
+        assertFalse(second);
+
+        // when
+        policy.deregister(null);
+
+        // then
+        assertFalse(policy.shouldApply(null));
+
+    }
+
     @Test
     public void deregisterDecrementsCurrentCount() {
 
@@ -0,0 +1,174 @@
+package org.appenders.log4j2.elasticsearch.backoff;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TokenBucketBackoffPolicyTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void doesNotApplyIfTokensAvailable() {
+
+        // given
+        BackoffPolicy<Long> policy = new TokenBucketBackoffPolicy<>(10, 10, Long::longValue, new AtomicLong()::get);
+
+        // when
+        policy.register(9L);
+
+        // then
+        assertFalse(policy.shouldApply(1L));
+
+    }
+
+    @Test
+    public void appliesIfBucketIsEmpty() {
+
+        // given
+        BackoffPolicy<Long> policy = new TokenBucketBackoffPolicy<>(10, 10, Long::longValue, new AtomicLong()::get);
+
+        // when
+        policy.register(10L);
+
+        // then
+        assertTrue(policy.shouldApply(1L));
+
+    }
+
+    @Test
+    public void tryRegisterConsumesTokensIfBucketIsNotEmpty() {
+
+        // given
+        TokenBucketBackoffPolicy<Long> policy = new TokenBucketBackoffPolicy<>(10, 10, Long::longValue, new AtomicLong()::get);
+
+        // when
+        boolean result = policy.tryRegister(15L);
+
+        // then
+        assertTrue(result);
+        assertEquals(-5, policy.getAvailableTokens());
+
+    }
+
+    @Test
+    public void tryRegisterDoesNotConsumeTokensIfBucketIsEmpty() {
+
+        // given
+        TokenBucketBackoffPolicy<Long> policy = new TokenBucketBackoffPolicy<>(10, 10, Long::longValue, new AtomicLong()::get);
+        policy.register(10L);
+
+        // when
+        boolean result = policy.tryRegister(1L);
+
+        // then
+        assertFalse(result);
+        assertEquals(0, policy.getAvailableTokens());
+
+    }
+
+    @Test
+    public void bucketCanGoIntoDebt() {
+
+        // given
+        AtomicLong clock = new AtomicLong();
+        TokenBucketBackoffPolicy<Long> policy = new TokenBucketBackoffPolicy<>(10, 10, Long::longValue, clock::get);
+
+        // when
+        policy.register(30L);
+
+        // then
+        assertEquals(-20, policy.getAvailableTokens());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertTrue(policy.shouldApply(1L));
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertFalse(policy.shouldApply(1L));
+
+    }
+
+    @Test
+    public void refillsUpToCapacity() {
+
+        // given
+        AtomicLong clock = new AtomicLong();
+        TokenBucketBackoffPolicy<Long> policy = new TokenBucketBackoffPolicy<>(10, 5, Long::longValue, clock::get);
+        policy.register(5L);
+
+        // when
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+        // then
+        assertEquals(5, policy.getAvailableTokens());
+
+    }
+
+    @Test
+    public void deregisterDoesNotGiveTokensBack() {
+
+        // given
+        TokenBucketBackoffPolicy<Long> policy = new TokenBucketBackoffPolicy<>(10, 10, Long::longValue, new AtomicLong()::get);
+        policy.register(4L);
+
+        // when
+        policy.deregister(4L);
+
+        // then
+        assertEquals(6, policy.getAvailableTokens());
+
+    }
+
+    @Test
+    public void throwsIfTokensPerSecondIsZero() {
+
+        // given
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("tokensPerSecond must be higher than 0");
+
+        // when
+        new TokenBucketBackoffPolicy<Long>(0, 10, Long::longValue);
+
+    }
+
+    @Test
+    public void throwsIfCapacityIsZero() {
+
+        // given
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("capacity must be higher than 0");
+
+        // when
+        new TokenBucketBackoffPolicy<Long>(10, 0, Long::longValue);
+
+    }
+
+}
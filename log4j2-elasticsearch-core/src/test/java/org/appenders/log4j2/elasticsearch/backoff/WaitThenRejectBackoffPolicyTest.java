@@ -0,0 +1,473 @@
+package org.appenders.log4j2.elasticsearch.backoff;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.appenders.log4j2.elasticsearch.LifeCycle;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WaitThenRejectBackoffPolicyTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void registersImmediatelyIfDelegateDoesNotApply() {
+
+        // given
+        ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+        BackoffPolicy<Object> policy = new WaitThenRejectBackoffPolicy<>(new BatchLimitBackoffPolicy<>(1), 10000, 10000, scheduler);
+
+        Consumer<Object> onRegistered = mock(Consumer.class);
+        Consumer<Object> onRejected = mock(Consumer.class);
+        Object batch = new Object();
+
+        // when
+        policy.tryRegister(batch, onRegistered, onRejected);
+
+        // then
+        verify(onRegistered).accept(batch);
+        verify(onRejected, never()).accept(any());
+        verify(scheduler, never()).schedule(any(Runnable.class), anyLong(), any());
+
+    }
+
+    @Test
+    public void shouldApplyDoesNotWait() {
+
+        // given
+        BackoffPolicy<Object> delegate = mock(BackoffPolicy.class);
+        when(delegate.shouldApply(null)).thenReturn(true);
+
+        BackoffPolicy<Object> policy = new WaitThenRejectBackoffPolicy<>(delegate, 10000, 10000, mock(ScheduledExecutorService.class));
+
+        // when
+        long start = System.nanoTime();
+        boolean result = policy.shouldApply(null);
+
+        // then
+        assertTrue(result);
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(5000));
+
+    }
+
+    @Test
+    public void defersBatchIfDelegateApplies() {
+
+        // given
+        ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+        BatchLimitBackoffPolicy<Object> delegate = new BatchLimitBackoffPolicy<>(1);
+        delegate.register(null);
+
+        WaitThenRejectBackoffPolicy<Object> policy = new WaitThenRejectBackoffPolicy<>(delegate, 10000, 15, scheduler);
+
+        Consumer<Object> onRegistered = mock(Consumer.class);
+        Consumer<Object> onRejected = mock(Consumer.class);
+
+        // when
+        policy.tryRegister(new Object(), onRegistered, onRejected);
+
+        // then
+        verify(onRegistered, never()).accept(any());
+        verify(onRejected, never()).accept(any());
+        verify(scheduler).schedule(any(Runnable.class), eq(15L), eq(TimeUnit.MILLISECONDS));
+        assertEquals(1, policy.getDeferredCount());
+
+    }
+
+    @Test
+    public void deferredBatchIsRegisteredOnGivenExecutor() {
+
+        // given
+        ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+        Executor executor = mock(Executor.class);
+        BatchLimitBackoffPolicy<Object> delegate = new BatchLimitBackoffPolicy<>(1);
+        WaitThenRejectBackoffPolicy<Object> policy = new WaitThenRejectBackoffPolicy<>(delegate, 10000, 10000, scheduler, executor);
+
+        Object pending = new Object();
+        policy.register(pending);
+
+        Consumer<Object> onRegistered = mock(Consumer.class);
+        Object batch = new Object();
+        policy.tryRegister(batch, onRegistered, mock(Consumer.class));
+
+        policy.deregister(pending);
+
+        ArgumentCaptor<Runnable> scheduled = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).schedule(scheduled.capture(), eq(0L), eq(TimeUnit.MILLISECONDS));
+
+        // when
+        scheduled.getValue().run();
+
+        // then
+        verify(onRegistered, never()).accept(any());
+
+        ArgumentCaptor<Runnable> executed = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).execute(executed.capture());
+
+        // when
+        executed.getValue().run();
+
+        // then
+        verify(onRegistered).accept(batch);
+        assertEquals(0, policy.getDeferredCount());
+
+    }
+
+    @Test
+    public void deregisterRegistersDeferredBatch() {
+
+        // given
+        ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+        BatchLimitBackoffPolicy<Object> delegate = new BatchLimitBackoffPolicy<>(1);
+        WaitThenRejectBackoffPolicy<Object> policy = new WaitThenRejectBackoffPolicy<>(delegate, 10000, 10000, scheduler);
+
+        Object pending = new Object();
+        policy.register(pending);
+
+        Consumer<Object> onRegistered = mock(Consumer.class);
+        Consumer<Object> onRejected = mock(Consumer.class);
+        Object batch = new Object();
+        policy.tryRegister(batch, onRegistered, onRejected);
+
+        // when
+        policy.deregister(pending);
+
+        // then
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).schedule(captor.capture(), eq(0L), eq(TimeUnit.MILLISECONDS));
+        captor.getValue().run();
+
+        verify(onRegistered).accept(batch);
+        verify(onRejected, never()).accept(any());
+        assertEquals(0, policy.getDeferredCount());
+        assertTrue(delegate.shouldApply(null));
+
+    }
+
+    @Test
+    public void rejectsDeferredBatchIfDelegateStillAppliesAfterMaxWait() throws InterruptedException {
+
+        // given
+        ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+        BatchLimitBackoffPolicy<Object> delegate = new BatchLimitBackoffPolicy<>(1);
+        delegate.register(null);
+
+        WaitThenRejectBackoffPolicy<Object> policy = new WaitThenRejectBackoffPolicy<>(delegate, 1, 1, scheduler);
+
+        Consumer<Object> onRegistered = mock(Consumer.class);
+        Consumer<Object> onRejected = mock(Consumer.class);
+        Object batch = new Object();
+        policy.tryRegister(batch, onRegistered, onRejected);
+
+        Thread.sleep(5);
+
+        // when
+        policy.checkDeferred();
+
+        // then
+        verify(onRegistered, never()).accept(any());
+        verify(onRejected).accept(batch);
+        assertEquals(0, policy.getDeferredCount());
+
+    }
+
+    @Test
+    public void keepsDeferredBatchIfDelegateStillAppliesBeforeMaxWait() {
+
+        // given
+        ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+        BatchLimitBackoffPolicy<Object> delegate = new BatchLimitBackoffPolicy<>(1);
+        delegate.register(null);
+
+        WaitThenRejectBackoffPolicy<Object> policy = new WaitThenRejectBackoffPolicy<>(delegate, 10000, 10, scheduler);
+
+        Consumer<Object> onRegistered = mock(Consumer.class);
+        Consumer<Object> onRejected = mock(Consumer.class);
+        policy.tryRegister(new Object(), onRegistered, onRejected);
+
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).schedule(captor.capture(), eq(10L), eq(TimeUnit.MILLISECONDS));
+
+        // when
+        captor.getValue().run();
+
+        // then
+        verify(onRegistered, never()).accept(any());
+        verify(onRejected, never()).accept(any());
+        assertEquals(1, policy.getDeferredCount());
+        verify(scheduler, times(2)).schedule(any(Runnable.class), eq(10L), eq(TimeUnit.MILLISECONDS));
+
+    }
+
+    @Test
+    public void rejectsImmediatelyIfMaxWaitMillisIsZero() {
+
+        // given
+        ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+        BatchLimitBackoffPolicy<Object> delegate = new BatchLimitBackoffPolicy<>(1);
+        delegate.register(null);
+
+        BackoffPolicy<Object> policy = new WaitThenRejectBackoffPolicy<>(delegate, 0, 1, scheduler);
+
+        Consumer<Object> onRejected = mock(Consumer.class);
+        Object batch = new Object();
+
+        // when
+        policy.tryRegister(batch, mock(Consumer.class), onRejected);
+
+        // then
+        verify(onRejected).accept(batch);
+        verify(scheduler, never()).schedule(any(Runnable.class), anyLong(), any());
+
+    }
+
+    @Test
+    public void rejectsDeferredBatchesIfSchedulerRejectsTheCheck() {
+
+        // given
+        ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+        when(scheduler.schedule(any(Runnable.class), anyLong(), any())).thenThrow(new RejectedExecutionException("test"));
+
+        BatchLimitBackoffPolicy<Object> delegate = new BatchLimitBackoffPolicy<>(1);
+        delegate.register(null);
+
+        WaitThenRejectBackoffPolicy<Object> policy = new WaitThenRejectBackoffPolicy<>(delegate, 10000, 1, scheduler);
+
+        Consumer<Object> onRejected = mock(Consumer.class);
+        Object batch = new Object();
+
+        // when
+        policy.tryRegister(batch, mock(Consumer.class), onRejected);
+
+        // then
+        verify(onRejected).accept(batch);
+        assertEquals(0, policy.getDeferredCount());
+
+    }
+
+    @Test
+    public void deferredBatchIsRegisteredOnSchedulerThreadWhenDelegateStopsApplying() throws InterruptedException {
+
+        // given
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        BatchLimitBackoffPolicy<Object> delegate = new BatchLimitBackoffPolicy<>(1);
+        WaitThenRejectBackoffPolicy<Object> policy = new WaitThenRejectBackoffPolicy<>(delegate, 10000, 10000, scheduler);
+
+        Object pending = new Object();
+        policy.register(pending);
+
+        AtomicReference<Thread> registeredOn = new AtomicReference<>();
+        CountDownLatch registered = new CountDownLatch(1);
+        policy.tryRegister(new Object(), batch -> {
+            registeredOn.set(Thread.currentThread());
+            registered.countDown();
+        }, batch -> {});
+
+        // when
+        policy.deregister(pending);
+
+        // then
+        assertTrue(registered.await(5, TimeUnit.SECONDS));
+        assertNotEquals(Thread.currentThread(), registeredOn.get());
+
+        scheduler.shutdown();
+
+    }
+
+    @Test
+    public void tryRegisterDelegates() {
+
+        // given
+        BackoffPolicy<Object> delegate = mock(BackoffPolicy.class);
+        when(delegate.tryRegister(any())).thenReturn(true);
+
+        BackoffPolicy<Object> policy = new WaitThenRejectBackoffPolicy<>(delegate, 1, 1, mock(ScheduledExecutorService.class));
+        Object batch = new Object();
+
+        // when
+        boolean result = policy.tryRegister(batch);
+
+        // then
+        assertTrue(result);
+        verify(delegate).tryRegister(batch);
+
+    }
+
+    @Test
+    public void delegatesRegisterAndDeregister() {
+
+        // given
+        BackoffPolicy<Object> delegate = mock(BackoffPolicy.class);
+        BackoffPolicy<Object> policy = new WaitThenRejectBackoffPolicy<>(delegate, 1, 1);
+        Object batch = new Object();
+
+        // when
+        policy.register(batch);
+        policy.deregister(batch);
+
+        // then
+        verify(delegate).register(batch);
+        verify(delegate).deregister(batch);
+
+    }
+
+    @Test
+    public void throwsIfMaxWaitMillisIsNegative() {
+
+        // given
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("maxWaitMillis must be higher than or equal to 0");
+
+        // when
+        new WaitThenRejectBackoffPolicy<>(mock(BackoffPolicy.class), -1, 1);
+
+    }
+
+    @Test
+    public void throwsIfCheckIntervalMillisIsZero() {
+
+        // given
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("checkIntervalMillis must be higher than 0");
+
+        // when
+        new WaitThenRejectBackoffPolicy<>(mock(BackoffPolicy.class), 1, 0);
+
+    }
+
+    @Test
+    public void deferredBatchIsRejectedAndDeregisteredIfOnRegisteredFails() {
+
+        // given
+        ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+        BatchLimitBackoffPolicy<Object> delegate = new BatchLimitBackoffPolicy<>(1);
+        WaitThenRejectBackoffPolicy<Object> policy = new WaitThenRejectBackoffPolicy<>(delegate, 10000, 10000, scheduler);
+
+        Object pending = new Object();
+        policy.register(pending);
+
+        Consumer<Object> onRegistered = mock(Consumer.class);
+        Consumer<Object> onRejected = mock(Consumer.class);
+        Object batch = new Object();
+        doThrow(new IllegalStateException("test")).when(onRegistered).accept(batch);
+
+        policy.tryRegister(batch, onRegistered, onRejected);
+
+        // when
+        policy.deregister(pending);
+
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).schedule(captor.capture(), eq(0L), eq(TimeUnit.MILLISECONDS));
+        captor.getValue().run();
+
+        // then
+        verify(onRegistered).accept(batch);
+        verify(onRejected).accept(batch);
+        assertEquals(0, policy.getDeferredCount());
+        assertFalse(delegate.shouldApply(null));
+
+    }
+
+    @Test
+    public void stopRejectsDeferredBatches() {
+
+        // given
+        BatchLimitBackoffPolicy<Object> delegate = new BatchLimitBackoffPolicy<>(1);
+        delegate.register(null);
+
+        WaitThenRejectBackoffPolicy<Object> policy = new WaitThenRejectBackoffPolicy<>(delegate, 10000, 10000, mock(ScheduledExecutorService.class));
+        policy.start();
+
+        Consumer<Object> onRegistered = mock(Consumer.class);
+        Consumer<Object> onRejected = mock(Consumer.class);
+        Object batch1 = new Object();
+        Object batch2 = new Object();
+        policy.tryRegister(batch1, onRegistered, onRejected);
+        policy.tryRegister(batch2, onRegistered, onRejected);
+
+        // when
+        policy.stop();
+
+        // then
+        verify(onRegistered, never()).accept(any());
+        verify(onRejected).accept(batch1);
+        verify(onRejected).accept(batch2);
+        assertEquals(0, policy.getDeferredCount());
+
+    }
+
+    @Test
+    public void lifecycleStartStartsDelegateAndLifecycleStopStopsDelegate() {
+
+        // given
+        LifeCycleBackoffPolicy delegate = mock(LifeCycleBackoffPolicy.class);
+        when(delegate.isStopped()).thenReturn(false);
+
+        WaitThenRejectBackoffPolicy<Object> policy = new WaitThenRejectBackoffPolicy<>(delegate, 10000, 10000, mock(ScheduledExecutorService.class));
+
+        assertTrue(policy.isStopped());
+
+        // when
+        policy.start();
+
+        // then
+        assertTrue(policy.isStarted());
+        verify(delegate).start();
+
+        // when
+        policy.stop();
+
+        // then
+        assertTrue(policy.isStopped());
+        verify(delegate).stop();
+
+    }
+
+    private interface LifeCycleBackoffPolicy extends BackoffPolicy<Object>, LifeCycle {
+    }
+
+}
@@ -26,6 +26,7 @@ import org.apache.logging.log4j.core.config.ConfigurationException;
 import org.appenders.log4j2.elasticsearch.DelayedShutdown;
 import org.appenders.log4j2.elasticsearch.ItemSource;
 import org.appenders.log4j2.elasticsearch.LifeCycle;
+import org.appenders.log4j2.elasticsearch.OffloadedTask;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.jetbrains.annotations.NotNull;
@@ -41,6 +42,7 @@ import java.util.ArrayList;
 import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
@@ -230,6 +232,54 @@ public class ChronicleMapRetryFailoverPolicyTest {
 
     }
 
+    @Test
+    public void lifecycleStartSchedulesRetriesOffTheSchedulerThread() throws IOException {
+
+        // given
+        ChronicleMapRetryFailoverPolicy.Builder builder = createDefaultTestFailoverPolicyBuilder()
+                .withRetryDelay(DEFAULT_TEST_RETRY_INTERVAL);
+
+        ChronicleMapRetryFailoverPolicy failoverPolicy = spy(builder.build());
+        failoverPolicy.addListener(mock(RetryListener.class));
+
+        ScheduledExecutorService executorService = mock(ScheduledExecutorService.class);
+        when(failoverPolicy.createExecutor(any())).thenReturn(executorService);
+
+        // when
+        failoverPolicy.start();
+
+        // then
+        verify(executorService).scheduleAtFixedRate(
+                any(OffloadedTask.class), anyLong(), eq((long) DEFAULT_TEST_RETRY_INTERVAL), any(TimeUnit.class));
+
+    }
+
+    @Test
+    public void lifecycleStopCancelsScheduledTasks() throws IOException {
+
+        // given
+        ChronicleMapRetryFailoverPolicy.Builder builder = createDefaultTestFailoverPolicyBuilder()
+                .withMonitored(true);
+
+        ChronicleMapRetryFailoverPolicy failoverPolicy = spy(builder.build());
+        failoverPolicy.addListener(mock(RetryListener.class));
+
+        ScheduledFuture scheduledTask = mock(ScheduledFuture.class);
+        ScheduledExecutorService executorService = mock(ScheduledExecutorService.class);
+        when(executorService.scheduleAtFixedRate(any(), anyLong(), anyLong(), any())).thenReturn(scheduledTask);
+        when(failoverPolicy.createExecutor(any())).thenReturn(executorService);
+
+        failoverPolicy.start();
+
+        // when
+        failoverPolicy.stop();
+
+        // then
+        verify(scheduledTask, times(2)).cancel(false);
+        verify(executorService, never()).shutdown();
+
+    }
+
     @Test
     public void failoverListenerIsAddedIfInstanceOfRetryListener() throws IOException {
 
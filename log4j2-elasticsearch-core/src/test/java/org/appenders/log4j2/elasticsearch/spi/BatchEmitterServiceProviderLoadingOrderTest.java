@@ -20,11 +20,14 @@ package org.appenders.log4j2.elasticsearch.spi;
  * #L%
  */
 
+import org.apache.logging.log4j.core.config.ConfigurationException;
 import org.appenders.log4j2.elasticsearch.BatchEmitter;
 import org.appenders.log4j2.elasticsearch.BatchEmitterFactory;
 import org.appenders.log4j2.elasticsearch.ClientObjectFactory;
 import org.appenders.log4j2.elasticsearch.FailoverPolicy;
 import org.appenders.log4j2.elasticsearch.NoopFailoverPolicy;
+import org.appenders.log4j2.elasticsearch.RingBufferEmitter;
+import org.appenders.log4j2.elasticsearch.RingBufferEmitterFactory;
 import org.appenders.log4j2.elasticsearch.TestBatchEmitterFactory;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Rule;
@@ -41,6 +44,7 @@ import static org.appenders.log4j2.elasticsearch.BatchDeliveryTest.createTestObj
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -140,6 +144,78 @@ public class BatchEmitterServiceProviderLoadingOrderTest {
 
     }
 
+    @Test
+    public void selectedFactoryWinsOverServiceLoaders() {
+
+        // given
+        Iterable<BatchEmitterFactory> serviceLoader = spy(createTestIterable(new TestBatchEmitterFactory()));
+
+        BatchEmitterServiceProvider serviceProvider = new BatchEmitterServiceProvider(
+                Arrays.asList(serviceLoader),
+                RingBufferEmitterFactory.class.getName());
+
+        // when
+        BatchEmitter instance = serviceProvider.createInstance(
+                1,
+                1,
+                createTestObjectFactoryBuilder().build(),
+                new NoopFailoverPolicy());
+
+        // then
+        assertTrue(instance instanceof RingBufferEmitter);
+        verify(serviceLoader, never()).iterator();
+
+    }
+
+    @Test
+    public void throwsWhenSelectedFactoryWasNotFound() {
+
+        // given
+        BatchEmitterServiceProvider serviceProvider = new BatchEmitterServiceProvider(
+                Arrays.asList(createTestIterable(new TestBatchEmitterFactory())),
+                "org.appenders.NonExistingBatchEmitterFactory");
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("BatchEmitterFactory not found: org.appenders.NonExistingBatchEmitterFactory");
+
+        // when
+        serviceProvider.createInstance(
+                1,
+                1,
+                createTestObjectFactoryBuilder().build(),
+                new NoopFailoverPolicy());
+
+    }
+
+    @Test
+    public void throwsWhenSelectedFactoryIsIncompatible() {
+
+        // given
+        BatchEmitterServiceProvider serviceProvider = new BatchEmitterServiceProvider(
+                Arrays.asList(createTestIterable(new TestBatchEmitterFactory())),
+                IncompatibleBatchEmitterFactory.class.getName());
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("is not compatible with");
+
+        // when
+        serviceProvider.createInstance(
+                1,
+                1,
+                createTestObjectFactoryBuilder().build(),
+                new NoopFailoverPolicy());
+
+    }
+
+    public static class IncompatibleBatchEmitterFactory extends TestBatchEmitterFactory {
+
+        @Override
+        public boolean accepts(Class clientObjectFactoryClass) {
+            return false;
+        }
+
+    }
+
     private Iterable<BatchEmitterFactory> createTestIterable(TestBatchEmitterFactory testBatchEmitterFactory) {
         return new TestIterable(testBatchEmitterFactory);
     }
@@ -0,0 +1,188 @@
+package org.appenders.log4j2.elasticsearch.hc;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Compact summary of failed items of {@code /_bulk} response. Stores positions of failed and retryable items and
+ * errors of first failed and first permanently failed items only, so its size depends on number of failures, not
+ * batch size.
+ * <p>
+ * Item is failed if it has an error or its status is {@code 400} or higher. Failed item is retryable if its status is
+ * {@code 429 Too Many Requests} or {@code 503 Service Unavailable}.
+ */
+public class BatchItemFailures {
+
+    private final BitSet failed = new BitSet();
+    private final BitSet retryable = new BitSet();
+
+    private int totalItems;
+    private boolean rejected;
+
+    private Error firstError;
+    private boolean permanentFailureRecorded;
+    private int firstPermanentFailureStatus;
+    private Error firstPermanentError;
+
+    /**
+     * @param items item results
+     * @return failures of given items
+     */
+    public static BatchItemFailures of(List<BatchItemResult> items) {
+
+        BatchItemFailures result = new BatchItemFailures();
+        for (BatchItemResult item : items) {
+            result.add(item.getStatus(), item.getError());
+        }
+
+        return result;
+
+    }
+
+    /**
+     * Records result of next item
+     *
+     * @param status item status
+     * @param error item error, may be null
+     */
+    public void add(int status, Error error) {
+        add(status, error != null, error);
+    }
+
+    /**
+     * Records result of next item
+     *
+     * @param status item status
+     * @param hasError true, if item has an error, even if its details were not parsed
+     * @param error item error, may be null
+     */
+    void add(int status, boolean hasError, Error error) {
+
+        int index = totalItems++;
+
+        if (!hasError && status < 400) {
+            return;
+        }
+
+        failed.set(index);
+
+        if (status == HCHttp.TOO_MANY_REQUESTS) {
+            rejected = true;
+        }
+
+        if (firstError == null) {
+            firstError = error;
+        }
+
+        if (isRetryableStatus(status)) {
+            retryable.set(index);
+        } else if (!permanentFailureRecorded) {
+            permanentFailureRecorded = true;
+            firstPermanentFailureStatus = status;
+            firstPermanentError = error;
+        }
+
+    }
+
+    /**
+     * Allows to decide whether item error should be parsed or skipped.
+     *
+     * @param status item status or -1 if not known yet
+     * @return true, if error of failed item with given status would be stored, false otherwise
+     */
+    public boolean needsError(int status) {
+        return firstError == null || (!permanentFailureRecorded && !isRetryableStatus(status));
+    }
+
+    static boolean isRetryableStatus(int status) {
+        return status == HCHttp.TOO_MANY_REQUESTS || status == HCHttp.SERVICE_UNAVAILABLE;
+    }
+
+    /**
+     * @param index item position
+     * @return true, if item at given position failed, false otherwise
+     */
+    public boolean isFailed(int index) {
+        return failed.get(index);
+    }
+
+    /**
+     * @param index item position
+     * @return true, if item at given position failed and can be retried, false otherwise
+     */
+    public boolean isRetryable(int index) {
+        return retryable.get(index);
+    }
+
+    /**
+     * @return true, if at least one item was rejected with {@code 429 Too Many Requests}, false otherwise
+     */
+    public boolean isRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return number of all items, including successful ones
+     */
+    public int getTotalItems() {
+        return totalItems;
+    }
+
+    /**
+     * @return number of failed items
+     */
+    public int getFailedCount() {
+        return failed.cardinality();
+    }
+
+    /**
+     * @return number of failed items that can be retried
+     */
+    public int getRetryableCount() {
+        return retryable.cardinality();
+    }
+
+    /**
+     * @return error of first failed item, may be null
+     */
+    public Error getFirstError() {
+        return firstError;
+    }
+
+    /**
+     * @return status of first item that can't be retried, 0 if there's no such item or its status is not known
+     */
+    public int getFirstPermanentFailureStatus() {
+        return firstPermanentFailureStatus;
+    }
+
+    /**
+     * @return error of first item that can't be retried, may be null
+     */
+    public Error getFirstPermanentError() {
+        return firstPermanentError;
+    }
+
+}
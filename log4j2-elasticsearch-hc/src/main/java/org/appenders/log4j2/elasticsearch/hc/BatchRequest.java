@@ -23,6 +23,10 @@ package org.appenders.log4j2.elasticsearch.hc;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.CompositeByteBuf;
+import org.appenders.log4j2.elasticsearch.ByteBufCompressor;
+import org.appenders.log4j2.elasticsearch.ByteBufItemSource;
+import org.appenders.log4j2.elasticsearch.EmptyItemSourceFactory;
 import org.appenders.log4j2.elasticsearch.ItemSource;
 
 import java.io.IOException;
@@ -41,24 +45,48 @@ public class BatchRequest implements Request {
     public static final char LINE_SEPARATOR = '\n';
 
     private final ObjectWriter objectWriter;
+    private final boolean zeroCopy;
+    private final ByteBufCompressor compressor;
     private ItemSource<ByteBuf> buffer;
+    private CompositeByteBuf composite;
+    private final EmptyItemSourceFactory compressedBufferFactory;
+    private ItemSource<ByteBuf> compressed;
+    private boolean actionTemplateResolved;
+    private byte[] actionTemplate;
 
     protected final Collection<IndexRequest> indexRequests;
 
     protected BatchRequest(Builder builder) {
         this.indexRequests = builder.items;
         this.objectWriter = builder.objectWriter;
+        this.zeroCopy = builder.zeroCopy;
+        this.compressor = builder.compressor;
+        this.compressedBufferFactory = builder.compressedBufferFactory;
         this.buffer = builder.buffer;
     }
 
     /**
-     * Serializes and writes {@link #indexRequests} into {@link #buffer}
+     * Serializes and writes {@link #indexRequests} into {@link #buffer}.
+     * <p>
+     * Since 1.5, serialized indexRequests are compressed if {@link ByteBufCompressor} was configured.
+     * See {@link #getContentEncoding()}.
      *
      * @return underlying buffer filled with serialized indexRequests
      * @throws IOException if serialization failed
      */
     public ItemSource serialize() throws IOException {
 
+        ItemSource serialized = zeroCopy ? serializeComposite() : serializeBuffer();
+
+        if (compressor == null) {
+            return serialized;
+        }
+
+        return compress((ByteBuf) serialized.getSource());
+    }
+
+    private ItemSource serializeBuffer() throws IOException {
+
         ByteBufOutputStream byteBufOutputStream = new ByteBufOutputStream(buffer.getSource());
 
         // in current impl with no IDs, it's possible to reduce serialization by reusing first action
@@ -82,6 +110,115 @@ public class BatchRequest implements Request {
         return buffer;
     }
 
+    /**
+     * Compresses given bytes to a buffer provided by {@link #compressedBufferFactory}
+     *
+     * @param serialized serialized indexRequests
+     * @return {@link ItemSource} with compressed bytes. Released on {@link #completed()}
+     */
+    ItemSource compress(ByteBuf serialized) {
+
+        ItemSource<ByteBuf> compressed = compressedBufferFactory.createEmptySource();
+        this.compressed = compressed;
+
+        compressor.compress(serialized, compressed.getSource());
+
+        return new ByteBufItemSource(compressed.getSource(), source -> {});
+    }
+
+    /**
+     * @return HTTP {@code Content-Encoding} of serialized request, null if not compressed
+     */
+    public String getContentEncoding() {
+        return compressor != null ? compressor.getContentEncoding() : null;
+    }
+
+    /**
+     * Writes action lines only into {@link #buffer} and assembles the request as a {@code io.netty.buffer.CompositeByteBuf}
+     * of retained slices: action line, {@link IndexRequest} source and line separator for each item.
+     * Sources are not copied, so {@link #buffer} has to hold actions only.
+     *
+     * @return {@link ItemSource} backed by {@code io.netty.buffer.CompositeByteBuf} with serialized indexRequests.
+     * Released on {@link #completed()}
+     * @throws IOException if serialization failed
+     */
+    ItemSource serializeComposite() throws IOException {
+
+        ByteBuf actions = buffer.getSource();
+        ByteBufOutputStream byteBufOutputStream = new ByteBufOutputStream(actions);
+
+        int separatorIndex = actions.writerIndex();
+        byteBufOutputStream.writeByte(LINE_SEPARATOR);
+
+        // no consolidation, components are never copied
+        CompositeByteBuf composite = actions.alloc().compositeBuffer(Integer.MAX_VALUE);
+        this.composite = composite;
+
+        // in current impl with no IDs, it's possible to reduce serialization by reusing first action
+        IndexRequest identicalAction = uniformAction(indexRequests);
+
+        int actionIndex = actions.writerIndex();
+        if (identicalAction != null) {
+            objectWriter.writeValue((OutputStream) byteBufOutputStream, identicalAction);
+            byteBufOutputStream.writeByte(LINE_SEPARATOR);
+        }
+        int actionLength = actions.writerIndex() - actionIndex;
+
+        for (IndexRequest action : indexRequests) {
+
+            if (identicalAction == null) {
+                actionIndex = actions.writerIndex();
+                objectWriter.writeValue((OutputStream) byteBufOutputStream, action);
+                byteBufOutputStream.writeByte(LINE_SEPARATOR);
+                actionLength = actions.writerIndex() - actionIndex;
+            }
+
+            composite.addComponent(true, actions.retainedSlice(actionIndex, actionLength));
+            composite.addComponent(true, action.getSource().getSource().retainedSlice());
+            composite.addComponent(true, actions.retainedSlice(separatorIndex, 1));
+
+        }
+
+        return new ByteBufItemSource(composite, source -> {});
+    }
+
+    /**
+     * Serializes action line of given {@link IndexRequest} into {@link #buffer}. Previous content of {@link #buffer}
+     * is discarded, so only one action line is held at a time. Allows to emit the request item by item.
+     * <p>
+     * Action is serialized only once if all {@link #indexRequests} are the same (see {@link #uniformAction(Collection)}).
+     *
+     * @param action item to serialize action line for
+     * @param leadingSeparator if true, {@link #LINE_SEPARATOR} will be written before the action line
+     * (end of previous item)
+     * @return {@link #buffer} with action line followed by {@link #LINE_SEPARATOR}
+     * @throws IOException if serialization failed
+     */
+    ByteBuf serializeActionLine(IndexRequest action, boolean leadingSeparator) throws IOException {
+
+        if (!actionTemplateResolved) {
+            IndexRequest identicalAction = uniformAction(indexRequests);
+            actionTemplate = identicalAction != null ? objectWriter.writeValueAsBytes(identicalAction) : null;
+            actionTemplateResolved = true;
+        }
+
+        ByteBuf byteBuf = buffer.getSource().clear();
+        ByteBufOutputStream byteBufOutputStream = new ByteBufOutputStream(byteBuf);
+
+        if (leadingSeparator) {
+            byteBufOutputStream.writeByte(LINE_SEPARATOR);
+        }
+
+        if (actionTemplate == null) {
+            objectWriter.writeValue((OutputStream) byteBufOutputStream, action);
+        } else {
+            byteBufOutputStream.write(actionTemplate);
+        }
+        byteBufOutputStream.writeByte(LINE_SEPARATOR);
+
+        return byteBuf;
+    }
+
     /**
      * Checks if all items in given collection are equal
      * ({@link IndexRequest#index} and {@link IndexRequest#type} are the same for all elements)
@@ -110,6 +247,18 @@ public class BatchRequest implements Request {
      * <p>MUST be called when request is completed. Otherwise it may lead to excessive resource usage and memory leaks
      */
     public void completed() {
+
+        if (compressed != null) {
+            compressed.release();
+            compressed = null;
+        }
+
+        // composite holds slices of both sources and buffer
+        if (composite != null) {
+            composite.release();
+            composite = null;
+        }
+
         for (IndexRequest indexRequest : indexRequests) {
             indexRequest.release();
         }
@@ -139,6 +288,9 @@ public class BatchRequest implements Request {
         protected final Collection<IndexRequest> items = new ConcurrentLinkedQueue<>();
         private ItemSource<ByteBuf> buffer;
         private ObjectWriter objectWriter;
+        private boolean zeroCopy;
+        private ByteBufCompressor compressor;
+        private EmptyItemSourceFactory compressedBufferFactory;
 
         public Builder add(IndexRequest item) {
             this.items.add(item);
@@ -159,6 +311,10 @@ public class BatchRequest implements Request {
                 throw new IllegalArgumentException("objectWriter cannot be null");
             }
 
+            if (compressor != null && compressedBufferFactory == null) {
+                throw new IllegalArgumentException("compressedBufferFactory cannot be null if compressor is configured");
+            }
+
             return new BatchRequest(this);
         }
 
@@ -172,5 +328,32 @@ public class BatchRequest implements Request {
             return this;
         }
 
+        /**
+         * @param zeroCopy if true, {@link IndexRequest} sources will not be copied to the buffer on {@link BatchRequest#serialize()}
+         * @return this
+         */
+        public Builder withZeroCopy(boolean zeroCopy) {
+            this.zeroCopy = zeroCopy;
+            return this;
+        }
+
+        /**
+         * @param compressor if not null, serialized request will be compressed
+         * @return this
+         */
+        public Builder withCompressor(ByteBufCompressor compressor) {
+            this.compressor = compressor;
+            return this;
+        }
+
+        /**
+         * @param compressedBufferFactory compressed request buffer provider, e.g. batch buffer pool. Required if compressor is configured
+         * @return this
+         */
+        public Builder withCompressedBufferFactory(EmptyItemSourceFactory compressedBufferFactory) {
+            this.compressedBufferFactory = compressedBufferFactory;
+            return this;
+        }
+
     }
 }
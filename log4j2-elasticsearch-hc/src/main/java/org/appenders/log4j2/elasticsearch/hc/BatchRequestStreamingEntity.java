@@ -0,0 +1,197 @@
+package org.appenders.log4j2.elasticsearch.hc;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import io.netty.buffer.ByteBuf;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
+import org.apache.http.util.Args;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+/**
+ * Chunked {@code org.apache.http.nio.entity.HttpAsyncContentProducer} emitting {@link BatchRequest} item by item
+ * when {@code org.apache.http.nio.ContentEncoder} is able to accept more bytes.
+ * <p>
+ * Only one action line is serialized at a time (see {@link BatchRequest#serializeActionLine(IndexRequest, boolean)})
+ * and {@link IndexRequest} sources are written directly to the encoder, so request body is never materialized.
+ * <p>
+ * Content can also be written with {@link #writeTo(OutputStream)}. {@link #getContent()} is not supported.
+ */
+public class BatchRequestStreamingEntity extends AbstractHttpEntity implements HttpAsyncContentProducer {
+
+    private static final ByteBuffer[] NO_BUFFERS = new ByteBuffer[0];
+    private static final byte[] LINE_SEPARATOR = new byte[] { BatchRequest.LINE_SEPARATOR };
+
+    private final BatchRequest request;
+
+    private Iterator<IndexRequest> items;
+    private boolean itemWritten;
+    private ByteBuffer[] pending = NO_BUFFERS;
+    private int pendingIndex;
+
+    public BatchRequestStreamingEntity(BatchRequest request, ContentType contentType) {
+        this.request = Args.notNull(request, "request");
+        if (contentType != null) {
+            setContentType(contentType.toString());
+        }
+        setChunked(true);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    /**
+     * @return {@code -1}. Content length is not known until all items are written
+     */
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    /**
+     * Unsupported. Throws UnsupportedOperationException. Content handling available only via
+     * {@link #produceContent(ContentEncoder, IOControl)} and {@link #writeTo(OutputStream)}
+     *
+     * @return never
+     */
+    @Override
+    public InputStream getContent() {
+        throw new UnsupportedOperationException("getContent() is not supported. Use produceContent(ContentEncoder, IOControl) instead");
+    }
+
+    /**
+     * Writes all items to given stream
+     *
+     * @param outstream target stream
+     * @throws IOException if serialization or write failed
+     */
+    @Override
+    public void writeTo(OutputStream outstream) throws IOException {
+
+        boolean leadingSeparator = false;
+        for (IndexRequest indexRequest : request.getIndexRequests()) {
+
+            ByteBuf actionLine = request.serializeActionLine(indexRequest, leadingSeparator);
+            actionLine.getBytes(actionLine.readerIndex(), outstream, actionLine.readableBytes());
+
+            ByteBuf source = indexRequest.getSource().getSource();
+            source.getBytes(source.readerIndex(), outstream, source.readableBytes());
+
+            leadingSeparator = true;
+        }
+
+        if (leadingSeparator) {
+            outstream.write(LINE_SEPARATOR);
+        }
+
+    }
+
+    /**
+     * Writes pending buffers until encoder is not able to accept more bytes. Serializes next item once all pending
+     * buffers are written. Completes the encoder once all items are written.
+     *
+     * @param encoder content encoder
+     * @param ioctrl I/O control of the connection
+     * @throws IOException if serialization or write failed
+     */
+    @Override
+    public void produceContent(ContentEncoder encoder, IOControl ioctrl) throws IOException {
+
+        if (items == null) {
+            items = request.getIndexRequests().iterator();
+        }
+
+        while (true) {
+
+            while (pendingIndex < pending.length) {
+                ByteBuffer current = pending[pendingIndex];
+                encoder.write(current);
+                if (current.hasRemaining()) {
+                    // encoder is full, wait for the next call
+                    return;
+                }
+                pendingIndex++;
+            }
+
+            if (items.hasNext()) {
+                nextItem(items.next());
+            } else if (itemWritten) {
+                itemWritten = false;
+                setPending(new ByteBuffer[] { ByteBuffer.wrap(LINE_SEPARATOR) });
+            } else {
+                encoder.complete();
+                return;
+            }
+
+        }
+
+    }
+
+    private void nextItem(IndexRequest indexRequest) throws IOException {
+
+        ByteBuf actionLine = request.serializeActionLine(indexRequest, itemWritten);
+        ByteBuf source = indexRequest.getSource().getSource();
+
+        ByteBuffer[] actionLineBuffers = actionLine.nioBuffers(actionLine.readerIndex(), actionLine.readableBytes());
+        ByteBuffer[] sourceBuffers = source.nioBuffers(source.readerIndex(), source.readableBytes());
+
+        ByteBuffer[] buffers = new ByteBuffer[actionLineBuffers.length + sourceBuffers.length];
+        System.arraycopy(actionLineBuffers, 0, buffers, 0, actionLineBuffers.length);
+        System.arraycopy(sourceBuffers, 0, buffers, actionLineBuffers.length, sourceBuffers.length);
+
+        setPending(buffers);
+        itemWritten = true;
+
+    }
+
+    private void setPending(ByteBuffer[] buffers) {
+        this.pending = buffers;
+        this.pendingIndex = 0;
+    }
+
+    /**
+     * Resets the state, so content can be produced again
+     */
+    @Override
+    public void close() {
+        items = null;
+        itemWritten = false;
+        setPending(NO_BUFFERS);
+    }
+
+}
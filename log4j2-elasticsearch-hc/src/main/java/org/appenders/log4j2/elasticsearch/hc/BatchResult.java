@@ -21,7 +21,6 @@ package org.appenders.log4j2.elasticsearch.hc;
  */
 
 import java.util.List;
-import java.util.Optional;
 
 public class BatchResult implements Response {
 
@@ -37,15 +36,29 @@ public class BatchResult implements Response {
     private Error error;
     private int statusCode;
     private List<BatchItemResult> items;
+    private BatchItemFailures itemFailures;
     private String errorMessage;
     private int responseCode;
 
     public BatchResult(int took, boolean errors, Error error, int statusCode, List<BatchItemResult> items) {
+        this(took, errors, error, statusCode, items, items == null ? null : BatchItemFailures.of(items));
+    }
+
+    /**
+     * @param took cluster service time
+     * @param errors true, if at least one item failed
+     * @param error root error, may be null
+     * @param statusCode root status
+     * @param items item results, may be null
+     * @param itemFailures failed items summary, may be null if item results were not parsed
+     */
+    public BatchResult(int took, boolean errors, Error error, int statusCode, List<BatchItemResult> items, BatchItemFailures itemFailures) {
         this.took = took;
         this.errors = errors;
         this.error = error;
         this.statusCode = statusCode;
         this.items = items;
+        this.itemFailures = itemFailures;
     }
 
     public int getTook() {
@@ -67,10 +80,21 @@ public class BatchResult implements Response {
         return statusCode;
     }
 
+    /**
+     * @return item results if available, null otherwise. Since 1.5, item results are not parsed by default.
+     * See {@link #getItemFailures()}
+     */
     public List<BatchItemResult> getItems() {
         return items;
     }
 
+    /**
+     * @return failed items summary, may be null if item results were not parsed
+     */
+    public BatchItemFailures getItemFailures() {
+        return itemFailures;
+    }
+
     @Override
     public int getResponseCode() {
         return responseCode;
@@ -87,17 +111,12 @@ public class BatchResult implements Response {
     }
 
     private StringBuilder appendFailedItemErrorMessageIfAvailable(StringBuilder sb) {
-        if (getItems() == null) {
-            return sb.append(UNABLE_TO_GET_MORE_INFO);
-        }
-
-        Optional<BatchItemResult> firstFailedItem = getItems().stream().filter(item -> item.getError() != null).findFirst();
-        if (!firstFailedItem.isPresent()) {
+        if (itemFailures == null || itemFailures.getFirstError() == null) {
             return sb.append(UNABLE_TO_GET_MORE_INFO);
         }
 
         sb.append(FIRST_FAILED_ITEM_PREFIX);
-        return firstFailedItem.get().getError().appendErrorMessage(sb);
+        return itemFailures.getFirstError().appendErrorMessage(sb);
     }
 
     public BatchResult withErrorMessage(String errorMessage) {
@@ -0,0 +1,299 @@
+package org.appenders.log4j2.elasticsearch.hc;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+
+/**
+ * Incremental {@code /_bulk} response parser based on Jackson non-blocking {@code JsonParser}.
+ * <p>
+ * Response body chunks can be fed as they arrive, see {@link #feed(byte[], int, int)}. Each chunk is parsed
+ * immediately, so full response body doesn't have to be buffered. Same as {@link BatchResultDeserializer}, only
+ * statuses of items are read and failures are recorded in {@link BatchItemFailures}. Once {@code errors} is false,
+ * remaining input is ignored.
+ * <p>
+ * NOT thread-safe. One instance per response.
+ */
+public class BatchResultAsyncParser {
+
+    private static final int ROOT_DEPTH = 1;
+    private static final int ITEMS_DEPTH = 2;
+    private static final int ITEM_BODY_DEPTH = 4;
+
+    private final ObjectReader errorReader;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+
+    private int depth;
+    private String rootField;
+    private boolean inItems;
+    private String itemField;
+
+    private int took;
+    private boolean errors;
+    private Error error;
+    private int status = -1;
+    private BatchItemFailures itemFailures;
+
+    private int itemStatus;
+    private boolean itemHasError;
+    private Error itemError;
+
+    private TokenBuffer capture;
+    private int captureDepth;
+
+    private boolean done;
+
+    /**
+     * @param objectReader configured {@link BatchResult} reader. Used to create non-blocking parser and to deserialize
+     *                     {@link Error}s
+     * @throws IOException if non-blocking parser can't be created
+     */
+    public BatchResultAsyncParser(ObjectReader objectReader) throws IOException {
+        this.errorReader = objectReader.forType(Error.class);
+        this.parser = objectReader.getFactory().createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Parses given chunk. Given array can be reused once this method returns.
+     *
+     * @param bytes input
+     * @param offset offset of first byte
+     * @param length number of bytes to parse
+     * @throws IOException on malformed input
+     */
+    public void feed(byte[] bytes, int offset, int length) throws IOException {
+
+        if (done || length == 0) {
+            return;
+        }
+
+        feeder.feedInput(bytes, offset, offset + length);
+        drain();
+
+    }
+
+    /**
+     * Signals the end of input and parses remaining tokens
+     *
+     * @throws IOException on malformed or incomplete input
+     */
+    public void endOfInput() throws IOException {
+
+        if (done) {
+            return;
+        }
+
+        feeder.endOfInput();
+        drain();
+
+    }
+
+    /**
+     * @return parsed result. Should be called after {@link #endOfInput()}
+     */
+    public BatchResult getResult() {
+        return new BatchResult(took, errors, error, status, null, itemFailures);
+    }
+
+    /**
+     * @return true, if all required information was parsed, false otherwise
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    private void drain() throws IOException {
+
+        JsonToken token;
+        while (!done && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            onToken(token);
+        }
+
+    }
+
+    private void onToken(JsonToken token) throws IOException {
+
+        if (capture != null) {
+            onCapturedToken(token);
+            return;
+        }
+
+        switch (token) {
+            case START_OBJECT:
+            case START_ARRAY: {
+                depth++;
+                onStart(token);
+                break;
+            }
+            case END_OBJECT:
+            case END_ARRAY: {
+                depth--;
+                onEnd(token);
+                break;
+            }
+            case FIELD_NAME: {
+                if (depth == ROOT_DEPTH) {
+                    rootField = parser.getCurrentName();
+                } else if (inItems && depth == ITEM_BODY_DEPTH) {
+                    itemField = parser.getCurrentName();
+                }
+                break;
+            }
+            default: {
+                onScalar(token);
+            }
+        }
+
+    }
+
+    private void onStart(JsonToken token) throws IOException {
+
+        if (depth == ITEMS_DEPTH && token == JsonToken.START_ARRAY && "items".equals(rootField)) {
+            inItems = true;
+            itemFailures = new BatchItemFailures();
+            return;
+        }
+
+        if (depth == ITEMS_DEPTH && token == JsonToken.START_OBJECT && "error".equals(rootField)) {
+            startCapture();
+            return;
+        }
+
+        if (inItems && depth == ITEM_BODY_DEPTH) {
+            itemStatus = -1;
+            itemHasError = false;
+            itemError = null;
+            itemField = null;
+            return;
+        }
+
+        if (inItems && depth == ITEM_BODY_DEPTH + 1 && "error".equals(itemField)) {
+            itemHasError = true;
+            if (itemFailures.needsError(itemStatus)) {
+                startCapture();
+            }
+        }
+
+    }
+
+    private void onEnd(JsonToken token) {
+
+        if (inItems && depth == ITEM_BODY_DEPTH - 1 && token == JsonToken.END_OBJECT) {
+            itemFailures.add(itemStatus, itemHasError, itemError);
+            return;
+        }
+
+        if (inItems && depth == ITEMS_DEPTH - 1) {
+            inItems = false;
+            return;
+        }
+
+        if (depth == 0) {
+            done = true;
+        }
+
+    }
+
+    private void onScalar(JsonToken token) throws IOException {
+
+        if (depth == ROOT_DEPTH) {
+            onRootScalar(token);
+            return;
+        }
+
+        if (inItems && depth == ITEM_BODY_DEPTH) {
+            if ("status".equals(itemField) && token == JsonToken.VALUE_NUMBER_INT) {
+                itemStatus = parser.getIntValue();
+            } else if ("error".equals(itemField) && token != JsonToken.VALUE_NULL) {
+                itemHasError = true;
+            }
+        }
+
+    }
+
+    private void onRootScalar(JsonToken token) throws IOException {
+
+        if ("took".equals(rootField) && token == JsonToken.VALUE_NUMBER_INT) {
+            took = parser.getIntValue();
+        } else if ("status".equals(rootField) && token == JsonToken.VALUE_NUMBER_INT) {
+            status = parser.getIntValue();
+        } else if ("errors".equals(rootField)) {
+            errors = token == JsonToken.VALUE_TRUE;
+            if (!errors) {
+                // nothing else to look at
+                done = true;
+            }
+        }
+
+    }
+
+    private void startCapture() throws IOException {
+        capture = new TokenBuffer(parser, null);
+        captureDepth = depth;
+        capture.writeStartObject();
+    }
+
+    private void onCapturedToken(JsonToken token) throws IOException {
+
+        capture.copyCurrentEvent(parser);
+
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            depth++;
+            return;
+        }
+
+        if (token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY) {
+            return;
+        }
+
+        depth--;
+
+        if (depth < captureDepth) {
+            Error captured = finishCapture();
+            if (inItems) {
+                itemError = captured;
+            } else {
+                error = captured;
+            }
+        }
+
+    }
+
+    private Error finishCapture() throws IOException {
+        try (JsonParser captured = capture.asParser()) {
+            captured.nextToken();
+            return errorReader.readValue(captured);
+        } finally {
+            capture = null;
+        }
+    }
+
+}
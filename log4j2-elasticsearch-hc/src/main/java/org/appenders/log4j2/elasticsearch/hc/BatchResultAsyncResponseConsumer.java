@@ -0,0 +1,108 @@
+package org.appenders.log4j2.elasticsearch.hc;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Parses {@code /_bulk} response body with {@link BatchResultAsyncParser} as it arrives. Response content is not
+ * buffered, decoded chunks are read into a small, per-I/O-thread buffer and fed to the parser directly.
+ * <p>
+ * Result is available as {@link ParsedResponseEntity} of built {@code org.apache.http.HttpResponse}.
+ */
+public class BatchResultAsyncResponseConsumer extends AbstractAsyncResponseConsumer<HttpResponse> {
+
+    static final int CHUNK_SIZE = 8192;
+
+    // consumer callbacks are invoked by I/O dispatcher threads and every chunk is parsed before the callback returns
+    private static final ThreadLocal<ByteBuffer> CHUNK = ThreadLocal.withInitial(() -> ByteBuffer.allocate(CHUNK_SIZE));
+
+    private final ObjectReader objectReader;
+
+    private volatile HttpResponse response;
+    private volatile BatchResultAsyncParser parser;
+
+    /**
+     * @param objectReader configured {@link BatchResult} reader
+     */
+    public BatchResultAsyncResponseConsumer(ObjectReader objectReader) {
+        this.objectReader = objectReader;
+    }
+
+    @Override
+    protected void onResponseReceived(final HttpResponse response) {
+        this.response = response;
+    }
+
+    @Override
+    protected void onEntityEnclosed(final HttpEntity entity, final ContentType contentType) throws IOException {
+        if (parser == null) {
+            parser = new BatchResultAsyncParser(objectReader);
+        }
+    }
+
+    @Override
+    protected void onContentReceived(final ContentDecoder decoder, final IOControl ioctrl) throws IOException {
+
+        ByteBuffer chunk = CHUNK.get();
+        chunk.clear();
+
+        int read;
+        while ((read = decoder.read(chunk)) > 0) {
+            // remaining content still has to be consumed once parser is done
+            parser.feed(chunk.array(), 0, read);
+            chunk.clear();
+        }
+
+    }
+
+    @Override
+    protected void releaseResources() {
+        this.response = null;
+        this.parser = null;
+    }
+
+    @Override
+    protected HttpResponse buildResult(final HttpContext context) throws IOException {
+
+        if (parser == null) {
+            throw new IOException("Response body not available");
+        }
+
+        parser.endOfInput();
+        response.setEntity(new ParsedResponseEntity<>(parser.getResult()));
+
+        return response;
+    }
+
+}
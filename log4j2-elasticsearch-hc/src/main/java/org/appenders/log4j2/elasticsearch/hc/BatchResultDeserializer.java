@@ -21,15 +21,19 @@ package org.appenders.log4j2.elasticsearch.hc;
  */
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.MappingIterator;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
+/**
+ * Token-streaming {@code /_bulk} response deserializer.
+ * <p>
+ * Since 1.5, item results are not materialized. {@code items} are parsed only if {@code errors} is true and only
+ * status of each item is read. Positions of failed items and errors of first failed items are stored in
+ * {@link BatchItemFailures}. Parsing stops as soon as {@code errors} is false.
+ */
 public class BatchResultDeserializer extends JsonDeserializer {
 
     @Override
@@ -38,7 +42,7 @@ public class BatchResultDeserializer extends JsonDeserializer {
         boolean errors = false;
         Error error = null;
         int status = -1;
-        List<BatchItemResult> items = null;
+        BatchItemFailures itemFailures = null;
 
         String fieldName;
         while ((fieldName = p.nextFieldName()) != null)  {
@@ -49,6 +53,10 @@ public class BatchResultDeserializer extends JsonDeserializer {
                 }
                 case "errors": {
                     errors = p.nextBooleanValue();
+                    if (!errors) {
+                        // nothing else to look at
+                        return new BatchResult(took, false, error, status, null, null);
+                    }
                     break;
                 }
                 case "status": {
@@ -57,28 +65,85 @@ public class BatchResultDeserializer extends JsonDeserializer {
                 }
                 case "error": {
                     p.nextValue(); // skip to START_OBJECT or VALUE_NULL
-                    JsonDeserializer<Object> typeDeserializer = ctxt.findNonContextualValueDeserializer(ctxt.constructType(Error.class));
-                    error = (Error) typeDeserializer.deserialize(p, ctxt);
+                    error = deserializeError(p, ctxt);
                     break;
                 }
                 case "items": {
+                    p.nextValue(); // skip to START_ARRAY
                     if (errors) {
-                        items = new ArrayList<>();
-                        p.nextValue(); // skip to START_ARRAY
-                        p.nextValue(); // skip to START_OBJECT
-                        ObjectMapper mapper = (ObjectMapper) p.getCodec();
-                        MappingIterator<BatchItemResult> batchResultItemMappingIterator = mapper.readValues(p, BatchItemResult.class);
-
-                        while (batchResultItemMappingIterator.hasNext()) {
-                            items.add(batchResultItemMappingIterator.next());
-                        }
+                        itemFailures = deserializeItemFailures(p, ctxt);
+                    } else {
+                        p.skipChildren();
                     }
                     break;
                 }
+                default: {
+                    p.nextValue();
+                    p.skipChildren();
+                }
             }
         }
 
-        return new BatchResult(took, errors, error, status, items);
+        return new BatchResult(took, errors, error, status, null, itemFailures);
+    }
+
+    /**
+     * @param p parser positioned at {@code items} START_ARRAY
+     * @param ctxt deserialization context
+     * @return failed items summary
+     * @throws IOException if underlying parser fails
+     */
+    BatchItemFailures deserializeItemFailures(JsonParser p, DeserializationContext ctxt) throws IOException {
+
+        BatchItemFailures itemFailures = new BatchItemFailures();
+
+        // {"<action>":{...}}
+        while (p.nextToken() == JsonToken.START_OBJECT) {
+
+            p.nextToken(); // action name
+            p.nextToken(); // START_OBJECT
+
+            int itemStatus = -1;
+            boolean hasError = false;
+            Error itemError = null;
+
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+
+                String name = p.getCurrentName();
+                p.nextToken();
+
+                if ("status".equals(name)) {
+                    itemStatus = p.getIntValue();
+                } else if ("error".equals(name)) {
+                    hasError = true;
+                    if (itemFailures.needsError(itemStatus)) {
+                        itemError = deserializeError(p, ctxt);
+                    } else {
+                        p.skipChildren();
+                    }
+                } else {
+                    p.skipChildren();
+                }
+
+            }
+
+            p.nextToken(); // END_OBJECT of action
+
+            itemFailures.add(itemStatus, hasError, itemError);
+
+        }
+
+        return itemFailures;
+
+    }
+
+    private Error deserializeError(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return null;
+        }
+        JsonDeserializer<Object> typeDeserializer = ctxt.findNonContextualValueDeserializer(ctxt.constructType(Error.class));
+        return (Error) typeDeserializer.deserialize(p, ctxt);
     }
 
 }
@@ -22,6 +22,8 @@ package org.appenders.log4j2.elasticsearch.hc;
 
 
 
+import org.appenders.log4j2.elasticsearch.AdaptiveBatchSize;
+import org.appenders.log4j2.elasticsearch.AdaptiveBulkEmitter;
 import org.appenders.log4j2.elasticsearch.BatchEmitterFactory;
 import org.appenders.log4j2.elasticsearch.BulkEmitter;
 import org.appenders.log4j2.elasticsearch.ClientObjectFactory;
@@ -36,9 +38,27 @@ public class BulkEmitterFactory implements BatchEmitterFactory<BulkEmitter> {
 
     @Override
     public BulkEmitter createInstance(int batchSize, int deliveryInterval, ClientObjectFactory clientObjectFactory, FailoverPolicy failoverPolicy) {
-        BulkEmitter bulkEmitter = new BulkEmitter(batchSize, deliveryInterval, clientObjectFactory.createBatchOperations());
-        bulkEmitter.addListener(clientObjectFactory.createBatchListener(failoverPolicy));
+        return createInstance(batchSize, Long.MAX_VALUE, deliveryInterval, clientObjectFactory, failoverPolicy);
+    }
+
+    @Override
+    public BulkEmitter createInstance(int batchSize, long batchSizeInBytes, int deliveryInterval, ClientObjectFactory clientObjectFactory, FailoverPolicy failoverPolicy) {
+
+        HCHttp hcHttp = (HCHttp) clientObjectFactory;
+
+        if (hcHttp.getAdaptiveBatchSize() == null) {
+            BulkEmitter bulkEmitter = new BulkEmitter(batchSize, batchSizeInBytes, deliveryInterval, clientObjectFactory.createBatchOperations());
+            bulkEmitter.addListener(clientObjectFactory.createBatchListener(failoverPolicy));
+            return bulkEmitter;
+        }
+
+        // each emitter (e.g. each of PriorityLanes) adapts to its own responses
+        AdaptiveBatchSize adaptiveBatchSize = hcHttp.getAdaptiveBatchSize().copy();
+
+        BulkEmitter bulkEmitter = new AdaptiveBulkEmitter(batchSize, batchSizeInBytes, deliveryInterval, clientObjectFactory.createBatchOperations(), adaptiveBatchSize);
+        bulkEmitter.addListener(hcHttp.createBatchListener(failoverPolicy, adaptiveBatchSize));
         return bulkEmitter;
+
     }
 
 }
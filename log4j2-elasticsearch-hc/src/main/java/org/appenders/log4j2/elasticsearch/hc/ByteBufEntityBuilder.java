@@ -33,6 +33,7 @@ public class ByteBufEntityBuilder {
     private int contentLength = -1;
     private ContentType contentType;
     private ByteBuf byteByf;
+    private String contentEncoding;
 
     public ByteBufEntityBuilder setContentLength(int contentLength) {
         this.contentLength = contentLength;
@@ -53,8 +54,19 @@ public class ByteBufEntityBuilder {
         return this;
     }
 
+    /**
+     * @param contentEncoding HTTP {@code Content-Encoding}, ignored if null
+     * @return this
+     */
+    public ByteBufEntityBuilder setContentEncoding(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+        return this;
+    }
+
     public HttpEntity build() {
-        return new ByteBufHttpEntity(byteByf, contentLength, getContentType());
+        ByteBufHttpEntity entity = new ByteBufHttpEntity(byteByf, contentLength, getContentType());
+        entity.setContentEncoding(contentEncoding);
+        return entity;
     }
 
 }
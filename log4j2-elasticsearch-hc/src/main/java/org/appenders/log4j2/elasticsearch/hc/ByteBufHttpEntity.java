@@ -24,16 +24,24 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufInputStream;
 import org.apache.http.entity.AbstractHttpEntity;
 import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
 import org.apache.http.util.Args;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * {@code io.netty.buffer.ByteBuf}-based {@code org.apache.http.entity.AbstractHttpEntity}
+ * <p>
+ * Since 1.5, it's also a {@code org.apache.http.nio.entity.HttpAsyncContentProducer}, so async clients write
+ * {@code io.netty.buffer.ByteBuf} NIO buffers (or components of {@code io.netty.buffer.CompositeByteBuf}) directly
+ * to {@code org.apache.http.nio.ContentEncoder} instead of reading them through {@link #getContent()}.
  */
-public class ByteBufHttpEntity extends AbstractHttpEntity {
+public class ByteBufHttpEntity extends AbstractHttpEntity implements HttpAsyncContentProducer {
 
     private final ByteBuf content;
     private final long length;
@@ -91,4 +99,41 @@ public class ByteBufHttpEntity extends AbstractHttpEntity {
         throw new UnsupportedOperationException("writeTo(OutputStream) is not supported. Use getContent() to get InputStream instead");
     }
 
+    /**
+     * Writes readable bytes to given encoder until encoder is not able to accept more bytes.
+     * Completes the encoder once all readable bytes are written.
+     *
+     * @param encoder content encoder
+     * @param ioctrl I/O control of the connection
+     * @throws IOException if write failed
+     */
+    @Override
+    public void produceContent(ContentEncoder encoder, IOControl ioctrl) throws IOException {
+
+        int readerIndex = content.readerIndex();
+        int written = 0;
+        for (ByteBuffer nioBuffer : content.nioBuffers(readerIndex, content.readableBytes())) {
+            int remaining = nioBuffer.remaining();
+            int bytesWritten = encoder.write(nioBuffer);
+            written += bytesWritten;
+            if (bytesWritten < remaining) {
+                break;
+            }
+        }
+        content.readerIndex(readerIndex + written);
+
+        if (!content.isReadable()) {
+            encoder.complete();
+        }
+
+    }
+
+    /**
+     * Resets the {@code io.netty.buffer.ByteBuf}, so content can be produced again
+     */
+    @Override
+    public void close() {
+        content.readerIndex(0);
+    }
+
 }
@@ -25,6 +25,7 @@ import com.fasterxml.jackson.databind.MappingJsonFactory;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import org.appenders.log4j2.elasticsearch.BatchBuilder;
 import org.appenders.log4j2.elasticsearch.BatchOperations;
+import org.appenders.log4j2.elasticsearch.ByteBufCompressor;
 import org.appenders.log4j2.elasticsearch.ExtendedObjectMapper;
 import org.appenders.log4j2.elasticsearch.ItemSource;
 import org.appenders.log4j2.elasticsearch.PooledItemSourceFactory;
@@ -34,10 +35,33 @@ public class HCBatchOperations implements BatchOperations<BatchRequest> {
     private final PooledItemSourceFactory pooledItemSourceFactory;
     private final String mappingType;
     private final ObjectWriter objectWriter;
+    private final boolean zeroCopy;
+    private final ByteBufCompressor compressor;
 
     public HCBatchOperations(PooledItemSourceFactory pooledItemSourceFactory, String mappingType) {
+        this(pooledItemSourceFactory, mappingType, false);
+    }
+
+    /**
+     * @param pooledItemSourceFactory batch buffer provider
+     * @param mappingType Elasticsearch mapping type
+     * @param zeroCopy if true, {@link BatchRequest} will be assembled from item buffers without copying them
+     */
+    public HCBatchOperations(PooledItemSourceFactory pooledItemSourceFactory, String mappingType, boolean zeroCopy) {
+        this(pooledItemSourceFactory, mappingType, zeroCopy, null);
+    }
+
+    /**
+     * @param pooledItemSourceFactory batch buffer provider
+     * @param mappingType Elasticsearch mapping type
+     * @param zeroCopy if true, {@link BatchRequest} will be assembled from item buffers without copying them
+     * @param compressor if not null, {@link BatchRequest} will be compressed after serialization
+     */
+    public HCBatchOperations(PooledItemSourceFactory pooledItemSourceFactory, String mappingType, boolean zeroCopy, ByteBufCompressor compressor) {
         this.pooledItemSourceFactory = pooledItemSourceFactory;
         this.mappingType = mappingType;
+        this.zeroCopy = zeroCopy;
+        this.compressor = compressor;
         this.objectWriter = configuredWriter();
     }
 
@@ -60,7 +84,10 @@ public class HCBatchOperations implements BatchOperations<BatchRequest> {
 
             private BatchRequest.Builder builder = new BatchRequest.Builder()
                     .withBuffer(pooledItemSourceFactory.createEmptySource())
-                    .withObjectWriter(objectWriter);
+                    .withObjectWriter(objectWriter)
+                    .withZeroCopy(zeroCopy)
+                    .withCompressor(compressor)
+                    .withCompressedBufferFactory(pooledItemSourceFactory);
 
             @Override
             public void add(Object item) {
@@ -37,6 +37,8 @@ import org.apache.logging.log4j.core.config.plugins.PluginBuilderFactory;
 import org.apache.logging.log4j.core.config.plugins.PluginElement;
 import org.apache.logging.log4j.core.config.plugins.validation.constraints.Required;
 import org.appenders.core.logging.InternalLogging;
+import org.appenders.log4j2.elasticsearch.AdaptiveBatchSize;
+import org.appenders.log4j2.elasticsearch.ByteBufCompressor;
 import org.appenders.log4j2.elasticsearch.Auth;
 import org.appenders.log4j2.elasticsearch.BatchOperations;
 import org.appenders.log4j2.elasticsearch.ClientObjectFactory;
@@ -44,8 +46,11 @@ import org.appenders.log4j2.elasticsearch.ClientProvider;
 import org.appenders.log4j2.elasticsearch.FailoverPolicy;
 import org.appenders.log4j2.elasticsearch.IndexTemplate;
 import org.appenders.log4j2.elasticsearch.ItemSourceFactory;
+import org.appenders.log4j2.elasticsearch.LifeCycle;
 import org.appenders.log4j2.elasticsearch.Operation;
+import org.appenders.log4j2.elasticsearch.OperationQueue;
 import org.appenders.log4j2.elasticsearch.PooledItemSourceFactory;
+import org.appenders.log4j2.elasticsearch.PriorityLanes;
 import org.appenders.log4j2.elasticsearch.backoff.BackoffPolicy;
 import org.appenders.log4j2.elasticsearch.backoff.NoopBackoffPolicy;
 import org.appenders.log4j2.elasticsearch.failover.FailedItemOps;
@@ -56,7 +61,7 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Iterator;
 import java.util.function.Function;
 
 import static org.appenders.core.logging.InternalLogging.getLogger;
@@ -71,6 +76,9 @@ public class HCHttp implements ClientObjectFactory<HttpClient, BatchRequest> {
 
     public static final String PLUGIN_NAME = "HCHttp";
 
+    static final int TOO_MANY_REQUESTS = 429;
+    static final int SERVICE_UNAVAILABLE = 503;
+
     private volatile State state = State.STOPPED;
 
     private final Collection<String> serverUris;
@@ -86,10 +94,23 @@ public class HCHttp implements ClientObjectFactory<HttpClient, BatchRequest> {
     protected final int pooledResponseBuffersSizeInBytes;
     protected final FailedItemOps<IndexRequest> failedItemOps;
     protected final BackoffPolicy<BatchRequest> backoffPolicy;
-
-    private final ConcurrentLinkedQueue<Operation> operations = new ConcurrentLinkedQueue<>();
-
-    private HttpClient client;
+    protected final AdaptiveBatchSize adaptiveBatchSize;
+    protected final boolean zeroCopyBulk;
+    protected final boolean streamingBulk;
+    protected final boolean incrementalResponseParsing;
+    protected final ByteBufCompressor compression;
+    protected final int maxConnectionsPerRoute;
+    protected final long keepAliveTimeout;
+    protected final long idleConnectionTimeout;
+    protected final boolean tcpNoDelay;
+    protected final int sendBufferSize;
+    protected final int receiveBufferSize;
+    protected final ServerHealthPolicy serverHealthPolicy;
+    protected final ServiceDiscovery serviceDiscovery;
+
+    private final OperationQueue operations = new OperationQueue();
+
+    private volatile HttpClient client;
 
     public HCHttp(Builder builder) {
         this.serverUris = Arrays.asList(builder.serverUris.split(";"));
@@ -105,6 +126,19 @@ public class HCHttp implements ClientObjectFactory<HttpClient, BatchRequest> {
         this.failedItemOps = builder.failedItemOps;
         this.objectReader = configuredReader();
         this.backoffPolicy = builder.backoffPolicy;
+        this.adaptiveBatchSize = builder.adaptiveBatchSize;
+        this.zeroCopyBulk = builder.zeroCopyBulk;
+        this.streamingBulk = builder.streamingBulk;
+        this.incrementalResponseParsing = builder.incrementalResponseParsing;
+        this.compression = builder.compression;
+        this.maxConnectionsPerRoute = builder.maxConnectionsPerRoute;
+        this.keepAliveTimeout = builder.keepAliveTimeout;
+        this.idleConnectionTimeout = builder.idleConnectionTimeout;
+        this.tcpNoDelay = builder.tcpNoDelay;
+        this.sendBufferSize = builder.sendBufferSize;
+        this.receiveBufferSize = builder.receiveBufferSize;
+        this.serverHealthPolicy = builder.serverHealthPolicy;
+        this.serviceDiscovery = builder.serviceDiscovery;
     }
 
     @Override
@@ -134,7 +168,7 @@ public class HCHttp implements ClientObjectFactory<HttpClient, BatchRequest> {
 
     @Override
     public BatchOperations<BatchRequest> createBatchOperations() {
-        return new HCBatchOperations(itemSourceFactory, mappingType);
+        return new HCBatchOperations(itemSourceFactory, mappingType, zeroCopyBulk, compression);
     }
 
     /**
@@ -153,18 +187,45 @@ public class HCHttp implements ClientObjectFactory<HttpClient, BatchRequest> {
     }
 
     protected ResponseHandler<BatchResult> createResultHandler(BatchRequest request, Function<BatchRequest, Boolean> failureHandler) {
+        return createResultHandler(request, failureHandler, adaptiveBatchSize);
+    }
+
+    /**
+     * @param request batch request
+     * @param failureHandler failed batch handler
+     * @param adaptiveBatchSize batch size controller of the emitter that delivered given request, may be null
+     * @return response handler
+     */
+    protected ResponseHandler<BatchResult> createResultHandler(BatchRequest request, Function<BatchRequest, Boolean> failureHandler, AdaptiveBatchSize adaptiveBatchSize) {
+        return createResultHandler(request, failureHandler, adaptiveBatchSize, backoffPolicy);
+    }
+
+    /**
+     * @param request batch request
+     * @param failureHandler failed batch handler
+     * @param adaptiveBatchSize batch size controller of the emitter that delivered given request, may be null
+     * @param backoffPolicy policy that registered given request
+     * @return response handler
+     */
+    protected ResponseHandler<BatchResult> createResultHandler(
+            BatchRequest request,
+            Function<BatchRequest, Boolean> failureHandler,
+            AdaptiveBatchSize adaptiveBatchSize,
+            BackoffPolicy<BatchRequest> backoffPolicy) {
         return new ResponseHandler<BatchResult>() {
 
+            private final long start = System.currentTimeMillis();
+
             @Override
             public void completed(BatchResult result) {
 
                 getLogger().debug("Cluster service time: {}", result.getTook());
 
                 backoffPolicy.deregister(request);
+                adjustBatchSize(adaptiveBatchSize, result, System.currentTimeMillis() - start);
 
-                if (!result.isSucceeded()) {
-                    // TODO: filter only failed indexRequests when retry is ready.
-                    // failing whole request for now
+                // only failed items are redirected if item results are available
+                if (!result.isSucceeded() && retainFailedItems(request, result) > 0) {
                     failureHandler.apply(request);
                 }
                 request.completed();
@@ -177,6 +238,9 @@ public class HCHttp implements ClientObjectFactory<HttpClient, BatchRequest> {
                 getLogger().warn(ex.getMessage(), ex);
 
                 backoffPolicy.deregister(request);
+                if (adaptiveBatchSize != null) {
+                    adaptiveBatchSize.onRejection();
+                }
 
                 failureHandler.apply(request);
                 request.completed();
@@ -191,6 +255,92 @@ public class HCHttp implements ClientObjectFactory<HttpClient, BatchRequest> {
         };
     }
 
+    private void adjustBatchSize(AdaptiveBatchSize adaptiveBatchSize, BatchResult result, long latencyMillis) {
+
+        if (adaptiveBatchSize == null) {
+            return;
+        }
+
+        if (isRejected(result)) {
+            adaptiveBatchSize.onRejection();
+        } else {
+            adaptiveBatchSize.onSuccess(result.getTook(), latencyMillis);
+        }
+
+    }
+
+    /**
+     * @param result batch response
+     * @return true, if whole batch or at least one item was rejected with {@code 429 Too Many Requests}, false otherwise
+     */
+    static boolean isRejected(BatchResult result) {
+
+        if (result.getStatusCode() == TOO_MANY_REQUESTS) {
+            return true;
+        }
+
+        if (result.isSucceeded() || result.getItemFailures() == null) {
+            return false;
+        }
+
+        return result.getItemFailures().isRejected();
+
+    }
+
+    /**
+     * Removes and releases items that were indexed successfully, so only failed ones can be redirected to failover.
+     * Items are matched with their results by position. Both retryable and permanently failed items are retained.
+     * <p>
+     * If results of particular items are not available (e.g. whole request failed), all items are retained.
+     *
+     * @param request failed batch
+     * @param result batch response
+     * @return number of retained items
+     */
+    static int retainFailedItems(BatchRequest request, BatchResult result) {
+
+        Collection<IndexRequest> indexRequests = request.getIndexRequests();
+        BatchItemFailures itemFailures = result.getItemFailures();
+
+        if (result.getError() != null || itemFailures == null || itemFailures.getTotalItems() != indexRequests.size()) {
+            return indexRequests.size();
+        }
+
+        int index = 0;
+        Iterator<IndexRequest> indexRequestIterator = indexRequests.iterator();
+        while (indexRequestIterator.hasNext()) {
+
+            IndexRequest indexRequest = indexRequestIterator.next();
+
+            if (!itemFailures.isFailed(index++)) {
+                indexRequestIterator.remove();
+                indexRequest.release();
+            }
+
+        }
+
+        int permanentlyFailed = itemFailures.getFailedCount() - itemFailures.getRetryableCount();
+        if (permanentlyFailed > 0) {
+            StringBuilder sb = new StringBuilder(256).append("status: ").append(itemFailures.getFirstPermanentFailureStatus());
+            if (itemFailures.getFirstPermanentError() != null) {
+                itemFailures.getFirstPermanentError().appendErrorMessage(sb.append(", "));
+            }
+            getLogger().warn("{} items failed with non-retryable errors and will be redirected to failover. First failed item: {}",
+                    permanentlyFailed,
+                    sb.toString());
+        }
+
+        return itemFailures.getFailedCount();
+
+    }
+
+    /**
+     * @return batch size controller configuration, may be null. Each emitter SHOULD use its own {@link AdaptiveBatchSize#copy()}
+     */
+    public AdaptiveBatchSize getAdaptiveBatchSize() {
+        return adaptiveBatchSize;
+    }
+
     // visible for testing
     ClientProvider<HttpClient> getClientProvider(HttpClientFactory.Builder httpClientFactoryBuilder) {
         return new HttpClientProvider(httpClientFactoryBuilder);
@@ -216,39 +366,86 @@ public class HCHttp implements ClientObjectFactory<HttpClient, BatchRequest> {
         return client;
     }
 
+    /**
+     * Batch size is not adjusted by listeners created with this method. See {@link #createBatchListener(FailoverPolicy, AdaptiveBatchSize)}
+     *
+     * @param failoverPolicy sink for failed batch items
+     * @return prepared batch handler
+     */
     @Override
     public Function<BatchRequest, Boolean> createBatchListener(FailoverPolicy failoverPolicy) {
+
+        if (adaptiveBatchSize != null) {
+            getLogger().warn("{} is supported by {} only. Batch size will not be adjusted",
+                    AdaptiveBatchSize.PLUGIN_NAME,
+                    BulkEmitterFactory.class.getName());
+        }
+
+        return createBatchListener(failoverPolicy, null);
+
+    }
+
+    /**
+     * Since 1.5, {@link BackoffPolicy} is not applied to batches of {@link PriorityLanes} high-priority lane,
+     * and batches of low-priority lane are shed while it's under back-pressure.
+     *
+     * @param failoverPolicy sink for failed batch items
+     * @param adaptiveBatchSize batch size controller of the emitter that will use returned listener, may be null
+     * @return prepared batch handler
+     */
+    public Function<BatchRequest, Boolean> createBatchListener(FailoverPolicy failoverPolicy, AdaptiveBatchSize adaptiveBatchSize) {
         return new Function<BatchRequest, Boolean>() {
 
             private Function<BatchRequest, Boolean> failureHandler = createFailureHandler(failoverPolicy);
+            private final PriorityLanes.Lane lane = PriorityLanes.laneOf(failoverPolicy);
+            private final BackoffPolicy<BatchRequest> laneBackoffPolicy =
+                    lane != null && lane.isHighPriority() ? new NoopBackoffPolicy<>() : backoffPolicy;
 
             @Override
             public Boolean apply(BatchRequest request) {
 
-                while (!operations.isEmpty()) {
-                    try {
-                        operations.remove().execute();
-                    } catch (Exception e) {
-                        // TODO: redirect to failover (?) retry with exp. backoff (?) multiple options here
-                        getLogger().error("before-batch failed: {}", e.getMessage());
-                    }
-                }
+                operations.executeAll();
 
-                if (backoffPolicy.shouldApply(request)) {
-                    getLogger().warn("Backoff applied. Request rejected.");
-                    failureHandler.apply(request);
+                if (lane != null && lane.isShedding()) {
+                    lane.shed(request.getIndexRequests().size());
                     request.completed();
-                    return false;
-                } else {
-                    backoffPolicy.register(request);
+                    return true;
                 }
 
-                ResponseHandler<BatchResult> responseHandler = createResultHandler(request, failureHandler);
-                createClient().executeAsync(request, responseHandler);
+                // check and register atomically, so concurrent batches can't exceed the limit.
+                // Request may be deferred by the policy, so it's executed or rejected in callbacks
+                laneBackoffPolicy.tryRegister(request, this::execute, this::reject);
 
                 return true;
             }
 
+            private void execute(BatchRequest request) {
+
+                ResponseHandler<BatchResult> responseHandler = createResultHandler(request, failureHandler, adaptiveBatchSize, laneBackoffPolicy);
+                if (incrementalResponseParsing) {
+                    HttpClient httpClient = createClient();
+                    httpClient.executeAsync(
+                            request,
+                            responseHandler,
+                            new BatchResultAsyncResponseConsumer(objectReader),
+                            httpClient.createContextInstance());
+                } else {
+                    createClient().executeAsync(request, responseHandler);
+                }
+
+            }
+
+            private void reject(BatchRequest request) {
+
+                getLogger().warn("Backoff applied. Request rejected.");
+                if (adaptiveBatchSize != null) {
+                    adaptiveBatchSize.onRejection();
+                }
+                failureHandler.apply(request);
+                request.completed();
+
+            }
+
         };
     }
 
@@ -294,7 +491,16 @@ public class HCHttp implements ClientObjectFactory<HttpClient, BatchRequest> {
                 .withMaxTotalConnections(maxTotalConnections)
                 .withIoThreadCount(ioThreadCount)
                 .withPooledResponseBuffers(pooledResponseBuffers)
-                .withPooledResponseBuffersSizeInBytes(pooledResponseBuffersSizeInBytes);
+                .withPooledResponseBuffersSizeInBytes(pooledResponseBuffersSizeInBytes)
+                .withStreamingBatchRequests(streamingBulk)
+                .withMaxConnectionsPerRoute(maxConnectionsPerRoute)
+                .withKeepAliveTimeout(keepAliveTimeout)
+                .withIdleConnectionTimeout(idleConnectionTimeout)
+                .withTcpNoDelay(tcpNoDelay)
+                .withSendBufferSize(sendBufferSize)
+                .withReceiveBufferSize(receiveBufferSize)
+                .withServerHealthPolicy(serverHealthPolicy)
+                .withServiceDiscovery(serviceDiscovery);
     }
 
     @PluginBuilderFactory
@@ -324,6 +530,24 @@ public class HCHttp implements ClientObjectFactory<HttpClient, BatchRequest> {
         @PluginBuilderAttribute
         protected int ioThreadCount = Runtime.getRuntime().availableProcessors();
 
+        @PluginBuilderAttribute
+        protected int maxConnectionsPerRoute = -1;
+
+        @PluginBuilderAttribute
+        protected long keepAliveTimeout = -1;
+
+        @PluginBuilderAttribute
+        protected long idleConnectionTimeout = -1;
+
+        @PluginBuilderAttribute
+        protected boolean tcpNoDelay = true;
+
+        @PluginBuilderAttribute
+        protected int sendBufferSize = 0;
+
+        @PluginBuilderAttribute
+        protected int receiveBufferSize = 0;
+
         @PluginBuilderAttribute
         protected boolean pooledResponseBuffers = true;
 
@@ -342,6 +566,27 @@ public class HCHttp implements ClientObjectFactory<HttpClient, BatchRequest> {
         @PluginElement(BackoffPolicy.NAME)
         protected BackoffPolicy<BatchRequest> backoffPolicy = DEFAULT_BACKOFF_POLICY;
 
+        @PluginElement(AdaptiveBatchSize.ELEMENT_TYPE)
+        protected AdaptiveBatchSize adaptiveBatchSize;
+
+        @PluginBuilderAttribute
+        protected boolean zeroCopyBulk = false;
+
+        @PluginBuilderAttribute
+        protected boolean streamingBulk = false;
+
+        @PluginBuilderAttribute
+        protected boolean incrementalResponseParsing = false;
+
+        @PluginElement(ByteBufCompressor.ELEMENT_TYPE)
+        protected ByteBufCompressor compression;
+
+        @PluginElement(ServerHealthPolicy.ELEMENT_TYPE)
+        protected ServerHealthPolicy serverHealthPolicy;
+
+        @PluginElement(ServiceDiscovery.ELEMENT_TYPE)
+        protected ServiceDiscovery serviceDiscovery;
+
         protected FailedItemOps<IndexRequest> failedItemOps = createFailedItemOps();
 
         @Override
@@ -362,6 +607,9 @@ public class HCHttp implements ClientObjectFactory<HttpClient, BatchRequest> {
             if (backoffPolicy == null) {
                 throw new ConfigurationException("No BackoffPolicy provided for " + PLUGIN_NAME);
             }
+            if (sendBufferSize < 0 || receiveBufferSize < 0) {
+                throw new ConfigurationException("sendBufferSize and receiveBufferSize must be higher or equal 0 for " + PLUGIN_NAME);
+            }
         }
 
         protected FailedItemOps<IndexRequest> createFailedItemOps() {
@@ -393,6 +641,57 @@ public class HCHttp implements ClientObjectFactory<HttpClient, BatchRequest> {
             return this;
         }
 
+        /**
+         * @param maxConnectionsPerRoute max number of connections to a single node. Default: {@code maxTotalConnections}
+         * @return this
+         */
+        public Builder withMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+            return this;
+        }
+
+        /**
+         * @param keepAliveTimeout max number of millis idle connection can be reused for. Disabled if not positive
+         * @return this
+         */
+        public Builder withKeepAliveTimeout(long keepAliveTimeout) {
+            this.keepAliveTimeout = keepAliveTimeout;
+            return this;
+        }
+
+        /**
+         * @param idleConnectionTimeout connections idle for longer than this will be closed in the background.
+         *                              Disabled if not positive
+         * @return this
+         */
+        public Builder withIdleConnectionTimeout(long idleConnectionTimeout) {
+            this.idleConnectionTimeout = idleConnectionTimeout;
+            return this;
+        }
+
+        public Builder withTcpNoDelay(boolean tcpNoDelay) {
+            this.tcpNoDelay = tcpNoDelay;
+            return this;
+        }
+
+        /**
+         * @param sendBufferSize {@code SO_SNDBUF} in bytes. System default if 0
+         * @return this
+         */
+        public Builder withSendBufferSize(int sendBufferSize) {
+            this.sendBufferSize = sendBufferSize;
+            return this;
+        }
+
+        /**
+         * @param receiveBufferSize {@code SO_RCVBUF} in bytes. System default if 0
+         * @return this
+         */
+        public Builder withReceiveBufferSize(int receiveBufferSize) {
+            this.receiveBufferSize = receiveBufferSize;
+            return this;
+        }
+
         public Builder withItemSourceFactory(PooledItemSourceFactory pooledItemSourceFactory) {
             this.pooledItemSourceFactory = pooledItemSourceFactory;
             return this;
@@ -403,6 +702,15 @@ public class HCHttp implements ClientObjectFactory<HttpClient, BatchRequest> {
             return this;
         }
 
+        /**
+         * @param adaptiveBatchSize batch size controller. Disabled if null
+         * @return this
+         */
+        public Builder withAdaptiveBatchSize(AdaptiveBatchSize adaptiveBatchSize) {
+            this.adaptiveBatchSize = adaptiveBatchSize;
+            return this;
+        }
+
         public Builder withAuth(Auth auth) {
             this.auth = auth;
             return this;
@@ -423,6 +731,60 @@ public class HCHttp implements ClientObjectFactory<HttpClient, BatchRequest> {
             return this;
         }
 
+        /**
+         * @param zeroCopyBulk if true, batch items will be sent without copying them to the batch buffer
+         * @return this
+         */
+        public Builder withZeroCopyBulk(boolean zeroCopyBulk) {
+            this.zeroCopyBulk = zeroCopyBulk;
+            return this;
+        }
+
+        /**
+         * @param streamingBulk if true, batch requests will be written item by item with chunked transfer encoding
+         * @return this
+         */
+        public Builder withStreamingBulk(boolean streamingBulk) {
+            this.streamingBulk = streamingBulk;
+            return this;
+        }
+
+        /**
+         * @param incrementalResponseParsing if true, batch responses will be parsed as they arrive, without buffering
+         * @return this
+         */
+        public Builder withIncrementalResponseParsing(boolean incrementalResponseParsing) {
+            this.incrementalResponseParsing = incrementalResponseParsing;
+            return this;
+        }
+
+        /**
+         * @param compression batch request compressor. Disabled if null
+         * @return this
+         */
+        public Builder withCompression(ByteBufCompressor compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        /**
+         * @param serverHealthPolicy health-aware server selection config. Round-robin is used if null
+         * @return this
+         */
+        public Builder withServerHealthPolicy(ServerHealthPolicy serverHealthPolicy) {
+            this.serverHealthPolicy = serverHealthPolicy;
+            return this;
+        }
+
+        /**
+         * @param serviceDiscovery node discovery config. Disabled if null
+         * @return this
+         */
+        public Builder withServiceDiscovery(ServiceDiscovery serviceDiscovery) {
+            this.serviceDiscovery = serviceDiscovery;
+            return this;
+        }
+
     }
 
     /**
@@ -452,6 +814,16 @@ public class HCHttp implements ClientObjectFactory<HttpClient, BatchRequest> {
             itemSourceFactory.start();
         }
 
+        LifeCycle compressionLifeCycle = LifeCycle.of(compression);
+        if (!compressionLifeCycle.isStarted()) {
+            compressionLifeCycle.start();
+        }
+
+        LifeCycle backoffPolicyLifeCycle = LifeCycle.of(backoffPolicy);
+        if (!backoffPolicyLifeCycle.isStarted()) {
+            backoffPolicyLifeCycle.start();
+        }
+
         state = State.STARTED;
 
     }
@@ -465,11 +837,22 @@ public class HCHttp implements ClientObjectFactory<HttpClient, BatchRequest> {
 
         getLogger().debug("Stopping {}", getClass().getSimpleName());
 
+        // deferred batches MUST be redirected to failover before client is stopped
+        LifeCycle backoffPolicyLifeCycle = LifeCycle.of(backoffPolicy);
+        if (!backoffPolicyLifeCycle.isStopped()) {
+            backoffPolicyLifeCycle.stop();
+        }
+
         if (client != null) {
             client.stop();
         }
         itemSourceFactory.stop();
 
+        LifeCycle compressionLifeCycle = LifeCycle.of(compression);
+        if (!compressionLifeCycle.isStopped()) {
+            compressionLifeCycle.stop();
+        }
+
         state = State.STOPPED;
 
         getLogger().debug("{} stopped", getClass().getSimpleName());
@@ -39,6 +39,20 @@ public class HCRequestFactory implements RequestFactory<HttpUriRequest> {
 
     protected ContentType requestContentType = ContentType.APPLICATION_JSON.withCharset("utf-8");
 
+    private final boolean streamingBatchRequests;
+
+    public HCRequestFactory() {
+        this(false);
+    }
+
+    /**
+     * @param streamingBatchRequests if true, {@link BatchRequest}s will be written item by item with chunked transfer
+     *                               encoding instead of being serialized upfront. See {@link BatchRequestStreamingEntity}
+     */
+    public HCRequestFactory(boolean streamingBatchRequests) {
+        this.streamingBatchRequests = streamingBatchRequests;
+    }
+
     public HttpUriRequest create(String url, Request request) throws IOException {
 
         HttpUriRequest httpUriRequest;
@@ -64,12 +78,18 @@ public class HCRequestFactory implements RequestFactory<HttpUriRequest> {
 
     protected HttpEntity createHttpEntity(Request request) throws IOException {
 
+        // compressed requests have to be serialized upfront
+        if (streamingBatchRequests && request instanceof BatchRequest && ((BatchRequest) request).getContentEncoding() == null) {
+            return new BatchRequestStreamingEntity((BatchRequest) request, requestContentType);
+        }
+
         ByteBuf byteBuf = (ByteBuf) request.serialize().getSource();
 
         return new ByteBufEntityBuilder()
                 .setByteBuf(byteBuf)
                 .setContentLength(byteBuf.writerIndex())
                 .setContentType(requestContentType)
+                .setContentEncoding(request instanceof BatchRequest ? ((BatchRequest) request).getContentEncoding() : null)
                 .build();
 
     }
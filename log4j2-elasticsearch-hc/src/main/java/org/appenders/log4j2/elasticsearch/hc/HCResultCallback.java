@@ -20,6 +20,7 @@ package org.appenders.log4j2.elasticsearch.hc;
  * #L%
  */
 
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
 import org.apache.http.concurrent.FutureCallback;
@@ -34,6 +35,8 @@ import static org.appenders.core.logging.InternalLogging.getLogger;
 /**
  * Generic async callback for Apache HC {@link HttpResponse}s and failures.
  * Adapts {@link HttpResponse} to {@link Response}
+ * <p>
+ * Since 1.5, body of {@link ParsedResponseEntity} is not deserialized again
  *
  * @param <T> Apache HC response type
  */
@@ -45,14 +48,20 @@ public class HCResultCallback<T extends Response> implements FutureCallback<Http
         this.responseHandler = responseHandler;
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     public void completed(final HttpResponse response) {
 
         InputStream inputStream = null;
         T result = null;
         try {
-            inputStream = response.getEntity().getContent();
-            result = responseHandler.deserializeResponse(inputStream);
+            HttpEntity entity = response.getEntity();
+            if (entity instanceof ParsedResponseEntity) {
+                result = ((ParsedResponseEntity<T>) entity).getParsed();
+            } else {
+                inputStream = entity.getContent();
+                result = responseHandler.deserializeResponse(inputStream);
+            }
 
             StatusLine statusLine = response.getStatusLine();
             result.withResponseCode(statusLine.getStatusCode());
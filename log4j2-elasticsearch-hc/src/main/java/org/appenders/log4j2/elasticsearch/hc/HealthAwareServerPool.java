@@ -0,0 +1,284 @@
+package org.appenders.log4j2.elasticsearch.hc;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.concurrent.FutureCallback;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.appenders.core.logging.InternalLogging.getLogger;
+
+/**
+ * {@link ServerPool} aware of the state of each target server.
+ * <p>
+ * Tracks number of requests in flight, exponentially weighted moving average (EWMA) of response latency and number
+ * of consecutive failures of each server. Next server is chosen with "power of two choices": two random servers
+ * are compared and the one with lower {@code EWMA latency * (requests in flight + 1)} is returned.
+ * <p>
+ * Connection failures, timeouts, {@code 429 Too Many Requests} and {@code 5xx} responses are failures. Server is
+ * ejected for {@code ejectionTimeMillis} after {@code failureThreshold} consecutive failures. Once ejection time
+ * passes, server is available again, but next failure ejects it for twice as long (up to {@code maxEjectionTimeMillis}).
+ * First successful response resets the ejection time. If all servers are ejected, the one that will be re-admitted
+ * first is returned.
+ */
+public class HealthAwareServerPool extends ServerPool {
+
+    /**
+     * Weight of the most recent latency in EWMA
+     */
+    static final double EWMA_WEIGHT = 0.3;
+
+    private final ConcurrentHashMap<String, ServerStats> stats = new ConcurrentHashMap<>();
+
+    private final int failureThreshold;
+    private final long ejectionTimeMillis;
+    private final long maxEjectionTimeMillis;
+
+    /**
+     * @param serverList initial list of target servers
+     * @param failureThreshold number of consecutive failures that ejects the server
+     * @param ejectionTimeMillis initial ejection time
+     * @param maxEjectionTimeMillis max ejection time
+     */
+    public HealthAwareServerPool(List<String> serverList, int failureThreshold, long ejectionTimeMillis, long maxEjectionTimeMillis) {
+        super(serverList);
+        this.failureThreshold = failureThreshold;
+        this.ejectionTimeMillis = ejectionTimeMillis;
+        this.maxEjectionTimeMillis = maxEjectionTimeMillis;
+    }
+
+    /**
+     * @return less loaded of two randomly chosen available servers
+     */
+    @Override
+    public String getNext() {
+
+        List<String> current = getServerList();
+        int size = current.size();
+        if (size == 1) {
+            return current.get(0);
+        }
+
+        long now = System.currentTimeMillis();
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        String firstServer = current.get(first);
+        String secondServer = current.get(second);
+        ServerStats firstStats = getStats(firstServer);
+        ServerStats secondStats = getStats(secondServer);
+
+        boolean firstAvailable = firstStats.isAvailable(now);
+        boolean secondAvailable = secondStats.isAvailable(now);
+
+        if (firstAvailable && secondAvailable) {
+            return firstStats.cost() <= secondStats.cost() ? firstServer : secondServer;
+        }
+        if (firstAvailable) {
+            return firstServer;
+        }
+        if (secondAvailable) {
+            return secondServer;
+        }
+
+        return fallback(current, now);
+
+    }
+
+    private String fallback(List<String> servers, long now) {
+
+        String result = servers.get(0);
+        long earliestReadmission = Long.MAX_VALUE;
+
+        for (String server : servers) {
+            ServerStats serverStats = getStats(server);
+            if (serverStats.isAvailable(now)) {
+                return server;
+            }
+            if (serverStats.ejectedUntil < earliestReadmission) {
+                earliestReadmission = serverStats.ejectedUntil;
+                result = server;
+            }
+        }
+
+        return result;
+
+    }
+
+    /**
+     * Replaces current list of target servers and discards statistics of servers no longer present.
+     *
+     * @param serverList new list of target servers
+     */
+    @Override
+    public void setServers(List<String> serverList) {
+        super.setServers(serverList);
+        stats.keySet().retainAll(getServerList());
+    }
+
+    @Override
+    public FutureCallback<HttpResponse> track(String server, FutureCallback<HttpResponse> callback) {
+        ServerStats serverStats = getStats(server);
+        serverStats.inFlight.incrementAndGet();
+        return new TrackingCallback(serverStats, callback);
+    }
+
+    /* visible for testing */
+    ServerStats getStats(String server) {
+        return stats.computeIfAbsent(server, key -> new ServerStats(key));
+    }
+
+    /* visible for testing */
+    static boolean isFailure(int statusCode) {
+        return statusCode == 429 || statusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR;
+    }
+
+    /**
+     * Per-server statistics. Updates are synchronized on the instance, reads are not.
+     */
+    class ServerStats {
+
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        private final String server;
+        private volatile double ewmaLatencyNanos;
+        private volatile long ejectedUntil;
+        private int consecutiveFailures;
+        private int ejections;
+
+        ServerStats(String server) {
+            this.server = server;
+        }
+
+        boolean isAvailable(long now) {
+            return now >= ejectedUntil;
+        }
+
+        double cost() {
+            return (ewmaLatencyNanos + 1) * (inFlight.get() + 1);
+        }
+
+        synchronized void onSuccess(long latencyNanos) {
+            updateLatency(latencyNanos);
+            consecutiveFailures = 0;
+            ejections = 0;
+        }
+
+        synchronized void onFailure(long latencyNanos, long now) {
+
+            updateLatency(latencyNanos);
+
+            // failures of requests sent before the ejection must not extend it
+            if (++consecutiveFailures < failureThreshold || !isAvailable(now)) {
+                return;
+            }
+
+            long ejectionTime = Math.min(maxEjectionTimeMillis, ejectionTimeMillis << Math.min(ejections, 30));
+            ejections++;
+            ejectedUntil = now + ejectionTime;
+
+            getLogger().warn("{}: {} ejected for {} ms after {} consecutive failures",
+                    HealthAwareServerPool.class.getSimpleName(),
+                    server,
+                    ejectionTime,
+                    consecutiveFailures);
+
+        }
+
+        private void updateLatency(long latencyNanos) {
+            double current = ewmaLatencyNanos;
+            ewmaLatencyNanos = current == 0 ? latencyNanos : EWMA_WEIGHT * latencyNanos + (1 - EWMA_WEIGHT) * current;
+        }
+
+        double getEwmaLatencyNanos() {
+            return ewmaLatencyNanos;
+        }
+
+        long getEjectedUntil() {
+            return ejectedUntil;
+        }
+
+    }
+
+    /**
+     * Updates {@link ServerStats} and delegates to actual callback
+     */
+    class TrackingCallback implements FutureCallback<HttpResponse> {
+
+        private final ServerStats serverStats;
+        private final FutureCallback<HttpResponse> delegate;
+        private final long startNanos = System.nanoTime();
+
+        TrackingCallback(ServerStats serverStats, FutureCallback<HttpResponse> delegate) {
+            this.serverStats = serverStats;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void completed(HttpResponse result) {
+
+            serverStats.inFlight.decrementAndGet();
+
+            long latencyNanos = System.nanoTime() - startNanos;
+            if (isFailure(result.getStatusLine().getStatusCode())) {
+                serverStats.onFailure(latencyNanos, System.currentTimeMillis());
+            } else {
+                serverStats.onSuccess(latencyNanos);
+            }
+
+            delegate.completed(result);
+
+        }
+
+        @Override
+        public void failed(Exception ex) {
+
+            serverStats.inFlight.decrementAndGet();
+            serverStats.onFailure(System.nanoTime() - startNanos, System.currentTimeMillis());
+
+            delegate.failed(ex);
+
+        }
+
+        @Override
+        public void cancelled() {
+
+            serverStats.inFlight.decrementAndGet();
+
+            delegate.cancelled();
+
+        }
+
+    }
+
+}
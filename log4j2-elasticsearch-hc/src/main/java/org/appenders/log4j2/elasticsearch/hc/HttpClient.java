@@ -26,6 +26,7 @@ import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
 import org.appenders.log4j2.elasticsearch.LifeCycle;
 
 import java.io.IOException;
@@ -43,6 +44,8 @@ class HttpClient implements LifeCycle {
     private final ServerPool serverPool;
     private final RequestFactory httpRequestFactory;
     private final HttpAsyncResponseConsumerFactory asyncResponseConsumerFactory;
+    private volatile LifeCycle connectionEvictor = LifeCycle.NOOP;
+    private volatile LifeCycle serviceDiscovery = LifeCycle.NOOP;
 
     /**
      * @param asyncClient actual Apache HTTP client
@@ -75,19 +78,37 @@ class HttpClient implements LifeCycle {
             final ResponseHandler<T> responseHandler,
             final HttpClientContext httpClientContext
     ) {
+        executeAsync(request, responseHandler, asyncResponseConsumerFactory.create(), httpClientContext);
+    }
+
+    /**
+     * @param request request to execute
+     * @param responseHandler response handler
+     * @param responseConsumer response consumer to use instead of the one created by configured factory
+     * @param httpClientContext request context
+     * @param <T> response type
+     */
+    public <T extends Response> void executeAsync(
+            final Request request,
+            final ResponseHandler<T> responseHandler,
+            final HttpAsyncResponseConsumer<HttpResponse> responseConsumer,
+            final HttpClientContext httpClientContext
+    ) {
+
+        final String server = serverPool.getNext();
 
         HttpUriRequest clientRequest;
         try {
-            clientRequest = createClientRequest(request);
+            clientRequest = createClientRequest(server, request);
         } catch (IOException e) {
             responseHandler.failed(e);
             return;
         }
 
-        FutureCallback<HttpResponse> responseCallback = createCallback(responseHandler);
+        FutureCallback<HttpResponse> responseCallback = serverPool.track(server, createCallback(responseHandler));
         getAsyncClient().execute(
                 HttpAsyncMethods.create(clientRequest),
-                asyncResponseConsumerFactory.create(),
+                responseConsumer,
                 httpClientContext,
                 responseCallback);
     }
@@ -100,9 +121,13 @@ class HttpClient implements LifeCycle {
     }
 
     HttpUriRequest createClientRequest(final Request request) throws IOException {
+        return createClientRequest(serverPool.getNext(), request);
+    }
+
+    HttpUriRequest createClientRequest(final String server, final Request request) throws IOException {
 
         String url = new StringBuilder(128)
-                .append(serverPool.getNext())
+                .append(server)
                 .append('/')
                 .append(request.getURI())
                 .toString();
@@ -122,6 +147,20 @@ class HttpClient implements LifeCycle {
         return asyncClient;
     }
 
+    /**
+     * @param connectionEvictor task closing idle connections. Started and stopped with this client
+     */
+    void setConnectionEvictor(LifeCycle connectionEvictor) {
+        this.connectionEvictor = connectionEvictor;
+    }
+
+    /**
+     * @param serviceDiscovery task updating the list of target servers. Started after and stopped before the actual client
+     */
+    void setServiceDiscovery(LifeCycle serviceDiscovery) {
+        this.serviceDiscovery = serviceDiscovery;
+    }
+
     @Override
     public void start() {
         if (isStarted()) {
@@ -133,6 +172,8 @@ class HttpClient implements LifeCycle {
         }
 
         asyncClient.start();
+        connectionEvictor.start();
+        serviceDiscovery.start();
 
         state = State.STARTED;
     }
@@ -144,6 +185,9 @@ class HttpClient implements LifeCycle {
             return;
         }
 
+        serviceDiscovery.stop();
+        connectionEvictor.stop();
+
         if (asyncClient.isRunning()) {
             try {
                 asyncClient.close();
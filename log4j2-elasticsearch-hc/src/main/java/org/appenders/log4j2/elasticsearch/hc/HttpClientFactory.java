@@ -21,6 +21,8 @@ package org.appenders.log4j2.elasticsearch.hc;
  */
 
 import org.apache.http.client.CredentialsProvider;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
@@ -65,6 +67,15 @@ public class HttpClientFactory {
     protected final SchemeIOSessionStrategy httpsIOSessionStrategy;
     protected final boolean pooledResponseBuffersEnabled;
     protected final int pooledResponseBuffersSizeInBytes;
+    protected final boolean streamingBatchRequests;
+    protected final int maxConnectionsPerRoute;
+    protected final long keepAliveTimeout;
+    protected final long idleConnectionTimeout;
+    protected final boolean tcpNoDelay;
+    protected final int sendBufferSize;
+    protected final int receiveBufferSize;
+    protected final ServerHealthPolicy serverHealthPolicy;
+    protected final ServiceDiscovery serviceDiscovery;
 
     public HttpClientFactory(HttpClientFactory.Builder httpClientFactoryBuilder) {
         this.serverList = httpClientFactoryBuilder.serverList;
@@ -79,6 +90,15 @@ public class HttpClientFactory {
         this.httpsIOSessionStrategy = httpClientFactoryBuilder.httpsIOSessionStrategy;
         this.pooledResponseBuffersEnabled = httpClientFactoryBuilder.pooledResponseBuffersEnabled;
         this.pooledResponseBuffersSizeInBytes = httpClientFactoryBuilder.pooledResponseBuffersSizeInBytes;
+        this.streamingBatchRequests = httpClientFactoryBuilder.streamingBatchRequests;
+        this.maxConnectionsPerRoute = httpClientFactoryBuilder.maxConnectionsPerRoute;
+        this.keepAliveTimeout = httpClientFactoryBuilder.keepAliveTimeout;
+        this.idleConnectionTimeout = httpClientFactoryBuilder.idleConnectionTimeout;
+        this.tcpNoDelay = httpClientFactoryBuilder.tcpNoDelay;
+        this.sendBufferSize = httpClientFactoryBuilder.sendBufferSize;
+        this.receiveBufferSize = httpClientFactoryBuilder.receiveBufferSize;
+        this.serverHealthPolicy = httpClientFactoryBuilder.serverHealthPolicy;
+        this.serviceDiscovery = httpClientFactoryBuilder.serviceDiscovery;
     }
 
     public HttpClient createInstance() {
@@ -89,14 +109,31 @@ public class HttpClientFactory {
         HttpAsyncResponseConsumerFactory httpAsyncResponseConsumerFactory =
                 createHttpAsyncResponseConsumerFactory();
 
-        ServerPool serverPool = new ServerPool(new ArrayList<>(serverList));
+        ServerPool serverPool = createServerPool();
 
-        return createConfiguredClient(
+        HttpClient client = createConfiguredClient(
                 asyncHttpClient,
                 serverPool,
                 httpAsyncResponseConsumerFactory
         );
 
+        if (idleConnectionTimeout > 0) {
+            client.setConnectionEvictor(new IdleConnectionEvictor(asyncConnectionManager, idleConnectionTimeout));
+        }
+
+        if (serviceDiscovery != null) {
+            client.setServiceDiscovery(serviceDiscovery.createTask(client, serverPool));
+        }
+
+        return client;
+
+    }
+
+    protected ServerPool createServerPool() {
+        if (serverHealthPolicy != null) {
+            return serverHealthPolicy.createServerPool(new ArrayList<>(serverList));
+        }
+        return new ServerPool(new ArrayList<>(serverList));
     }
 
     protected HttpAsyncResponseConsumerFactory createHttpAsyncResponseConsumerFactory() {
@@ -129,7 +166,7 @@ public class HttpClientFactory {
         return new HttpClient(
                 asyncHttpClient,
                 serverPool,
-                new HCRequestFactory(),
+                new HCRequestFactory(streamingBatchRequests),
                 asyncResponseConsumerFactory
         );
     }
@@ -139,9 +176,26 @@ public class HttpClientFactory {
                 .setConnectionManager(connectionManager)
                 .setDefaultRequestConfig(getDefaultRequestConfig())
                 .setDefaultCredentialsProvider(defaultCredentialsProvider)
+                .setKeepAliveStrategy(createKeepAliveStrategy())
                 .build();
     }
 
+    /**
+     * @return strategy using {@code Keep-Alive} response header limited to {@link #keepAliveTimeout} if it's positive,
+     * {@code org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy} otherwise
+     */
+    protected ConnectionKeepAliveStrategy createKeepAliveStrategy() {
+
+        if (keepAliveTimeout <= 0) {
+            return DefaultConnectionKeepAliveStrategy.INSTANCE;
+        }
+
+        return (response, context) -> {
+            long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAliveTimeout) : keepAliveTimeout;
+        };
+    }
+
     protected RequestConfig getDefaultRequestConfig() {
         return RequestConfig.custom()
                 .setConnectTimeout(connTimeout)
@@ -152,6 +206,7 @@ public class HttpClientFactory {
     protected NHttpClientConnectionManager getAsyncConnectionManager() {
         PoolingNHttpClientConnectionManager connectionManager = createUnconfiguredPoolingNHttpClientConnectionManager();
         connectionManager.setMaxTotal(maxTotalConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
         return connectionManager;
     }
 
@@ -180,6 +235,9 @@ public class HttpClientFactory {
                 .setConnectTimeout(connTimeout)
                 .setSoTimeout(readTimeout)
                 .setIoThreadCount(ioThreadCount)
+                .setTcpNoDelay(tcpNoDelay)
+                .setSndBufSize(sendBufferSize)
+                .setRcvBufSize(receiveBufferSize)
                 .build();
     }
 
@@ -202,9 +260,22 @@ public class HttpClientFactory {
         protected SchemeIOSessionStrategy httpsIOSessionStrategy;
         protected boolean pooledResponseBuffersEnabled;
         protected int pooledResponseBuffersSizeInBytes;
+        protected boolean streamingBatchRequests;
+        protected int maxConnectionsPerRoute = -1;
+        protected long keepAliveTimeout = -1;
+        protected long idleConnectionTimeout = -1;
+        protected boolean tcpNoDelay = true;
+        protected int sendBufferSize;
+        protected int receiveBufferSize;
+        protected ServerHealthPolicy serverHealthPolicy;
+        protected ServiceDiscovery serviceDiscovery;
 
         public HttpClientFactory build() {
 
+            if (this.maxConnectionsPerRoute <= 0) {
+                this.maxConnectionsPerRoute = maxTotalConnections;
+            }
+
             if (this.sslSocketFactory == null) {
                 this.sslSocketFactory = SSLConnectionSocketFactory.getSocketFactory();
             }
@@ -281,6 +352,85 @@ public class HttpClientFactory {
             return this;
         }
 
+        public Builder withStreamingBatchRequests(boolean streamingBatchRequests) {
+            this.streamingBatchRequests = streamingBatchRequests;
+            return this;
+        }
+
+        /**
+         * @param maxConnectionsPerRoute max number of connections to a single node. Default: {@link #maxTotalConnections}
+         * @return this
+         */
+        public Builder withMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+            return this;
+        }
+
+        /**
+         * @param keepAliveTimeout max number of millis idle connection can be reused for. If not positive, {@code Keep-Alive}
+         *                         response header is used and connections are reused indefinitely if it's not present
+         * @return this
+         */
+        public Builder withKeepAliveTimeout(long keepAliveTimeout) {
+            this.keepAliveTimeout = keepAliveTimeout;
+            return this;
+        }
+
+        /**
+         * @param idleConnectionTimeout connections idle for longer than this will be closed in the background.
+         *                              Disabled if not positive
+         * @return this
+         */
+        public Builder withIdleConnectionTimeout(long idleConnectionTimeout) {
+            this.idleConnectionTimeout = idleConnectionTimeout;
+            return this;
+        }
+
+        /**
+         * @param tcpNoDelay if true, {@code TCP_NODELAY} is set and small writes are not delayed by Nagle's algorithm. Default: true
+         * @return this
+         */
+        public Builder withTcpNoDelay(boolean tcpNoDelay) {
+            this.tcpNoDelay = tcpNoDelay;
+            return this;
+        }
+
+        /**
+         * @param sendBufferSize {@code SO_SNDBUF} in bytes. System default if 0
+         * @return this
+         */
+        public Builder withSendBufferSize(int sendBufferSize) {
+            this.sendBufferSize = sendBufferSize;
+            return this;
+        }
+
+        /**
+         * @param receiveBufferSize {@code SO_RCVBUF} in bytes. System default if 0
+         * @return this
+         */
+        public Builder withReceiveBufferSize(int receiveBufferSize) {
+            this.receiveBufferSize = receiveBufferSize;
+            return this;
+        }
+
+        /**
+         * @param serverHealthPolicy health-aware server selection config. Round-robin is used if null
+         * @return this
+         */
+        public Builder withServerHealthPolicy(ServerHealthPolicy serverHealthPolicy) {
+            this.serverHealthPolicy = serverHealthPolicy;
+            return this;
+        }
+
+        /**
+         * @param serviceDiscovery node discovery config. Disabled if null
+         * @return this
+         */
+        public Builder withServiceDiscovery(ServiceDiscovery serviceDiscovery) {
+            this.serviceDiscovery = serviceDiscovery;
+            return this;
+        }
+
     }
 
 }
@@ -0,0 +1,119 @@
+package org.appenders.log4j2.elasticsearch.hc;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import org.apache.http.nio.conn.NHttpClientConnectionManager;
+import org.appenders.log4j2.elasticsearch.LifeCycle;
+import org.appenders.log4j2.elasticsearch.SharedScheduler;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.appenders.core.logging.InternalLogging.getLogger;
+
+/**
+ * Periodically closes expired connections and connections idle for longer than configured time, so pooled connections
+ * closed by the server or intermediaries are not leased.
+ */
+class IdleConnectionEvictor implements LifeCycle {
+
+    static final long MIN_EVICTION_INTERVAL = 100L;
+
+    private volatile State state = State.STOPPED;
+
+    private final NHttpClientConnectionManager connectionManager;
+    private final long maxIdleTimeMillis;
+    private final long evictionIntervalMillis;
+    private ScheduledFuture<?> scheduledTask;
+
+    /**
+     * @param connectionManager connection manager to evict connections from
+     * @param maxIdleTimeMillis connections idle for longer than this will be closed
+     */
+    IdleConnectionEvictor(NHttpClientConnectionManager connectionManager, long maxIdleTimeMillis) {
+        this.connectionManager = connectionManager;
+        this.maxIdleTimeMillis = maxIdleTimeMillis;
+        this.evictionIntervalMillis = Math.max(MIN_EVICTION_INTERVAL, maxIdleTimeMillis / 2);
+    }
+
+    void evict() {
+        try {
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(maxIdleTimeMillis, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // scheduled task MUST survive connection manager failures
+            getLogger().error("Idle connection eviction failed: {}", e.getMessage());
+        }
+    }
+
+    long getEvictionIntervalMillis() {
+        return evictionIntervalMillis;
+    }
+
+    // ==========
+    // LIFECYCLE
+    // ==========
+
+    @Override
+    public void start() {
+
+        if (isStarted()) {
+            return;
+        }
+
+        scheduledTask = SharedScheduler.getInstance().scheduleAtFixedRate(
+                this::evict,
+                evictionIntervalMillis,
+                evictionIntervalMillis,
+                TimeUnit.MILLISECONDS);
+
+        state = State.STARTED;
+
+    }
+
+    @Override
+    public void stop() {
+
+        if (isStopped()) {
+            return;
+        }
+
+        if (scheduledTask != null) {
+            scheduledTask.cancel(false);
+        }
+
+        state = State.STOPPED;
+
+    }
+
+    @Override
+    public boolean isStarted() {
+        return state == State.STARTED;
+    }
+
+    @Override
+    public boolean isStopped() {
+        return state == State.STOPPED;
+    }
+
+}
@@ -0,0 +1,52 @@
+package org.appenders.log4j2.elasticsearch.hc;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import org.appenders.log4j2.elasticsearch.ItemSource;
+
+/**
+ * Retrieves HTTP info of all nodes in the cluster
+ */
+public class NodesInfoRequest implements Request<NodesInfoResponse> {
+
+    public static final String HTTP_METHOD_NAME = "GET";
+
+    @Override
+    public String getURI() {
+        return "_nodes/http";
+    }
+
+    @Override
+    public String getHttpMethodName() {
+        return HTTP_METHOD_NAME;
+    }
+
+    /**
+     * @return null, request has no body
+     */
+    @Override
+    public ItemSource serialize() {
+        return null;
+    }
+
+}
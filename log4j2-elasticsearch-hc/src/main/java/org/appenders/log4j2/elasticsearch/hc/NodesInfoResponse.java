@@ -0,0 +1,121 @@
+package org.appenders.log4j2.elasticsearch.hc;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@code _nodes/http} response. Contains HTTP publish addresses and roles of all nodes with HTTP enabled.
+ */
+public class NodesInfoResponse extends BasicResponse {
+
+    private final List<NodeInfo> nodes;
+
+    public NodesInfoResponse(List<NodeInfo> nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * @param root {@code _nodes/http} response tree
+     * @return response with all nodes that expose HTTP publish address
+     */
+    public static NodesInfoResponse fromJsonTree(JsonNode root) {
+
+        JsonNode nodesNode = root.path("nodes");
+
+        List<NodeInfo> result = new ArrayList<>();
+
+        Iterator<JsonNode> it = nodesNode.elements();
+        while (it.hasNext()) {
+
+            JsonNode node = it.next();
+
+            String publishAddress = node.path("http").path("publish_address").asText(null);
+            if (publishAddress == null) {
+                continue;
+            }
+
+            Set<String> roles = new HashSet<>();
+            for (JsonNode role : node.path("roles")) {
+                roles.add(role.asText());
+            }
+
+            result.add(new NodeInfo(publishAddress, roles));
+
+        }
+
+        return new NodesInfoResponse(result);
+
+    }
+
+    public List<NodeInfo> getNodes() {
+        return nodes == null ? Collections.emptyList() : nodes;
+    }
+
+    public static class NodeInfo {
+
+        private final String publishAddress;
+        private final Set<String> roles;
+
+        public NodeInfo(String publishAddress, Set<String> roles) {
+            this.publishAddress = publishAddress;
+            this.roles = roles;
+        }
+
+        /**
+         * @return {@code host:port}; if publish address is in {@code hostname/ip:port} format, hostname is used
+         */
+        public String getHostAndPort() {
+
+            int slashIndex = publishAddress.indexOf('/');
+            if (slashIndex < 0) {
+                return publishAddress;
+            }
+
+            int portIndex = publishAddress.lastIndexOf(':');
+            if (portIndex < slashIndex) {
+                return publishAddress.substring(0, slashIndex);
+            }
+
+            return publishAddress.substring(0, slashIndex) + publishAddress.substring(portIndex);
+
+        }
+
+        public String getPublishAddress() {
+            return publishAddress;
+        }
+
+        public Set<String> getRoles() {
+            return roles;
+        }
+
+    }
+
+}
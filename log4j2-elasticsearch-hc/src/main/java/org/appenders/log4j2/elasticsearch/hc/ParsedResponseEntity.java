@@ -0,0 +1,47 @@
+package org.appenders.log4j2.elasticsearch.hc;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import org.apache.http.entity.BasicHttpEntity;
+
+/**
+ * Response entity carrying already deserialized response body. See {@link BatchResultAsyncResponseConsumer}.
+ *
+ * @param <T> response type
+ */
+public class ParsedResponseEntity<T> extends BasicHttpEntity {
+
+    private final T parsed;
+
+    public ParsedResponseEntity(T parsed) {
+        this.parsed = parsed;
+    }
+
+    /**
+     * @return deserialized response body
+     */
+    public T getParsed() {
+        return parsed;
+    }
+
+}
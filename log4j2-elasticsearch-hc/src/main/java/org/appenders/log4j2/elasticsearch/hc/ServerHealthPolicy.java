@@ -0,0 +1,125 @@
+package org.appenders.log4j2.elasticsearch.hc;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import org.apache.logging.log4j.core.config.ConfigurationException;
+import org.apache.logging.log4j.core.config.Node;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderFactory;
+
+import java.util.List;
+
+/**
+ * Enables health-aware server selection. See {@link HealthAwareServerPool}
+ */
+@Plugin(name = ServerHealthPolicy.PLUGIN_NAME, category = Node.CATEGORY, elementType = ServerHealthPolicy.ELEMENT_TYPE, printObject = true)
+public class ServerHealthPolicy {
+
+    public static final String PLUGIN_NAME = "ServerHealthPolicy";
+    public static final String ELEMENT_TYPE = "serverHealthPolicy";
+
+    private final int failureThreshold;
+    private final long ejectionTimeMillis;
+    private final long maxEjectionTimeMillis;
+
+    protected ServerHealthPolicy(Builder builder) {
+        this.failureThreshold = builder.failureThreshold;
+        this.ejectionTimeMillis = builder.ejectionTimeMillis;
+        this.maxEjectionTimeMillis = builder.maxEjectionTimeMillis;
+    }
+
+    /**
+     * @param serverList initial list of target servers
+     * @return {@link HealthAwareServerPool} configured with this policy
+     */
+    public ServerPool createServerPool(List<String> serverList) {
+        return new HealthAwareServerPool(serverList, failureThreshold, ejectionTimeMillis, maxEjectionTimeMillis);
+    }
+
+    @PluginBuilderFactory
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public static class Builder implements org.apache.logging.log4j.core.util.Builder<ServerHealthPolicy> {
+
+        /**
+         * Default: 3
+         */
+        public static final int DEFAULT_FAILURE_THRESHOLD = 3;
+
+        /**
+         * Default: 1000 ms
+         */
+        public static final long DEFAULT_EJECTION_TIME = 1000;
+
+        /**
+         * Default: 60000 ms
+         */
+        public static final long DEFAULT_MAX_EJECTION_TIME = 60000;
+
+        @PluginBuilderAttribute
+        private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+
+        @PluginBuilderAttribute
+        private long ejectionTimeMillis = DEFAULT_EJECTION_TIME;
+
+        @PluginBuilderAttribute
+        private long maxEjectionTimeMillis = DEFAULT_MAX_EJECTION_TIME;
+
+        @Override
+        public ServerHealthPolicy build() {
+
+            if (failureThreshold <= 0) {
+                throw new ConfigurationException("failureThreshold must be higher than 0 for " + PLUGIN_NAME);
+            }
+            if (ejectionTimeMillis <= 0) {
+                throw new ConfigurationException("ejectionTimeMillis must be higher than 0 for " + PLUGIN_NAME);
+            }
+            if (maxEjectionTimeMillis < ejectionTimeMillis) {
+                throw new ConfigurationException("maxEjectionTimeMillis cannot be lower than ejectionTimeMillis for " + PLUGIN_NAME);
+            }
+
+            return new ServerHealthPolicy(this);
+
+        }
+
+        public Builder withFailureThreshold(int failureThreshold) {
+            this.failureThreshold = failureThreshold;
+            return this;
+        }
+
+        public Builder withEjectionTimeMillis(long ejectionTimeMillis) {
+            this.ejectionTimeMillis = ejectionTimeMillis;
+            return this;
+        }
+
+        public Builder withMaxEjectionTimeMillis(long maxEjectionTimeMillis) {
+            this.maxEjectionTimeMillis = maxEjectionTimeMillis;
+            return this;
+        }
+
+    }
+
+}
@@ -20,14 +20,20 @@ package org.appenders.log4j2.elasticsearch.hc;
  * #L%
  */
 
+import org.apache.http.HttpResponse;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.logging.log4j.core.config.ConfigurationException;
 
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static org.appenders.core.logging.InternalLogging.getLogger;
+
 /**
  * Stores a list of target nodes.
+ * <p>
+ * Since 1.5, list can be replaced at runtime. See {@link #setServers(List)}
  */
 public class ServerPool {
 
@@ -50,4 +56,40 @@ public class ServerPool {
         return current.get(currentIndex.getAndIncrement() % current.size());
     }
 
+    /**
+     * Allows to observe the outcome of request sent to given server.
+     * <p>
+     * Extension point. Returns given callback by default.
+     *
+     * @param server target server returned by {@link #getNext()}
+     * @param callback request callback
+     * @return callback to use for this request
+     */
+    public FutureCallback<HttpResponse> track(String server, FutureCallback<HttpResponse> callback) {
+        return callback;
+    }
+
+    /**
+     * Atomically replaces current list of target servers. Empty or null lists are ignored.
+     *
+     * @param serverList new list of target servers
+     */
+    public void setServers(List<String> serverList) {
+
+        if (serverList == null || serverList.isEmpty()) {
+            getLogger().warn("{}: Empty server list ignored", getClass().getSimpleName());
+            return;
+        }
+
+        serverListRef.set(serverList);
+
+    }
+
+    /**
+     * @return current list of target servers
+     */
+    protected List<String> getServerList() {
+        return serverListRef.get();
+    }
+
 }
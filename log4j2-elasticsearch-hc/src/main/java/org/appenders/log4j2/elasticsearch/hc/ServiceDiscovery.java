@@ -0,0 +1,168 @@
+package org.appenders.log4j2.elasticsearch.hc;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import org.apache.logging.log4j.core.config.ConfigurationException;
+import org.apache.logging.log4j.core.config.Node;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderFactory;
+import org.appenders.log4j2.elasticsearch.LifeCycle;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Enables periodic node discovery. See {@link ServiceDiscoveryTask}
+ */
+@Plugin(name = ServiceDiscovery.PLUGIN_NAME, category = Node.CATEGORY, elementType = ServiceDiscovery.ELEMENT_TYPE, printObject = true)
+public class ServiceDiscovery {
+
+    public static final String PLUGIN_NAME = "ServiceDiscovery";
+    public static final String ELEMENT_TYPE = "serviceDiscovery";
+
+    private final long refreshInterval;
+    private final Collection<String> nodeRoles;
+    private final String scheme;
+
+    protected ServiceDiscovery(Builder builder) {
+        this.refreshInterval = builder.refreshInterval;
+        this.nodeRoles = parseNodeRoles(builder.nodeRoles);
+        this.scheme = builder.scheme;
+    }
+
+    /**
+     * @param client client used to retrieve nodes info
+     * @param serverPool server pool to update
+     * @return task updating given {@link ServerPool}
+     */
+    LifeCycle createTask(HttpClient client, ServerPool serverPool) {
+        return new ServiceDiscoveryTask(client, serverPool, resolveScheme(serverPool), nodeRoles, refreshInterval);
+    }
+
+    /* visible for testing */
+    String resolveScheme(ServerPool serverPool) {
+
+        if (scheme != null) {
+            return scheme;
+        }
+
+        String resolved = URI.create(serverPool.getServerList().get(0)).getScheme();
+        return resolved == null ? "http" : resolved;
+
+    }
+
+    private static Collection<String> parseNodeRoles(String nodeRoles) {
+
+        if (nodeRoles == null || nodeRoles.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> result = new ArrayList<>();
+        for (String role : nodeRoles.split(",")) {
+            if (!role.trim().isEmpty()) {
+                result.add(role.trim());
+            }
+        }
+
+        return result;
+
+    }
+
+    long getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    Collection<String> getNodeRoles() {
+        return nodeRoles;
+    }
+
+    @PluginBuilderFactory
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public static class Builder implements org.apache.logging.log4j.core.util.Builder<ServiceDiscovery> {
+
+        /**
+         * Default: 30000 ms
+         */
+        public static final long DEFAULT_REFRESH_INTERVAL = 30000;
+
+        @PluginBuilderAttribute
+        private long refreshInterval = DEFAULT_REFRESH_INTERVAL;
+
+        @PluginBuilderAttribute
+        private String nodeRoles;
+
+        @PluginBuilderAttribute
+        private String scheme;
+
+        @Override
+        public ServiceDiscovery build() {
+
+            if (refreshInterval <= 0) {
+                throw new ConfigurationException("refreshInterval must be higher than 0 for " + PLUGIN_NAME);
+            }
+            if (scheme != null && !"http".equals(scheme) && !"https".equals(scheme)) {
+                throw new ConfigurationException("scheme must be either http or https for " + PLUGIN_NAME);
+            }
+
+            return new ServiceDiscovery(this);
+
+        }
+
+        /**
+         * @param refreshInterval millis between two node list refreshes
+         * @return this
+         */
+        public Builder withRefreshInterval(long refreshInterval) {
+            this.refreshInterval = refreshInterval;
+            return this;
+        }
+
+        /**
+         * @param nodeRoles comma-separated list of node roles, e.g. {@code data,ingest}. Only nodes with any of these
+         *                  roles will be used. All nodes with HTTP enabled will be used if not set
+         * @return this
+         */
+        public Builder withNodeRoles(String nodeRoles) {
+            this.nodeRoles = nodeRoles;
+            return this;
+        }
+
+        /**
+         * @param scheme scheme of discovered addresses. Scheme of first configured server is used if not set
+         * @return this
+         */
+        public Builder withScheme(String scheme) {
+            this.scheme = scheme;
+            return this;
+        }
+
+    }
+
+}
@@ -0,0 +1,197 @@
+package org.appenders.log4j2.elasticsearch.hc;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.appenders.log4j2.elasticsearch.LifeCycle;
+import org.appenders.log4j2.elasticsearch.SharedScheduler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.appenders.core.logging.InternalLogging.getLogger;
+
+/**
+ * Periodically retrieves current list of nodes with {@link NodesInfoRequest} and replaces {@link ServerPool} server
+ * list with addresses of nodes with any of configured roles.
+ * <p>
+ * Requests are executed asynchronously, so scheduler thread is never blocked. Next refresh is skipped if previous one
+ * is still in progress. If response contains no matching nodes or request fails, current server list is retained.
+ */
+class ServiceDiscoveryTask implements LifeCycle {
+
+    private volatile State state = State.STOPPED;
+
+    private final HttpClient client;
+    private final ServerPool serverPool;
+    private final String scheme;
+    private final Collection<String> nodeRoles;
+    private final long refreshInterval;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicBoolean inProgress = new AtomicBoolean();
+    private ScheduledFuture<?> scheduledTask;
+
+    /**
+     * @param client client used to retrieve nodes info
+     * @param serverPool server pool to update
+     * @param scheme scheme of discovered addresses
+     * @param nodeRoles only nodes with any of these roles will be used. All nodes will be used if empty
+     * @param refreshInterval millis between two refreshes
+     */
+    ServiceDiscoveryTask(HttpClient client, ServerPool serverPool, String scheme, Collection<String> nodeRoles, long refreshInterval) {
+        this.client = client;
+        this.serverPool = serverPool;
+        this.scheme = scheme;
+        this.nodeRoles = nodeRoles;
+        this.refreshInterval = refreshInterval;
+    }
+
+    void refresh() {
+
+        if (!inProgress.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            client.executeAsync(new NodesInfoRequest(), new NodesInfoResponseHandler());
+        } catch (Exception e) {
+            // scheduled task MUST survive client failures
+            inProgress.set(false);
+            getLogger().error("{}: Nodes info request failed: {}", getClass().getSimpleName(), e.getMessage());
+        }
+
+    }
+
+    /* visible for testing */
+    List<String> matchingAddresses(NodesInfoResponse response) {
+
+        List<String> result = new ArrayList<>();
+        for (NodesInfoResponse.NodeInfo node : response.getNodes()) {
+            if (nodeRoles.isEmpty() || !Collections.disjoint(nodeRoles, node.getRoles())) {
+                result.add(scheme + "://" + node.getHostAndPort());
+            }
+        }
+
+        return result;
+
+    }
+
+    /* visible for testing */
+    void onResponse(NodesInfoResponse response) {
+
+        if (!response.isSucceeded()) {
+            getLogger().warn("{}: Nodes info request failed: {}", getClass().getSimpleName(), response.getErrorMessage());
+            return;
+        }
+
+        List<String> addresses = matchingAddresses(response);
+        if (addresses.isEmpty()) {
+            getLogger().warn("{}: No nodes with roles {} found. Server list not updated", getClass().getSimpleName(), nodeRoles);
+            return;
+        }
+
+        if (!addresses.equals(serverPool.getServerList())) {
+            getLogger().info("{}: Server list updated: {}", getClass().getSimpleName(), addresses);
+            serverPool.setServers(addresses);
+        }
+
+    }
+
+    class NodesInfoResponseHandler implements ResponseHandler<NodesInfoResponse> {
+
+        @Override
+        public void completed(NodesInfoResponse result) {
+            try {
+                onResponse(result);
+            } finally {
+                inProgress.set(false);
+            }
+        }
+
+        @Override
+        public void failed(Exception ex) {
+            inProgress.set(false);
+            getLogger().warn("{}: Nodes info request failed: {}", ServiceDiscoveryTask.class.getSimpleName(), ex.getMessage());
+        }
+
+        @Override
+        public NodesInfoResponse deserializeResponse(InputStream inputStream) throws IOException {
+            return NodesInfoResponse.fromJsonTree(objectMapper.readTree(inputStream));
+        }
+
+    }
+
+    // ==========
+    // LIFECYCLE
+    // ==========
+
+    @Override
+    public void start() {
+
+        if (isStarted()) {
+            return;
+        }
+
+        scheduledTask = SharedScheduler.getInstance().scheduleAtFixedRate(
+                this::refresh,
+                0,
+                refreshInterval,
+                TimeUnit.MILLISECONDS);
+
+        state = State.STARTED;
+
+    }
+
+    @Override
+    public void stop() {
+
+        if (isStopped()) {
+            return;
+        }
+
+        if (scheduledTask != null) {
+            scheduledTask.cancel(false);
+        }
+
+        state = State.STOPPED;
+
+    }
+
+    @Override
+    public boolean isStarted() {
+        return state == State.STARTED;
+    }
+
+    @Override
+    public boolean isStopped() {
+        return state == State.STOPPED;
+    }
+
+}
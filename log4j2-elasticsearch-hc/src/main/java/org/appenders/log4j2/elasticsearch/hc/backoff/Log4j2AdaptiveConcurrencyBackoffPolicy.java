@@ -0,0 +1,127 @@
+package org.appenders.log4j2.elasticsearch.hc.backoff;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import org.apache.logging.log4j.core.config.ConfigurationException;
+import org.apache.logging.log4j.core.config.Node;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderFactory;
+import org.appenders.log4j2.elasticsearch.backoff.AdaptiveConcurrencyBackoffPolicy;
+import org.appenders.log4j2.elasticsearch.backoff.BackoffPolicy;
+import org.appenders.log4j2.elasticsearch.hc.BatchRequest;
+
+@Plugin(name = Log4j2AdaptiveConcurrencyBackoffPolicy.PLUGIN_NAME, category = Node.CATEGORY, elementType = BackoffPolicy.NAME, printObject = true)
+public class Log4j2AdaptiveConcurrencyBackoffPolicy extends AdaptiveConcurrencyBackoffPolicy<BatchRequest> {
+
+    static final String PLUGIN_NAME = "AdaptiveConcurrencyBackoffPolicy";
+
+    public Log4j2AdaptiveConcurrencyBackoffPolicy(int initialLimit, int minLimit, int maxLimit, double latencyTolerance) {
+        super(initialLimit, minLimit, maxLimit, latencyTolerance);
+    }
+
+    @PluginBuilderFactory
+    public static Log4j2AdaptiveConcurrencyBackoffPolicy.Builder newBuilder() {
+        return new Log4j2AdaptiveConcurrencyBackoffPolicy.Builder();
+    }
+
+    public static class Builder implements org.apache.logging.log4j.core.util.Builder<AdaptiveConcurrencyBackoffPolicy> {
+
+        static final int DEFAULT_INITIAL_LIMIT = 4;
+        static final int DEFAULT_MIN_LIMIT = 1;
+        static final int DEFAULT_MAX_LIMIT = 64;
+        static final double DEFAULT_LATENCY_TOLERANCE = 1.5;
+
+        @PluginBuilderAttribute("initialLimit")
+        protected int initialLimit = DEFAULT_INITIAL_LIMIT;
+
+        @PluginBuilderAttribute("minLimit")
+        protected int minLimit = DEFAULT_MIN_LIMIT;
+
+        @PluginBuilderAttribute("maxLimit")
+        protected int maxLimit = DEFAULT_MAX_LIMIT;
+
+        @PluginBuilderAttribute("latencyTolerance")
+        protected double latencyTolerance = DEFAULT_LATENCY_TOLERANCE;
+
+        @Override
+        public final AdaptiveConcurrencyBackoffPolicy build() {
+
+            if (minLimit <= 0) {
+                throw new ConfigurationException("minLimit must be higher than 0 for " +
+                        AdaptiveConcurrencyBackoffPolicy.class.getSimpleName());
+            }
+
+            if (maxLimit < minLimit) {
+                throw new ConfigurationException("maxLimit must be higher than or equal to minLimit for " +
+                        AdaptiveConcurrencyBackoffPolicy.class.getSimpleName());
+            }
+
+            if (latencyTolerance < 1) {
+                throw new ConfigurationException("latencyTolerance must be higher than or equal to 1 for " +
+                        AdaptiveConcurrencyBackoffPolicy.class.getSimpleName());
+            }
+
+            return new Log4j2AdaptiveConcurrencyBackoffPolicy(initialLimit, minLimit, maxLimit, latencyTolerance);
+
+        }
+
+        /**
+         * @param initialLimit initial number of concurrent batches allowed
+         * @return this
+         */
+        public Builder withInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        /**
+         * @param minLimit min. number of concurrent batches allowed
+         * @return this
+         */
+        public Builder withMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        /**
+         * @param maxLimit max. number of concurrent batches allowed
+         * @return this
+         */
+        public Builder withMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * @param latencyTolerance ratio of latency increase tolerated before the limit is reduced
+         * @return this
+         */
+        public Builder withLatencyTolerance(double latencyTolerance) {
+            this.latencyTolerance = latencyTolerance;
+            return this;
+        }
+
+    }
+
+}
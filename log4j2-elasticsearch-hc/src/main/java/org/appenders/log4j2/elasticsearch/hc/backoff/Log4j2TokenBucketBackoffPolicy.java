@@ -0,0 +1,142 @@
+package org.appenders.log4j2.elasticsearch.hc.backoff;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import org.apache.logging.log4j.core.config.ConfigurationException;
+import org.apache.logging.log4j.core.config.Node;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderFactory;
+import org.appenders.log4j2.elasticsearch.backoff.BackoffPolicy;
+import org.appenders.log4j2.elasticsearch.backoff.TokenBucketBackoffPolicy;
+import org.appenders.log4j2.elasticsearch.hc.BatchRequest;
+import org.appenders.log4j2.elasticsearch.hc.IndexRequest;
+
+import java.util.function.ToLongFunction;
+
+@Plugin(name = Log4j2TokenBucketBackoffPolicy.PLUGIN_NAME, category = Node.CATEGORY, elementType = BackoffPolicy.NAME, printObject = true)
+public class Log4j2TokenBucketBackoffPolicy extends TokenBucketBackoffPolicy<BatchRequest> {
+
+    static final String PLUGIN_NAME = "TokenBucketBackoffPolicy";
+
+    public Log4j2TokenBucketBackoffPolicy(long tokensPerSecond, long capacity, ToLongFunction<BatchRequest> weigher) {
+        super(tokensPerSecond, capacity, weigher);
+    }
+
+    @PluginBuilderFactory
+    public static Log4j2TokenBucketBackoffPolicy.Builder newBuilder() {
+        return new Log4j2TokenBucketBackoffPolicy.Builder();
+    }
+
+    /**
+     * @param request batch
+     * @return number of documents in given batch
+     */
+    static long countDocuments(BatchRequest request) {
+        return request.getIndexRequests().size();
+    }
+
+    /**
+     * @param request batch
+     * @return total size of documents in given batch
+     */
+    static long countBytes(BatchRequest request) {
+        long result = 0;
+        for (IndexRequest indexRequest : request.getIndexRequests()) {
+            result += indexRequest.getSource().getSource().readableBytes();
+        }
+        return result;
+    }
+
+    public static class Builder implements org.apache.logging.log4j.core.util.Builder<TokenBucketBackoffPolicy> {
+
+        public static final String UNIT_DOCUMENTS = "documents";
+        public static final String UNIT_BYTES = "bytes";
+
+        @PluginBuilderAttribute("ratePerSecond")
+        protected long ratePerSecond;
+
+        @PluginBuilderAttribute("burstSize")
+        protected long burstSize;
+
+        @PluginBuilderAttribute("unit")
+        protected String unit = UNIT_DOCUMENTS;
+
+        @Override
+        public final TokenBucketBackoffPolicy build() {
+
+            if (ratePerSecond <= 0) {
+                throw new ConfigurationException("ratePerSecond must be higher than 0 for " +
+                        TokenBucketBackoffPolicy.class.getSimpleName());
+            }
+
+            if (burstSize < 0) {
+                throw new ConfigurationException("burstSize must be higher than or equal to 0 for " +
+                        TokenBucketBackoffPolicy.class.getSimpleName());
+            }
+
+            long capacity = burstSize == 0 ? ratePerSecond : burstSize;
+
+            if (UNIT_DOCUMENTS.equals(unit)) {
+                return new Log4j2TokenBucketBackoffPolicy(ratePerSecond, capacity, Log4j2TokenBucketBackoffPolicy::countDocuments);
+            }
+
+            if (UNIT_BYTES.equals(unit)) {
+                return new Log4j2TokenBucketBackoffPolicy(ratePerSecond, capacity, Log4j2TokenBucketBackoffPolicy::countBytes);
+            }
+
+            throw new ConfigurationException("unit must be one of [" + UNIT_DOCUMENTS + ", " + UNIT_BYTES + "] for " +
+                    TokenBucketBackoffPolicy.class.getSimpleName() + ". Got: " + unit);
+
+        }
+
+        /**
+         * @param ratePerSecond number of documents or bytes allowed per second
+         * @return this
+         */
+        public Builder withRatePerSecond(long ratePerSecond) {
+            this.ratePerSecond = ratePerSecond;
+            return this;
+        }
+
+        /**
+         * @param burstSize max. number of documents or bytes that can be sent at once. {@code ratePerSecond} is used if 0
+         * @return this
+         */
+        public Builder withBurstSize(long burstSize) {
+            this.burstSize = burstSize;
+            return this;
+        }
+
+        /**
+         * @param unit {@code documents} or {@code bytes}
+         * @return this
+         */
+        public Builder withUnit(String unit) {
+            this.unit = unit;
+            return this;
+        }
+
+    }
+
+}
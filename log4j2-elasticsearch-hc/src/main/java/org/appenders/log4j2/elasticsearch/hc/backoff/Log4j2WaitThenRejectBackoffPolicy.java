@@ -0,0 +1,114 @@
+package org.appenders.log4j2.elasticsearch.hc.backoff;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import org.apache.logging.log4j.core.config.ConfigurationException;
+import org.apache.logging.log4j.core.config.Node;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderFactory;
+import org.apache.logging.log4j.core.config.plugins.PluginElement;
+import org.appenders.log4j2.elasticsearch.backoff.BackoffPolicy;
+import org.appenders.log4j2.elasticsearch.backoff.WaitThenRejectBackoffPolicy;
+import org.appenders.log4j2.elasticsearch.hc.BatchRequest;
+
+@Plugin(name = Log4j2WaitThenRejectBackoffPolicy.PLUGIN_NAME, category = Node.CATEGORY, elementType = BackoffPolicy.NAME, printObject = true)
+public class Log4j2WaitThenRejectBackoffPolicy extends WaitThenRejectBackoffPolicy<BatchRequest> {
+
+    static final String PLUGIN_NAME = "WaitThenRejectBackoffPolicy";
+
+    public Log4j2WaitThenRejectBackoffPolicy(BackoffPolicy<BatchRequest> delegate, long maxWaitMillis, long checkIntervalMillis) {
+        super(delegate, maxWaitMillis, checkIntervalMillis);
+    }
+
+    @PluginBuilderFactory
+    public static Log4j2WaitThenRejectBackoffPolicy.Builder newBuilder() {
+        return new Log4j2WaitThenRejectBackoffPolicy.Builder();
+    }
+
+    public static class Builder implements org.apache.logging.log4j.core.util.Builder<WaitThenRejectBackoffPolicy> {
+
+        static final long DEFAULT_MAX_WAIT_MILLIS = 100;
+        static final long DEFAULT_CHECK_INTERVAL_MILLIS = 10;
+
+        @PluginElement(BackoffPolicy.NAME)
+        protected BackoffPolicy<BatchRequest> backoffPolicy;
+
+        @PluginBuilderAttribute("maxWaitMillis")
+        protected long maxWaitMillis = DEFAULT_MAX_WAIT_MILLIS;
+
+        @PluginBuilderAttribute("checkIntervalMillis")
+        protected long checkIntervalMillis = DEFAULT_CHECK_INTERVAL_MILLIS;
+
+        @Override
+        public final WaitThenRejectBackoffPolicy build() {
+
+            if (backoffPolicy == null) {
+                throw new ConfigurationException("No " + BackoffPolicy.NAME + " provided for " +
+                        WaitThenRejectBackoffPolicy.class.getSimpleName());
+            }
+
+            if (maxWaitMillis < 0) {
+                throw new ConfigurationException("maxWaitMillis must be higher than or equal to 0 for " +
+                        WaitThenRejectBackoffPolicy.class.getSimpleName());
+            }
+
+            if (checkIntervalMillis <= 0) {
+                throw new ConfigurationException("checkIntervalMillis must be higher than 0 for " +
+                        WaitThenRejectBackoffPolicy.class.getSimpleName());
+            }
+
+            return new Log4j2WaitThenRejectBackoffPolicy(backoffPolicy, maxWaitMillis, checkIntervalMillis);
+
+        }
+
+        /**
+         * @param backoffPolicy actual policy
+         * @return this
+         */
+        public Builder withBackoffPolicy(BackoffPolicy<BatchRequest> backoffPolicy) {
+            this.backoffPolicy = backoffPolicy;
+            return this;
+        }
+
+        /**
+         * @param maxWaitMillis max. time to wait for given policy to stop applying before batch is rejected
+         * @return this
+         */
+        public Builder withMaxWaitMillis(long maxWaitMillis) {
+            this.maxWaitMillis = maxWaitMillis;
+            return this;
+        }
+
+        /**
+         * @param checkIntervalMillis max. time between two checks of given policy
+         * @return this
+         */
+        public Builder withCheckIntervalMillis(long checkIntervalMillis) {
+            this.checkIntervalMillis = checkIntervalMillis;
+            return this;
+        }
+
+    }
+
+}
@@ -0,0 +1,173 @@
+package org.appenders.log4j2.elasticsearch.hc;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BatchItemFailuresTest {
+
+    @Test
+    public void recordsPositionsOfFailedItems() {
+
+        // given
+        BatchItemFailures itemFailures = new BatchItemFailures();
+
+        // when
+        itemFailures.add(201, null);
+        itemFailures.add(400, null);
+        itemFailures.add(200, null);
+        itemFailures.add(0, new Error());
+
+        // then
+        assertEquals(4, itemFailures.getTotalItems());
+        assertEquals(2, itemFailures.getFailedCount());
+        assertFalse(itemFailures.isFailed(0));
+        assertTrue(itemFailures.isFailed(1));
+        assertFalse(itemFailures.isFailed(2));
+        assertTrue(itemFailures.isFailed(3));
+
+    }
+
+    @Test
+    public void classifiesRetryableItems() {
+
+        // given
+        BatchItemFailures itemFailures = new BatchItemFailures();
+
+        // when
+        itemFailures.add(HCHttp.TOO_MANY_REQUESTS, null);
+        itemFailures.add(HCHttp.SERVICE_UNAVAILABLE, null);
+        itemFailures.add(409, null);
+
+        // then
+        assertEquals(2, itemFailures.getRetryableCount());
+        assertTrue(itemFailures.isRetryable(0));
+        assertTrue(itemFailures.isRetryable(1));
+        assertFalse(itemFailures.isRetryable(2));
+        assertTrue(itemFailures.isRejected());
+
+    }
+
+    @Test
+    public void isNotRejectedIfNoItemWasRejectedWithTooManyRequests() {
+
+        // given
+        BatchItemFailures itemFailures = new BatchItemFailures();
+
+        // when
+        itemFailures.add(HCHttp.SERVICE_UNAVAILABLE, null);
+
+        // then
+        assertFalse(itemFailures.isRejected());
+
+    }
+
+    @Test
+    public void storesFirstErrorAndFirstPermanentError() {
+
+        // given
+        BatchItemFailures itemFailures = new BatchItemFailures();
+
+        Error rejected = new Error();
+        Error permanent = new Error();
+        Error nextPermanent = new Error();
+
+        // when
+        itemFailures.add(HCHttp.TOO_MANY_REQUESTS, rejected);
+        itemFailures.add(400, permanent);
+        itemFailures.add(409, nextPermanent);
+
+        // then
+        assertTrue(rejected == itemFailures.getFirstError());
+        assertTrue(permanent == itemFailures.getFirstPermanentError());
+        assertEquals(400, itemFailures.getFirstPermanentFailureStatus());
+
+    }
+
+    @Test
+    public void needsErrorOnlyUntilFirstErrorsAreStored() {
+
+        // given
+        BatchItemFailures itemFailures = new BatchItemFailures();
+        assertTrue(itemFailures.needsError(-1));
+
+        // when
+        itemFailures.add(HCHttp.TOO_MANY_REQUESTS, new Error());
+
+        // then
+        assertFalse(itemFailures.needsError(HCHttp.TOO_MANY_REQUESTS));
+        assertTrue(itemFailures.needsError(400));
+
+        // when
+        itemFailures.add(400, new Error());
+
+        // then
+        assertFalse(itemFailures.needsError(400));
+
+    }
+
+    @Test
+    public void itemWithSkippedErrorIsFailed() {
+
+        // given
+        BatchItemFailures itemFailures = new BatchItemFailures();
+
+        // when
+        itemFailures.add(-1, true, null);
+
+        // then
+        assertTrue(itemFailures.isFailed(0));
+        assertNull(itemFailures.getFirstError());
+
+    }
+
+    @Test
+    public void ofCreatesFailuresFromItemResults() {
+
+        // given
+        List<BatchItemResult> items = new ArrayList<>();
+        BatchItemResult succeeded = new BatchItemResult();
+        succeeded.setStatus(201);
+        items.add(succeeded);
+        BatchItemResult failed = new BatchItemResult();
+        failed.setStatus(HCHttp.TOO_MANY_REQUESTS);
+        items.add(failed);
+
+        // when
+        BatchItemFailures itemFailures = BatchItemFailures.of(items);
+
+        // then
+        assertEquals(2, itemFailures.getTotalItems());
+        assertFalse(itemFailures.isFailed(0));
+        assertTrue(itemFailures.isRetryable(1));
+
+    }
+
+}
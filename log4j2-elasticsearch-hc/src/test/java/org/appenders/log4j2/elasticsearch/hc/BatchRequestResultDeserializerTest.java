@@ -20,20 +20,18 @@ package org.appenders.log4j2.elasticsearch.hc;
  * #L%
  */
 
-import com.fasterxml.jackson.annotation.JsonAutoDetect;
-import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.introspect.VisibilityChecker;
+import com.fasterxml.jackson.databind.ObjectReader;
 import org.junit.Test;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
-import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class BatchRequestResultDeserializerTest {
 
@@ -128,39 +126,151 @@ public class BatchRequestResultDeserializerTest {
 
         // given
         ObjectMapper mapper = new ObjectMapper()
-                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
-                .setVisibility(VisibilityChecker.Std.defaultInstance()
-                        .withFieldVisibility(JsonAutoDetect.Visibility.ANY))
                 .addMixIn(BatchResult.class, BatchResultMixIn.class);
 
-        String expectedId = UUID.randomUUID().toString();
-        String expectedIndex = UUID.randomUUID().toString();
-        String expectedType = UUID.randomUUID().toString();
-        int expectedStatus = random.nextInt(1000) + 1;
+        int expectedStatus = random.nextInt(600) + 400;
 
-        BatchItemResult item = new BatchItemResult();
-        item.setId(expectedId);
-        item.setIndex(expectedIndex);
-        item.setType(expectedType);
-        item.setStatus(expectedStatus);
+        String json = "{\"errors\":true,\"items\":[" +
+                item("index", 201, null) + "," +
+                item("index", expectedStatus, null) +
+                "]}";
 
-        List<BatchItemResult> items = new ArrayList<>();
-        items.add(item);
+        // when
+        BatchResult result = mapper.readerFor(BatchResult.class).readValue(json);
 
-        BatchResult batchResult = new BatchResult(0, true, null, 0, items);
-        String json = mapper.writeValueAsString(batchResult);
+        // then
+        assertNull(result.getItems());
+        assertEquals(2, result.getItemFailures().getTotalItems());
+        assertEquals(1, result.getItemFailures().getFailedCount());
+        assertFalse(result.getItemFailures().isFailed(0));
+        assertTrue(result.getItemFailures().isFailed(1));
+
+    }
+
+    @Test
+    public void deserializesSuccessfulResponseWithoutParsingItems() throws IOException {
+
+        // given
+        String json = "{\"took\":15,\"errors\":false,\"items\":[" + item("index", 201, null) + ",{invalid json";
 
         // when
-        BatchResult result = mapper.readerFor(BatchResult.class).readValue(json);
+        BatchResult result = createTestObjectReader().readValue(json);
 
         // then
-        assertEquals(1, result.getItems().size());
-        BatchItemResult resultItem = result.getItems().get(0);
-        assertEquals(resultItem.getId(), expectedId);
-        assertEquals(resultItem.getIndex(), expectedIndex);
-        assertEquals(resultItem.getStatus(), expectedStatus);
-        assertEquals(resultItem.getType(), expectedType);
+        assertTrue(result.isSucceeded());
+        assertEquals(15, result.getTook());
+        assertNull(result.getItemFailures());
+        assertNull(result.getItems());
+
+    }
+
+    @Test
+    public void deserializesFailedItemsOnly() throws IOException {
+
+        // given
+        String json = "{\"took\":30,\"errors\":true,\"items\":[" +
+                item("index", 201, null) + "," +
+                item("index", 429, error("es_rejected_execution_exception", "rejected")) + "," +
+                item("index", 400, error("mapper_parsing_exception", "failed to parse")) + "," +
+                item("create", 201, null) + "," +
+                item("index", 503, error("unavailable_shards_exception", "unavailable")) +
+                "]}";
+
+        // when
+        BatchResult result = createTestObjectReader().readValue(json);
+
+        // then
+        assertFalse(result.isSucceeded());
+        assertEquals(30, result.getTook());
+
+        BatchItemFailures itemFailures = result.getItemFailures();
+        assertNotNull(itemFailures);
+        assertEquals(5, itemFailures.getTotalItems());
+        assertEquals(3, itemFailures.getFailedCount());
+        assertEquals(2, itemFailures.getRetryableCount());
+        assertTrue(itemFailures.isRejected());
+
+        assertFalse(itemFailures.isFailed(0));
+        assertTrue(itemFailures.isRetryable(1));
+        assertTrue(itemFailures.isFailed(2));
+        assertFalse(itemFailures.isRetryable(2));
+        assertFalse(itemFailures.isFailed(3));
+        assertTrue(itemFailures.isRetryable(4));
+
+        assertEquals("es_rejected_execution_exception", itemFailures.getFirstError().getType());
+        assertEquals(400, itemFailures.getFirstPermanentFailureStatus());
+        assertEquals("mapper_parsing_exception", itemFailures.getFirstPermanentError().getType());
+
+    }
+
+    @Test
+    public void deserializesItemsWithUnknownFields() throws IOException {
+
+        // given
+        String json = "{\"took\":30,\"errors\":true,\"items\":[" +
+                "{\"index\":{\"_index\":\"test\",\"_shards\":{\"total\":2,\"failed\":0},\"tags\":[1,2],\"status\":201}}," +
+                "{\"index\":{\"_index\":\"test\",\"status\":400,\"error\":{\"type\":\"test_type\",\"reason\":\"test_reason\",\"unknown\":[{}]}}}" +
+                "]}";
+
+        // when
+        BatchResult result = createTestObjectReader().readValue(json);
+
+        // then
+        BatchItemFailures itemFailures = result.getItemFailures();
+        assertEquals(2, itemFailures.getTotalItems());
+        assertFalse(itemFailures.isFailed(0));
+        assertTrue(itemFailures.isFailed(1));
+        assertEquals("test_reason", itemFailures.getFirstError().getReason());
+
+    }
+
+    @Test
+    public void deserializesRootError() throws IOException {
+
+        // given
+        String json = "{\"error\":{\"type\":\"test_type\",\"reason\":\"test_reason\"},\"status\":413}";
+
+        // when
+        BatchResult result = createTestObjectReader().readValue(json);
+
+        // then
+        assertFalse(result.isSucceeded());
+        assertEquals(413, result.getStatusCode());
+        assertEquals("test_type", result.getError().getType());
+        assertNull(result.getItemFailures());
+
+    }
+
+    @Test
+    public void errorMessageContainsFirstFailedItemError() throws IOException {
+
+        // given
+        String json = "{\"took\":30,\"errors\":true,\"items\":[" +
+                item("index", 201, null) + "," +
+                item("index", 400, error("mapper_parsing_exception", "failed to parse")) +
+                "]}";
+
+        BatchResult result = createTestObjectReader().readValue(json);
+
+        // when
+        result.withErrorMessage("test");
+
+        // then
+        assertTrue(result.getErrorMessage().contains("mapper_parsing_exception"));
+
+    }
+
+    private ObjectReader createTestObjectReader() {
+        return HCHttpTest.createDefaultHttpObjectFactoryBuilder().build().configuredReader();
+    }
+
+    private static String item(String action, int status, String error) {
+        return "{\"" + action + "\":{\"_index\":\"test\",\"_type\":\"_doc\",\"_id\":\"1\",\"status\":" + status +
+                (error == null ? "" : ",\"error\":" + error) + "}}";
+    }
 
+    private static String error(String type, String reason) {
+        return "{\"type\":\"" + type + "\",\"reason\":\"" + reason + "\",\"caused_by\":{\"type\":\"" + type + "\",\"reason\":\"" + reason + "\"}}";
     }
 
 }
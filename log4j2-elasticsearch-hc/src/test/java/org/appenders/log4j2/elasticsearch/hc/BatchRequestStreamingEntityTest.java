@@ -0,0 +1,231 @@
+package org.appenders.log4j2.elasticsearch.hc;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2018 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.appenders.log4j2.elasticsearch.ByteBufItemSource;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.appenders.log4j2.elasticsearch.ByteBufItemSourceTest.createTestItemSource;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BatchRequestStreamingEntityTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void isChunked() {
+
+        // given
+        BatchRequestStreamingEntity entity = new BatchRequestStreamingEntity(createTestBatchRequest(), null);
+
+        // when
+        boolean result = entity.isChunked();
+
+        // then
+        assertTrue(result);
+
+    }
+
+    @Test
+    public void isRepeatable() {
+
+        // given
+        BatchRequestStreamingEntity entity = new BatchRequestStreamingEntity(createTestBatchRequest(), null);
+
+        // when
+        boolean result = entity.isRepeatable();
+
+        // then
+        assertTrue(result);
+
+    }
+
+    @Test
+    public void contentLengthIsUnknown() {
+
+        // given
+        BatchRequestStreamingEntity entity = new BatchRequestStreamingEntity(createTestBatchRequest(), null);
+
+        // when
+        long result = entity.getContentLength();
+
+        // then
+        assertEquals(-1, result);
+
+    }
+
+    @Test
+    public void getContentIsNotSupported() {
+
+        // given
+        BatchRequestStreamingEntity entity = new BatchRequestStreamingEntity(createTestBatchRequest(), null);
+
+        expectedException.expect(UnsupportedOperationException.class);
+
+        // when
+        entity.getContent();
+
+    }
+
+    @Test
+    public void produceContentWritesSameContentAsSerialize() throws IOException {
+
+        // given
+        BatchRequestStreamingEntity entity = new BatchRequestStreamingEntity(createTestBatchRequest(), null);
+        String expected = ((ByteBuf) createTestBatchRequest().serialize().getSource()).toString(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        ContentEncoder encoder = createTestContentEncoder(written, Integer.MAX_VALUE);
+
+        // when
+        entity.produceContent(encoder, mock(IOControl.class));
+
+        // then
+        assertEquals(expected, new String(written.toByteArray(), StandardCharsets.UTF_8));
+        verify(encoder).complete();
+
+    }
+
+    @Test
+    public void produceContentResumesWhenEncoderIsAbleToAcceptMoreBytes() throws IOException {
+
+        // given
+        BatchRequestStreamingEntity entity = new BatchRequestStreamingEntity(createTestBatchRequest(), null);
+        String expected = ((ByteBuf) createTestBatchRequest().serialize().getSource()).toString(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        ContentEncoder encoder = createTestContentEncoder(written, 3);
+
+        // when
+        entity.produceContent(encoder, mock(IOControl.class));
+
+        // then
+        assertEquals(3, written.size());
+        verify(encoder, never()).complete();
+
+        // when
+        while (written.size() < expected.length()) {
+            entity.produceContent(encoder, mock(IOControl.class));
+        }
+
+        // then
+        assertEquals(expected, new String(written.toByteArray(), StandardCharsets.UTF_8));
+        verify(encoder, times(1)).complete();
+
+    }
+
+    @Test
+    public void closeAllowsToProduceContentAgain() throws IOException {
+
+        // given
+        BatchRequestStreamingEntity entity = new BatchRequestStreamingEntity(createTestBatchRequest(), null);
+
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        ContentEncoder encoder = createTestContentEncoder(written, Integer.MAX_VALUE);
+
+        entity.produceContent(encoder, mock(IOControl.class));
+        String firstAttempt = new String(written.toByteArray(), StandardCharsets.UTF_8);
+        written.reset();
+
+        // when
+        entity.close();
+        entity.produceContent(encoder, mock(IOControl.class));
+
+        // then
+        assertFalse(firstAttempt.isEmpty());
+        assertEquals(firstAttempt, new String(written.toByteArray(), StandardCharsets.UTF_8));
+
+    }
+
+    @Test
+    public void writeToWritesSameContentAsSerialize() throws IOException {
+
+        // given
+        BatchRequestStreamingEntity entity = new BatchRequestStreamingEntity(createTestBatchRequest(), null);
+        String expected = ((ByteBuf) createTestBatchRequest().serialize().getSource()).toString(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+        // when
+        entity.writeTo(written);
+
+        // then
+        assertEquals(expected, new String(written.toByteArray(), StandardCharsets.UTF_8));
+
+    }
+
+    private ContentEncoder createTestContentEncoder(ByteArrayOutputStream written, int maxBytesPerWrite) throws IOException {
+        ContentEncoder encoder = mock(ContentEncoder.class);
+        when(encoder.write(any())).thenAnswer(invocation -> {
+            ByteBuffer nioBuffer = invocation.getArgument(0);
+            int bytesWritten = 0;
+            while (nioBuffer.hasRemaining() && bytesWritten < maxBytesPerWrite) {
+                written.write(nioBuffer.get());
+                bytesWritten++;
+            }
+            return bytesWritten;
+        });
+        return encoder;
+    }
+
+    private BatchRequest createTestBatchRequest() {
+        return new BatchRequest.Builder()
+                .withObjectWriter(new ObjectMapper().writerFor(IndexRequest.class))
+                .withBuffer(createTestItemSource())
+                .add(createTestIndexRequest("index1", "test1"))
+                .add(createTestIndexRequest("index2", "test2"))
+                .add(createTestIndexRequest("index2", "test3"))
+                .build();
+    }
+
+    private IndexRequest createTestIndexRequest(String index, String payload) {
+        ByteBufItemSource itemSource = createTestItemSource();
+        itemSource.getSource().writeBytes(payload.getBytes(StandardCharsets.UTF_8));
+        return new IndexRequest.Builder(itemSource)
+                .index(index)
+                .type("_doc")
+                .build();
+    }
+
+}
@@ -23,7 +23,11 @@ package org.appenders.log4j2.elasticsearch.hc;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import org.appenders.log4j2.elasticsearch.ByteBufCompressor;
 import org.appenders.log4j2.elasticsearch.ByteBufItemSource;
+import org.appenders.log4j2.elasticsearch.EmptyItemSourceFactory;
 import org.appenders.log4j2.elasticsearch.ItemSource;
 import org.junit.Assert;
 import org.junit.Rule;
@@ -33,21 +37,26 @@ import org.mockito.ArgumentCaptor;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Random;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
 
 import static org.appenders.log4j2.elasticsearch.ByteBufItemSourceTest.createTestItemSource;
 import static org.appenders.log4j2.elasticsearch.hc.IndexRequestTest.createIndexRequestBuilder;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class BatchRequestTest {
 
@@ -389,6 +398,241 @@ public class BatchRequestTest {
 
     }
 
+    @Test
+    public void zeroCopySerializeProducesSameContentAsCopyingSerialize() throws IOException {
+
+        // given
+        ObjectWriter writer = new ObjectMapper().writerFor(IndexRequest.class);
+        String index1 = UUID.randomUUID().toString();
+        String index2 = UUID.randomUUID().toString();
+
+        BatchRequest request = new BatchRequest.Builder()
+                .withObjectWriter(writer)
+                .withBuffer(createTestItemSource())
+                .add(createTestIndexRequest(index1, "test1"))
+                .add(createTestIndexRequest(index2, "test2"))
+                .build();
+
+        BatchRequest zeroCopyRequest = new BatchRequest.Builder()
+                .withObjectWriter(writer)
+                .withBuffer(createTestItemSource())
+                .withZeroCopy(true)
+                .add(createTestIndexRequest(index1, "test1"))
+                .add(createTestIndexRequest(index2, "test2"))
+                .build();
+
+        // when
+        ByteBuf expected = (ByteBuf) request.serialize().getSource();
+        ByteBuf result = (ByteBuf) zeroCopyRequest.serialize().getSource();
+
+        // then
+        assertTrue(result instanceof CompositeByteBuf);
+        assertEquals(expected.toString(StandardCharsets.UTF_8), result.toString(StandardCharsets.UTF_8));
+        assertEquals(expected.writerIndex(), result.writerIndex());
+
+    }
+
+    @Test
+    public void zeroCopySerializeReusesUniformActionLine() throws IOException {
+
+        // given
+        ObjectWriter writer = spy(new ObjectMapper().writerFor(IndexRequest.class));
+        String index = UUID.randomUUID().toString();
+
+        BatchRequest request = new BatchRequest.Builder()
+                .withObjectWriter(writer)
+                .withBuffer(createTestItemSource())
+                .withZeroCopy(true)
+                .add(createTestIndexRequest(index, "test1"))
+                .add(createTestIndexRequest(index, "test2"))
+                .build();
+
+        // when
+        ByteBuf result = (ByteBuf) request.serialize().getSource();
+
+        // then
+        verify(writer, times(1)).writeValue((OutputStream)any(), any());
+        String[] lines = result.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(4, lines.length);
+        assertEquals(lines[0], lines[2]);
+        assertEquals("test1", lines[1]);
+        assertEquals("test2", lines[3]);
+
+    }
+
+    @Test
+    public void zeroCopySerializeDoesNotCopySources() throws IOException {
+
+        // given
+        IndexRequest indexRequest = createTestIndexRequest(UUID.randomUUID().toString(), "test");
+        ByteBuf source = indexRequest.getSource().getSource();
+
+        BatchRequest request = new BatchRequest.Builder()
+                .withObjectWriter(new ObjectMapper().writerFor(IndexRequest.class))
+                .withBuffer(createTestItemSource())
+                .withZeroCopy(true)
+                .add(indexRequest)
+                .build();
+
+        // when
+        request.serialize();
+
+        // then
+        assertEquals(2, source.refCnt());
+
+    }
+
+    @Test
+    public void callingCompletedReleasesZeroCopySlices() throws IOException {
+
+        // given
+        IndexRequest indexRequest = createTestIndexRequest(UUID.randomUUID().toString(), "test");
+        ByteBuf source = indexRequest.getSource().getSource();
+        ByteBufItemSource buffer = createTestItemSource();
+
+        BatchRequest request = new BatchRequest.Builder()
+                .withObjectWriter(new ObjectMapper().writerFor(IndexRequest.class))
+                .withBuffer(buffer)
+                .withZeroCopy(true)
+                .add(indexRequest)
+                .build();
+
+        ByteBuf result = (ByteBuf) request.serialize().getSource();
+
+        // when
+        request.completed();
+
+        // then
+        assertEquals(0, result.refCnt());
+        assertEquals(1, source.refCnt());
+        assertEquals(1, buffer.getSource().refCnt());
+
+    }
+
+    @Test
+    public void serializeCompressesRequestIfCompressorIsConfigured() throws IOException {
+
+        // given
+        ObjectWriter writer = new ObjectMapper().writerFor(IndexRequest.class);
+        String index = UUID.randomUUID().toString();
+
+        BatchRequest request = new BatchRequest.Builder()
+                .withObjectWriter(writer)
+                .withBuffer(createTestItemSource())
+                .add(createTestIndexRequest(index, "test1"))
+                .build();
+
+        BatchRequest compressedRequest = new BatchRequest.Builder()
+                .withObjectWriter(writer)
+                .withBuffer(createTestItemSource())
+                .withCompressor(ByteBufCompressor.newBuilder().build())
+                .withCompressedBufferFactory(() -> createTestItemSource())
+                .add(createTestIndexRequest(index, "test1"))
+                .build();
+
+        // when
+        String expected = ((ByteBuf) request.serialize().getSource()).toString(StandardCharsets.UTF_8);
+        ByteBuf result = (ByteBuf) compressedRequest.serialize().getSource();
+
+        // then
+        assertEquals("gzip", compressedRequest.getContentEncoding());
+        GZIPInputStream inputStream = new GZIPInputStream(new ByteBufInputStream(result));
+        byte[] decompressed = new byte[expected.length() + 1];
+        int read = 0;
+        int count;
+        while ((count = inputStream.read(decompressed, read, decompressed.length - read)) > 0) {
+            read += count;
+        }
+        assertEquals(expected, new String(decompressed, 0, read, StandardCharsets.UTF_8));
+
+    }
+
+    @Test
+    public void serializeTakesCompressedBufferFromGivenFactory() throws IOException {
+
+        // given
+        ByteBufItemSource compressedBuffer = createTestItemSource();
+        EmptyItemSourceFactory compressedBufferFactory = mock(EmptyItemSourceFactory.class);
+        when(compressedBufferFactory.createEmptySource()).thenReturn(compressedBuffer);
+
+        BatchRequest request = new BatchRequest.Builder()
+                .withObjectWriter(new ObjectMapper().writerFor(IndexRequest.class))
+                .withBuffer(createTestItemSource())
+                .withCompressor(ByteBufCompressor.newBuilder().build())
+                .withCompressedBufferFactory(compressedBufferFactory)
+                .add(createTestIndexRequest(UUID.randomUUID().toString(), "test"))
+                .build();
+
+        // when
+        ByteBuf result = (ByteBuf) request.serialize().getSource();
+
+        // then
+        assertSame(compressedBuffer.getSource(), result);
+
+    }
+
+    @Test
+    public void callingCompletedReleasesCompressedBuffer() throws IOException {
+
+        // given
+        ItemSource<ByteBuf> compressedBuffer = spy(createTestItemSource());
+
+        BatchRequest request = new BatchRequest.Builder()
+                .withObjectWriter(new ObjectMapper().writerFor(IndexRequest.class))
+                .withBuffer(createTestItemSource())
+                .withCompressor(ByteBufCompressor.newBuilder().build())
+                .withCompressedBufferFactory(() -> compressedBuffer)
+                .add(createTestIndexRequest(UUID.randomUUID().toString(), "test"))
+                .build();
+
+        request.serialize();
+
+        // when
+        request.completed();
+
+        // then
+        verify(compressedBuffer).release();
+
+    }
+
+    @Test
+    public void builderThrowsIfCompressorIsConfiguredWithoutCompressedBufferFactory() {
+
+        // given
+        BatchRequest.Builder builder = createDefaultTestObjectBuilder()
+                .withCompressor(ByteBufCompressor.newBuilder().build());
+
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("compressedBufferFactory cannot be null");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void contentEncodingIsNullIfCompressorIsNotConfigured() {
+
+        // given
+        BatchRequest request = createDefaultTestObjectBuilder().build();
+
+        // when
+        String result = request.getContentEncoding();
+
+        // then
+        assertNull(result);
+
+    }
+
+    private IndexRequest createTestIndexRequest(String index, String payload) {
+        ByteBufItemSource itemSource = createTestItemSource();
+        itemSource.getSource().writeBytes(payload.getBytes(StandardCharsets.UTF_8));
+        return new IndexRequest.Builder(itemSource)
+                .index(index)
+                .type("_doc")
+                .build();
+    }
+
     public static BatchRequest.Builder createDefaultTestObjectBuilder() {
         BatchRequest.Builder builder = new BatchRequest.Builder()
                 .withObjectWriter(mock(ObjectWriter.class))
@@ -0,0 +1,205 @@
+package org.appenders.log4j2.elasticsearch.hc;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BatchResultAsyncParserTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void parsesSuccessfulResponseWithoutParsingItems() throws IOException {
+
+        // given
+        BatchResultAsyncParser parser = createDefaultTestObject();
+        String json = "{\"took\":15,\"errors\":false,\"items\":[" + item("index", 201, null) + ",{invalid json";
+
+        // when
+        feed(parser, json, 3);
+        parser.endOfInput();
+        BatchResult result = parser.getResult();
+
+        // then
+        assertTrue(parser.isDone());
+        assertTrue(result.isSucceeded());
+        assertEquals(15, result.getTook());
+        assertNull(result.getItemFailures());
+
+    }
+
+    @Test
+    public void parsesFailedItemsRegardlessOfChunkSize() throws IOException {
+
+        // given
+        String json = "{\"took\":30,\"errors\":true,\"items\":[" +
+                item("index", 201, null) + "," +
+                item("index", 429, error("es_rejected_execution_exception", "rejected")) + "," +
+                item("index", 400, error("mapper_parsing_exception", "failed to parse")) + "," +
+                "{\"create\":{\"_index\":\"test\",\"_shards\":{\"total\":2,\"failed\":0},\"tags\":[1,2],\"status\":201}}," +
+                item("index", 503, error("unavailable_shards_exception", "unavailable")) +
+                "]}";
+
+        for (int chunkSize = 1; chunkSize <= json.length(); chunkSize += 7) {
+
+            BatchResultAsyncParser parser = createDefaultTestObject();
+
+            // when
+            feed(parser, json, chunkSize);
+            parser.endOfInput();
+            BatchResult result = parser.getResult();
+
+            // then
+            assertFalse(result.isSucceeded());
+            assertEquals(30, result.getTook());
+
+            BatchItemFailures itemFailures = result.getItemFailures();
+            assertNotNull(itemFailures);
+            assertEquals(5, itemFailures.getTotalItems());
+            assertEquals(3, itemFailures.getFailedCount());
+            assertEquals(2, itemFailures.getRetryableCount());
+            assertTrue(itemFailures.isRejected());
+
+            assertFalse(itemFailures.isFailed(0));
+            assertTrue(itemFailures.isRetryable(1));
+            assertTrue(itemFailures.isFailed(2));
+            assertFalse(itemFailures.isRetryable(2));
+            assertFalse(itemFailures.isFailed(3));
+            assertTrue(itemFailures.isRetryable(4));
+
+            assertEquals("es_rejected_execution_exception", itemFailures.getFirstError().getType());
+            assertEquals("rejected", itemFailures.getFirstError().getCausedBy().getReason());
+            assertEquals(400, itemFailures.getFirstPermanentFailureStatus());
+            assertEquals("mapper_parsing_exception", itemFailures.getFirstPermanentError().getType());
+
+        }
+
+    }
+
+    @Test
+    public void parsesRootError() throws IOException {
+
+        // given
+        BatchResultAsyncParser parser = createDefaultTestObject();
+        String json = "{\"error\":" + error("test_type", "test_reason") + ",\"status\":413}";
+
+        // when
+        feed(parser, json, 5);
+        parser.endOfInput();
+        BatchResult result = parser.getResult();
+
+        // then
+        assertFalse(result.isSucceeded());
+        assertEquals(413, result.getStatusCode());
+        assertEquals("test_type", result.getError().getType());
+        assertEquals("test_reason", result.getError().getCausedBy().getReason());
+        assertNull(result.getItemFailures());
+
+    }
+
+    @Test
+    public void feedingAfterDoneIsIgnored() throws IOException {
+
+        // given
+        BatchResultAsyncParser parser = createDefaultTestObject();
+        feed(parser, "{\"errors\":false}", 100);
+
+        // when
+        feed(parser, "not a json", 100);
+        parser.endOfInput();
+
+        // then
+        assertTrue(parser.getResult().isSucceeded());
+
+    }
+
+    @Test
+    public void throwsOnMalformedInput() throws IOException {
+
+        // given
+        BatchResultAsyncParser parser = createDefaultTestObject();
+
+        expectedException.expect(IOException.class);
+
+        // when
+        feed(parser, "{\"errors\":true,\"items\":[}", 100);
+
+    }
+
+    @Test
+    public void throwsOnIncompleteInput() throws IOException {
+
+        // given
+        BatchResultAsyncParser parser = createDefaultTestObject();
+        feed(parser, "{\"errors\":true,\"items\":[", 100);
+
+        expectedException.expect(IOException.class);
+
+        // when
+        parser.endOfInput();
+
+    }
+
+    static void feed(BatchResultAsyncParser parser, String json, int chunkSize) throws IOException {
+
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        byte[] chunk = new byte[chunkSize];
+
+        for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+            int length = Math.min(chunkSize, bytes.length - offset);
+            // chunk is reused on purpose
+            System.arraycopy(bytes, offset, chunk, 0, length);
+            parser.feed(chunk, 0, length);
+        }
+
+    }
+
+    private BatchResultAsyncParser createDefaultTestObject() throws IOException {
+        return new BatchResultAsyncParser(createTestObjectReader());
+    }
+
+    static ObjectReader createTestObjectReader() {
+        return HCHttpTest.createDefaultHttpObjectFactoryBuilder().build().configuredReader();
+    }
+
+    static String item(String action, int status, String error) {
+        return "{\"" + action + "\":{\"_index\":\"test\",\"_type\":\"_doc\",\"_id\":\"1\",\"status\":" + status +
+                (error == null ? "" : ",\"error\":" + error) + "}}";
+    }
+
+    static String error(String type, String reason) {
+        return "{\"type\":\"" + type + "\",\"reason\":\"" + reason + "\",\"caused_by\":{\"type\":\"" + type + "\",\"reason\":\"" + reason + "\"}}";
+    }
+
+}
@@ -0,0 +1,157 @@
+package org.appenders.log4j2.elasticsearch.hc;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.appenders.log4j2.elasticsearch.hc.BatchResultAsyncParserTest.createTestObjectReader;
+import static org.appenders.log4j2.elasticsearch.hc.BatchResultAsyncParserTest.error;
+import static org.appenders.log4j2.elasticsearch.hc.BatchResultAsyncParserTest.item;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BatchResultAsyncResponseConsumerTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void buildResultSetsParsedResponseEntity() throws IOException {
+
+        // given
+        BatchResultAsyncResponseConsumer consumer = createDefaultTestObject();
+        HttpResponse response = mock(HttpResponse.class);
+
+        String json = "{\"took\":30,\"errors\":true,\"items\":[" +
+                item("index", 201, null) + "," +
+                item("index", 400, error("mapper_parsing_exception", "failed to parse")) +
+                "]}";
+
+        // when
+        consumer.onResponseReceived(response);
+        consumer.onEntityEnclosed(null, ContentType.APPLICATION_JSON);
+        consumer.onContentReceived(createTestContentDecoder(json), mock(IOControl.class));
+        HttpResponse result = consumer.buildResult(null);
+
+        // then
+        assertSame(response, result);
+
+        ArgumentCaptor<ParsedResponseEntity> captor = ArgumentCaptor.forClass(ParsedResponseEntity.class);
+        verify(response).setEntity(captor.capture());
+
+        BatchResult batchResult = (BatchResult) captor.getValue().getParsed();
+        assertFalse(batchResult.isSucceeded());
+        assertEquals(30, batchResult.getTook());
+        assertEquals(2, batchResult.getItemFailures().getTotalItems());
+        assertTrue(batchResult.getItemFailures().isFailed(1));
+
+    }
+
+    @Test
+    public void onContentReceivedConsumesContentLargerThanChunk() throws IOException {
+
+        // given
+        BatchResultAsyncResponseConsumer consumer = createDefaultTestObject();
+        HttpResponse response = mock(HttpResponse.class);
+
+        StringBuilder json = new StringBuilder("{\"took\":30,\"errors\":true,\"items\":[");
+        int expectedItems = BatchResultAsyncResponseConsumer.CHUNK_SIZE / 50;
+        for (int ii = 0; ii < expectedItems; ii++) {
+            json.append(ii == 0 ? "" : ",").append(item("index", 201, null));
+        }
+        json.append("]}");
+
+        ContentDecoder decoder = createTestContentDecoder(json.toString());
+
+        // when
+        consumer.onResponseReceived(response);
+        consumer.onEntityEnclosed(null, ContentType.APPLICATION_JSON);
+        consumer.onContentReceived(decoder, mock(IOControl.class));
+        consumer.buildResult(null);
+
+        // then
+        ArgumentCaptor<ParsedResponseEntity> captor = ArgumentCaptor.forClass(ParsedResponseEntity.class);
+        verify(response).setEntity(captor.capture());
+
+        BatchResult batchResult = (BatchResult) captor.getValue().getParsed();
+        assertEquals(expectedItems, batchResult.getItemFailures().getTotalItems());
+        assertEquals(0, batchResult.getItemFailures().getFailedCount());
+
+    }
+
+    @Test
+    public void buildResultThrowsIfEntityWasNotEnclosed() throws IOException {
+
+        // given
+        BatchResultAsyncResponseConsumer consumer = createDefaultTestObject();
+        consumer.onResponseReceived(mock(HttpResponse.class));
+
+        expectedException.expect(IOException.class);
+        expectedException.expectMessage("Response body not available");
+
+        // when
+        consumer.buildResult(null);
+
+    }
+
+    private BatchResultAsyncResponseConsumer createDefaultTestObject() {
+        return new BatchResultAsyncResponseConsumer(createTestObjectReader());
+    }
+
+    private ContentDecoder createTestContentDecoder(String content) throws IOException {
+
+        ByteBuffer source = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+
+        ContentDecoder decoder = mock(ContentDecoder.class);
+        when(decoder.read(any(ByteBuffer.class))).thenAnswer(invocation -> {
+            ByteBuffer target = invocation.getArgument(0);
+            if (!source.hasRemaining()) {
+                return -1;
+            }
+            int length = Math.min(source.remaining(), target.remaining());
+            ByteBuffer slice = source.slice();
+            slice.limit(length);
+            target.put(slice);
+            source.position(source.position() + length);
+            return length;
+        });
+
+        return decoder;
+    }
+
+}
@@ -21,12 +21,20 @@ package org.appenders.log4j2.elasticsearch.hc;
  */
 
 
+import org.appenders.log4j2.elasticsearch.AdaptiveBatchSize;
+import org.appenders.log4j2.elasticsearch.AdaptiveBulkEmitter;
+import org.appenders.log4j2.elasticsearch.BatchEmitter;
 import org.appenders.log4j2.elasticsearch.BatchEmitterFactory;
 import org.appenders.log4j2.elasticsearch.NoopFailoverPolicy;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
+import java.util.List;
+
 import static org.appenders.log4j2.elasticsearch.hc.HCHttpTest.createDefaultHttpObjectFactoryBuilder;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.eq;
 
@@ -90,6 +98,64 @@ public class BulkEmitterFactoryTest {
 
     }
 
+    @Test
+    public void createsAdaptiveBulkEmitterIfAdaptiveBatchSizeIsConfigured() {
+
+        // given
+        BatchEmitterFactory factory = new BulkEmitterFactory();
+        HCHttp clientObjectFactory = createDefaultHttpObjectFactoryBuilder()
+                .withAdaptiveBatchSize(AdaptiveBatchSize.newBuilder().build())
+                .build();
+
+        // when
+        BatchEmitter emitter = factory.createInstance(1, 1, clientObjectFactory, new NoopFailoverPolicy());
+
+        // then
+        assertTrue(emitter instanceof AdaptiveBulkEmitter);
+
+    }
+
+    @Test
+    public void eachEmitterIsControlledByItsOwnAdaptiveBatchSize() {
+
+        // given
+        BatchEmitterFactory factory = new BulkEmitterFactory();
+        AdaptiveBatchSize adaptiveBatchSize = AdaptiveBatchSize.newBuilder().build();
+        HCHttp clientObjectFactory = Mockito.spy(createDefaultHttpObjectFactoryBuilder()
+                .withAdaptiveBatchSize(adaptiveBatchSize)
+                .build());
+        NoopFailoverPolicy failoverPolicy = new NoopFailoverPolicy();
+
+        // when
+        factory.createInstance(1, 1, clientObjectFactory, failoverPolicy);
+        factory.createInstance(1, 1, clientObjectFactory, failoverPolicy);
+
+        // then
+        ArgumentCaptor<AdaptiveBatchSize> captor = ArgumentCaptor.forClass(AdaptiveBatchSize.class);
+        Mockito.verify(clientObjectFactory, Mockito.times(2)).createBatchListener(eq(failoverPolicy), captor.capture());
+
+        List<AdaptiveBatchSize> controllers = captor.getAllValues();
+        assertNotSame(adaptiveBatchSize, controllers.get(0));
+        assertNotSame(adaptiveBatchSize, controllers.get(1));
+        assertNotSame(controllers.get(0), controllers.get(1));
+
+    }
+
+    @Test
+    public void createsBulkEmitterIfAdaptiveBatchSizeIsNotConfigured() {
+
+        // given
+        BatchEmitterFactory factory = new BulkEmitterFactory();
+        HCHttp clientObjectFactory = createDefaultHttpObjectFactoryBuilder().build();
+
+        // when
+        BatchEmitter emitter = factory.createInstance(1, 1, clientObjectFactory, new NoopFailoverPolicy());
+
+        // then
+        assertFalse(emitter instanceof AdaptiveBulkEmitter);
+
+    }
+
     public static class TestHCHttp extends HCHttp {
         protected TestHCHttp() {
             super(createDefaultHttpObjectFactoryBuilder());
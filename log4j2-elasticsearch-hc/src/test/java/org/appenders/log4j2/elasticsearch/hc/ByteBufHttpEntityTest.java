@@ -24,6 +24,8 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.CompositeByteBuf;
 import org.apache.http.Header;
 import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -31,6 +33,8 @@ import org.junit.rules.ExpectedException;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Random;
 
 import static org.appenders.log4j2.elasticsearch.GenericItemSourcePoolTest.byteBufAllocator;
@@ -38,9 +42,13 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class ByteBufHttpEntityTest {
 
@@ -153,6 +161,77 @@ public class ByteBufHttpEntityTest {
 
     }
 
+    @Test
+    public void produceContentWritesAllComponentsAndCompletesEncoder() throws IOException {
+
+        // given
+        CompositeByteBuf byteBuf = createDefaultTestByteBuf();
+        byteBuf.addComponent(true, byteBufAllocator.buffer().writeBytes("test1".getBytes(StandardCharsets.UTF_8)));
+        byteBuf.addComponent(true, byteBufAllocator.buffer().writeBytes("test2".getBytes(StandardCharsets.UTF_8)));
+        ByteBufHttpEntity entity = new ByteBufHttpEntity(byteBuf, byteBuf.writerIndex(), null);
+
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        ContentEncoder encoder = mock(ContentEncoder.class);
+        when(encoder.write(any())).thenAnswer(invocation -> {
+            ByteBuffer nioBuffer = invocation.getArgument(0);
+            int remaining = nioBuffer.remaining();
+            while (nioBuffer.hasRemaining()) {
+                written.write(nioBuffer.get());
+            }
+            return remaining;
+        });
+
+        // when
+        entity.produceContent(encoder, mock(IOControl.class));
+
+        // then
+        assertEquals("test1test2", new String(written.toByteArray(), StandardCharsets.UTF_8));
+        assertFalse(byteBuf.isReadable());
+        verify(encoder).complete();
+
+    }
+
+    @Test
+    public void produceContentDoesNotCompleteEncoderIfEncoderIsFull() throws IOException {
+
+        // given
+        CompositeByteBuf byteBuf = createDefaultTestByteBuf();
+        byteBuf.addComponent(true, byteBufAllocator.buffer().writeBytes("test1".getBytes(StandardCharsets.UTF_8)));
+        byteBuf.addComponent(true, byteBufAllocator.buffer().writeBytes("test2".getBytes(StandardCharsets.UTF_8)));
+        ByteBufHttpEntity entity = new ByteBufHttpEntity(byteBuf, byteBuf.writerIndex(), null);
+
+        ContentEncoder encoder = mock(ContentEncoder.class);
+        when(encoder.write(any())).thenAnswer(invocation -> {
+            ByteBuffer nioBuffer = invocation.getArgument(0);
+            nioBuffer.get();
+            nioBuffer.get();
+            return 2;
+        });
+
+        // when
+        entity.produceContent(encoder, mock(IOControl.class));
+
+        // then
+        assertEquals(2, byteBuf.readerIndex());
+        verify(encoder, never()).complete();
+
+    }
+
+    @Test
+    public void closeResetsByteBufReaderIndex() {
+
+        // given
+        ByteBuf byteBuf = spy(createDefaultTestByteBuf());
+        ByteBufHttpEntity entity = new ByteBufHttpEntity(byteBuf, 0, null);
+
+        // when
+        entity.close();
+
+        // then
+        verify(byteBuf).readerIndex(eq(0));
+
+    }
+
     private CompositeByteBuf createDefaultTestByteBuf() {
         return new CompositeByteBuf(byteBufAllocator, false, 2);
     }
@@ -24,8 +24,10 @@ import com.fasterxml.jackson.databind.ObjectReader;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.CompositeByteBuf;
 import org.apache.logging.log4j.core.config.ConfigurationException;
+import org.appenders.log4j2.elasticsearch.AdaptiveBatchSize;
 import org.appenders.log4j2.elasticsearch.Auth;
 import org.appenders.log4j2.elasticsearch.BatchOperations;
+import org.appenders.log4j2.elasticsearch.ByteBufCompressor;
 import org.appenders.log4j2.elasticsearch.ByteBufItemSourceTest;
 import org.appenders.log4j2.elasticsearch.ClientObjectFactory;
 import org.appenders.log4j2.elasticsearch.ClientProvider;
@@ -36,20 +38,31 @@ import org.appenders.log4j2.elasticsearch.NoopFailoverPolicy;
 import org.appenders.log4j2.elasticsearch.Operation;
 import org.appenders.log4j2.elasticsearch.PooledItemSourceFactory;
 import org.appenders.log4j2.elasticsearch.PooledItemSourceFactoryTest;
+import org.appenders.log4j2.elasticsearch.PriorityLanes;
 import org.appenders.log4j2.elasticsearch.backoff.BackoffPolicy;
+import org.appenders.log4j2.elasticsearch.backoff.BatchLimitBackoffPolicy;
+import org.appenders.log4j2.elasticsearch.backoff.WaitThenRejectBackoffPolicy;
 import org.appenders.log4j2.elasticsearch.failover.FailedItemSource;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 import static org.appenders.log4j2.elasticsearch.ByteBufItemSourceTest.createTestItemSource;
@@ -61,7 +74,9 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockingDetails;
 import static org.mockito.Mockito.never;
@@ -318,6 +333,36 @@ public class HCHttpTest {
         assertEquals(batchRequest, captor.getValue());
     }
 
+    @Test
+    public void clientIsCalledWithAsyncResponseConsumerIfIncrementalResponseParsingEnabled() {
+
+        // given
+        HCHttp.Builder builder = createDefaultHttpObjectFactoryBuilder()
+                .withIncrementalResponseParsing(true);
+        ClientObjectFactory<HttpClient, BatchRequest> config = spy(builder.build());
+
+        HttpClient mockedHttpClient = mock(HttpClient.class);
+        when(config.createClient()).thenReturn(mockedHttpClient);
+
+        Function<BatchRequest, Boolean> listener = config.createBatchListener(new NoopFailoverPolicy());
+
+        BatchRequest batchRequest = createTestBatch(
+                new BatchRequest.Builder(),
+                createDefaultTestBuffereItemSource("test1"));
+
+        // when
+        listener.apply(batchRequest);
+
+        // then
+        verify(mockedHttpClient, never()).executeAsync(any(), any());
+        verify(mockedHttpClient).executeAsync(
+                eq(batchRequest),
+                any(),
+                any(BatchResultAsyncResponseConsumer.class),
+                any());
+
+    }
+
     @Test
     public void batchListenerExecutesOperationsIfOperationsAvailable() throws Exception {
 
@@ -581,6 +626,152 @@ public class HCHttpTest {
     }
 
 
+    @Test
+    public void failoverHandlerIsExecutedWhenBackoffPolicyRejectsDeferredRequest() {
+
+        // given
+        AtomicReference<Consumer<BatchRequest>> onRejected = new AtomicReference<>();
+        TestBackoffPolicy<BatchRequest> backoffPolicy = new TestBackoffPolicy<BatchRequest>() {
+            @Override
+            public void tryRegister(BatchRequest data, Consumer<BatchRequest> onRegistered, Consumer<BatchRequest> rejected) {
+                onRejected.set(rejected);
+            }
+        };
+
+        HCHttp.Builder builder = createDefaultHttpObjectFactoryBuilder()
+                .withBackoffPolicy(backoffPolicy);
+
+        FailoverPolicy failoverPolicy = mock(FailoverPolicy.class);
+        Function<BatchRequest, Boolean> failoverHandler = mock(Function.class);
+
+        HCHttp config = spy(builder.build());
+        when(config.createFailureHandler(eq(failoverPolicy))).thenReturn(failoverHandler);
+
+        BatchRequest batchRequest = createTestBatch(spy(new BatchRequest.Builder()), createDefaultTestBuffereItemSource("test1"));
+
+        Function<BatchRequest, Boolean> batchListener = config.createBatchListener(failoverPolicy);
+        batchListener.apply(batchRequest);
+
+        verify(failoverHandler, never()).apply(any());
+        verify(batchRequest, never()).completed();
+
+        // when
+        onRejected.get().accept(batchRequest);
+
+        // then
+        verify(failoverHandler, times(1)).apply(eq(batchRequest));
+        verify(batchRequest, times(1)).completed();
+
+    }
+
+    @Test
+    public void highPriorityLaneBatchIsNotLimitedByBackoffPolicy() {
+
+        // given
+        BackoffPolicy<BatchRequest> backoffPolicy = spy(new TestBackoffPolicy<BatchRequest>() {
+            @Override
+            public boolean shouldApply(BatchRequest data) {
+                return true;
+            }
+        });
+
+        HCHttp config = spy(createDefaultHttpObjectFactoryBuilder()
+                .withBackoffPolicy(backoffPolicy)
+                .build());
+
+        HttpClient mockedHttpClient = mock(HttpClient.class);
+        when(config.createClient()).thenReturn(mockedHttpClient);
+
+        FailoverPolicy failoverPolicy = PriorityLanes.newBuilder().build()
+                .highPriorityLane(mock(FailoverPolicy.class));
+        Function<BatchRequest, Boolean> batchListener = config.createBatchListener(failoverPolicy);
+
+        BatchRequest batchRequest = createTestBatch(spy(new BatchRequest.Builder()), createDefaultTestBuffereItemSource("test1"));
+
+        // when
+        batchListener.apply(batchRequest);
+
+        // then
+        verify(mockedHttpClient).executeAsync(eq(batchRequest), any());
+        verify(backoffPolicy, never()).shouldApply(any());
+        verify(backoffPolicy, never()).register(any());
+        verify(batchRequest, never()).completed();
+
+    }
+
+    @Test
+    public void lowPriorityLaneBatchIsLimitedByBackoffPolicy() {
+
+        // given
+        TestBackoffPolicy<BatchRequest> backoffPolicy = new TestBackoffPolicy<BatchRequest>() {
+            @Override
+            public boolean shouldApply(BatchRequest data) {
+                return true;
+            }
+        };
+
+        HCHttp config = spy(createDefaultHttpObjectFactoryBuilder()
+                .withBackoffPolicy(backoffPolicy)
+                .build());
+
+        HttpClient mockedHttpClient = mock(HttpClient.class);
+        when(config.createClient()).thenReturn(mockedHttpClient);
+
+        FailoverPolicy delegate = mock(FailoverPolicy.class);
+        FailoverPolicy failoverPolicy = PriorityLanes.newBuilder().build()
+                .lowPriorityLane(delegate);
+        Function<BatchRequest, Boolean> batchListener = config.createBatchListener(failoverPolicy);
+
+        BatchRequest batchRequest = createTestBatch(spy(new BatchRequest.Builder()), createDefaultTestBuffereItemSource("test1"));
+
+        // when
+        batchListener.apply(batchRequest);
+
+        // then
+        verify(mockedHttpClient, never()).executeAsync(any(), any());
+        verify(delegate).deliver(any(FailedItemSource.class));
+        verify(batchRequest).completed();
+
+    }
+
+    @Test
+    public void lowPriorityLaneBatchIsShedUnderBackpressure() {
+
+        // given
+        BackoffPolicy<BatchRequest> backoffPolicy = spy(new TestBackoffPolicy<BatchRequest>());
+
+        HCHttp config = spy(createDefaultHttpObjectFactoryBuilder()
+                .withBackoffPolicy(backoffPolicy)
+                .build());
+
+        HttpClient mockedHttpClient = mock(HttpClient.class);
+        when(config.createClient()).thenReturn(mockedHttpClient);
+
+        PriorityLanes priorityLanes = PriorityLanes.newBuilder()
+                .withBackpressureWindowMillis(60000)
+                .build();
+        FailoverPolicy delegate = mock(FailoverPolicy.class);
+        Function<BatchRequest, Boolean> batchListener = config.createBatchListener(priorityLanes.lowPriorityLane(delegate));
+
+        BatchRequest batchRequest = createTestBatch(
+                spy(new BatchRequest.Builder()),
+                createDefaultTestBuffereItemSource("test1"),
+                createDefaultTestBuffereItemSource("test2"));
+
+        priorityLanes.onBackpressure();
+
+        // when
+        batchListener.apply(batchRequest);
+
+        // then
+        verify(mockedHttpClient, never()).executeAsync(any(), any());
+        verify(backoffPolicy, never()).register(any());
+        verify(delegate, never()).deliver(any(FailedItemSource.class));
+        verify(batchRequest).completed();
+        assertEquals(2, priorityLanes.getShedCount());
+
+    }
+
     @Test
     public void failureHandlerDeregistersRequestFromBackoffPolicyAfterException() {
 
@@ -611,6 +802,261 @@ public class HCHttpTest {
 
     }
 
+    @Test
+    public void resultHandlerReportsServiceTimeToAdaptiveBatchSize() {
+
+        // given
+        AdaptiveBatchSize adaptiveBatchSize = mock(AdaptiveBatchSize.class);
+        HCHttp objectFactory = createDefaultHttpObjectFactoryBuilder()
+                .withAdaptiveBatchSize(adaptiveBatchSize)
+                .build();
+
+        BatchRequest batchRequest = createTestBatch(spy(new BatchRequest.Builder()), createDefaultTestBuffereItemSource("test1"));
+
+        ResponseHandler<BatchResult> responseHandler = objectFactory.createResultHandler(batchRequest, mock(Function.class));
+
+        int expectedTook = new Random().nextInt(1000) + 1;
+        BatchResult result = new BatchResult(expectedTook, false, null, 200, null);
+
+        // when
+        responseHandler.completed(result);
+
+        // then
+        verify(adaptiveBatchSize).onSuccess(eq((long) expectedTook), anyLong());
+        verify(adaptiveBatchSize, never()).onRejection();
+
+    }
+
+    @Test
+    public void resultHandlerReportsRejectedItemsToAdaptiveBatchSize() {
+
+        // given
+        AdaptiveBatchSize adaptiveBatchSize = mock(AdaptiveBatchSize.class);
+        HCHttp objectFactory = createDefaultHttpObjectFactoryBuilder()
+                .withAdaptiveBatchSize(adaptiveBatchSize)
+                .build();
+
+        BatchRequest batchRequest = createTestBatch(spy(new BatchRequest.Builder()), createDefaultTestBuffereItemSource("test1"));
+
+        ResponseHandler<BatchResult> responseHandler = objectFactory.createResultHandler(batchRequest, mock(Function.class));
+
+        BatchItemResult rejectedItem = new BatchItemResult();
+        rejectedItem.setStatus(HCHttp.TOO_MANY_REQUESTS);
+        BatchResult result = new BatchResult(1, true, null, 200, Collections.singletonList(rejectedItem));
+
+        // when
+        responseHandler.completed(result);
+
+        // then
+        verify(adaptiveBatchSize).onRejection();
+        verify(adaptiveBatchSize, never()).onSuccess(anyLong(), anyLong());
+
+    }
+
+    @Test
+    public void resultHandlerReportsFailedRequestsToAdaptiveBatchSize() {
+
+        // given
+        AdaptiveBatchSize adaptiveBatchSize = mock(AdaptiveBatchSize.class);
+        HCHttp objectFactory = createDefaultHttpObjectFactoryBuilder()
+                .withAdaptiveBatchSize(adaptiveBatchSize)
+                .build();
+
+        BatchRequest batchRequest = createTestBatch(spy(new BatchRequest.Builder()), createDefaultTestBuffereItemSource("test1"));
+
+        ResponseHandler<BatchResult> responseHandler = objectFactory.createResultHandler(batchRequest, mock(Function.class));
+
+        // when
+        responseHandler.failed(new IOException("test exception"));
+
+        // then
+        verify(adaptiveBatchSize).onRejection();
+
+    }
+
+    @Test
+    public void isRejectedReturnsFalseForNonRejectedFailures() {
+
+        // given
+        BatchItemResult failedItem = new BatchItemResult();
+        failedItem.setStatus(400);
+        BatchResult result = new BatchResult(1, true, null, 200, Collections.singletonList(failedItem));
+
+        // when
+        boolean rejected = HCHttp.isRejected(result);
+
+        // then
+        assertFalse(rejected);
+        assertTrue(HCHttp.isRejected(new BatchResult(1, false, null, HCHttp.TOO_MANY_REQUESTS, null)));
+
+    }
+
+    @Test
+    public void resultHandlerRedirectsOnlyFailedItems() {
+
+        // given
+        HCHttp objectFactory = createDefaultHttpObjectFactoryBuilder().build();
+
+        ItemSource<ByteBuf> succeeded = createDefaultTestBuffereItemSource("test1");
+        ItemSource<ByteBuf> rejected = createDefaultTestBuffereItemSource("test2");
+        ItemSource<ByteBuf> permanentlyFailed = createDefaultTestBuffereItemSource("test3");
+        ItemSource<ByteBuf> unavailable = createDefaultTestBuffereItemSource("test4");
+
+        BatchRequest batchRequest = createTestBatch(spy(new BatchRequest.Builder()), succeeded, rejected, permanentlyFailed, unavailable);
+
+        List<Object> redirected = new ArrayList<>();
+        Function<BatchRequest, Boolean> failoverHandler = request -> {
+            request.getIndexRequests().forEach(indexRequest -> redirected.add(indexRequest.getSource()));
+            return true;
+        };
+
+        ResponseHandler<BatchResult> responseHandler = objectFactory.createResultHandler(batchRequest, failoverHandler);
+
+        BatchResult result = new BatchResult(1, true, null, 200, Arrays.asList(
+                createTestBatchItemResult(201),
+                createTestBatchItemResult(HCHttp.TOO_MANY_REQUESTS),
+                createTestBatchItemResult(400),
+                createTestBatchItemResult(HCHttp.SERVICE_UNAVAILABLE)
+        ));
+
+        // when
+        responseHandler.completed(result);
+
+        // then
+        assertEquals(3, redirected.size());
+        assertEquals(rejected, redirected.get(0));
+        assertEquals(permanentlyFailed, redirected.get(1));
+        assertEquals(unavailable, redirected.get(2));
+
+    }
+
+    @Test
+    public void resultHandlerRedirectsPermanentlyFailedItems() {
+
+        // given
+        HCHttp objectFactory = createDefaultHttpObjectFactoryBuilder().build();
+
+        BatchRequest batchRequest = createTestBatch(spy(new BatchRequest.Builder()),
+                createDefaultTestBuffereItemSource("test1"),
+                createDefaultTestBuffereItemSource("test2"));
+
+        Function<BatchRequest, Boolean> failoverHandler = mock(Function.class);
+        ResponseHandler<BatchResult> responseHandler = objectFactory.createResultHandler(batchRequest, failoverHandler);
+
+        BatchItemResult failedItem = createTestBatchItemResult(400);
+        Error error = new Error();
+        error.setType("mapper_parsing_exception");
+        failedItem.setError(error);
+
+        BatchResult result = new BatchResult(1, true, null, 200, Arrays.asList(
+                createTestBatchItemResult(201),
+                failedItem
+        ));
+
+        // when
+        responseHandler.completed(result);
+
+        // then
+        verify(failoverHandler).apply(eq(batchRequest));
+        verify(batchRequest).completed();
+
+    }
+
+    @Test
+    public void retainFailedItemsReleasesRemovedItems() {
+
+        // given
+        ItemSource<ByteBuf> succeeded = spy(createDefaultTestBuffereItemSource("test1"));
+        ItemSource<ByteBuf> rejected = spy(createDefaultTestBuffereItemSource("test2"));
+
+        BatchRequest batchRequest = createTestBatch(spy(new BatchRequest.Builder()), succeeded, rejected);
+
+        BatchResult result = new BatchResult(1, true, null, 200, Arrays.asList(
+                createTestBatchItemResult(200),
+                createTestBatchItemResult(HCHttp.TOO_MANY_REQUESTS)
+        ));
+
+        // when
+        int retained = HCHttp.retainFailedItems(batchRequest, result);
+
+        // then
+        assertEquals(1, retained);
+        assertEquals(1, batchRequest.getIndexRequests().size());
+        verify(succeeded).release();
+        verify(rejected, never()).release();
+
+    }
+
+    @Test
+    public void retainFailedItemsRetainsPermanentlyFailedItems() {
+
+        // given
+        ItemSource<ByteBuf> succeeded = spy(createDefaultTestBuffereItemSource("test1"));
+        ItemSource<ByteBuf> permanentlyFailed = spy(createDefaultTestBuffereItemSource("test2"));
+        ItemSource<ByteBuf> rejected = spy(createDefaultTestBuffereItemSource("test3"));
+
+        BatchRequest batchRequest = createTestBatch(spy(new BatchRequest.Builder()), succeeded, permanentlyFailed, rejected);
+
+        BatchResult result = new BatchResult(1, true, null, 200, Arrays.asList(
+                createTestBatchItemResult(201),
+                createTestBatchItemResult(400),
+                createTestBatchItemResult(HCHttp.TOO_MANY_REQUESTS)
+        ));
+
+        // when
+        int retained = HCHttp.retainFailedItems(batchRequest, result);
+
+        // then
+        assertEquals(2, retained);
+        assertEquals(2, batchRequest.getIndexRequests().size());
+        verify(succeeded).release();
+        verify(permanentlyFailed, never()).release();
+        verify(rejected, never()).release();
+
+    }
+
+    @Test
+    public void retainFailedItemsRetainsAllItemsIfItemResultsDoNotMatch() {
+
+        // given
+        BatchRequest batchRequest = createTestBatch(spy(new BatchRequest.Builder()),
+                createDefaultTestBuffereItemSource("test1"),
+                createDefaultTestBuffereItemSource("test2"));
+
+        BatchResult result = new BatchResult(1, true, null, 200, Collections.singletonList(createTestBatchItemResult(400)));
+
+        // when
+        int retained = HCHttp.retainFailedItems(batchRequest, result);
+
+        // then
+        assertEquals(2, retained);
+        assertEquals(2, batchRequest.getIndexRequests().size());
+
+    }
+
+    @Test
+    public void retainFailedItemsRetainsAllItemsIfWholeRequestFailed() {
+
+        // given
+        BatchRequest batchRequest = createTestBatch(spy(new BatchRequest.Builder()),
+                createDefaultTestBuffereItemSource("test1"));
+
+        BatchResult result = new BatchResult(1, false, new Error(), 500, null);
+
+        // when
+        int retained = HCHttp.retainFailedItems(batchRequest, result);
+
+        // then
+        assertEquals(1, retained);
+
+    }
+
+    private BatchItemResult createTestBatchItemResult(int status) {
+        BatchItemResult item = new BatchItemResult();
+        item.setStatus(status);
+        return item;
+    }
+
     private ItemSource<ByteBuf> createDefaultTestBuffereItemSource(String payload) {
         CompositeByteBuf buffer = ByteBufItemSourceTest.createDefaultTestByteBuf();
         buffer.writeBytes(payload.getBytes());
@@ -639,6 +1085,49 @@ public class HCHttpTest {
 
     }
 
+    @Test
+    public void lifecycleStartStartsCompression() {
+
+        // given
+        ByteBufCompressor compression = ByteBufCompressor.newBuilder().build();
+
+        HCHttp objectFactory = spy(createDefaultHttpObjectFactoryBuilder()
+                .withCompression(compression).build());
+
+        HttpClient client = mock(HttpClient.class);
+        when(objectFactory.createClient()).thenReturn(client);
+
+        // when
+        objectFactory.start();
+
+        // then
+        assertTrue(compression.isStarted());
+
+    }
+
+    @Test
+    public void lifecycleStopStopsCompression() {
+
+        // given
+        ByteBufCompressor compression = ByteBufCompressor.newBuilder().build();
+
+        HCHttp objectFactory = spy(createDefaultHttpObjectFactoryBuilder()
+                .withCompression(compression).build());
+
+        HttpClient client = mock(HttpClient.class);
+        ClientProvider<HttpClient> clientProvider = () -> client;
+        when(objectFactory.getClientProvider(any())).thenReturn(clientProvider);
+
+        objectFactory.start();
+
+        // when
+        objectFactory.stop();
+
+        // then
+        assertTrue(compression.isStopped());
+
+    }
+
     @Test
     public void lifecycleStopStopsItemSourceFactoryOnlyOnce() {
 
@@ -709,6 +1198,48 @@ public class HCHttpTest {
 
     }
 
+    @Test
+    public void lifecycleStopRedirectsDeferredBatchesToFailoverBeforeClientIsStopped() {
+
+        // given
+        BatchLimitBackoffPolicy<BatchRequest> delegate = new BatchLimitBackoffPolicy<>(1);
+        delegate.register(null);
+
+        WaitThenRejectBackoffPolicy<BatchRequest> backoffPolicy =
+                new WaitThenRejectBackoffPolicy<>(delegate, 10000, 10000, mock(ScheduledExecutorService.class));
+
+        HCHttp objectFactory = spy(createDefaultHttpObjectFactoryBuilder()
+                .withBackoffPolicy(backoffPolicy)
+                .build());
+
+        HttpClient client = mock(HttpClient.class);
+        ClientProvider<HttpClient> clientProvider = () -> client;
+        when(objectFactory.getClientProvider(any())).thenReturn(clientProvider);
+
+        FailoverPolicy failoverPolicy = mock(FailoverPolicy.class);
+        Function<BatchRequest, Boolean> failoverHandler = mock(Function.class);
+        when(objectFactory.createFailureHandler(eq(failoverPolicy))).thenReturn(failoverHandler);
+
+        objectFactory.start();
+        objectFactory.createClient();
+
+        BatchRequest batchRequest = createTestBatch(spy(new BatchRequest.Builder()), createDefaultTestBuffereItemSource("test1"));
+        objectFactory.createBatchListener(failoverPolicy).apply(batchRequest);
+
+        verify(failoverHandler, never()).apply(any());
+
+        // when
+        objectFactory.stop();
+
+        // then
+        InOrder inOrder = inOrder(failoverHandler, batchRequest, client);
+        inOrder.verify(failoverHandler).apply(eq(batchRequest));
+        inOrder.verify(batchRequest).completed();
+        inOrder.verify(client).stop();
+        assertTrue(backoffPolicy.isStopped());
+
+    }
+
     @Test
     public void lifecycleStopDoesNotStopClientIfClientNotCreated() {
 
@@ -169,6 +169,48 @@ public class HCRequestFactoryTest {
 
     }
 
+    @Test
+    public void createsStreamingEntityForBatchRequestIfConfigured() throws IOException {
+
+        // given
+        HCRequestFactory factory = new HCRequestFactory(true);
+        String expectedUrl = UUID.randomUUID().toString();
+
+        BatchRequest request = BatchRequestTest.createDefaultTestObjectBuilder().build();
+
+        // when
+        HttpEntityEnclosingRequest result = (HttpEntityEnclosingRequest) factory.create(expectedUrl, request);
+
+        // then
+        assertTrue(result.getEntity() instanceof BatchRequestStreamingEntity);
+        assertTrue(result.getEntity().isChunked());
+
+    }
+
+    @Test
+    public void setsContentEncodingOfCompressedBatchRequest() throws IOException {
+
+        // given
+        HCRequestFactory factory = new HCRequestFactory(true);
+        String expectedUrl = UUID.randomUUID().toString();
+
+        BatchRequest request = mock(BatchRequest.class);
+        when(request.getHttpMethodName()).thenReturn("POST");
+        when(request.getContentEncoding()).thenReturn("gzip");
+
+        ItemSource<ByteBuf> itemSource = mock(ItemSource.class);
+        when(itemSource.getSource()).thenReturn(new CompositeByteBuf(UnpooledByteBufAllocator.DEFAULT, false, 2));
+        when(request.serialize()).thenReturn(itemSource);
+
+        // when
+        HttpEntityEnclosingRequest result = (HttpEntityEnclosingRequest) factory.create(expectedUrl, request);
+
+        // then
+        assertTrue(result.getEntity() instanceof ByteBufHttpEntity);
+        assertEquals("gzip", result.getEntity().getContentEncoding().getValue());
+
+    }
+
     public static Request createDefaultMockRequest(String expectedUrl, String httpMethodName) throws IOException {
         Request request = mock(Request.class);
         when(request.getURI()).thenReturn(expectedUrl);
@@ -0,0 +1,403 @@
+package org.appenders.log4j2.elasticsearch.hc;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class HealthAwareServerPoolTest {
+
+    private static final int TEST_FAILURE_THRESHOLD = 2;
+    private static final long TEST_EJECTION_TIME = 10000;
+    private static final long TEST_MAX_EJECTION_TIME = 30000;
+
+    @Test
+    public void returnsOnlyServerIfOnlyOneConfigured() {
+
+        // given
+        String expectedServer = UUID.randomUUID().toString();
+        HealthAwareServerPool serverPool = createTestServerPool(expectedServer);
+
+        // when
+        String result = serverPool.getNext();
+
+        // then
+        assertEquals(expectedServer, result);
+
+    }
+
+    @Test
+    public void returnsAllServersEventually() {
+
+        // given
+        HealthAwareServerPool serverPool = createTestServerPool("server1", "server2", "server3");
+
+        // when
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            result.add(serverPool.getNext());
+        }
+
+        // then
+        assertEquals(3, result.size());
+
+    }
+
+    @Test
+    public void prefersServerWithLessRequestsInFlight() {
+
+        // given
+        HealthAwareServerPool serverPool = createTestServerPool("server1", "server2");
+        serverPool.track("server1", mock(FutureCallback.class));
+
+        // when
+        String result = serverPool.getNext();
+
+        // then
+        assertEquals("server2", result);
+
+    }
+
+    @Test
+    public void prefersServerWithLowerLatency() {
+
+        // given
+        HealthAwareServerPool serverPool = createTestServerPool("server1", "server2");
+        serverPool.getStats("server1").onSuccess(1000000);
+        serverPool.getStats("server2").onSuccess(1000);
+
+        // when
+        String result = serverPool.getNext();
+
+        // then
+        assertEquals("server2", result);
+
+    }
+
+    @Test
+    public void ewmaLatencyIsUpdatedOnEachResponse() {
+
+        // given
+        HealthAwareServerPool serverPool = createTestServerPool("server1");
+        HealthAwareServerPool.ServerStats stats = serverPool.getStats("server1");
+
+        // when
+        stats.onSuccess(1000);
+        stats.onSuccess(2000);
+
+        // then
+        double expected = HealthAwareServerPool.EWMA_WEIGHT * 2000 + (1 - HealthAwareServerPool.EWMA_WEIGHT) * 1000;
+        assertEquals(expected, stats.getEwmaLatencyNanos(), 0.001);
+
+    }
+
+    @Test
+    public void serverIsEjectedAfterConsecutiveFailures() {
+
+        // given
+        HealthAwareServerPool serverPool = createTestServerPool("server1", "server2");
+        HealthAwareServerPool.ServerStats stats = serverPool.getStats("server1");
+        long now = System.currentTimeMillis();
+
+        // when
+        for (int i = 0; i < TEST_FAILURE_THRESHOLD; i++) {
+            stats.onFailure(1000, now);
+        }
+
+        // then
+        assertFalse(stats.isAvailable(now));
+        assertEquals(now + TEST_EJECTION_TIME, stats.getEjectedUntil());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("server2", serverPool.getNext());
+        }
+
+    }
+
+    @Test
+    public void serverIsNotEjectedIfFailuresAreNotConsecutive() {
+
+        // given
+        HealthAwareServerPool serverPool = createTestServerPool("server1", "server2");
+        HealthAwareServerPool.ServerStats stats = serverPool.getStats("server1");
+        long now = System.currentTimeMillis();
+
+        // when
+        for (int i = 0; i < TEST_FAILURE_THRESHOLD * 2; i++) {
+            stats.onFailure(1000, now);
+            stats.onSuccess(1000);
+        }
+
+        // then
+        assertTrue(stats.isAvailable(now));
+
+    }
+
+    @Test
+    public void serverIsReadmittedAfterEjectionTime() {
+
+        // given
+        HealthAwareServerPool serverPool = createTestServerPool("server1", "server2");
+        HealthAwareServerPool.ServerStats stats = serverPool.getStats("server1");
+        long now = System.currentTimeMillis();
+
+        // when
+        for (int i = 0; i < TEST_FAILURE_THRESHOLD; i++) {
+            stats.onFailure(1000, now);
+        }
+
+        // then
+        assertFalse(stats.isAvailable(now + TEST_EJECTION_TIME - 1));
+        assertTrue(stats.isAvailable(now + TEST_EJECTION_TIME));
+
+    }
+
+    @Test
+    public void ejectionTimeGrowsExponentiallyUpToMax() {
+
+        // given
+        HealthAwareServerPool serverPool = createTestServerPool("server1", "server2");
+        HealthAwareServerPool.ServerStats stats = serverPool.getStats("server1");
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < TEST_FAILURE_THRESHOLD; i++) {
+            stats.onFailure(1000, now);
+        }
+        assertEquals(now + TEST_EJECTION_TIME, stats.getEjectedUntil());
+
+        // when
+        now = stats.getEjectedUntil();
+        stats.onFailure(1000, now);
+
+        // then
+        assertEquals(now + TEST_EJECTION_TIME * 2, stats.getEjectedUntil());
+
+        // when
+        now = stats.getEjectedUntil();
+        stats.onFailure(1000, now);
+
+        // then
+        assertEquals(now + TEST_MAX_EJECTION_TIME, stats.getEjectedUntil());
+
+    }
+
+    @Test
+    public void failuresDuringEjectionDoNotExtendIt() {
+
+        // given
+        HealthAwareServerPool serverPool = createTestServerPool("server1", "server2");
+        HealthAwareServerPool.ServerStats stats = serverPool.getStats("server1");
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < TEST_FAILURE_THRESHOLD; i++) {
+            stats.onFailure(1000, now);
+        }
+
+        // when
+        stats.onFailure(1000, now + 1);
+
+        // then
+        assertEquals(now + TEST_EJECTION_TIME, stats.getEjectedUntil());
+
+    }
+
+    @Test
+    public void successResetsEjectionTime() {
+
+        // given
+        HealthAwareServerPool serverPool = createTestServerPool("server1", "server2");
+        HealthAwareServerPool.ServerStats stats = serverPool.getStats("server1");
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < TEST_FAILURE_THRESHOLD; i++) {
+            stats.onFailure(1000, now);
+        }
+        now = stats.getEjectedUntil();
+        stats.onSuccess(1000);
+
+        // when
+        for (int i = 0; i < TEST_FAILURE_THRESHOLD; i++) {
+            stats.onFailure(1000, now);
+        }
+
+        // then
+        assertEquals(now + TEST_EJECTION_TIME, stats.getEjectedUntil());
+
+    }
+
+    @Test
+    public void returnsServerReadmittedFirstIfAllServersAreEjected() {
+
+        // given
+        HealthAwareServerPool serverPool = createTestServerPool("server1", "server2", "server3");
+        long now = System.currentTimeMillis();
+
+        for (String server : Arrays.asList("server1", "server2", "server3")) {
+            for (int i = 0; i < TEST_FAILURE_THRESHOLD; i++) {
+                serverPool.getStats(server).onFailure(1000, "server2".equals(server) ? now : now + 1000);
+            }
+        }
+
+        // when
+        String result = serverPool.getNext();
+
+        // then
+        assertEquals("server2", result);
+
+    }
+
+    @Test
+    public void trackingCallbackRecordsFailureOnException() {
+
+        // given
+        HealthAwareServerPool serverPool = createTestServerPool("server1", "server2");
+        FutureCallback<HttpResponse> delegate = mock(FutureCallback.class);
+
+        FutureCallback<HttpResponse> callback = serverPool.track("server1", delegate);
+        assertEquals(1, serverPool.getStats("server1").inFlight.get());
+
+        IOException expectedException = new IOException("test exception");
+
+        // when
+        for (int i = 0; i < TEST_FAILURE_THRESHOLD; i++) {
+            callback.failed(expectedException);
+        }
+
+        // then
+        verify(delegate, times(TEST_FAILURE_THRESHOLD)).failed(expectedException);
+        assertFalse(serverPool.getStats("server1").isAvailable(System.currentTimeMillis()));
+
+    }
+
+    @Test
+    public void trackingCallbackRecordsFailureOnRetryableStatusCodes() {
+
+        // given
+        HealthAwareServerPool serverPool = createTestServerPool("server1", "server2");
+        FutureCallback<HttpResponse> delegate = mock(FutureCallback.class);
+
+        FutureCallback<HttpResponse> callback = serverPool.track("server1", delegate);
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 503, "Service Unavailable");
+
+        // when
+        for (int i = 0; i < TEST_FAILURE_THRESHOLD; i++) {
+            callback.completed(response);
+        }
+
+        // then
+        verify(delegate, times(TEST_FAILURE_THRESHOLD)).completed(response);
+        assertFalse(serverPool.getStats("server1").isAvailable(System.currentTimeMillis()));
+
+    }
+
+    @Test
+    public void trackingCallbackRecordsSuccessOnNonRetryableStatusCodes() {
+
+        // given
+        HealthAwareServerPool serverPool = createTestServerPool("server1", "server2");
+        FutureCallback<HttpResponse> delegate = mock(FutureCallback.class);
+
+        FutureCallback<HttpResponse> callback = serverPool.track("server1", delegate);
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 400, "Bad Request");
+
+        // when
+        for (int i = 0; i < TEST_FAILURE_THRESHOLD; i++) {
+            callback.completed(response);
+        }
+
+        // then
+        verify(delegate, times(TEST_FAILURE_THRESHOLD)).completed(response);
+        assertTrue(serverPool.getStats("server1").isAvailable(System.currentTimeMillis()));
+        assertTrue(serverPool.getStats("server1").getEwmaLatencyNanos() > 0);
+
+    }
+
+    @Test
+    public void trackingCallbackDecrementsInFlightOnCancel() {
+
+        // given
+        HealthAwareServerPool serverPool = createTestServerPool("server1", "server2");
+        FutureCallback<HttpResponse> delegate = mock(FutureCallback.class);
+
+        FutureCallback<HttpResponse> callback = serverPool.track("server1", delegate);
+
+        // when
+        callback.cancelled();
+
+        // then
+        verify(delegate).cancelled();
+        assertEquals(0, serverPool.getStats("server1").inFlight.get());
+
+    }
+
+    @Test
+    public void setServersDiscardsStatsOfRemovedServers() {
+
+        // given
+        HealthAwareServerPool serverPool = createTestServerPool("server1", "server2");
+        HealthAwareServerPool.ServerStats stats = serverPool.getStats("server1");
+        serverPool.getStats("server2");
+
+        // when
+        serverPool.setServers(new ArrayList<>(Arrays.asList("server1", "server3")));
+
+        // then
+        assertTrue(stats == serverPool.getStats("server1"));
+        for (int i = 0; i < 100; i++) {
+            assertFalse("server2".equals(serverPool.getNext()));
+        }
+
+    }
+
+    @Test
+    public void isFailureRecognizesRetryableStatusCodes() {
+        assertTrue(HealthAwareServerPool.isFailure(429));
+        assertTrue(HealthAwareServerPool.isFailure(500));
+        assertTrue(HealthAwareServerPool.isFailure(503));
+        assertFalse(HealthAwareServerPool.isFailure(200));
+        assertFalse(HealthAwareServerPool.isFailure(400));
+        assertFalse(HealthAwareServerPool.isFailure(404));
+    }
+
+    private HealthAwareServerPool createTestServerPool(String... servers) {
+        List<String> serverList = new ArrayList<>(Arrays.asList(servers));
+        return new HealthAwareServerPool(serverList, TEST_FAILURE_THRESHOLD, TEST_EJECTION_TIME, TEST_MAX_EJECTION_TIME);
+    }
+
+}
@@ -20,14 +20,23 @@ package org.appenders.log4j2.elasticsearch.hc;
  * #L%
  */
 
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
 import org.apache.http.client.CredentialsProvider;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.message.BasicHttpResponse;
 import org.apache.http.nio.conn.NHttpClientConnectionManager;
 import org.apache.http.nio.conn.SchemeIOSessionStrategy;
 import org.apache.http.nio.protocol.BasicAsyncResponseConsumer;
 import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.protocol.BasicHttpContext;
+import org.appenders.log4j2.elasticsearch.LifeCycle;
 import org.junit.BeforeClass;
 import org.junit.Rule;
 import org.junit.Test;
@@ -42,10 +51,13 @@ import java.util.Random;
 import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -220,6 +232,245 @@ public class HttpClientFactoryTest {
 
     }
 
+    @Test
+    public void maxConnectionsPerRouteDefaultsToMaxTotalConnections() {
+
+        // given
+        HttpClientFactory.Builder builder = createDefaultTestHttpClientFactoryBuilder()
+                .withMaxTotalConnections(TEST_MAX_TOTAL_CONNECTIONS);
+
+        // when
+        HttpClientFactory factory = builder.build();
+
+        // then
+        assertEquals(TEST_MAX_TOTAL_CONNECTIONS, factory.maxConnectionsPerRoute);
+
+    }
+
+    @Test
+    public void connectionManagerIsConfiguredWithMaxConnectionsPerRoute() {
+
+        // given
+        int expectedMaxPerRoute = TEST_MAX_TOTAL_CONNECTIONS / 2;
+        HttpClientFactory factory = spy(createDefaultTestHttpClientFactoryBuilder()
+                .withMaxTotalConnections(TEST_MAX_TOTAL_CONNECTIONS)
+                .withMaxConnectionsPerRoute(expectedMaxPerRoute)
+                .build());
+
+        PoolingNHttpClientConnectionManager connectionManager = mock(PoolingNHttpClientConnectionManager.class);
+        when(factory.createUnconfiguredPoolingNHttpClientConnectionManager()).thenReturn(connectionManager);
+
+        // when
+        factory.getAsyncConnectionManager();
+
+        // then
+        verify(connectionManager).setMaxTotal(eq(TEST_MAX_TOTAL_CONNECTIONS));
+        verify(connectionManager).setDefaultMaxPerRoute(eq(expectedMaxPerRoute));
+
+    }
+
+    @Test
+    public void ioReactorConfigContainsSocketOptions() {
+
+        // given
+        int expectedSendBufferSize = RANDOM.nextInt(1000) + 10;
+        int expectedReceiveBufferSize = RANDOM.nextInt(1000) + 10;
+
+        HttpClientFactory factory = createDefaultTestHttpClientFactoryBuilder()
+                .withTcpNoDelay(false)
+                .withSendBufferSize(expectedSendBufferSize)
+                .withReceiveBufferSize(expectedReceiveBufferSize)
+                .build();
+
+        // when
+        IOReactorConfig config = factory.createIOReactorConfig();
+
+        // then
+        assertFalse(config.isTcpNoDelay());
+        assertEquals(expectedSendBufferSize, config.getSndBufSize());
+        assertEquals(expectedReceiveBufferSize, config.getRcvBufSize());
+
+    }
+
+    @Test
+    public void tcpNoDelayIsEnabledByDefault() {
+
+        // given
+        HttpClientFactory factory = createDefaultTestHttpClientFactory();
+
+        // when
+        IOReactorConfig config = factory.createIOReactorConfig();
+
+        // then
+        assertTrue(config.isTcpNoDelay());
+
+    }
+
+    @Test
+    public void keepAliveStrategyLimitsServerKeepAlive() {
+
+        // given
+        HttpClientFactory factory = createDefaultTestHttpClientFactoryBuilder()
+                .withKeepAliveTimeout(1000)
+                .build();
+
+        ConnectionKeepAliveStrategy strategy = factory.createKeepAliveStrategy();
+
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.addHeader("Keep-Alive", "timeout=60");
+
+        // when
+        long keepAlive = strategy.getKeepAliveDuration(response, new BasicHttpContext());
+
+        // then
+        assertEquals(1000, keepAlive);
+
+    }
+
+    @Test
+    public void keepAliveStrategyUsesKeepAliveTimeoutIfServerDoesNotSpecifyIt() {
+
+        // given
+        HttpClientFactory factory = createDefaultTestHttpClientFactoryBuilder()
+                .withKeepAliveTimeout(1000)
+                .build();
+
+        ConnectionKeepAliveStrategy strategy = factory.createKeepAliveStrategy();
+
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+
+        // when
+        long keepAlive = strategy.getKeepAliveDuration(response, new BasicHttpContext());
+
+        // then
+        assertEquals(1000, keepAlive);
+
+    }
+
+    @Test
+    public void keepAliveStrategyUsesServerKeepAliveIfShorterThanKeepAliveTimeout() {
+
+        // given
+        HttpClientFactory factory = createDefaultTestHttpClientFactoryBuilder()
+                .withKeepAliveTimeout(60000)
+                .build();
+
+        ConnectionKeepAliveStrategy strategy = factory.createKeepAliveStrategy();
+
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.addHeader("Keep-Alive", "timeout=5");
+
+        // when
+        long keepAlive = strategy.getKeepAliveDuration(response, new BasicHttpContext());
+
+        // then
+        assertEquals(5000, keepAlive);
+
+    }
+
+    @Test
+    public void defaultKeepAliveStrategyIsUsedIfKeepAliveTimeoutIsNotSet() {
+
+        // given
+        HttpClientFactory factory = createDefaultTestHttpClientFactory();
+
+        // when
+        ConnectionKeepAliveStrategy strategy = factory.createKeepAliveStrategy();
+
+        // then
+        assertEquals(DefaultConnectionKeepAliveStrategy.INSTANCE, strategy);
+
+    }
+
+    @Test
+    public void createInstanceSetsConnectionEvictorIfIdleConnectionTimeoutIsSet() {
+
+        // given
+        HttpClientFactory factory = spy(createDefaultTestHttpClientFactoryBuilder()
+                .withIdleConnectionTimeout(1000)
+                .build());
+
+        HttpClient client = mock(HttpClient.class);
+        when(factory.createConfiguredClient(any(), any(), any())).thenReturn(client);
+
+        // when
+        factory.createInstance();
+
+        // then
+        ArgumentCaptor<LifeCycle> captor = ArgumentCaptor.forClass(LifeCycle.class);
+        verify(client).setConnectionEvictor(captor.capture());
+        assertEquals(IdleConnectionEvictor.class, captor.getValue().getClass());
+
+    }
+
+    @Test
+    public void createInstanceDoesNotSetConnectionEvictorByDefault() {
+
+        // given
+        HttpClientFactory factory = spy(createDefaultTestHttpClientFactory());
+
+        HttpClient client = mock(HttpClient.class);
+        when(factory.createConfiguredClient(any(), any(), any())).thenReturn(client);
+
+        // when
+        factory.createInstance();
+
+        // then
+        verify(client, never()).setConnectionEvictor(any());
+
+    }
+
+    @Test
+    public void createServerPoolReturnsRoundRobinServerPoolByDefault() {
+
+        // given
+        HttpClientFactory factory = createDefaultTestHttpClientFactory();
+
+        // when
+        ServerPool serverPool = factory.createServerPool();
+
+        // then
+        assertEquals(ServerPool.class, serverPool.getClass());
+
+    }
+
+    @Test
+    public void createServerPoolReturnsHealthAwareServerPoolIfServerHealthPolicyIsConfigured() {
+
+        // given
+        HttpClientFactory factory = createDefaultTestHttpClientFactoryBuilder()
+                .withServerHealthPolicy(ServerHealthPolicy.newBuilder().build())
+                .build();
+
+        // when
+        ServerPool serverPool = factory.createServerPool();
+
+        // then
+        assertEquals(HealthAwareServerPool.class, serverPool.getClass());
+
+    }
+
+    @Test
+    public void createInstanceSetsServiceDiscoveryIfConfigured() {
+
+        // given
+        HttpClientFactory factory = spy(createDefaultTestHttpClientFactoryBuilder()
+                .withServiceDiscovery(ServiceDiscovery.newBuilder().build())
+                .build());
+
+        HttpClient client = mock(HttpClient.class);
+        when(factory.createConfiguredClient(any(), any(), any())).thenReturn(client);
+
+        // when
+        factory.createInstance();
+
+        // then
+        ArgumentCaptor<LifeCycle> captor = ArgumentCaptor.forClass(LifeCycle.class);
+        verify(client).setServiceDiscovery(captor.capture());
+        assertEquals(ServiceDiscoveryTask.class, captor.getValue().getClass());
+
+    }
+
     private HttpClientFactory createDefaultTestHttpClientFactory() {
         return createDefaultTestHttpClientFactoryBuilder().build();
     }
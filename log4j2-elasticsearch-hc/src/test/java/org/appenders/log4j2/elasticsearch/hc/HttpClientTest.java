@@ -64,6 +64,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -218,6 +219,39 @@ public class HttpClientTest {
 
     }
 
+    @Test
+    public void executeAsyncUsesCallbackReturnedByServerPool() {
+
+        // given
+        String expectedServer = "http://localhost:9200";
+        ServerPool serverPool = mock(ServerPool.class);
+        when(serverPool.getNext()).thenReturn(expectedServer);
+
+        FutureCallback<HttpResponse> expectedCallback = mock(FutureCallback.class);
+        when(serverPool.track(eq(expectedServer), any())).thenReturn(expectedCallback);
+
+        CloseableHttpAsyncClient asyncClient = mock(CloseableHttpAsyncClient.class);
+        HttpClient client = createTestHttpClient(
+                asyncClient,
+                serverPool,
+                new HCRequestFactory(),
+                mock(HttpAsyncResponseConsumerFactory.class)
+        );
+
+        BatchRequest request = createDefaultTestBatchRequest();
+
+        // when
+        client.executeAsync(request, createMockTestResultHandler());
+
+        // then
+        verify(asyncClient).execute(
+                any(HttpAsyncRequestProducer.class),
+                any(),
+                any(HttpContext.class),
+                eq(expectedCallback));
+
+    }
+
     @Test
     public void executeAsyncDelegatesToConfiguredAsyncClient() {
 
@@ -240,6 +274,52 @@ public class HttpClientTest {
 
     }
 
+    @Test
+    public void executeAsyncUsesGivenResponseConsumer() {
+
+        // given
+        HttpClient client = Mockito.spy(createDefaultTestObject());
+        CloseableHttpAsyncClient asyncClient = mockAsyncClient(client);
+
+        BatchRequest request = createDefaultTestBatchRequest();
+        HttpAsyncResponseConsumer<HttpResponse> responseConsumer = mock(HttpAsyncResponseConsumer.class);
+
+        // when
+        client.executeAsync(request, createMockTestResultHandler(), responseConsumer, client.createContextInstance());
+
+        // then
+        verify(asyncClient).execute(
+                any(HttpAsyncRequestProducer.class),
+                asyncConsumerCaptor.capture(),
+                any(HttpContext.class),
+                any(FutureCallback.class));
+        assertSame(responseConsumer, asyncConsumerCaptor.getValue());
+
+    }
+
+    @Test
+    public void executeAsyncCallbackDoesNotDeserializeParsedResponseEntity() throws IOException {
+
+        // given
+        ResponseHandler<Response> responseHandler = createMockTestResultHandler();
+        HCResultCallback asyncCallback = new HCResultCallback(responseHandler);
+
+        BatchResult batchResult = new BatchResult(0, true, null, 0, null);
+        HttpResponse httpResponse = createDefaultTestHttpResponse(200, UUID.randomUUID().toString());
+        when(httpResponse.getEntity()).thenReturn(new ParsedResponseEntity<>(batchResult));
+
+        // when
+        asyncCallback.completed(httpResponse);
+
+        // then
+        verify(responseHandler, never()).deserializeResponse(any());
+        verify(responseHandler, never()).failed(any());
+        verify(responseHandler).completed(batchResultCaptor.capture());
+        assertSame(batchResult, batchResultCaptor.getValue());
+        assertEquals(200, batchResult.getResponseCode());
+
+    }
+
     @Test
     public void executeAsyncCallbackCallsResultHandlerCompleted() throws IOException {
 
@@ -518,6 +598,50 @@ public class HttpClientTest {
 
     }
 
+    @Test
+    public void lifecycleStartStartsConnectionEvictor() {
+
+        // given
+        HttpClient httpClient = createTestHttpClient(
+                mock(CloseableHttpAsyncClient.class),
+                mock(ServerPool.class),
+                mock(RequestFactory.class),
+                mock(HttpAsyncResponseConsumerFactory.class));
+
+        LifeCycle connectionEvictor = mock(LifeCycle.class);
+        httpClient.setConnectionEvictor(connectionEvictor);
+
+        // when
+        httpClient.start();
+
+        // then
+        verify(connectionEvictor).start();
+
+    }
+
+    @Test
+    public void lifecycleStopStopsConnectionEvictor() {
+
+        // given
+        HttpClient httpClient = createTestHttpClient(
+                mock(CloseableHttpAsyncClient.class),
+                mock(ServerPool.class),
+                mock(RequestFactory.class),
+                mock(HttpAsyncResponseConsumerFactory.class));
+
+        LifeCycle connectionEvictor = mock(LifeCycle.class);
+        httpClient.setConnectionEvictor(connectionEvictor);
+
+        httpClient.start();
+
+        // when
+        httpClient.stop();
+
+        // then
+        verify(connectionEvictor).stop();
+
+    }
+
     @Test
     public void lifecycleStopDoesNotRethrowIOExceptionOnClientClose() throws IOException {
 
@@ -0,0 +1,144 @@
+package org.appenders.log4j2.elasticsearch.hc;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.http.nio.conn.NHttpClientConnectionManager;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+public class IdleConnectionEvictorTest {
+
+    @Test
+    public void evictClosesExpiredAndIdleConnections() {
+
+        // given
+        NHttpClientConnectionManager connectionManager = mock(NHttpClientConnectionManager.class);
+        IdleConnectionEvictor evictor = new IdleConnectionEvictor(connectionManager, 1000);
+
+        // when
+        evictor.evict();
+
+        // then
+        verify(connectionManager).closeExpiredConnections();
+        verify(connectionManager).closeIdleConnections(eq(1000L), eq(TimeUnit.MILLISECONDS));
+
+    }
+
+    @Test
+    public void evictDoesNotRethrowConnectionManagerExceptions() {
+
+        // given
+        NHttpClientConnectionManager connectionManager = mock(NHttpClientConnectionManager.class);
+        doThrow(new IllegalStateException("test exception")).when(connectionManager).closeExpiredConnections();
+
+        IdleConnectionEvictor evictor = new IdleConnectionEvictor(connectionManager, 1000);
+
+        // when
+        evictor.evict();
+
+    }
+
+    @Test
+    public void evictionIntervalIsHalfOfMaxIdleTime() {
+
+        // when
+        IdleConnectionEvictor evictor = new IdleConnectionEvictor(mock(NHttpClientConnectionManager.class), 10000);
+
+        // then
+        assertEquals(5000, evictor.getEvictionIntervalMillis());
+
+    }
+
+    @Test
+    public void evictionIntervalIsNotLowerThanMinimum() {
+
+        // when
+        IdleConnectionEvictor evictor = new IdleConnectionEvictor(mock(NHttpClientConnectionManager.class), 1);
+
+        // then
+        assertEquals(IdleConnectionEvictor.MIN_EVICTION_INTERVAL, evictor.getEvictionIntervalMillis());
+
+    }
+
+    @Test
+    public void startSchedulesEviction() {
+
+        // given
+        NHttpClientConnectionManager connectionManager = mock(NHttpClientConnectionManager.class);
+        IdleConnectionEvictor evictor = new IdleConnectionEvictor(connectionManager, 1);
+
+        // when
+        evictor.start();
+
+        // then
+        verify(connectionManager, timeout(1000)).closeExpiredConnections();
+        evictor.stop();
+
+    }
+
+    @Test
+    public void lifecycleStart() {
+
+        // given
+        IdleConnectionEvictor evictor = new IdleConnectionEvictor(mock(NHttpClientConnectionManager.class), 1000);
+
+        assertTrue(evictor.isStopped());
+
+        // when
+        evictor.start();
+
+        // then
+        assertFalse(evictor.isStopped());
+        assertTrue(evictor.isStarted());
+        evictor.stop();
+
+    }
+
+    @Test
+    public void lifecycleStop() {
+
+        // given
+        IdleConnectionEvictor evictor = new IdleConnectionEvictor(mock(NHttpClientConnectionManager.class), 1000);
+
+        evictor.start();
+        assertTrue(evictor.isStarted());
+
+        // when
+        evictor.stop();
+
+        // then
+        assertFalse(evictor.isStarted());
+        assertTrue(evictor.isStopped());
+
+    }
+
+}
@@ -0,0 +1,100 @@
+package org.appenders.log4j2.elasticsearch.hc;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NodesInfoResponseTest {
+
+    @Test
+    public void parsesPublishAddressesAndRoles() throws IOException {
+
+        // given
+        String json = "{\"nodes\":{" +
+                "\"node1\":{\"roles\":[\"master\",\"data\"],\"http\":{\"publish_address\":\"10.0.0.1:9200\"}}," +
+                "\"node2\":{\"roles\":[\"ingest\"],\"http\":{\"publish_address\":\"10.0.0.2:9200\"}}" +
+                "}}";
+
+        // when
+        NodesInfoResponse response = NodesInfoResponse.fromJsonTree(new ObjectMapper().readTree(json));
+
+        // then
+        assertEquals(2, response.getNodes().size());
+        assertEquals("10.0.0.1:9200", response.getNodes().get(0).getHostAndPort());
+        assertEquals(new HashSet<>(Arrays.asList("master", "data")), response.getNodes().get(0).getRoles());
+        assertEquals("10.0.0.2:9200", response.getNodes().get(1).getHostAndPort());
+        assertEquals(new HashSet<>(Arrays.asList("ingest")), response.getNodes().get(1).getRoles());
+
+    }
+
+    @Test
+    public void skipsNodesWithoutHttpPublishAddress() throws IOException {
+
+        // given
+        String json = "{\"nodes\":{" +
+                "\"node1\":{\"roles\":[\"data\"]}," +
+                "\"node2\":{\"roles\":[\"data\"],\"http\":{\"publish_address\":\"10.0.0.2:9200\"}}" +
+                "}}";
+
+        // when
+        NodesInfoResponse response = NodesInfoResponse.fromJsonTree(new ObjectMapper().readTree(json));
+
+        // then
+        assertEquals(1, response.getNodes().size());
+        assertEquals("10.0.0.2:9200", response.getNodes().get(0).getHostAndPort());
+
+    }
+
+    @Test
+    public void returnsEmptyListIfNoNodesPresent() throws IOException {
+
+        // when
+        NodesInfoResponse response = NodesInfoResponse.fromJsonTree(new ObjectMapper().readTree("{\"error\":\"test\"}"));
+
+        // then
+        assertTrue(response.getNodes().isEmpty());
+
+    }
+
+    @Test
+    public void hostAndPortUsesHostnameIfPresent() {
+
+        // given
+        NodesInfoResponse.NodeInfo nodeInfo = new NodesInfoResponse.NodeInfo("es1/10.0.0.1:9200", new HashSet<>());
+
+        // when
+        String result = nodeInfo.getHostAndPort();
+
+        // then
+        assertEquals("es1:9200", result);
+
+    }
+
+}
@@ -0,0 +1,118 @@
+package org.appenders.log4j2.elasticsearch.hc;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.logging.log4j.core.config.ConfigurationException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class ServerHealthPolicyTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void builderBuildsSuccessfully() {
+
+        // given
+        ServerHealthPolicy.Builder builder = ServerHealthPolicy.newBuilder();
+
+        // when
+        ServerHealthPolicy policy = builder.build();
+
+        // then
+        assertNotNull(policy);
+
+    }
+
+    @Test
+    public void builderThrowsIfFailureThresholdIsNotPositive() {
+
+        // given
+        ServerHealthPolicy.Builder builder = ServerHealthPolicy.newBuilder()
+                .withFailureThreshold(0);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("failureThreshold");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderThrowsIfEjectionTimeIsNotPositive() {
+
+        // given
+        ServerHealthPolicy.Builder builder = ServerHealthPolicy.newBuilder()
+                .withEjectionTimeMillis(0);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("ejectionTimeMillis");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderThrowsIfMaxEjectionTimeIsLowerThanEjectionTime() {
+
+        // given
+        ServerHealthPolicy.Builder builder = ServerHealthPolicy.newBuilder()
+                .withEjectionTimeMillis(1000)
+                .withMaxEjectionTimeMillis(999);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("maxEjectionTimeMillis");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void createsHealthAwareServerPool() {
+
+        // given
+        ServerHealthPolicy policy = ServerHealthPolicy.newBuilder().build();
+
+        List<String> serverList = new ArrayList<>();
+        serverList.add("http://localhost:9200");
+
+        // when
+        ServerPool serverPool = policy.createServerPool(serverList);
+
+        // then
+        assertEquals(HealthAwareServerPool.class, serverPool.getClass());
+        assertEquals("http://localhost:9200", serverPool.getNext());
+
+    }
+
+}
@@ -86,4 +86,40 @@ public class ServerPoolTest {
 
     }
 
+    @Test
+    public void setServersReplacesServerList() {
+
+        // given
+        List<String> serverList = new ArrayList<>();
+        serverList.add(UUID.randomUUID().toString());
+        ServerPool serverPool = new ServerPool(serverList);
+
+        List<String> newServerList = new ArrayList<>();
+        newServerList.add(UUID.randomUUID().toString());
+
+        // when
+        serverPool.setServers(newServerList);
+
+        // then
+        assertEquals(newServerList.get(0), serverPool.getNext());
+
+    }
+
+    @Test
+    public void setServersIgnoresEmptyList() {
+
+        // given
+        List<String> serverList = new ArrayList<>();
+        serverList.add(UUID.randomUUID().toString());
+        ServerPool serverPool = new ServerPool(serverList);
+
+        // when
+        serverPool.setServers(new ArrayList<>());
+        serverPool.setServers(null);
+
+        // then
+        assertEquals(serverList.get(0), serverPool.getNext());
+
+    }
+
 }
@@ -0,0 +1,247 @@
+package org.appenders.log4j2.elasticsearch.hc;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+public class ServiceDiscoveryTaskTest {
+
+    @Test
+    public void matchingAddressesContainsAllNodesIfNoRolesConfigured() {
+
+        // given
+        ServiceDiscoveryTask task = createTestTask(mock(HttpClient.class), createTestServerPool(), Collections.emptyList());
+
+        // when
+        List<String> result = task.matchingAddresses(createTestResponse());
+
+        // then
+        assertEquals(Arrays.asList("http://10.0.0.1:9200", "http://10.0.0.2:9200", "http://10.0.0.3:9200"), result);
+
+    }
+
+    @Test
+    public void matchingAddressesContainsNodesWithAnyOfConfiguredRoles() {
+
+        // given
+        ServiceDiscoveryTask task = createTestTask(mock(HttpClient.class), createTestServerPool(), Arrays.asList("data", "ingest"));
+
+        // when
+        List<String> result = task.matchingAddresses(createTestResponse());
+
+        // then
+        assertEquals(Arrays.asList("http://10.0.0.2:9200", "http://10.0.0.3:9200"), result);
+
+    }
+
+    @Test
+    public void onResponseUpdatesServerPool() {
+
+        // given
+        ServerPool serverPool = createTestServerPool();
+        ServiceDiscoveryTask task = createTestTask(mock(HttpClient.class), serverPool, Arrays.asList("data"));
+
+        // when
+        task.onResponse(createTestResponse());
+
+        // then
+        assertEquals(Arrays.asList("http://10.0.0.2:9200"), serverPool.getServerList());
+
+    }
+
+    @Test
+    public void onResponseDoesNotUpdateServerPoolIfNoMatchingNodesFound() {
+
+        // given
+        ServerPool serverPool = createTestServerPool();
+        List<String> expected = serverPool.getServerList();
+        ServiceDiscoveryTask task = createTestTask(mock(HttpClient.class), serverPool, Arrays.asList("ml"));
+
+        // when
+        task.onResponse(createTestResponse());
+
+        // then
+        assertEquals(expected, serverPool.getServerList());
+
+    }
+
+    @Test
+    public void onResponseDoesNotUpdateServerPoolIfResponseNotSucceeded() {
+
+        // given
+        ServerPool serverPool = createTestServerPool();
+        List<String> expected = serverPool.getServerList();
+        ServiceDiscoveryTask task = createTestTask(mock(HttpClient.class), serverPool, Collections.emptyList());
+
+        NodesInfoResponse response = createTestResponse();
+        response.withResponseCode(500);
+
+        // when
+        task.onResponse(response);
+
+        // then
+        assertEquals(expected, serverPool.getServerList());
+
+    }
+
+    @Test
+    public void refreshExecutesNodesInfoRequest() {
+
+        // given
+        HttpClient client = mock(HttpClient.class);
+        ServiceDiscoveryTask task = createTestTask(client, createTestServerPool(), Collections.emptyList());
+
+        // when
+        task.refresh();
+
+        // then
+        verify(client).executeAsync(any(NodesInfoRequest.class), any(ResponseHandler.class));
+
+    }
+
+    @Test
+    public void refreshIsSkippedIfPreviousRefreshIsInProgress() {
+
+        // given
+        HttpClient client = mock(HttpClient.class);
+        ServiceDiscoveryTask task = createTestTask(client, createTestServerPool(), Collections.emptyList());
+
+        // when
+        task.refresh();
+        task.refresh();
+
+        // then
+        verify(client, times(1)).executeAsync(any(NodesInfoRequest.class), any(ResponseHandler.class));
+
+    }
+
+    @Test
+    public void refreshIsNotSkippedIfPreviousRefreshFailed() {
+
+        // given
+        HttpClient client = mock(HttpClient.class);
+        doThrow(new IllegalStateException("test exception")).when(client).executeAsync(any(), any(ResponseHandler.class));
+
+        ServiceDiscoveryTask task = createTestTask(client, createTestServerPool(), Collections.emptyList());
+
+        // when
+        task.refresh();
+        task.refresh();
+
+        // then
+        verify(client, times(2)).executeAsync(any(NodesInfoRequest.class), any(ResponseHandler.class));
+
+    }
+
+    @Test
+    public void refreshIsNotSkippedAfterResponseIsHandled() {
+
+        // given
+        HttpClient client = mock(HttpClient.class);
+        ServiceDiscoveryTask task = createTestTask(client, createTestServerPool(), Collections.emptyList());
+
+        task.refresh();
+        task.new NodesInfoResponseHandler().failed(new Exception("test exception"));
+
+        // when
+        task.refresh();
+
+        // then
+        verify(client, times(2)).executeAsync(any(NodesInfoRequest.class), any(ResponseHandler.class));
+
+    }
+
+    @Test
+    public void startSchedulesRefresh() {
+
+        // given
+        HttpClient client = mock(HttpClient.class);
+        ServiceDiscoveryTask task = createTestTask(client, createTestServerPool(), Collections.emptyList());
+
+        // when
+        task.start();
+
+        // then
+        verify(client, timeout(1000)).executeAsync(any(NodesInfoRequest.class), any(ResponseHandler.class));
+        task.stop();
+
+    }
+
+    @Test
+    public void lifecycleStartAndStop() {
+
+        // given
+        ServiceDiscoveryTask task = createTestTask(mock(HttpClient.class), createTestServerPool(), Collections.emptyList());
+        assertTrue(task.isStopped());
+
+        // when
+        task.start();
+
+        // then
+        assertTrue(task.isStarted());
+
+        // when
+        task.stop();
+
+        // then
+        assertFalse(task.isStarted());
+        assertTrue(task.isStopped());
+
+    }
+
+    private ServiceDiscoveryTask createTestTask(HttpClient client, ServerPool serverPool, List<String> nodeRoles) {
+        return new ServiceDiscoveryTask(client, serverPool, "http", nodeRoles, 60000);
+    }
+
+    private ServerPool createTestServerPool() {
+        List<String> serverList = new ArrayList<>();
+        serverList.add("http://localhost:9200");
+        return new ServerPool(serverList);
+    }
+
+    private NodesInfoResponse createTestResponse() {
+        List<NodesInfoResponse.NodeInfo> nodes = new ArrayList<>();
+        nodes.add(new NodesInfoResponse.NodeInfo("10.0.0.1:9200", new HashSet<>(Arrays.asList("master"))));
+        nodes.add(new NodesInfoResponse.NodeInfo("10.0.0.2:9200", new HashSet<>(Arrays.asList("master", "data"))));
+        nodes.add(new NodesInfoResponse.NodeInfo("10.0.0.3:9200", new HashSet<>(Arrays.asList("ingest"))));
+        NodesInfoResponse response = new NodesInfoResponse(nodes);
+        response.withResponseCode(200);
+        return response;
+    }
+
+}
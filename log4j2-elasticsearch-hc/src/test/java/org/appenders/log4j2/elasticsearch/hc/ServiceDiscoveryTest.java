@@ -0,0 +1,147 @@
+package org.appenders.log4j2.elasticsearch.hc;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.logging.log4j.core.config.ConfigurationException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class ServiceDiscoveryTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void builderBuildsWithDefaults() {
+
+        // when
+        ServiceDiscovery serviceDiscovery = ServiceDiscovery.newBuilder().build();
+
+        // then
+        assertEquals(ServiceDiscovery.Builder.DEFAULT_REFRESH_INTERVAL, serviceDiscovery.getRefreshInterval());
+        assertTrue(serviceDiscovery.getNodeRoles().isEmpty());
+
+    }
+
+    @Test
+    public void builderParsesNodeRoles() {
+
+        // when
+        ServiceDiscovery serviceDiscovery = ServiceDiscovery.newBuilder()
+                .withNodeRoles(" data, ingest,,")
+                .build();
+
+        // then
+        assertEquals(Arrays.asList("data", "ingest"), serviceDiscovery.getNodeRoles());
+
+    }
+
+    @Test
+    public void builderThrowsIfRefreshIntervalIsNotPositive() {
+
+        // given
+        ServiceDiscovery.Builder builder = ServiceDiscovery.newBuilder()
+                .withRefreshInterval(0);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("refreshInterval");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderThrowsOnUnsupportedScheme() {
+
+        // given
+        ServiceDiscovery.Builder builder = ServiceDiscovery.newBuilder()
+                .withScheme("ftp");
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("scheme");
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void resolvesSchemeFromFirstServerIfNotConfigured() {
+
+        // given
+        ServiceDiscovery serviceDiscovery = ServiceDiscovery.newBuilder().build();
+
+        // when
+        String scheme = serviceDiscovery.resolveScheme(createTestServerPool("https://localhost:9200"));
+
+        // then
+        assertEquals("https", scheme);
+
+    }
+
+    @Test
+    public void usesConfiguredScheme() {
+
+        // given
+        ServiceDiscovery serviceDiscovery = ServiceDiscovery.newBuilder()
+                .withScheme("http")
+                .build();
+
+        // when
+        String scheme = serviceDiscovery.resolveScheme(createTestServerPool("https://localhost:9200"));
+
+        // then
+        assertEquals("http", scheme);
+
+    }
+
+    @Test
+    public void createsServiceDiscoveryTask() {
+
+        // given
+        ServiceDiscovery serviceDiscovery = ServiceDiscovery.newBuilder().build();
+
+        // when
+        Object task = serviceDiscovery.createTask(mock(HttpClient.class), createTestServerPool("http://localhost:9200"));
+
+        // then
+        assertEquals(ServiceDiscoveryTask.class, task.getClass());
+
+    }
+
+    private ServerPool createTestServerPool(String server) {
+        List<String> serverList = new ArrayList<>();
+        serverList.add(server);
+        return new ServerPool(serverList);
+    }
+
+}
@@ -0,0 +1,117 @@
+package org.appenders.log4j2.elasticsearch.hc.backoff;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.logging.log4j.core.config.ConfigurationException;
+import org.appenders.log4j2.elasticsearch.backoff.AdaptiveConcurrencyBackoffPolicy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.junit.Assert.assertEquals;
+
+public class Log4j2AdaptiveConcurrencyBackoffPolicyTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void builderBuildsSuccessfully() {
+
+        // given
+        Log4j2AdaptiveConcurrencyBackoffPolicy.Builder builder = Log4j2AdaptiveConcurrencyBackoffPolicy.newBuilder();
+
+        // when
+        AdaptiveConcurrencyBackoffPolicy policy = builder.build();
+
+        // then
+        assertEquals(Log4j2AdaptiveConcurrencyBackoffPolicy.Builder.DEFAULT_INITIAL_LIMIT, policy.getLimit());
+
+    }
+
+    @Test
+    public void builderSetsInitialLimit() {
+
+        // given
+        Log4j2AdaptiveConcurrencyBackoffPolicy.Builder builder = Log4j2AdaptiveConcurrencyBackoffPolicy.newBuilder()
+                .withInitialLimit(10)
+                .withMinLimit(2)
+                .withMaxLimit(20)
+                .withLatencyTolerance(2.0);
+
+        // when
+        AdaptiveConcurrencyBackoffPolicy policy = builder.build();
+
+        // then
+        assertEquals(10, policy.getLimit());
+
+    }
+
+    @Test
+    public void builderThrowsIfMinLimitIsZero() {
+
+        // given
+        Log4j2AdaptiveConcurrencyBackoffPolicy.Builder builder = Log4j2AdaptiveConcurrencyBackoffPolicy.newBuilder()
+                .withMinLimit(0);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("minLimit must be higher than 0 for " +
+                AdaptiveConcurrencyBackoffPolicy.class.getSimpleName());
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderThrowsIfMaxLimitIsLowerThanMinLimit() {
+
+        // given
+        Log4j2AdaptiveConcurrencyBackoffPolicy.Builder builder = Log4j2AdaptiveConcurrencyBackoffPolicy.newBuilder()
+                .withMinLimit(5)
+                .withMaxLimit(4);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("maxLimit must be higher than or equal to minLimit for " +
+                AdaptiveConcurrencyBackoffPolicy.class.getSimpleName());
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderThrowsIfLatencyToleranceIsLowerThanOne() {
+
+        // given
+        Log4j2AdaptiveConcurrencyBackoffPolicy.Builder builder = Log4j2AdaptiveConcurrencyBackoffPolicy.newBuilder()
+                .withLatencyTolerance(0.9);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("latencyTolerance must be higher than or equal to 1 for " +
+                AdaptiveConcurrencyBackoffPolicy.class.getSimpleName());
+
+        // when
+        builder.build();
+
+    }
+
+}
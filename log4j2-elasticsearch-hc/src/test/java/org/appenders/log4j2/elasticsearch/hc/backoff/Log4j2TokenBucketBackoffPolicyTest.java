@@ -0,0 +1,172 @@
+package org.appenders.log4j2.elasticsearch.hc.backoff;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import org.apache.logging.log4j.core.config.ConfigurationException;
+import org.appenders.log4j2.elasticsearch.ByteBufItemSourceTest;
+import org.appenders.log4j2.elasticsearch.ItemSource;
+import org.appenders.log4j2.elasticsearch.backoff.BackoffPolicy;
+import org.appenders.log4j2.elasticsearch.backoff.TokenBucketBackoffPolicy;
+import org.appenders.log4j2.elasticsearch.hc.BatchRequest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.appenders.log4j2.elasticsearch.ByteBufItemSourceTest.createTestItemSource;
+import static org.appenders.log4j2.elasticsearch.hc.BatchRequestTest.createTestBatch;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class Log4j2TokenBucketBackoffPolicyTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void builderBuildsSuccessfully() {
+
+        // given
+        Log4j2TokenBucketBackoffPolicy.Builder builder = Log4j2TokenBucketBackoffPolicy.newBuilder()
+                .withRatePerSecond(100);
+
+        // when
+        BackoffPolicy policy = builder.build();
+
+        // then
+        assertNotNull(policy);
+
+    }
+
+    @Test
+    public void builderUsesRatePerSecondAsDefaultBurstSize() {
+
+        // given
+        Log4j2TokenBucketBackoffPolicy.Builder builder = Log4j2TokenBucketBackoffPolicy.newBuilder()
+                .withRatePerSecond(100);
+
+        // when
+        TokenBucketBackoffPolicy policy = builder.build();
+
+        // then
+        assertEquals(100, policy.getAvailableTokens());
+
+    }
+
+    @Test
+    public void documentsUnitConsumesOneTokenPerDocument() {
+
+        // given
+        TokenBucketBackoffPolicy<BatchRequest> policy = Log4j2TokenBucketBackoffPolicy.newBuilder()
+                .withRatePerSecond(1)
+                .withBurstSize(2)
+                .withUnit(Log4j2TokenBucketBackoffPolicy.Builder.UNIT_DOCUMENTS)
+                .build();
+
+        BatchRequest request = createTestBatch(new BatchRequest.Builder(),
+                createTestPayload("test1"),
+                createTestPayload("test2"),
+                createTestPayload("test3"));
+        assertFalse(policy.shouldApply(request));
+
+        // when
+        policy.register(request);
+
+        // then
+        assertTrue(policy.shouldApply(request));
+        assertEquals(-1, policy.getAvailableTokens());
+
+    }
+
+    @Test
+    public void bytesUnitConsumesOneTokenPerByte() {
+
+        // given
+        BatchRequest request = createTestBatch(new BatchRequest.Builder(),
+                createTestPayload("test1"),
+                createTestPayload("test22"));
+
+        // when
+        long result = Log4j2TokenBucketBackoffPolicy.countBytes(request);
+
+        // then
+        assertEquals(11, result);
+
+    }
+
+    @Test
+    public void builderThrowsIfRatePerSecondIsZero() {
+
+        // given
+        Log4j2TokenBucketBackoffPolicy.Builder builder = Log4j2TokenBucketBackoffPolicy.newBuilder();
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("ratePerSecond must be higher than 0 for " +
+                TokenBucketBackoffPolicy.class.getSimpleName());
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderThrowsIfBurstSizeIsNegative() {
+
+        // given
+        Log4j2TokenBucketBackoffPolicy.Builder builder = Log4j2TokenBucketBackoffPolicy.newBuilder()
+                .withRatePerSecond(1)
+                .withBurstSize(-1);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("burstSize must be higher than or equal to 0 for " +
+                TokenBucketBackoffPolicy.class.getSimpleName());
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderThrowsIfUnitIsUnknown() {
+
+        // given
+        Log4j2TokenBucketBackoffPolicy.Builder builder = Log4j2TokenBucketBackoffPolicy.newBuilder()
+                .withRatePerSecond(1)
+                .withUnit("events");
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("unit must be one of [documents, bytes]");
+
+        // when
+        builder.build();
+
+    }
+
+    private ItemSource<ByteBuf> createTestPayload(String payload) {
+        CompositeByteBuf buffer = ByteBufItemSourceTest.createDefaultTestByteBuf();
+        buffer.writeBytes(payload.getBytes());
+        return createTestItemSource(buffer, source -> {});
+    }
+
+}
@@ -0,0 +1,108 @@
+package org.appenders.log4j2.elasticsearch.hc.backoff;
+
+/*-
+ * #%L
+ * log4j2-elasticsearch
+ * %%
+ * Copyright (C) 2020 Rafal Foltynski
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.logging.log4j.core.config.ConfigurationException;
+import org.appenders.log4j2.elasticsearch.backoff.BackoffPolicy;
+import org.appenders.log4j2.elasticsearch.backoff.NoopBackoffPolicy;
+import org.appenders.log4j2.elasticsearch.backoff.WaitThenRejectBackoffPolicy;
+import org.appenders.log4j2.elasticsearch.hc.BatchRequest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+public class Log4j2WaitThenRejectBackoffPolicyTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void builderBuildsSuccessfully() {
+
+        // given
+        Log4j2WaitThenRejectBackoffPolicy.Builder builder = createDefaultTestBuilder();
+
+        // when
+        BackoffPolicy<BatchRequest> policy = builder.build();
+
+        // then
+        assertNotNull(policy);
+        assertFalse(policy.shouldApply(null));
+
+    }
+
+    @Test
+    public void builderThrowsIfBackoffPolicyIsNull() {
+
+        // given
+        Log4j2WaitThenRejectBackoffPolicy.Builder builder = createDefaultTestBuilder()
+                .withBackoffPolicy(null);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("No " + BackoffPolicy.NAME + " provided for " +
+                WaitThenRejectBackoffPolicy.class.getSimpleName());
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderThrowsIfMaxWaitMillisIsNegative() {
+
+        // given
+        Log4j2WaitThenRejectBackoffPolicy.Builder builder = createDefaultTestBuilder()
+                .withMaxWaitMillis(-1);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("maxWaitMillis must be higher than or equal to 0 for " +
+                WaitThenRejectBackoffPolicy.class.getSimpleName());
+
+        // when
+        builder.build();
+
+    }
+
+    @Test
+    public void builderThrowsIfCheckIntervalMillisIsZero() {
+
+        // given
+        Log4j2WaitThenRejectBackoffPolicy.Builder builder = createDefaultTestBuilder()
+                .withCheckIntervalMillis(0);
+
+        expectedException.expect(ConfigurationException.class);
+        expectedException.expectMessage("checkIntervalMillis must be higher than 0 for " +
+                WaitThenRejectBackoffPolicy.class.getSimpleName());
+
+        // when
+        builder.build();
+
+    }
+
+    private Log4j2WaitThenRejectBackoffPolicy.Builder createDefaultTestBuilder() {
+        return Log4j2WaitThenRejectBackoffPolicy.newBuilder()
+                .withBackoffPolicy(new NoopBackoffPolicy<>());
+    }
+
+}
@@ -23,9 +23,12 @@ package org.appenders.log4j2.elasticsearch.jest;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.searchbox.action.BulkableAction;
 import io.searchbox.core.Bulk;
+import org.appenders.log4j2.elasticsearch.ByteBufCompressor;
 import org.appenders.log4j2.elasticsearch.ByteBufItemSource;
+import org.appenders.log4j2.elasticsearch.EmptyItemSourceFactory;
 import org.appenders.log4j2.elasticsearch.ItemSource;
 import org.appenders.log4j2.elasticsearch.thirdparty.ReusableByteBufOutputStream;
 
@@ -45,6 +48,11 @@ public class BufferedBulk extends Bulk {
     private final ObjectWriter objectWriter;
     private final ObjectReader objectReader;
     private final ItemSource<ByteBuf> bulkSource;
+    private final boolean zeroCopy;
+    private final ByteBufCompressor compressor;
+    private CompositeByteBuf composite;
+    private final EmptyItemSourceFactory compressedBufferFactory;
+    private ItemSource<ByteBuf> compressed;
 
     protected final Collection<BulkableAction> actions;
 
@@ -54,6 +62,9 @@ public class BufferedBulk extends Bulk {
         this.objectWriter = builder.objectWriter;
         this.objectReader = builder.objectReader;
         this.bulkSource = builder.bufferedSource;
+        this.zeroCopy = builder.zeroCopy;
+        this.compressor = builder.compressor;
+        this.compressedBufferFactory = builder.compressedBufferFactory;
     }
 
     public BufferedBulkResult deserializeResponse(InputStream responseBody) throws IOException {
@@ -62,12 +73,26 @@ public class BufferedBulk extends Bulk {
 
     /**
      * Serializes and writes {@link #actions} into {@link #bulkSource}
+     * <p>
+     * Since 1.5, serialized actions are compressed if {@link ByteBufCompressor} was configured.
+     * See {@link #getContentEncoding()}.
      * 
      * @return underlying buffer filled with serialized actions
      * @throws IOException if serialization failed
      */
     public ByteBuf serializeRequest() throws IOException {
 
+        ByteBuf serialized = zeroCopy ? serializeComposite() : serializeBuffer();
+
+        if (compressor == null) {
+            return serialized;
+        }
+
+        return compress(serialized);
+    }
+
+    private ByteBuf serializeBuffer() throws IOException {
+
         ReusableByteBufOutputStream byteBufOutputStream = new ReusableByteBufOutputStream(bulkSource.getSource());
 
         // in current impl with no IDs, it's possible to reduce serialization by reusing first action
@@ -92,6 +117,77 @@ public class BufferedBulk extends Bulk {
         return bulkSource.getSource();
     }
 
+    /**
+     * Compresses given bytes to a buffer provided by {@link #compressedBufferFactory}
+     *
+     * @param serialized serialized actions
+     * @return compressed bytes. Released on {@link #completed()}
+     */
+    ByteBuf compress(ByteBuf serialized) {
+
+        ItemSource<ByteBuf> compressed = compressedBufferFactory.createEmptySource();
+        this.compressed = compressed;
+
+        compressor.compress(serialized, compressed.getSource());
+
+        return compressed.getSource();
+    }
+
+    /**
+     * @return HTTP {@code Content-Encoding} of serialized request, null if not compressed
+     */
+    public String getContentEncoding() {
+        return compressor != null ? compressor.getContentEncoding() : null;
+    }
+
+    /**
+     * Writes action lines only into {@link #bulkSource} and assembles the request as a {@code io.netty.buffer.CompositeByteBuf}
+     * of retained slices: action line, {@link BufferedIndex} source and line separator for each action.
+     * Sources are not copied, so {@link #bulkSource} has to hold action lines only.
+     *
+     * @return {@code io.netty.buffer.CompositeByteBuf} with serialized actions. Released on {@link #completed()}
+     * @throws IOException if serialization failed
+     */
+    ByteBuf serializeComposite() throws IOException {
+
+        ByteBuf buffer = bulkSource.getSource();
+        ReusableByteBufOutputStream byteBufOutputStream = new ReusableByteBufOutputStream(buffer);
+
+        int separatorIndex = buffer.writerIndex();
+        byteBufOutputStream.writeByte(LINE_SEPARATOR);
+
+        // no consolidation, components are never copied
+        CompositeByteBuf composite = buffer.alloc().compositeBuffer(Integer.MAX_VALUE);
+        this.composite = composite;
+
+        // in current impl with no IDs, it's possible to reduce serialization by reusing first action
+        BulkableAction sameAction = getSameItem(actions);
+
+        int actionIndex = buffer.writerIndex();
+        if (sameAction != null) {
+            objectWriter.writeValue((OutputStream) byteBufOutputStream, sameAction);
+            byteBufOutputStream.writeByte(LINE_SEPARATOR);
+        }
+        int actionLength = buffer.writerIndex() - actionIndex;
+
+        for (BulkableAction action : actions) {
+
+            if (sameAction == null) {
+                actionIndex = buffer.writerIndex();
+                objectWriter.writeValue((OutputStream) byteBufOutputStream, action);
+                byteBufOutputStream.writeByte(LINE_SEPARATOR);
+                actionLength = buffer.writerIndex() - actionIndex;
+            }
+
+            composite.addComponent(true, buffer.retainedSlice(actionIndex, actionLength));
+            composite.addComponent(true, ((BufferedIndex)action).getSource().getSource().retainedSlice());
+            composite.addComponent(true, buffer.retainedSlice(separatorIndex, 1));
+
+        }
+
+        return composite;
+    }
+
     public String getURI() {
         return "/_bulk";
     }
@@ -125,6 +221,18 @@ public class BufferedBulk extends Bulk {
      * <p>MUST be called when request is completed. Otherwise it may lead to excessive resource usage and memory leaks
      */
     public void completed() {
+
+        if (compressed != null) {
+            compressed.release();
+            compressed = null;
+        }
+
+        // composite holds slices of both sources and bulkSource
+        if (composite != null) {
+            composite.release();
+            composite = null;
+        }
+
         for (BulkableAction bulkableAction : actions) {
             ((BufferedIndex)bulkableAction).release();
         }
@@ -142,6 +250,9 @@ public class BufferedBulk extends Bulk {
         private ItemSource<ByteBuf> bufferedSource;
         private ObjectWriter objectWriter;
         private ObjectReader objectReader;
+        private boolean zeroCopy;
+        private ByteBufCompressor compressor;
+        private EmptyItemSourceFactory compressedBufferFactory;
 
         @Override
         public Bulk.Builder addAction(BulkableAction action) {
@@ -169,6 +280,10 @@ public class BufferedBulk extends Bulk {
                 throw new IllegalArgumentException("objectWriter cannot be null");
             }
 
+            if (compressor != null && compressedBufferFactory == null) {
+                throw new IllegalArgumentException("compressedBufferFactory cannot be null if compressor is configured");
+            }
+
             return new BufferedBulk(this);
         }
 
@@ -187,5 +302,32 @@ public class BufferedBulk extends Bulk {
             return this;
         }
 
+        /**
+         * @param zeroCopy if true, {@link BufferedIndex} sources will not be copied to the buffer on {@link BufferedBulk#serializeRequest()}
+         * @return this
+         */
+        public Builder withZeroCopy(boolean zeroCopy) {
+            this.zeroCopy = zeroCopy;
+            return this;
+        }
+
+        /**
+         * @param compressor if not null, serialized request will be compressed
+         * @return this
+         */
+        public Builder withCompressor(ByteBufCompressor compressor) {
+            this.compressor = compressor;
+            return this;
+        }
+
+        /**
+         * @param compressedBufferFactory compressed request buffer provider, e.g. batch buffer pool. Required if compressor is configured
+         * @return this
+         */
+        public Builder withCompressedBufferFactory(EmptyItemSourceFactory compressedBufferFactory) {
+            this.compressedBufferFactory = compressedBufferFactory;
+            return this;
+        }
+
     }
 }
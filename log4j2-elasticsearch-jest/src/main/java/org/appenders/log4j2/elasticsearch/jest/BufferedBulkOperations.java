@@ -33,6 +33,7 @@ import io.searchbox.action.BulkableAction;
 import io.searchbox.core.Bulk;
 import org.appenders.log4j2.elasticsearch.BatchBuilder;
 import org.appenders.log4j2.elasticsearch.BatchOperations;
+import org.appenders.log4j2.elasticsearch.ByteBufCompressor;
 import org.appenders.log4j2.elasticsearch.ExtendedObjectMapper;
 import org.appenders.log4j2.elasticsearch.ItemSource;
 import org.appenders.log4j2.elasticsearch.JacksonMixIn;
@@ -55,6 +56,8 @@ public class BufferedBulkOperations implements BatchOperations<Bulk> {
     private final JacksonMixIn[] mixIns;
     private final ObjectWriter objectWriter;
     private final ObjectReader objectReader;
+    private final boolean zeroCopy;
+    private final ByteBufCompressor compressor;
 
     public BufferedBulkOperations(PooledItemSourceFactory pooledItemSourceFactory) {
         this(pooledItemSourceFactory, new JacksonMixIn[]{}, DEFAULT_MAPPING_TYPE);
@@ -62,9 +65,32 @@ public class BufferedBulkOperations implements BatchOperations<Bulk> {
 
     // FIXME: design - writer and reader should be configurable here(?)
     public BufferedBulkOperations(PooledItemSourceFactory pooledItemSourceFactory, JacksonMixIn[] mixIns, String mappingType) {
+        this(pooledItemSourceFactory, mixIns, mappingType, false);
+    }
+
+    /**
+     * @param pooledItemSourceFactory batch buffer provider
+     * @param mixIns additional {@link BufferedIndex} serialization mix-ins
+     * @param mappingType Elasticsearch mapping type
+     * @param zeroCopy if true, {@link BufferedBulk} will be assembled from item buffers without copying them
+     */
+    public BufferedBulkOperations(PooledItemSourceFactory pooledItemSourceFactory, JacksonMixIn[] mixIns, String mappingType, boolean zeroCopy) {
+        this(pooledItemSourceFactory, mixIns, mappingType, zeroCopy, null);
+    }
+
+    /**
+     * @param pooledItemSourceFactory batch buffer provider
+     * @param mixIns additional {@link BufferedIndex} serialization mix-ins
+     * @param mappingType Elasticsearch mapping type
+     * @param zeroCopy if true, {@link BufferedBulk} will be assembled from item buffers without copying them
+     * @param compressor if not null, {@link BufferedBulk} will be compressed after serialization
+     */
+    public BufferedBulkOperations(PooledItemSourceFactory pooledItemSourceFactory, JacksonMixIn[] mixIns, String mappingType, boolean zeroCopy, ByteBufCompressor compressor) {
         this.pooledItemSourceFactory = pooledItemSourceFactory;
         this.mappingType = mappingType;
         this.mixIns = mixIns;
+        this.zeroCopy = zeroCopy;
+        this.compressor = compressor;
         this.objectWriter = configuredWriter();
         this.objectReader = configuredReader();
     }
@@ -89,7 +115,10 @@ public class BufferedBulkOperations implements BatchOperations<Bulk> {
             private final BufferedBulk.Builder builder = new BufferedBulk.Builder()
                     .withBuffer(pooledItemSourceFactory.createEmptySource())
                     .withObjectWriter(objectWriter)
-                    .withObjectReader(objectReader);
+                    .withObjectReader(objectReader)
+                    .withZeroCopy(zeroCopy)
+                    .withCompressor(compressor)
+                    .withCompressedBufferFactory(pooledItemSourceFactory);
 
             @Override
             public void add(Object item) {
@@ -66,7 +66,8 @@ public class BufferedJestHttpClient extends JestHttpClient {
         ByteBufEntityBuilder entityBuilder = (ByteBufEntityBuilder) new ByteBufEntityBuilder()
                 .setByteBuf(byteBuf)
                 .setContentLength(byteBuf.writerIndex())
-                .setContentType(requestContentType);
+                .setContentType(requestContentType)
+                .setContentEncoding(clientRequest.getContentEncoding());
         ((HttpEntityEnclosingRequest) httpUriRequest).setEntity(entityBuilder.build());
 
         return httpUriRequest;
@@ -20,25 +20,32 @@ package org.appenders.log4j2.elasticsearch.jest;
  */
 
 
+import io.searchbox.action.AbstractAction;
 import io.searchbox.action.AbstractDocumentTargetedAction;
 import io.searchbox.client.JestClient;
 import io.searchbox.client.JestClientFactory;
 import io.searchbox.client.JestResult;
 import io.searchbox.client.JestResultHandler;
 import io.searchbox.core.Bulk;
+import io.searchbox.core.BulkResult;
 import io.searchbox.core.DocumentResult;
 import org.apache.logging.log4j.core.config.ConfigurationException;
 import org.apache.logging.log4j.core.config.Node;
 import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderAttribute;
 import org.apache.logging.log4j.core.config.plugins.PluginBuilderFactory;
 import org.apache.logging.log4j.core.config.plugins.PluginElement;
 import org.appenders.log4j2.elasticsearch.BatchOperations;
+import org.appenders.log4j2.elasticsearch.ByteBufCompressor;
 import org.appenders.log4j2.elasticsearch.ClientObjectFactory;
 import org.appenders.log4j2.elasticsearch.ClientProvider;
 import org.appenders.log4j2.elasticsearch.FailoverPolicy;
 import org.appenders.log4j2.elasticsearch.ItemSourceFactory;
+import org.appenders.log4j2.elasticsearch.LifeCycle;
 import org.appenders.log4j2.elasticsearch.JacksonMixIn;
 import org.appenders.log4j2.elasticsearch.PooledItemSourceFactory;
+import org.appenders.log4j2.elasticsearch.PriorityLanes;
+import org.appenders.log4j2.elasticsearch.backoff.BackoffPolicy;
 import org.appenders.log4j2.elasticsearch.failover.FailedItemOps;
 import org.appenders.log4j2.elasticsearch.jest.failover.BufferedHttpFailedItemOps;
 
@@ -56,11 +63,15 @@ public class BufferedJestHttpObjectFactory extends JestHttpObjectFactory {
     private final PooledItemSourceFactory itemSourceFactory;
 
     private final JacksonMixIn[] mixIns;
+    private final boolean zeroCopyBulk;
+    private final ByteBufCompressor compression;
 
     protected BufferedJestHttpObjectFactory(Builder builder) {
         super(builder);
         this.itemSourceFactory = builder.pooledItemSourceFactory;
         this.mixIns = builder.mixIns;
+        this.zeroCopyBulk = builder.zeroCopyBulk;
+        this.compression = builder.compression;
     }
 
     @Override
@@ -82,10 +93,21 @@ public class BufferedJestHttpObjectFactory extends JestHttpObjectFactory {
 
     @Override
     public BatchOperations<Bulk> createBatchOperations() {
-        return new BufferedBulkOperations(itemSourceFactory, mixIns, mappingType);
+        return new BufferedBulkOperations(itemSourceFactory, mixIns, mappingType, zeroCopyBulk, compression);
     }
 
-    protected JestResultHandler<JestResult> createResultHandler(Bulk bulk, Function<Bulk, Boolean> failureHandler) {
+    @Override
+    protected void shed(Bulk bulk, PriorityLanes.Lane lane) {
+        BufferedBulk bufferedBulk = (BufferedBulk) bulk;
+        lane.shed(bufferedBulk.getActions().size());
+        bufferedBulk.completed();
+    }
+
+    @Override
+    protected JestResultHandler<JestResult> createResultHandler(
+            Bulk bulk,
+            Function<Bulk, Boolean> failureHandler,
+            BackoffPolicy<AbstractAction<BulkResult>> backoffPolicy) {
         return new JestResultHandler<JestResult>() {
 
             @Override
@@ -138,6 +160,12 @@ public class BufferedJestHttpObjectFactory extends JestHttpObjectFactory {
         @PluginElement(JacksonMixIn.ELEMENT_TYPE)
         private JacksonMixIn[] mixIns = new JacksonMixIn[0];
 
+        @PluginBuilderAttribute
+        protected boolean zeroCopyBulk = false;
+
+        @PluginElement(ByteBufCompressor.ELEMENT_TYPE)
+        protected ByteBufCompressor compression;
+
         @Override
         public BufferedJestHttpObjectFactory build() {
 
@@ -169,6 +197,24 @@ public class BufferedJestHttpObjectFactory extends JestHttpObjectFactory {
             return this;
         }
 
+        /**
+         * @param zeroCopyBulk if true, batch items will be sent without copying them to the batch buffer
+         * @return this
+         */
+        public Builder withZeroCopyBulk(boolean zeroCopyBulk) {
+            this.zeroCopyBulk = zeroCopyBulk;
+            return this;
+        }
+
+        /**
+         * @param compression batch compressor. Disabled if null
+         * @return this
+         */
+        public Builder withCompression(ByteBufCompressor compression) {
+            this.compression = compression;
+            return this;
+        }
+
     }
 
     // ==========
@@ -181,6 +227,10 @@ public class BufferedJestHttpObjectFactory extends JestHttpObjectFactory {
         if (!itemSourceFactory.isStarted()) {
             itemSourceFactory.start();
         }
+        LifeCycle compressionLifeCycle = LifeCycle.of(compression);
+        if (!compressionLifeCycle.isStarted()) {
+            compressionLifeCycle.start();
+        }
         state = State.STARTED;
     }
 
@@ -190,6 +240,10 @@ public class BufferedJestHttpObjectFactory extends JestHttpObjectFactory {
         if (!itemSourceFactory.isStopped()) {
             itemSourceFactory.stop();
         }
+        LifeCycle compressionLifeCycle = LifeCycle.of(compression);
+        if (!compressionLifeCycle.isStopped()) {
+            compressionLifeCycle.stop();
+        }
         state = State.STOPPED;
     }
 
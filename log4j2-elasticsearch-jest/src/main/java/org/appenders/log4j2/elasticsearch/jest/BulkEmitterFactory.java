@@ -36,7 +36,12 @@ public class BulkEmitterFactory implements BatchEmitterFactory<BulkEmitter> {
 
     @Override
     public BulkEmitter createInstance(int batchSize, int deliveryInterval, ClientObjectFactory clientObjectFactory, FailoverPolicy failoverPolicy) {
-        BulkEmitter bulkEmitter = new BulkEmitter(batchSize, deliveryInterval, clientObjectFactory.createBatchOperations());
+        return createInstance(batchSize, Long.MAX_VALUE, deliveryInterval, clientObjectFactory, failoverPolicy);
+    }
+
+    @Override
+    public BulkEmitter createInstance(int batchSize, long batchSizeInBytes, int deliveryInterval, ClientObjectFactory clientObjectFactory, FailoverPolicy failoverPolicy) {
+        BulkEmitter bulkEmitter = new BulkEmitter(batchSize, batchSizeInBytes, deliveryInterval, clientObjectFactory.createBatchOperations());
         bulkEmitter.addListener(clientObjectFactory.createBatchListener(failoverPolicy));
         return bulkEmitter;
     }
@@ -48,6 +48,8 @@ import org.appenders.log4j2.elasticsearch.ClientProvider;
 import org.appenders.log4j2.elasticsearch.FailoverPolicy;
 import org.appenders.log4j2.elasticsearch.IndexTemplate;
 import org.appenders.log4j2.elasticsearch.Operation;
+import org.appenders.log4j2.elasticsearch.OperationQueue;
+import org.appenders.log4j2.elasticsearch.PriorityLanes;
 import org.appenders.log4j2.elasticsearch.backoff.BackoffPolicy;
 import org.appenders.log4j2.elasticsearch.backoff.NoopBackoffPolicy;
 import org.appenders.log4j2.elasticsearch.failover.FailedItemOps;
@@ -57,7 +59,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Function;
 
 import static org.appenders.core.logging.InternalLogging.getLogger;
@@ -79,11 +80,11 @@ public class JestHttpObjectFactory implements ClientObjectFactory<JestClient, Bu
     protected final String mappingType;
     protected final BackoffPolicy<AbstractAction<BulkResult>> backoffPolicy;
 
-    private final ConcurrentLinkedQueue<Operation> operations = new ConcurrentLinkedQueue<>();
+    private final OperationQueue operations = new OperationQueue();
 
     protected FailedItemOps<AbstractDocumentTargetedAction<DocumentResult>> failedItemOps;
 
-    private JestClient client;
+    private volatile JestClient client;
 
     protected JestHttpObjectFactory(Builder builder) {
         this.serverUris = Arrays.asList(builder.serverUris.split(";"));
@@ -129,33 +130,41 @@ public class JestHttpObjectFactory implements ClientObjectFactory<JestClient, Bu
         return client;
     }
 
+    /**
+     * Since 1.5, {@link BackoffPolicy} is not applied to batches of {@link PriorityLanes} high-priority lane,
+     * and batches of low-priority lane are shed while it's under back-pressure.
+     *
+     * @param failoverPolicy sink for failed batch items
+     * @return prepared batch handler
+     */
     @Override
     public Function<Bulk, Boolean> createBatchListener(FailoverPolicy failoverPolicy) {
         return new Function<Bulk, Boolean>() {
 
             private Function<Bulk, Boolean> failureHandler = createFailureHandler(failoverPolicy);
+            private final PriorityLanes.Lane lane = PriorityLanes.laneOf(failoverPolicy);
+            private final BackoffPolicy<AbstractAction<BulkResult>> laneBackoffPolicy =
+                    lane != null && lane.isHighPriority() ? new NoopBackoffPolicy<>() : backoffPolicy;
 
             @Override
             public Boolean apply(Bulk bulk) {
 
-                while (!operations.isEmpty()) {
-                    try {
-                        operations.remove().execute();
-                    } catch (Exception e) {
-                        // TODO: redirect to failover (?) retry with exp. backoff (?) multiple options here
-                        getLogger().error("Deferred operation failed: {}", e.getMessage());
-                    }
+                operations.executeAll();
+
+                if (lane != null && lane.isShedding()) {
+                    shed(bulk, lane);
+                    return true;
                 }
 
-                if (backoffPolicy.shouldApply(bulk)) {
+                if (laneBackoffPolicy.shouldApply(bulk)) {
                     getLogger().warn("Backoff applied. Request rejected.");
                     failureHandler.apply(bulk);
                     return false;
                 } else {
-                    backoffPolicy.register(bulk);
+                    laneBackoffPolicy.register(bulk);
                 }
 
-                JestResultHandler<JestResult> jestResultHandler = createResultHandler(bulk, failureHandler);
+                JestResultHandler<JestResult> jestResultHandler = createResultHandler(bulk, failureHandler, laneBackoffPolicy);
                 createClient().executeAsync(bulk, jestResultHandler);
                 return true;
             }
@@ -212,7 +221,30 @@ public class JestHttpObjectFactory implements ClientObjectFactory<JestClient, Bu
         operations.add(operation);
     }
 
+    /**
+     * Drops given bulk without delivery
+     *
+     * @param bulk bulk of low-priority lane
+     * @param lane lane that shed given bulk
+     */
+    protected void shed(Bulk bulk, PriorityLanes.Lane lane) {
+        lane.shed(new JestBatchIntrospector().items(bulk).size());
+    }
+
     protected JestResultHandler<JestResult> createResultHandler(Bulk bulk, Function<Bulk, Boolean> failureHandler) {
+        return createResultHandler(bulk, failureHandler, backoffPolicy);
+    }
+
+    /**
+     * @param bulk batch request
+     * @param failureHandler failed batch handler
+     * @param backoffPolicy policy that registered given bulk
+     * @return result handler
+     */
+    protected JestResultHandler<JestResult> createResultHandler(
+            Bulk bulk,
+            Function<Bulk, Boolean> failureHandler,
+            BackoffPolicy<AbstractAction<BulkResult>> backoffPolicy) {
         return new JestResultHandler<JestResult>() {
             @Override
             public void completed(JestResult result) {
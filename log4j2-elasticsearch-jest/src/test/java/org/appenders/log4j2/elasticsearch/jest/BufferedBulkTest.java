@@ -25,7 +25,10 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.searchbox.action.BulkableAction;
+import io.netty.buffer.ByteBufInputStream;
+import org.appenders.log4j2.elasticsearch.ByteBufCompressor;
 import org.appenders.log4j2.elasticsearch.ByteBufItemSource;
 import org.appenders.log4j2.elasticsearch.ItemSource;
 import org.appenders.log4j2.elasticsearch.PooledItemSourceFactory;
@@ -39,14 +42,17 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.UUID;
+import java.util.zip.InflaterInputStream;
 
 import static org.appenders.log4j2.elasticsearch.ByteBufItemSourceTest.createTestItemSource;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
@@ -396,6 +402,143 @@ public class BufferedBulkTest {
 
      }
 
+    @Test
+    public void zeroCopySerializeRequestProducesSameContentAsCopyingSerializeRequest() throws IOException {
+
+        // given
+        ObjectWriter writer = new ObjectMapper().writerFor(BufferedIndex.class);
+        String index1 = UUID.randomUUID().toString();
+        String index2 = UUID.randomUUID().toString();
+
+        BufferedBulk bulk = (BufferedBulk) new BufferedBulk.Builder()
+                .withObjectWriter(writer)
+                .withObjectReader(mock(ObjectReader.class))
+                .withBuffer(createTestItemSource())
+                .addAction(createTestBufferedIndex(index1, "test1"))
+                .addAction(createTestBufferedIndex(index2, "test2"))
+                .build();
+
+        BufferedBulk zeroCopyBulk = (BufferedBulk) new BufferedBulk.Builder()
+                .withObjectWriter(writer)
+                .withObjectReader(mock(ObjectReader.class))
+                .withBuffer(createTestItemSource())
+                .withZeroCopy(true)
+                .addAction(createTestBufferedIndex(index1, "test1"))
+                .addAction(createTestBufferedIndex(index2, "test2"))
+                .build();
+
+        // when
+        ByteBuf expected = bulk.serializeRequest();
+        ByteBuf result = zeroCopyBulk.serializeRequest();
+
+        // then
+        assertTrue(result instanceof CompositeByteBuf);
+        assertEquals(expected.toString(StandardCharsets.UTF_8), result.toString(StandardCharsets.UTF_8));
+        assertEquals(expected.writerIndex(), result.writerIndex());
+
+    }
+
+    @Test
+    public void callingCompletedReleasesZeroCopySlices() throws IOException {
+
+        // given
+        BufferedIndex bufferedIndex = createTestBufferedIndex(UUID.randomUUID().toString(), "test");
+        ByteBuf source = bufferedIndex.getSource().getSource();
+        ByteBufItemSource buffer = createTestItemSource();
+
+        BufferedBulk bulk = (BufferedBulk) new BufferedBulk.Builder()
+                .withObjectWriter(new ObjectMapper().writerFor(BufferedIndex.class))
+                .withObjectReader(mock(ObjectReader.class))
+                .withBuffer(buffer)
+                .withZeroCopy(true)
+                .addAction(bufferedIndex)
+                .build();
+
+        ByteBuf result = bulk.serializeRequest();
+        assertEquals(2, source.refCnt());
+
+        // when
+        bulk.completed();
+
+        // then
+        assertEquals(0, result.refCnt());
+        assertEquals(1, source.refCnt());
+        assertEquals(1, buffer.getSource().refCnt());
+
+    }
+
+    @Test
+    public void serializeRequestCompressesRequestIfCompressorIsConfigured() throws IOException {
+
+        // given
+        ObjectWriter writer = new ObjectMapper().writerFor(BufferedIndex.class);
+        String index = UUID.randomUUID().toString();
+
+        BufferedBulk bulk = (BufferedBulk) new BufferedBulk.Builder()
+                .withObjectWriter(writer)
+                .withObjectReader(mock(ObjectReader.class))
+                .withBuffer(createTestItemSource())
+                .addAction(createTestBufferedIndex(index, "test1"))
+                .build();
+
+        ItemSource<ByteBuf> compressedBuffer = spy(createTestItemSource());
+
+        BufferedBulk compressedBulk = (BufferedBulk) new BufferedBulk.Builder()
+                .withObjectWriter(writer)
+                .withObjectReader(mock(ObjectReader.class))
+                .withBuffer(createTestItemSource())
+                .withCompressor(ByteBufCompressor.newBuilder().withType("deflate").build())
+                .withCompressedBufferFactory(() -> compressedBuffer)
+                .addAction(createTestBufferedIndex(index, "test1"))
+                .build();
+
+        // when
+        String expected = bulk.serializeRequest().toString(StandardCharsets.UTF_8);
+        ByteBuf result = compressedBulk.serializeRequest();
+
+        // then
+        assertSame(compressedBuffer.getSource(), result);
+        assertEquals("deflate", compressedBulk.getContentEncoding());
+        InflaterInputStream inputStream = new InflaterInputStream(new ByteBufInputStream(result));
+        byte[] decompressed = new byte[expected.length() + 1];
+        int read = 0;
+        int count;
+        while ((count = inputStream.read(decompressed, read, decompressed.length - read)) > 0) {
+            read += count;
+        }
+        assertEquals(expected, new String(decompressed, 0, read, StandardCharsets.UTF_8));
+
+        // when
+        compressedBulk.completed();
+
+        // then
+        verify(compressedBuffer).release();
+
+    }
+
+    @Test
+    public void builderThrowsIfCompressorIsConfiguredWithoutCompressedBufferFactory() {
+
+        // given
+        BufferedBulk.Builder builder = createDefaultTestMockedBuilder()
+                .withCompressor(ByteBufCompressor.newBuilder().build());
+
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("compressedBufferFactory cannot be null");
+
+        // when
+        builder.build();
+
+    }
+
+    private BufferedIndex createTestBufferedIndex(String index, String payload) {
+        ByteBufItemSource itemSource = createTestItemSource();
+        itemSource.getSource().writeBytes(payload.getBytes(StandardCharsets.UTF_8));
+        return (BufferedIndex) new BufferedIndex.Builder(itemSource)
+                .index(index)
+                .build();
+    }
+
     private BufferedBulk.Builder createDefaultTestMockedBuilder() {
         BufferedBulk.Builder builder = new BufferedBulk.Builder();
         builder.withObjectReader(mock(ObjectReader.class));
@@ -63,6 +63,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -195,7 +196,7 @@ public class BufferedJestHttpClientTest {
 
         String expectedMesage = UUID.randomUUID().toString();
         BufferedBulk bulk = createDefaultTestBufferedBulk();
-        when(client.prepareRequest(bulk)).thenThrow(new IOException(expectedMesage));
+        doThrow(new IOException(expectedMesage)).when(client).prepareRequest(bulk);
 
         JestResultHandler<JestResult> jestResultHandler = createMockTestResultHandler();
 
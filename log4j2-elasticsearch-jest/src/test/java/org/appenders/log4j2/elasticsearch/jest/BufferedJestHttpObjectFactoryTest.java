@@ -33,6 +33,7 @@ import io.searchbox.core.BulkResult;
 import org.apache.logging.log4j.core.config.ConfigurationException;
 import org.appenders.log4j2.elasticsearch.Auth;
 import org.appenders.log4j2.elasticsearch.BatchOperations;
+import org.appenders.log4j2.elasticsearch.ByteBufCompressor;
 import org.appenders.log4j2.elasticsearch.ClientObjectFactory;
 import org.appenders.log4j2.elasticsearch.ClientProvider;
 import org.appenders.log4j2.elasticsearch.FailoverPolicy;
@@ -41,6 +42,7 @@ import org.appenders.log4j2.elasticsearch.JacksonMixIn;
 import org.appenders.log4j2.elasticsearch.LifeCycle;
 import org.appenders.log4j2.elasticsearch.NoopFailoverPolicy;
 import org.appenders.log4j2.elasticsearch.PooledItemSourceFactory;
+import org.appenders.log4j2.elasticsearch.PriorityLanes;
 import org.appenders.log4j2.elasticsearch.PooledItemSourceFactoryTest;
 import org.appenders.log4j2.elasticsearch.backoff.BackoffPolicy;
 import org.appenders.log4j2.elasticsearch.failover.FailedItemSource;
@@ -295,6 +297,37 @@ public class BufferedJestHttpObjectFactoryTest {
         assertEquals(bulk, captor.getValue());
     }
 
+    @Test
+    public void lowPriorityLaneBulkIsShedAndReleasedUnderBackpressure() {
+
+        // given
+        BufferedJestHttpObjectFactory.Builder builder = createTestObjectFactoryBuilder();
+        ClientObjectFactory<JestClient, Bulk> config = spy(builder.build());
+
+        JestClient mockedJestClient = mock(JestClient.class);
+        when(config.createClient()).thenReturn(mockedJestClient);
+
+        PriorityLanes priorityLanes = PriorityLanes.newBuilder()
+                .withBackpressureWindowMillis(60000)
+                .build();
+        Function<Bulk, Boolean> listener = config.createBatchListener(priorityLanes.lowPriorityLane(new NoopFailoverPolicy()));
+
+        ItemSource<ByteBuf> payload1 = createDefaultTestBuffereItemSource("test1");
+        ItemSource<ByteBuf> payload2 = createDefaultTestBuffereItemSource("test2");
+        Bulk bulk = createTestBatch(payload1, payload2);
+
+        priorityLanes.onBackpressure();
+
+        // when
+        listener.apply(bulk);
+
+        // then
+        verify(mockedJestClient, never()).executeAsync(any(), any());
+        verify((BufferedBulk) bulk).completed();
+        assertEquals(2, priorityLanes.getShedCount());
+
+    }
+
     @Test
     public void failoverIsExecutedAfterNonSuccessfulRequest() {
 
@@ -483,6 +516,49 @@ public class BufferedJestHttpObjectFactoryTest {
 
     }
 
+    @Test
+    public void lifecycleStartStartsCompression() {
+
+        // given
+        ByteBufCompressor compression = ByteBufCompressor.newBuilder().build();
+
+        BufferedJestHttpObjectFactory objectFactory = spy(createTestObjectFactoryBuilder()
+                .withCompression(compression).build());
+
+        JestClient client = mock(JestClient.class);
+        when(objectFactory.createClient()).thenReturn(client);
+
+        // when
+        objectFactory.start();
+
+        // then
+        assertTrue(compression.isStarted());
+
+    }
+
+    @Test
+    public void lifecycleStopStopsCompression() {
+
+        // given
+        ByteBufCompressor compression = ByteBufCompressor.newBuilder().build();
+
+        BufferedJestHttpObjectFactory objectFactory = spy(createTestObjectFactoryBuilder()
+                .withCompression(compression).build());
+
+        JestClient client = mock(JestClient.class);
+        ClientProvider<JestClient> clientProvider = () -> client;
+        when(objectFactory.getClientProvider(any())).thenReturn(clientProvider);
+
+        objectFactory.start();
+
+        // when
+        objectFactory.stop();
+
+        // then
+        assertTrue(compression.isStopped());
+
+    }
+
     @Test
     public void lifecycleStopStopsItemSourceFactoryOnlyOnce() {
 
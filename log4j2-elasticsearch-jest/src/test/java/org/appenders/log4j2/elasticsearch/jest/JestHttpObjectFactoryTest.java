@@ -36,6 +36,7 @@ import org.appenders.log4j2.elasticsearch.FailoverPolicy;
 import org.appenders.log4j2.elasticsearch.LifeCycle;
 import org.appenders.log4j2.elasticsearch.NoopFailoverPolicy;
 import org.appenders.log4j2.elasticsearch.Operation;
+import org.appenders.log4j2.elasticsearch.PriorityLanes;
 import org.appenders.log4j2.elasticsearch.backoff.BackoffPolicy;
 import org.appenders.log4j2.elasticsearch.failover.FailedItemSource;
 import org.appenders.log4j2.elasticsearch.jest.JestHttpObjectFactory.Builder;
@@ -451,6 +452,72 @@ public class JestHttpObjectFactoryTest {
 
     }
 
+    @Test
+    public void highPriorityLaneBulkIsNotLimitedByBackoffPolicy() {
+
+        // given
+        BackoffPolicy<AbstractAction<BulkResult>> backoffPolicy = mock(BackoffPolicy.class);
+        when(backoffPolicy.shouldApply(any())).thenReturn(true);
+
+        Builder builder = createTestObjectFactoryBuilder();
+        builder.withBackoffPolicy(backoffPolicy);
+
+        JestHttpObjectFactory config = spy(builder.build());
+
+        JestClient mockedJestClient = mock(JestClient.class);
+        when(config.createClient()).thenReturn(mockedJestClient);
+
+        FailoverPolicy failoverPolicy = mock(FailoverPolicy.class);
+        Function<Bulk, Boolean> listener = config.createBatchListener(
+                PriorityLanes.newBuilder().build().highPriorityLane(failoverPolicy));
+
+        Bulk bulk = createTestBatch("test1");
+
+        // when
+        listener.apply(bulk);
+
+        // then
+        verify(mockedJestClient).executeAsync(eq(bulk), any());
+        verify(backoffPolicy, never()).shouldApply(any());
+        verify(failoverPolicy, never()).deliver(any(FailedItemSource.class));
+
+    }
+
+    @Test
+    public void lowPriorityLaneBulkIsShedUnderBackpressure() {
+
+        // given
+        BackoffPolicy<AbstractAction<BulkResult>> backoffPolicy = mock(BackoffPolicy.class);
+
+        Builder builder = createTestObjectFactoryBuilder();
+        builder.withBackoffPolicy(backoffPolicy);
+
+        JestHttpObjectFactory config = spy(builder.build());
+
+        JestClient mockedJestClient = mock(JestClient.class);
+        when(config.createClient()).thenReturn(mockedJestClient);
+
+        PriorityLanes priorityLanes = PriorityLanes.newBuilder()
+                .withBackpressureWindowMillis(60000)
+                .build();
+        FailoverPolicy failoverPolicy = mock(FailoverPolicy.class);
+        Function<Bulk, Boolean> listener = config.createBatchListener(priorityLanes.lowPriorityLane(failoverPolicy));
+
+        Bulk bulk = createTestBatch("test1", "test2");
+
+        priorityLanes.onBackpressure();
+
+        // when
+        listener.apply(bulk);
+
+        // then
+        verify(mockedJestClient, never()).executeAsync(any(), any());
+        verify(backoffPolicy, never()).register(any());
+        verify(failoverPolicy, never()).deliver(any(FailedItemSource.class));
+        assertEquals(2, priorityLanes.getShedCount());
+
+    }
+
     @Test
     public void responseHandlerDeregistersRequestFromBackoffPolicyAfterException() {
 